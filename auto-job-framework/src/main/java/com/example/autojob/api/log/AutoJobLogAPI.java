@@ -27,6 +27,18 @@ public interface AutoJobLogAPI {
      */
     List<AutoJobSchedulingRecord> page(Integer pageCount, Integer pageSize, Long taskId);
 
+    /**
+     * 游标分页查询指定任务的调度记录，最新的记录在前，查询代价与页的深度无关
+     *
+     * @param taskId   任务ID
+     * @param lastId   上一页最后一条记录的ID，为null时查询第一页
+     * @param pageSize 每页条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobSchedulingRecord>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 15:05
+     */
+    List<AutoJobSchedulingRecord> pageAfter(Long taskId, Long lastId, Integer pageSize);
+
     /**
      * 获取指定任务的调度记录总数目
      *
@@ -69,6 +81,20 @@ public interface AutoJobLogAPI {
      */
     List<AutoJobRunLog> findRunLogsBySchedulingId(Long schedulingId);
 
+    /**
+     * 增量查询指定调度在游标之后的任务日志，游标为调度ID和上次查询到的最后一条日志的ID，按写入顺序返回。
+     * 没有新日志时最多等待timeout毫秒，期间有新日志写入即返回，用于跟踪正在运行的调度的日志
+     *
+     * @param schedulingId 调度ID
+     * @param lastId       上次查询到的最后一条日志的ID，为null时从头查询
+     * @param pageSize     最多返回的条数
+     * @param timeout      没有新日志时的最长等待时间：ms，为0时不等待，最长等待60秒
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/24 09:50
+     */
+    List<AutoJobLog> tailLogsBySchedulingId(Long schedulingId, Long lastId, Integer pageSize, Long timeout);
+
     /**
      * 查询指定任务指定时间区间的运行日志
      *
@@ -92,4 +118,28 @@ public interface AutoJobLogAPI {
      * @date 2022/12/27 15:21
      */
     List<AutoJobRunLog> findRunLogsByTaskIdBetween(Long taskId, Date start, Date end);
+
+    /**
+     * 游标分页查询指定任务的任务日志，按写入顺序返回
+     *
+     * @param taskId   任务ID
+     * @param lastId   上一页最后一条日志的ID，为null时查询第一页
+     * @param pageSize 每页条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 15:08
+     */
+    List<AutoJobLog> findLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize);
+
+    /**
+     * 游标分页查询指定任务的运行日志，按写入顺序返回
+     *
+     * @param taskId   任务ID
+     * @param lastId   上一页最后一条日志的ID，为null时查询第一页
+     * @param pageSize 每页条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobRunLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 15:10
+     */
+    List<AutoJobRunLog> findRunLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize);
 }
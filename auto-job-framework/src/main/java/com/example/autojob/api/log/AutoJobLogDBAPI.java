@@ -3,22 +3,35 @@ package com.example.autojob.api.log;
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
+import com.example.autojob.logging.model.AutoJobLogTailNotifier;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
 import com.example.autojob.util.convert.DefaultValueUtil;
 
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * 基于数据库存储的日志接口实现
+ * 基于数据库存储的日志接口实现，压缩存放的日志块在查询时透明展开为逐条日志
  *
  * @Author Huang Yongxiang
  * @Date 2022/11/07 11:39
  * @Email 1158055613@qq.com
  */
 public class AutoJobLogDBAPI implements AutoJobLogAPI {
+    /**
+     * 增量查询等待新日志时重新查询的最长间隔：ms
+     */
+    private static final long TAIL_POLL_INTERVAL = 1000;
+    /**
+     * 增量查询没有新日志时的最长等待时间：ms，超过的按该值等待，避免长时间占用请求线程
+     */
+    public static final long MAX_TAIL_TIMEOUT = 60 * 1000;
+
     @Override
     public List<AutoJobSchedulingRecord> page(Integer pageCount, Integer pageSize, Long taskId) {
         if (pageCount == null || pageSize == null || taskId == null) {
@@ -32,6 +45,18 @@ public class AutoJobLogDBAPI implements AutoJobLogAPI {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<AutoJobSchedulingRecord> pageAfter(Long taskId, Long lastId, Integer pageSize) {
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER
+                .pageByTaskIdAfter(taskId, lastId, pageSize)
+                .stream()
+                .map(EntityConvertor::entity2schedulingRecord)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Integer count(Long taskId) {
         if (taskId == null) {
@@ -58,7 +83,9 @@ public class AutoJobLogDBAPI implements AutoJobLogAPI {
         return AutoJobMapperHolder.LOG_ENTITY_MAPPER
                 .selectBySchedulingId(schedulingId)
                 .stream()
-                .map(EntityConvertor::logEntity2Log)
+                .flatMap(entity -> EntityConvertor
+                        .logEntity2Logs(entity)
+                        .stream())
                 .collect(Collectors.toList());
     }
 
@@ -71,12 +98,80 @@ public class AutoJobLogDBAPI implements AutoJobLogAPI {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<AutoJobLog> tailLogsBySchedulingId(Long schedulingId, Long lastId, Integer pageSize, Long timeout) {
+        if (schedulingId == null || pageSize == null) {
+            throw new NullPointerException();
+        }
+        AutoJobLogTailNotifier notifier = AutoJobLogTailNotifier.getInstance();
+        long deadline = System.currentTimeMillis() + clampTailTimeout(timeout);
+        while (true) {
+            //先取版本号再查询，查询期间写入的日志会使等待立即返回
+            long version = notifier.getVersion();
+            List<AutoJobLog> logs = findLogsBySchedulingIdAfter(schedulingId, lastId, pageSize);
+            long remaining = deadline - System.currentTimeMillis();
+            if (!logs.isEmpty() || remaining <= 0) {
+                return logs;
+            }
+            try {
+                //其他节点写入的日志无法通知，最长间隔TAIL_POLL_INTERVAL重新查询一次
+                notifier.await(version, Math.min(remaining, TAIL_POLL_INTERVAL));
+            } catch (InterruptedException e) {
+                Thread
+                        .currentThread()
+                        .interrupt();
+                return logs;
+            }
+        }
+    }
+
+    static long clampTailTimeout(Long timeout) {
+        return Math.max(0, Math.min(DefaultValueUtil.defaultValue(timeout, 0L), MAX_TAIL_TIMEOUT));
+    }
+
+    /**
+     * 查询指定调度在游标之后的任务日志，不等待
+     *
+     * @param schedulingId 调度ID
+     * @param lastId       上次查询到的最后一条日志的ID，为null时从头查询
+     * @param pageSize     最多返回的条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/24 10:00
+     */
+    protected List<AutoJobLog> findLogsBySchedulingIdAfter(Long schedulingId, Long lastId, int pageSize) {
+        long after = lastId == null ? Long.MIN_VALUE : lastId;
+        return AutoJobMapperHolder.LOG_ENTITY_MAPPER
+                .selectBySchedulingIdAfter(schedulingId, lastId, pageSize)
+                .stream()
+                .flatMap(entity -> EntityConvertor
+                        .logEntity2Logs(entity)
+                        .stream())
+                .filter(log -> log.getId() > after)
+                .sorted(Comparator.comparingLong(AutoJobLog::getId))
+                .limit(pageSize)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<AutoJobLog> findLogsByTaskIdBetween(Long taskId, Date start, Date end) {
+        AutoJobLogCodec codec = new AutoJobLogCodec();
         return AutoJobMapperHolder.LOG_ENTITY_MAPPER
                 .selectByTaskIdBetween(start, end, taskId)
                 .stream()
-                .map(EntityConvertor::logEntity2Log)
+                .flatMap(entity -> {
+                    if (entity.getContent() == null) {
+                        return Stream.of(EntityConvertor.logEntity2Log(entity));
+                    }
+                    //日志块可能包含范围外的日志
+                    return EntityConvertor
+                            .logEntity2Logs(entity)
+                            .stream()
+                            .filter(log -> {
+                                long time = codec.getTime(log);
+                                return time >= start.getTime() && time <= end.getTime();
+                            });
+                })
                 .collect(Collectors.toList());
     }
 
@@ -88,4 +183,35 @@ public class AutoJobLogDBAPI implements AutoJobLogAPI {
                 .map(EntityConvertor::runLogEntity2RunLog)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<AutoJobLog> findLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        long after = lastId == null ? Long.MIN_VALUE : lastId;
+        //日志块内可能包含上一页已返回的日志，展开后按ID过滤并截取一页
+        return AutoJobMapperHolder.LOG_ENTITY_MAPPER
+                .selectByTaskIdAfter(taskId, lastId, pageSize)
+                .stream()
+                .flatMap(entity -> EntityConvertor
+                        .logEntity2Logs(entity)
+                        .stream())
+                .filter(log -> log.getId() > after)
+                .sorted(Comparator.comparingLong(AutoJobLog::getId))
+                .limit(pageSize)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<AutoJobRunLog> findRunLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER
+                .selectByTaskIdAfter(taskId, lastId, pageSize)
+                .stream()
+                .map(EntityConvertor::runLogEntity2RunLog)
+                .collect(Collectors.toList());
+    }
 }
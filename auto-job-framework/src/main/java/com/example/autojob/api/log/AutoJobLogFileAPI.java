@@ -0,0 +1,94 @@
+package com.example.autojob.api.log;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.AutoJobLogContext;
+import com.example.autojob.logging.model.file.AutoJobLogFileStore;
+import com.example.autojob.util.convert.DefaultValueUtil;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 基于本地日志文件的日志接口实现，任务日志和运行日志从日志文件查询，调度记录仍从数据库查询
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 11:10
+ */
+public class AutoJobLogFileAPI extends AutoJobLogDBAPI {
+    @Override
+    public List<AutoJobLog> findLogsBySchedulingId(Long schedulingId) {
+        if (schedulingId == null) {
+            return Collections.emptyList();
+        }
+        return getLogFileStore().findBySchedulingId(schedulingId);
+    }
+
+    @Override
+    public List<AutoJobRunLog> findRunLogsBySchedulingId(Long schedulingId) {
+        if (schedulingId == null) {
+            return Collections.emptyList();
+        }
+        return getRunLogFileStore().findBySchedulingId(schedulingId);
+    }
+
+    @Override
+    protected List<AutoJobLog> findLogsBySchedulingIdAfter(Long schedulingId, Long lastId, int pageSize) {
+        return getLogFileStore().findBySchedulingIdAfter(schedulingId, lastId, pageSize);
+    }
+
+    @Override
+    public List<AutoJobLog> findLogsByTaskIdBetween(Long taskId, Date start, Date end) {
+        if (taskId == null || start == null) {
+            throw new NullPointerException();
+        }
+        end = DefaultValueUtil.defaultValue(end, new Date());
+        return getLogFileStore().findByTaskIdBetween(taskId, start.getTime(), end.getTime());
+    }
+
+    @Override
+    public List<AutoJobRunLog> findRunLogsByTaskIdBetween(Long taskId, Date start, Date end) {
+        if (taskId == null || start == null) {
+            throw new NullPointerException();
+        }
+        end = DefaultValueUtil.defaultValue(end, new Date());
+        return getRunLogFileStore().findByTaskIdBetween(taskId, start.getTime(), end.getTime());
+    }
+
+    @Override
+    public List<AutoJobLog> findLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return getLogFileStore().findByTaskIdAfter(taskId, lastId, pageSize);
+    }
+
+    @Override
+    public List<AutoJobRunLog> findRunLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return getRunLogFileStore().findByTaskIdAfter(taskId, lastId, pageSize);
+    }
+
+    private static AutoJobLogFileStore<AutoJobLog> getLogFileStore() {
+        AutoJobLogFileStore<AutoJobLog> fileStore = AutoJobLogContext
+                .getInstance()
+                .getLogFileStore();
+        if (fileStore == null) {
+            throw new IllegalStateException("日志文件存储未开启");
+        }
+        return fileStore;
+    }
+
+    private static AutoJobLogFileStore<AutoJobRunLog> getRunLogFileStore() {
+        AutoJobLogFileStore<AutoJobRunLog> fileStore = AutoJobLogContext
+                .getInstance()
+                .getRunLogFileStore();
+        if (fileStore == null) {
+            throw new IllegalStateException("日志文件存储未开启");
+        }
+        return fileStore;
+    }
+}
@@ -2,51 +2,121 @@ package com.example.autojob.api.log;
 
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.domain.AutoJobRunLog;
-import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
+import com.example.autojob.logging.model.AutoJobLogContext;
+import com.example.autojob.logging.model.memory.AutoJobLogCache;
+import com.example.autojob.logging.model.memory.AutoJobRunLogCache;
+import com.example.autojob.util.convert.DefaultValueUtil;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 /**
- * 内存日志API，暂不支持
+ * 基于内存缓存的日志接口实现，开启了内存存储的日志从内存查询，未开启的仍从数据库查询，调度记录从数据库查询。
+ * 内存中的日志按任务ID和调度ID查询，只保留最近的日志，超过限额或过期的日志查询不到
  *
  * @Author Huang Yongxiang
  * @Date 2022/11/07 14:56
  * @Email 1158055613@qq.com
  */
-public class AutoJobLogMemoryAPI implements AutoJobLogAPI {
+public class AutoJobLogMemoryAPI extends AutoJobLogDBAPI {
     @Override
-    public List<AutoJobSchedulingRecord> page(Integer pageCount, Integer pageSize, Long taskId) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobLog> findLogsBySchedulingId(Long schedulingId) {
+        AutoJobLogCache logCache = getLogCache();
+        if (logCache == null) {
+            return super.findLogsBySchedulingId(schedulingId);
+        }
+        if (schedulingId == null) {
+            return Collections.emptyList();
+        }
+        return logCache.getBySchedulingId(schedulingId);
     }
 
     @Override
-    public Integer count(Long taskId) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobRunLog> findRunLogsBySchedulingId(Long schedulingId) {
+        AutoJobRunLogCache runLogCache = getRunLogCache();
+        if (runLogCache == null) {
+            return super.findRunLogsBySchedulingId(schedulingId);
+        }
+        if (schedulingId == null) {
+            return Collections.emptyList();
+        }
+        return runLogCache.getBySchedulingId(schedulingId);
     }
 
     @Override
-    public List<AutoJobSchedulingRecord> findSchedulingRecordsBetween(Long taskId, Date start, Date end) {
-        throw new UnsupportedOperationException();
+    protected List<AutoJobLog> findLogsBySchedulingIdAfter(Long schedulingId, Long lastId, int pageSize) {
+        AutoJobLogCache logCache = getLogCache();
+        if (logCache == null) {
+            return super.findLogsBySchedulingIdAfter(schedulingId, lastId, pageSize);
+        }
+        return logCache.getBySchedulingIdAfter(schedulingId, lastId, pageSize);
     }
 
     @Override
-    public List<AutoJobLog> findLogsBySchedulingId(Long schedulingId) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobLog> findLogsByTaskIdBetween(Long taskId, Date start, Date end) {
+        AutoJobLogCache logCache = getLogCache();
+        if (logCache == null) {
+            return super.findLogsByTaskIdBetween(taskId, start, end);
+        }
+        if (taskId == null || start == null) {
+            throw new NullPointerException();
+        }
+        end = DefaultValueUtil.defaultValue(end, new Date());
+        return logCache.getBetween(taskId + "", start.getTime(), end.getTime());
     }
 
     @Override
-    public List<AutoJobRunLog> findRunLogsBySchedulingId(Long schedulingId) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobRunLog> findRunLogsByTaskIdBetween(Long taskId, Date start, Date end) {
+        AutoJobRunLogCache runLogCache = getRunLogCache();
+        if (runLogCache == null) {
+            return super.findRunLogsByTaskIdBetween(taskId, start, end);
+        }
+        if (taskId == null || start == null) {
+            throw new NullPointerException();
+        }
+        end = DefaultValueUtil.defaultValue(end, new Date());
+        return runLogCache.getBetween(taskId + "", start.getTime(), end.getTime());
     }
 
     @Override
-    public List<AutoJobLog> findLogsByTaskIdBetween(Long taskId, Date start, Date end) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobLog> findLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        AutoJobLogCache logCache = getLogCache();
+        if (logCache == null) {
+            return super.findLogsByTaskIdAfter(taskId, lastId, pageSize);
+        }
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return logCache.getAfter(taskId + "", lastId, pageSize);
     }
 
     @Override
-    public List<AutoJobRunLog> findRunLogsByTaskIdBetween(Long taskId, Date start, Date end) {
-        throw new UnsupportedOperationException();
+    public List<AutoJobRunLog> findRunLogsByTaskIdAfter(Long taskId, Long lastId, Integer pageSize) {
+        AutoJobRunLogCache runLogCache = getRunLogCache();
+        if (runLogCache == null) {
+            return super.findRunLogsByTaskIdAfter(taskId, lastId, pageSize);
+        }
+        if (pageSize == null || taskId == null) {
+            throw new NullPointerException();
+        }
+        return runLogCache.getAfter(taskId + "", lastId, pageSize);
+    }
+
+    /**
+     * 开启了内存存储的任务日志缓存，未开启时返回null
+     */
+    private static AutoJobLogCache getLogCache() {
+        AutoJobLogCache logCache = AutoJobLogContext
+                .getInstance()
+                .getLogCache();
+        return logCache != null && logCache.isEnable() ? logCache : null;
+    }
+
+    private static AutoJobRunLogCache getRunLogCache() {
+        AutoJobRunLogCache runLogCache = AutoJobLogContext
+                .getInstance()
+                .getRunLogCache();
+        return runLogCache != null && runLogCache.isEnable() ? runLogCache : null;
     }
 }
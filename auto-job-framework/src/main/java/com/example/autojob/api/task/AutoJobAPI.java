@@ -2,11 +2,12 @@ package com.example.autojob.api.task;
 
 import com.example.autojob.api.task.params.TaskEditParams;
 import com.example.autojob.api.task.params.TriggerEditParams;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
 import com.example.autojob.skeleton.framework.task.AutoJobTrigger;
 import com.example.autojob.skeleton.framework.task.TaskRunningContext;
+import com.example.autojob.util.bean.ObjectUtil;
 
 import java.util.List;
 
@@ -28,6 +29,17 @@ public interface AutoJobAPI {
      */
     List<AutoJobTaskAttributes> page(Integer pageNum, Integer size);
 
+    /**
+     * 执行游标分页查询，按任务id升序列举出id大于lastId的任务，深度翻页时应优先使用该方法
+     *
+     * @param lastId 上一页最后一个任务的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<com.example.autojob.api.task.AutoJobTaskAttributes>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 15:00
+     */
+    List<AutoJobTaskAttributes> pageAfter(Long lastId, Integer size);
+
     /**
      * 返回当前任务数目
      *
@@ -155,9 +167,9 @@ public interface AutoJobAPI {
                 .getById(taskId) != null) {
             return AutoJobTask.TaskType.MEMORY_TASk;
         }
-        if (AutoJobMapperHolder.TASK_ENTITY_MAPPER
-                .selectById(taskId)
-                .getId() != null) {
+        if (!ObjectUtil.isNull(AutoJobEntityCache
+                .getInstance()
+                .getTask(taskId))) {
             return AutoJobTask.TaskType.DB_TASK;
         }
         return null;
@@ -61,12 +61,13 @@ public class AutoJobMethodTaskAttributes extends AutoJobTaskAttributes {
         methodTask.setId(id);
         methodTask.setAnnotationId(annotationId);
         methodTask.setParamsString(paramsString);
+        //参数按方法签名解析，需先设置方法名
+        methodTask.setMethodName(methodName);
         AutoJobAttributeContext context = new AutoJobAttributeContext(methodTask);
         methodTask.setParams(context.getAttributeEntity());
         if (!StringUtils.isEmpty(methodObjectFactory)) {
             methodTask.setMethodObjectFactory((IMethodObjectFactory) ObjectUtil.getClassInstanceObject(ObjectUtil.classPath2Class(methodObjectFactory)));
         }
-        methodTask.setMethodName(methodName);
         methodTask.setType(AutoJobTask.TaskType.convert(type));
         methodTask.setBelongTo(belongTo);
         methodTask.setIsChildTask(isChildTask);
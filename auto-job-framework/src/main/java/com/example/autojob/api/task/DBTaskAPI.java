@@ -3,7 +3,10 @@ package com.example.autojob.api.task;
 import com.example.autojob.api.task.params.TaskEditParams;
 import com.example.autojob.api.task.params.TriggerEditParams;
 import com.example.autojob.skeleton.annotation.AutoJobRPCService;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
 import com.example.autojob.skeleton.db.AutoJobSQLException;
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
 import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
@@ -12,6 +15,7 @@ import com.example.autojob.skeleton.db.mapper.TransactionEntry;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
 import com.example.autojob.skeleton.framework.task.AutoJobTrigger;
+import com.example.autojob.skeleton.framework.task.TaskRunningContext;
 import com.example.autojob.skeleton.model.builder.AutoJobTriggerFactory;
 import com.example.autojob.skeleton.model.register.IAutoJobRegister;
 import com.example.autojob.skeleton.model.task.method.MethodTask;
@@ -39,10 +43,25 @@ public class DBTaskAPI implements AutoJobAPI {
 
     @Override
     public List<AutoJobTaskAttributes> page(Integer pageNum, Integer size) {
-        return AutoJobMapperHolder.TASK_ENTITY_MAPPER
-                .page(pageNum, size)
+        return EntityConvertor
+                .taskEntities2Tasks(AutoJobMapperHolder.TASK_ENTITY_MAPPER.page(pageNum, size))
+                .stream()
+                .map(task -> {
+                    if (task instanceof MethodTask) {
+                        return new AutoJobMethodTaskAttributes((MethodTask) task);
+                    } else if (task instanceof ScriptTask) {
+                        return new AutoJobScriptTaskAttributes((ScriptTask) task);
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<AutoJobTaskAttributes> pageAfter(Long lastId, Integer size) {
+        return EntityConvertor
+                .taskEntities2Tasks(AutoJobMapperHolder.TASK_ENTITY_MAPPER.pageAfter(lastId, size))
                 .stream()
-                .map(EntityConvertor::taskEntity2Task)
                 .map(task -> {
                     if (task instanceof MethodTask) {
                         return new AutoJobMethodTaskAttributes((MethodTask) task);
@@ -70,9 +89,13 @@ public class DBTaskAPI implements AutoJobAPI {
         }
         AutoJobTriggerEntity triggerEntity = EntityConvertor.trigger2TriggerEntity(task.getTrigger());
         AutoJobTaskEntity taskEntity = EntityConvertor.task2TaskEntity(task, triggerEntity.getId());
+        //触发器按任务ID路由，需与任务位于同一分片
+        triggerEntity.setTaskId(taskEntity.getId());
         TransactionEntry insertTrigger = connection -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.insertList(Collections.singletonList(triggerEntity));
         TransactionEntry insertTask = connection -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.insertList(Collections.singletonList(taskEntity));
-        return AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTask, insertTrigger});
+        return AutoJobShardRouter
+                .getInstance()
+                .route(taskEntity.getId(), () -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTask, insertTrigger}));
     }
 
 
@@ -95,7 +118,9 @@ public class DBTaskAPI implements AutoJobAPI {
 
     @Override
     public AutoJobTaskAttributes find(Long taskId) {
-        AutoJobTask task = EntityConvertor.taskEntity2Task(AutoJobMapperHolder.TASK_ENTITY_MAPPER.selectById(taskId));
+        AutoJobTask task = EntityConvertor.taskEntity2Task(AutoJobEntityCache
+                .getInstance()
+                .getTask(taskId));
         if (task instanceof MethodTask) {
             return new AutoJobMethodTaskAttributes((MethodTask) task);
         } else if (task instanceof ScriptTask) {
@@ -139,7 +164,9 @@ public class DBTaskAPI implements AutoJobAPI {
                     }
                     return 1;
                 };
-                return AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTrigger, bindingTrigger});
+                return AutoJobShardRouter
+                        .getInstance()
+                        .route(taskId, () -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTrigger, bindingTrigger}));
             }
         } finally {
             unpause(taskId);
@@ -173,12 +200,19 @@ public class DBTaskAPI implements AutoJobAPI {
     @Override
     public Boolean pause(Long taskId) {
         register.removeTask(taskId);
-        return AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.pauseTaskById(taskId);
+        TaskRunningContext.releaseClaim(taskId);
+        boolean flag = AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.pauseTaskById(taskId);
+        broadcastInvalidation();
+        return flag;
     }
 
     @Override
     public Boolean unpause(Long taskId) {
-        AutoJobTask task = EntityConvertor.taskEntity2Task(AutoJobMapperHolder.TASK_ENTITY_MAPPER.selectById(taskId));
+        //缓冲中尚未写入的触发器状态会覆盖本次修改，先行写入，之后直接从数据库读取触发器，不经过缓存，保证以最新的触发时间刷新
+        AutoJobTriggerWriteBuffer
+                .getInstance()
+                .flush();
+        AutoJobTask task = EntityConvertor.taskEntity2Task(AutoJobMapperHolder.TASK_ENTITY_MAPPER.selectById(taskId), AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.selectOneByTaskId(taskId));
         if (task == null || task.getTrigger() == null) {
             return false;
         }
@@ -203,18 +237,35 @@ public class DBTaskAPI implements AutoJobAPI {
             AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.unpauseTaskById(taskId);
             return 1;
         };
-        return AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{updateTriggeringTime, unpause});
+        boolean flag = AutoJobShardRouter
+                .getInstance()
+                .route(taskId, () -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{updateTriggeringTime, unpause}));
+        broadcastInvalidation();
+        return flag;
     }
 
     @Override
     public Boolean delete(Long taskId) {
         TransactionEntry deleteTask = (connection) -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.deleteById(taskId) ? 1 : 0;
         TransactionEntry deleteTrigger = connection -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.deleteByTaskIds(Collections.singletonList(taskId));
-        return AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{deleteTask, deleteTrigger});
+        boolean flag = AutoJobShardRouter
+                .getInstance()
+                .route(taskId, () -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{deleteTask, deleteTrigger}));
+        broadcastInvalidation();
+        return flag;
     }
 
     @Override
     public Boolean isExist(Long taskId) {
         return !ObjectUtil.isNull(find(taskId));
     }
+
+    /**
+     * 写操作返回前将缓存失效同步广播给集群其他节点，修改任务与触发器的操作都以恢复任务结束，同样经过这里
+     */
+    private static void broadcastInvalidation() {
+        AutoJobEntityCache
+                .getInstance()
+                .broadcastNow();
+    }
 }
@@ -58,6 +58,25 @@ public class MemoryTaskAPI implements AutoJobAPI {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<AutoJobTaskAttributes> pageAfter(Long lastId, Integer size) {
+        return container
+                .list()
+                .stream()
+                .filter(task -> lastId == null || task.getId() > lastId)
+                .sorted(Comparator.comparing(AutoJobTask::getId))
+                .limit(size)
+                .map(task -> {
+                    if (task instanceof MethodTask) {
+                        return new AutoJobMethodTaskAttributes((MethodTask) task);
+                    } else if (task instanceof ScriptTask) {
+                        return new AutoJobScriptTaskAttributes((ScriptTask) task);
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Integer count() {
         return container.size();
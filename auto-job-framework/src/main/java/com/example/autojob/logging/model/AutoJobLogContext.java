@@ -1,6 +1,9 @@
 package com.example.autojob.logging.model;
 
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.model.consumer.AutoJobLogConsumer;
+import com.example.autojob.logging.model.file.AutoJobLogFileStore;
 import com.example.autojob.logging.model.memory.AutoJobLogCache;
 import com.example.autojob.logging.model.memory.AutoJobRunLogCache;
 import com.example.autojob.logging.model.producer.AutoJobLogHelper;
@@ -30,6 +33,11 @@ public class AutoJobLogContext {
     private AutoJobRunLogCache runLogCache;
     /*=======================Finished======================<*/
 
+    /*=================文件存储，未开启时为null=================>*/
+    private AutoJobLogFileStore<AutoJobLog> logFileStore;
+    private AutoJobLogFileStore<AutoJobRunLog> runLogFileStore;
+    /*=======================Finished======================<*/
+
     /**
      * 日志管理器
      */
@@ -0,0 +1,64 @@
+package com.example.autojob.logging.model;
+
+/**
+ * 任务日志写入通知，日志写入存储后递增版本号并唤醒等待者，供增量查询日志的长轮询使用。
+ * 只能感知本节点写入的日志，等待方需设置最长等待时间以便定期重新查询
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/24 09:20
+ */
+public class AutoJobLogTailNotifier {
+    private final Object monitor = new Object();
+    private volatile long version;
+
+    private AutoJobLogTailNotifier() {
+    }
+
+    public static AutoJobLogTailNotifier getInstance() {
+        return InstanceHolder.NOTIFIER;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 通知有新的任务日志写入
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/24 09:25
+     */
+    public void signal() {
+        synchronized (monitor) {
+            version++;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * 等待版本号变化
+     *
+     * @param lastVersion 等待前获取的版本号
+     * @param timeout     最长等待时间：ms
+     * @return boolean 是否有新的日志写入
+     * @author Huang Yongxiang
+     * @date 2023/1/24 09:30
+     */
+    public boolean await(long lastVersion, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (monitor) {
+            while (version == lastVersion) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                monitor.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobLogTailNotifier NOTIFIER = new AutoJobLogTailNotifier();
+    }
+}
@@ -2,18 +2,17 @@ package com.example.autojob.logging.model.consumer;
 
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.domain.AutoJobRunLog;
-import com.example.autojob.logging.model.AutoJobLogContainer;
+import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
 import com.example.autojob.logging.model.factory.AutoJobRunLogFactory;
 import com.example.autojob.logging.model.handler.AutoJobLogHandler;
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
+import com.example.autojob.logging.model.producer.AutoJobLogLimiter;
 import com.example.autojob.skeleton.framework.config.TimeConstant;
-import com.example.autojob.skeleton.framework.mq.MessagePublishedListener;
-import com.example.autojob.skeleton.framework.mq.MessageQueueContext;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
 import com.example.autojob.skeleton.lifecycle.ITaskEventHandler;
 import com.example.autojob.skeleton.lifecycle.event.TaskEvent;
 import com.example.autojob.skeleton.lifecycle.event.imp.TaskAfterRunEvent;
 import com.example.autojob.skeleton.lifecycle.event.imp.TaskBeforeRunEvent;
-import com.example.autojob.skeleton.lifecycle.event.imp.TaskFinishedEvent;
 import com.example.autojob.util.json.JsonUtil;
 import com.example.autojob.util.thread.ScheduleTaskUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -23,7 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 任务日志消费者
+ * 任务日志消费者，任务日志由{@link AutoJobLogPipeline}的消费线程按任务分发给对应的日志处理器
  *
  * @Author Huang Yongxiang
  * @Date 2022/10/21 14:43
@@ -33,22 +32,34 @@ public class AutoJobLogConsumer implements ITaskEventHandler<TaskEvent> {
     private final Map<Long, AutoJobLogHandler> logHandlerMap = new ConcurrentHashMap<>();
     private final ILogSaveStrategyDelegate<AutoJobLog> logSaveStrategyDelegate;
     private final ILogSaveStrategyDelegate<AutoJobRunLog> runLogSaveStrategyDelegate;
-    private final MessageQueueContext<AutoJobLog> logMessageQueueContext;
+    private final AutoJobLogPipeline logPipeline;
     private final ScheduleTaskUtil saveLogScheduler = ScheduleTaskUtil.build(true, "saveLogScheduler");
-    private static final String LISTENER_PREFIX = "LOG_HANDLE_LISTENER_";
+    /**
+     * 调度结束时等待管道中该次调度日志消费完毕的最长时间
+     */
+    private static final long PIPELINE_DRAIN_TIMEOUT = 5000;
 
     public AutoJobLogConsumer(ILogSaveStrategyDelegate<AutoJobLog> logSaveStrategyDelegate, ILogSaveStrategyDelegate<AutoJobRunLog> runLogSaveStrategyDelegate) {
         this.logSaveStrategyDelegate = logSaveStrategyDelegate;
         this.runLogSaveStrategyDelegate = runLogSaveStrategyDelegate;
-        logMessageQueueContext = AutoJobLogContainer
-                .getInstance()
-                .getMessageQueueContext(AutoJobLog.class);
+        logPipeline = AutoJobLogPipeline.getInstance();
+        logPipeline.setSink(autoJobLog -> {
+            AutoJobLogHandler handler = logHandlerMap.get(autoJobLog.getTaskId());
+            if (handler != null) {
+                handler.addLog(autoJobLog);
+            }
+        });
     }
 
     @Override
     public void doHandle(TaskEvent event) {
 
         if (event instanceof TaskBeforeRunEvent) {
+            AutoJobLogLimiter
+                    .getInstance()
+                    .startRun(event
+                            .getTask()
+                            .getId());
             AutoJobLogHandler handler = logHandlerMap.get(event
                     .getTask()
                     .getId());
@@ -61,14 +72,11 @@ public class AutoJobLogConsumer implements ITaskEventHandler<TaskEvent> {
                 handler.refresh();
             }
             AutoJobLogHandler finalHandler = handler;
+            AutoJobSchedulingRecord record = handler.getSchedulingRecord();
             saveLogScheduler.EOneTimeTask(() -> {
-                finalHandler.saveSchedulingRecord();
+                finalHandler.saveSchedulingRecord(record);
                 return null;
             }, 0, TimeUnit.MILLISECONDS);
-            logMessageQueueContext.addMessagePublishedListener(event
-                    .getTask()
-                    .getId() + "", new HandleMessageListener(handler, event.getTask()));
-
         }
 
         if (logHandlerMap.containsKey(event
@@ -77,7 +85,7 @@ public class AutoJobLogConsumer implements ITaskEventHandler<TaskEvent> {
             AutoJobLogHandler handler = logHandlerMap.get(event
                     .getTask()
                     .getId());
-            handler.addRunLog(AutoJobRunLogFactory.getAutoJobRunLog(event));
+            handler.addRunLog(AutoJobRunLogFactory.getEventCode(event), AutoJobRunLogFactory.getAutoJobRunLog(event));
             saveLogScheduler.EOneTimeTask(() -> {
                 handler.saveRunLogs();
                 return null;
@@ -85,64 +93,59 @@ public class AutoJobLogConsumer implements ITaskEventHandler<TaskEvent> {
         }
 
         if (event instanceof TaskAfterRunEvent) {
-            AutoJobLogHandler handler = logHandlerMap.get(event
-                    .getTask()
-                    .getId());
             AutoJobTask task = event.getTask();
-            logMessageQueueContext.takeAllMessageNoBlock(event
-                    .getTask()
-                    .getId() + "", true);
-
-            //handler.addAllLogs(logList);
+            //限额丢弃的汇总在等待管道消费前发布，保证写入本次调度
+            AutoJobLogLimiter
+                    .getInstance()
+                    .finishRun(task.getId());
+            AutoJobLogHandler handler = logHandlerMap.get(task.getId());
+            if (handler == null) {
+                return;
+            }
+            boolean isSuccess = task
+                    .getRunResult()
+                    .isRunSuccess();
             String result = JsonUtil.pojoToJsonString(task
                     .getRunResult()
                     .getResult());
+            long executingTime = ((TaskAfterRunEvent) event).getEndTime() - task
+                    .getTrigger()
+                    .getStartRunTime();
+            //下次调度开始时处理器会同步刷新，本次调度的记录与运行日志聚合需在此时取得
+            AutoJobSchedulingRecord record = handler.getSchedulingRecord();
+            handler.closeRunLogAggregator(record.getSchedulingId(), isSuccess);
+            boolean isRemove = task
+                    .getTrigger()
+                    .nextTriggeringTime() - System.currentTimeMillis() > TimeConstant.A_MINUTE * 30;
             saveLogScheduler.EOneTimeTask(() -> {
-                handler.finishScheduling(task
-                        .getRunResult()
-                        .isRunSuccess(), result, ((TaskAfterRunEvent) event).getEndTime() - task
-                        .getTrigger()
-                        .getStartRunTime());
+                //任务线程已结束，等待管道中已发布的日志分发到处理器后再结束调度，保证日志归属本次调度
+                if (!logPipeline.awaitConsumed(PIPELINE_DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("任务{}的日志在{}ms内未能全部消费", task.getId(), PIPELINE_DRAIN_TIMEOUT);
+                }
+                handler.finishScheduling(record, isSuccess, result, executingTime);
+                if (isRemove && logHandlerMap.remove(task.getId(), handler)) {
+                    //写入移除前迟到的运行日志
+                    handler.close();
+                }
                 return null;
             }, 0, TimeUnit.MILLISECONDS);
-            if (task
-                    .getTrigger()
-                    .nextTriggeringTime() - System.currentTimeMillis() > TimeConstant.A_MINUTE * 30) {
-                logHandlerMap.remove(task.getId());
-            }
-
-            logMessageQueueContext.removeMessagePublishedListener(task.getId() + "", LISTENER_PREFIX + task.getId());
-        }
-
-        if (event instanceof TaskFinishedEvent) {
-            AutoJobLogContainer
-                    .getInstance()
-                    .getMessageQueueContext(AutoJobLog.class)
-                    .unsubscribe(event
-                            .getTask()
-                            .getId() + "", 0, TimeUnit.MILLISECONDS);
         }
 
     }
 
-    private static class HandleMessageListener implements MessagePublishedListener<AutoJobLog> {
-        AutoJobLogHandler handler;
-        AutoJobTask task;
-
-        public HandleMessageListener(AutoJobLogHandler handler, AutoJobTask task) {
-            this.handler = handler;
-            this.task = task;
-        }
-
-        @Override
-        public void onMessagePublished(AutoJobLog message) {
-            //log.info("添加日志");
-            handler.addLog(message);
-        }
-
-        @Override
-        public String listenerName() {
-            return LISTENER_PREFIX + task.getId();
+    /**
+     * 应用关闭时调用，所有处理器生成未结束的运行日志汇总并写入缓冲中的日志，需在日志写入缓冲关闭之前调用
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/28 15:30
+     */
+    public void close() {
+        for (AutoJobLogHandler handler : logHandlerMap.values()) {
+            try {
+                handler.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -2,6 +2,7 @@ package com.example.autojob.logging.model.consumer;
 
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.model.consumer.strategy.AutoJobLogDBStrategy;
+import com.example.autojob.logging.model.consumer.strategy.AutoJobLogFileStrategy;
 import com.example.autojob.logging.model.consumer.strategy.AutoJobLogMemoryStrategy;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 
@@ -12,11 +13,25 @@ import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
  * @Date 2022/08/26 11:46
  */
 public class DefaultLogSaveStrategyDelegate implements ILogSaveStrategyDelegate<AutoJobLog> {
+    /**
+     * 共用的默认委派者，未指定委派者的日志处理器都使用该实例，保证同一保存策略下各任务的日志能合并写入
+     */
+    public static DefaultLogSaveStrategyDelegate getInstance() {
+        return InstanceHolder.DELEGATE;
+    }
+
     @Override
     public IAutoJobLogSaveStrategy<AutoJobLog> doDelegate(AutoJobConfigHolder configHolder, Class<AutoJobLog> type) {
+        if (configHolder.getLogConfig().getEnableFileStore()) {
+            return new AutoJobLogFileStrategy();
+        }
         if (configHolder.getLogConfig().getEnableMemory()) {
             return new AutoJobLogMemoryStrategy();
         }
         return new AutoJobLogDBStrategy();
     }
+
+    private static class InstanceHolder {
+        private static final DefaultLogSaveStrategyDelegate DELEGATE = new DefaultLogSaveStrategyDelegate();
+    }
 }
@@ -2,6 +2,7 @@ package com.example.autojob.logging.model.consumer;
 
 import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.model.consumer.strategy.AutoJobRunLogDBStrategy;
+import com.example.autojob.logging.model.consumer.strategy.AutoJobRunLogFileStrategy;
 import com.example.autojob.logging.model.consumer.strategy.AutoJobRunLogMemoryStrategy;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 
@@ -12,8 +13,19 @@ import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
  * @Date 2022/08/26 14:54
  */
 public class DefaultRunLogSaveStrategyDelegate implements ILogSaveStrategyDelegate<AutoJobRunLog> {
+    /**
+     * 共用的默认委派者，未指定委派者的日志处理器都使用该实例，保证同一保存策略下各任务的日志能合并写入
+     */
+    public static DefaultRunLogSaveStrategyDelegate getInstance() {
+        return InstanceHolder.DELEGATE;
+    }
+
     @Override
     public IAutoJobLogSaveStrategy<AutoJobRunLog> doDelegate(AutoJobConfigHolder configHolder, Class<AutoJobRunLog> type) {
+        //开启文件存储就使用文件策略
+        if (configHolder.getLogConfig().getEnableFileStore()) {
+            return new AutoJobRunLogFileStrategy();
+        }
         //开启内存模式就使用内存策略
         if (configHolder.getLogConfig().getEnableRunLogMemory()) {
             return new AutoJobRunLogMemoryStrategy();
@@ -21,4 +33,8 @@ public class DefaultRunLogSaveStrategyDelegate implements ILogSaveStrategyDelega
         //否则使用DB策略
         return new AutoJobRunLogDBStrategy();
     }
+
+    private static class InstanceHolder {
+        private static final DefaultRunLogSaveStrategyDelegate DELEGATE = new DefaultRunLogSaveStrategyDelegate();
+    }
 }
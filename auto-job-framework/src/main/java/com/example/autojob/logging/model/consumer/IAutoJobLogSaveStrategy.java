@@ -1,6 +1,7 @@
 package com.example.autojob.logging.model.consumer;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 日志保存策略，本框架提供内存Cache和DB的保存策略，你可以实现该接口，新增类型Redis，文件等策略，为了新增的策略能被选择到，你还需要实现ILogSaveStrategyDelegate接口
@@ -20,4 +21,15 @@ public interface IAutoJobLogSaveStrategy<L> {
      * @date 2022/11/20 22:58
      */
     void doHandle(String taskPath, List<L> logList);
+
+    /**
+     * 批量保存多个任务的日志，默认逐个任务保存，支持合并写入的策略可重写该方法将所有日志一次写入
+     *
+     * @param logsByTask 任务ID=>待保存的日志列表
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:10
+     */
+    default void doBatchHandle(Map<String, List<L>> logsByTask) {
+        logsByTask.forEach(this::doHandle);
+    }
 }
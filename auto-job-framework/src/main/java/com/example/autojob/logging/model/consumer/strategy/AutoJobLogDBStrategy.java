@@ -2,20 +2,15 @@ package com.example.autojob.logging.model.consumer.strategy;
 
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
-import com.example.autojob.skeleton.db.entity.AutoJobLogEntity;
-import com.example.autojob.skeleton.db.entity.EntityConvertor;
-import com.example.autojob.skeleton.db.mapper.AutoJobLogEntityMapper;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
-import com.example.autojob.util.thread.InterruptThreadHelper;
-import com.example.autojob.util.thread.ScheduleTaskUtil;
+import com.example.autojob.skeleton.db.AutoJobLogWriteBuffer;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * 将日志保存到数据库
+ * 将日志保存到数据库，日志提交到{@link AutoJobLogWriteBuffer}后由写入线程批量插入，调用方不等待数据库
  *
  * @Author Huang Yongxiang
  * @Date 2022/07/12 16:51
@@ -25,18 +20,32 @@ public class AutoJobLogDBStrategy implements IAutoJobLogSaveStrategy<AutoJobLog>
 
     @Override
     public void doHandle(String taskPath, List<AutoJobLog> logList) {
-        List<AutoJobLogEntity> entities = logList.stream().map(EntityConvertor::log2LogEntity).collect(Collectors.toList());
-        if (InterruptThreadHelper.isInterrupt()) {
-            ScheduleTaskUtil.build(true, "logDBStrategyThread").EOneTimeTask(() -> {
-                AutoJobLogEntityMapper mapper = AutoJobMapperHolder.LOG_ENTITY_MAPPER;
-                int count = mapper.insertList(entities);
-                log.debug("成功保存任务：{}的日志{}条", taskPath, count);
-                return null;
-            }, 0, TimeUnit.MILLISECONDS);
-        } else {
-            AutoJobLogEntityMapper mapper = AutoJobMapperHolder.LOG_ENTITY_MAPPER;
-            int count = mapper.insertList(entities);
-            log.debug("成功保存任务：{}的日志{}条", taskPath, count);
+        AutoJobLogWriteBuffer
+                .getInstance()
+                .offerLogs(logList);
+        log.debug("提交任务：{}的日志{}条", taskPath, logList.size());
+    }
+
+    /**
+     * 所有任务的日志合并为一次提交
+     *
+     * @param logsByTask 任务ID=>待保存的日志列表
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:15
+     */
+    @Override
+    public void doBatchHandle(Map<String, List<AutoJobLog>> logsByTask) {
+        List<AutoJobLog> logs = logsByTask
+                .values()
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        if (logs.size() == 0) {
+            return;
         }
+        AutoJobLogWriteBuffer
+                .getInstance()
+                .offerLogs(logs);
+        log.debug("提交{}个任务的日志{}条", logsByTask.size(), logs.size());
     }
 }
@@ -0,0 +1,60 @@
+package com.example.autojob.logging.model.consumer.strategy;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.AutoJobLogTailNotifier;
+import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
+import com.example.autojob.logging.model.file.AutoJobLogFileStore;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 将任务日志保存到本地日志文件
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 11:00
+ */
+@Slf4j
+public class AutoJobLogFileStrategy implements IAutoJobLogSaveStrategy<AutoJobLog> {
+    private final AutoJobLogFileStore<AutoJobLog> fileStore = AutoJobApplication
+            .getInstance()
+            .getLogContext()
+            .getLogFileStore();
+
+    @Override
+    public void doHandle(String taskPath, List<AutoJobLog> logList) {
+        if (fileStore == null) {
+            log.error("日志保存失败，日志文件存储未开启");
+            return;
+        }
+        int count = fileStore.append(logList);
+        if (count > 0) {
+            AutoJobLogTailNotifier
+                    .getInstance()
+                    .signal();
+        }
+        log.debug("成功保存任务：{}的日志{}条", taskPath, count);
+    }
+
+    @Override
+    public void doBatchHandle(Map<String, List<AutoJobLog>> logsByTask) {
+        if (fileStore == null) {
+            log.error("日志保存失败，日志文件存储未开启");
+            return;
+        }
+        int count = fileStore.append(logsByTask
+                .values()
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+        if (count > 0) {
+            AutoJobLogTailNotifier
+                    .getInstance()
+                    .signal();
+        }
+        log.debug("成功保存{}个任务的日志{}条", logsByTask.size(), count);
+    }
+}
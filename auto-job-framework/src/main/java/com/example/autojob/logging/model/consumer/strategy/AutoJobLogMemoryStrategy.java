@@ -1,6 +1,7 @@
 package com.example.autojob.logging.model.consumer.strategy;
 
 import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.AutoJobLogTailNotifier;
 import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
 import com.example.autojob.logging.model.memory.AutoJobLogCache;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
@@ -24,6 +25,10 @@ public class AutoJobLogMemoryStrategy implements IAutoJobLogSaveStrategy<AutoJob
             return;
         }
         if (logCache.insertAll(taskPath, logList) && logList.size() > 0) {
+            //唤醒等待新日志的增量查询
+            AutoJobLogTailNotifier
+                    .getInstance()
+                    .signal();
             log.debug("成功保存任务：{}的日志：{}条", taskPath, logList.size());
         }
 
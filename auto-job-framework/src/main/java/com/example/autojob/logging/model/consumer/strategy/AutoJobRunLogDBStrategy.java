@@ -2,15 +2,12 @@ package com.example.autojob.logging.model.consumer.strategy;
 
 import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
-import com.example.autojob.skeleton.db.entity.AutoJobRunLogEntity;
-import com.example.autojob.skeleton.db.entity.EntityConvertor;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.AutoJobLogWriteBuffer;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * 运行日志的DB保存策略
+ * 运行日志的DB保存策略，运行日志提交到{@link AutoJobLogWriteBuffer}后由写入线程批量插入
  *
  * @Author Huang Yongxiang
  * @Date 2022/08/26 11:53
@@ -21,7 +18,8 @@ public class AutoJobRunLogDBStrategy implements IAutoJobLogSaveStrategy<AutoJobR
         if (logList == null || logList.size() == 0) {
             return;
         }
-        List<AutoJobRunLogEntity> entities = logList.stream().map(EntityConvertor::runLog2RunLogEntity).collect(Collectors.toList());
-        AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER.insertList(entities);
+        AutoJobLogWriteBuffer
+                .getInstance()
+                .offerRunLogs(logList);
     }
 }
@@ -0,0 +1,35 @@
+package com.example.autojob.logging.model.consumer.strategy;
+
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
+import com.example.autojob.logging.model.file.AutoJobLogFileStore;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 运行日志的本地文件保存策略
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 11:05
+ */
+@Slf4j
+public class AutoJobRunLogFileStrategy implements IAutoJobLogSaveStrategy<AutoJobRunLog> {
+    private final AutoJobLogFileStore<AutoJobRunLog> fileStore = AutoJobApplication
+            .getInstance()
+            .getLogContext()
+            .getRunLogFileStore();
+
+    @Override
+    public void doHandle(String taskPath, List<AutoJobRunLog> logList) {
+        if (logList == null || logList.size() == 0) {
+            return;
+        }
+        if (fileStore == null) {
+            log.error("运行日志保存失败，日志文件存储未开启");
+            return;
+        }
+        fileStore.append(logList);
+    }
+}
@@ -19,6 +19,14 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class AutoJobRunLogFactory implements IAutoJobFactory {
+    public static final String EVENT_START = "START";
+    public static final String EVENT_SUCCESS = "SUCCESS";
+    public static final String EVENT_ERROR = "ERROR";
+    public static final String EVENT_RETRY = "RETRY";
+    public static final String EVENT_MISS_FIRE = "MISFIRE";
+    public static final String EVENT_FORBIDDEN = "FORBIDDEN";
+    public static final String EVENT_FINISHED = "FINISHED";
+
     public static AutoJobRunLog getAutoJobRunLog(TaskEvent event) {
         if (event instanceof TaskBeforeRunEvent) {
             return getStartUpRunLog((TaskBeforeRunEvent) event);
@@ -32,6 +40,35 @@ public class AutoJobRunLogFactory implements IAutoJobFactory {
             return getForbiddenRunLog((TaskForbiddenEvent) event);
         } else if (event instanceof TaskRetryEvent) {
             return getRetryRunLog((TaskRetryEvent) event);
+        } else if (event instanceof TaskMissFireEvent) {
+            return getMissFireRunLog((TaskMissFireEvent) event);
+        }
+        return null;
+    }
+
+    /**
+     * 获取事件在运行日志时间线中的简写
+     *
+     * @param event 任务事件
+     * @return java.lang.String 不产生运行日志的事件返回null
+     * @author Huang Yongxiang
+     * @date 2023/1/26 09:20
+     */
+    public static String getEventCode(TaskEvent event) {
+        if (event instanceof TaskBeforeRunEvent) {
+            return EVENT_START;
+        } else if (event instanceof TaskFinishedEvent) {
+            return EVENT_FINISHED;
+        } else if (event instanceof TaskRunErrorEvent) {
+            return EVENT_ERROR;
+        } else if (event instanceof TaskRunSuccessEvent) {
+            return EVENT_SUCCESS;
+        } else if (event instanceof TaskForbiddenEvent) {
+            return EVENT_FORBIDDEN;
+        } else if (event instanceof TaskRetryEvent) {
+            return EVENT_RETRY;
+        } else if (event instanceof TaskMissFireEvent) {
+            return EVENT_MISS_FIRE;
         }
         return null;
     }
@@ -123,6 +160,19 @@ public class AutoJobRunLogFactory implements IAutoJobFactory {
                 .setMessage(event.getMessage());
     }
 
+    public static AutoJobRunLog getMissFireRunLog(TaskMissFireEvent event) {
+        return new AutoJobRunLog()
+                .setId(IdGenerator.getNextIdAsLong())
+                .setWriteTime(DateUtils.getTime())
+                .setTaskType(event
+                        .getTask()
+                        .getType()
+                        .toString())
+                .setTaskId(getRunLogTaskId(event.getTask()))
+                .setRunStatus(0)
+                .setMessage(event.getMessage());
+    }
+
     private static long getRunLogTaskId(AutoJobTask task) {
         return task.getId();
     }
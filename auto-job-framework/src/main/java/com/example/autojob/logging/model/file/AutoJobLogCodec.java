@@ -0,0 +1,80 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 任务日志的编解码器
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 09:20
+ */
+public class AutoJobLogCodec implements LogRecordCodec<AutoJobLog> {
+    /**
+     * 同一秒内的日志时间相同，缓存上一次的解析结果
+     */
+    private volatile CachedTime cachedTime = new CachedTime(null, 0);
+
+    @Override
+    public void write(DataOutput out, AutoJobLog record) throws IOException {
+        out.writeLong(record.getId());
+        LogRecordCodec.writeNullableLong(out, record.getSchedulingId());
+        out.writeLong(record.getTaskId());
+        LogRecordCodec.writeString(out, record.getInputTime());
+        LogRecordCodec.writeString(out, record.getLevel());
+        LogRecordCodec.writeString(out, record.getMessage());
+    }
+
+    @Override
+    public AutoJobLog read(DataInput in) throws IOException {
+        AutoJobLog autoJobLog = new AutoJobLog();
+        autoJobLog.setId(in.readLong());
+        autoJobLog.setSchedulingId(LogRecordCodec.readNullableLong(in));
+        autoJobLog.setTaskId(in.readLong());
+        autoJobLog.setInputTime(LogRecordCodec.readString(in));
+        autoJobLog.setLevel(LogRecordCodec.readString(in));
+        autoJobLog.setMessage(LogRecordCodec.readString(in));
+        return autoJobLog;
+    }
+
+    @Override
+    public Long getId(AutoJobLog record) {
+        return record.getId();
+    }
+
+    @Override
+    public Long getSchedulingId(AutoJobLog record) {
+        return record.getSchedulingId();
+    }
+
+    @Override
+    public Long getTaskId(AutoJobLog record) {
+        return record.getTaskId();
+    }
+
+    @Override
+    public long getTime(AutoJobLog record) {
+        CachedTime current = cachedTime;
+        if (record.getInputTime() != null && record
+                .getInputTime()
+                .equals(current.text)) {
+            return current.millis;
+        }
+        long millis = LogRecordCodec.parseTime(record.getInputTime());
+        cachedTime = new CachedTime(record.getInputTime(), millis);
+        return millis;
+    }
+
+    static class CachedTime {
+        final String text;
+        final long millis;
+
+        CachedTime(String text, long millis) {
+            this.text = text;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.skeleton.framework.config.TimeConstant;
+import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于本地文件的日志存储，日志按段文件只追加写入，段文件写满后滚动创建新段，超过保留时间的段整体删除。
+ * 每次写入按调度ID和任务ID分组，每组写为一个块，可选DEFLATE压缩，查询时通过段内索引只读取相关的块
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 10:10
+ */
+@Slf4j
+public class AutoJobLogFileStore<R> {
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+    private final String name;
+    private final File directory;
+    private final LogRecordCodec<R> codec;
+    private final int segmentSize;
+    private final boolean enableCompress;
+    private final long retention;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile LogSegment activeSegment;
+    private final ScheduleTaskUtil cleanThread;
+
+    public AutoJobLogFileStore(AutoJobLogConfig config, String name, LogRecordCodec<R> codec) {
+        this.name = name;
+        this.codec = codec;
+        this.directory = new File(DefaultValueUtil.defaultValue(config.getFileStorePath(), "autoJobLogs"), name);
+        int segmentSizeMB = DefaultValueUtil.defaultValue(config.getFileSegmentSize(), 64);
+        this.segmentSize = (int) Math.min(Math.max(segmentSizeMB, 1) * 1024L * 1024L, MAX_SEGMENT_SIZE);
+        this.enableCompress = DefaultValueUtil.defaultValue(config.getEnableFileCompress(), false);
+        this.retention = DefaultValueUtil.defaultValue(config.getFileRetention(), TimeConstant.A_WEEK);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("无法创建日志目录：" + directory.getAbsolutePath());
+        }
+        load();
+        cleanThread = ScheduleTaskUtil.build(true, name + "FileCleanThread");
+        cleanThread.EFixedRateTask(() -> {
+            try {
+                cleanExpired();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 1, 60, TimeUnit.MINUTES);
+    }
+
+    private void load() {
+        File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith(LogSegment.SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                LogSegment segment = LogSegment.open(file);
+                segments.put(segment.getSegmentId(), segment);
+            } catch (Exception e) {
+                log.error("日志段文件{}加载失败", file.getAbsolutePath(), e);
+            }
+        }
+        if (!segments.isEmpty()) {
+            activeSegment = segments
+                    .lastEntry()
+                    .getValue();
+            log.info("{}加载{}个日志段文件", name, segments.size());
+        }
+    }
+
+    /**
+     * 写入日志，按调度ID和任务ID分组写为块，组内保持原有顺序
+     *
+     * @param records 待写入的日志
+     * @return int 写入的条数
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:20
+     */
+    public synchronized int append(List<R> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        Map<List<Long>, List<R>> groups = new LinkedHashMap<>();
+        for (R record : records) {
+            groups
+                    .computeIfAbsent(Arrays.asList(codec.getSchedulingId(record), codec.getTaskId(record)), key -> new ArrayList<>())
+                    .add(record);
+        }
+        int count = 0;
+        for (Map.Entry<List<Long>, List<R>> entry : groups.entrySet()) {
+            try {
+                writeBlock(entry.getKey(), entry.getValue());
+                count += entry
+                        .getValue()
+                        .size();
+            } catch (IOException e) {
+                log.error("{}写入{}条日志失败", name, entry
+                        .getValue()
+                        .size(), e);
+            }
+        }
+        return count;
+    }
+
+    private void writeBlock(List<Long> key, List<R> records) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(256 * records.size());
+        DataOutputStream out = new DataOutputStream(byteStream);
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long maxId = LogSegment.NULL_ID;
+        for (R record : records) {
+            codec.write(out, record);
+            long time = codec.getTime(record);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            Long id = codec.getId(record);
+            if (id != null && id > maxId) {
+                maxId = id;
+            }
+        }
+        out.flush();
+        byte[] raw = byteStream.toByteArray();
+        byte[] payload = raw;
+        byte flags = 0;
+        if (enableCompress && raw.length >= LogBlockCodec.COMPRESS_THRESHOLD) {
+            byte[] compressed = LogBlockCodec.compress(raw);
+            if (compressed.length < raw.length) {
+                payload = compressed;
+                flags = LogSegment.FLAG_COMPRESSED;
+            }
+        }
+        long schedulingId = DefaultValueUtil.defaultValue(key.get(0), LogSegment.NULL_ID);
+        long taskId = DefaultValueUtil.defaultValue(key.get(1), LogSegment.NULL_ID);
+        LogSegment segment = activeSegment;
+        if (segment == null || !segment.append(payload, flags, raw.length, records.size(), schedulingId, taskId, minTime, maxTime, maxId)) {
+            segment = roll(LogSegment.HEADER_SIZE + payload.length);
+            if (!segment.append(payload, flags, raw.length, records.size(), schedulingId, taskId, minTime, maxTime, maxId)) {
+                throw new IOException("日志块过大：" + payload.length);
+            }
+        }
+    }
+
+    /**
+     * 创建新段作为写入段，超出段大小的块单独使用一个足够大的段
+     */
+    private LogSegment roll(int requiredSize) throws IOException {
+        LogSegment current = activeSegment;
+        if (current != null) {
+            current.force();
+        }
+        long segmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        LogSegment segment = LogSegment.create(directory, segmentId, Math.max(segmentSize, requiredSize));
+        segments.put(segmentId, segment);
+        activeSegment = segment;
+        return segment;
+    }
+
+    /**
+     * 查询某次调度的全部日志
+     *
+     * @param schedulingId 调度ID
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:30
+     */
+    public List<R> findBySchedulingId(long schedulingId) {
+        List<R> records = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            for (int offset : segment.getSchedulingOffsets(schedulingId)) {
+                records.addAll(readBlock(segment, segment.readHeader(offset)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 增量查询某次调度在游标之后的日志，按ID升序返回，最大ID不大于游标的块不会被读取
+     *
+     * @param schedulingId 调度ID
+     * @param lastId       上次查询到的最后一条日志的ID，为null时从头查询
+     * @param size         最多返回的条数
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/24 10:10
+     */
+    public List<R> findBySchedulingIdAfter(long schedulingId, Long lastId, int size) {
+        long after = lastId == null ? Long.MIN_VALUE : lastId;
+        List<R> records = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            for (int offset : segment.getSchedulingOffsets(schedulingId)) {
+                LogSegment.BlockHeader header = segment.readHeader(offset);
+                if (header.maxId <= after) {
+                    continue;
+                }
+                for (R record : readBlock(segment, header)) {
+                    Long id = codec.getId(record);
+                    if (id != null && id > after) {
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        records.sort(Comparator.comparing(codec::getId));
+        return records.size() > size ? new ArrayList<>(records.subList(0, size)) : records;
+    }
+
+    /**
+     * 查询任务在时间范围内的日志
+     *
+     * @param taskId 任务ID
+     * @param start  开始时间：ms
+     * @param end    结束时间：ms
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:35
+     */
+    public List<R> findByTaskIdBetween(long taskId, long start, long end) {
+        List<R> records = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            if (segment.getMaxTime() < start || segment.getMinTime() > end) {
+                continue;
+            }
+            for (int offset : segment.getTaskOffsets(taskId)) {
+                LogSegment.BlockHeader header = segment.readHeader(offset);
+                if (header.maxTime < start || header.minTime > end) {
+                    continue;
+                }
+                for (R record : readBlock(segment, header)) {
+                    long time = codec.getTime(record);
+                    if (time >= start && time <= end) {
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 按ID游标分页查询任务的日志，按ID升序返回
+     *
+     * @param taskId 任务ID
+     * @param lastId 上一页最后一条日志的ID，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:40
+     */
+    public List<R> findByTaskIdAfter(long taskId, Long lastId, int size) {
+        long after = lastId == null ? Long.MIN_VALUE : lastId;
+        List<R> records = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            for (int offset : segment.getTaskOffsets(taskId)) {
+                LogSegment.BlockHeader header = segment.readHeader(offset);
+                if (header.maxId <= after) {
+                    continue;
+                }
+                for (R record : readBlock(segment, header)) {
+                    Long id = codec.getId(record);
+                    if (id != null && id > after) {
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        records.sort(Comparator.comparing(codec::getId));
+        return records.size() > size ? new ArrayList<>(records.subList(0, size)) : records;
+    }
+
+    private List<R> readBlock(LogSegment segment, LogSegment.BlockHeader header) {
+        try {
+            byte[] payload = segment.readPayload(header);
+            if (header.isCompressed()) {
+                payload = LogBlockCodec.decompress(payload, header.rawLength);
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            List<R> records = new ArrayList<>(header.count);
+            for (int i = 0; i < header.count; i++) {
+                records.add(codec.read(in));
+            }
+            return records;
+        } catch (Exception e) {
+            log.error("{}读取段{}偏移{}的日志块失败", name, segment.getSegmentId(), header.position, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 删除最晚日志时间早于保留期限的段，与写入互斥，写入段和最新的段不删除，新段的ID总是大于已有的段
+     *
+     * @return int 删除的段数
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:45
+     */
+    public synchronized int cleanExpired() {
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long threshold = System.currentTimeMillis() - retention;
+        long newestSegmentId = segments.lastKey();
+        int count = 0;
+        for (Iterator<LogSegment> iterator = segments
+                .values()
+                .iterator(); iterator.hasNext(); ) {
+            LogSegment segment = iterator.next();
+            if (segment == activeSegment || segment.getSegmentId() == newestSegmentId || (!segment.isEmpty() && segment.getMaxTime() >= threshold)) {
+                continue;
+            }
+            iterator.remove();
+            if (segment.delete()) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("{}删除{}个过期的日志段文件", name, count);
+        }
+        return count;
+    }
+
+    /**
+     * 停止清理线程并将所有段落盘
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/20 10:50
+     */
+    public synchronized void close() {
+        cleanThread.shutdown();
+        segments
+                .values()
+                .forEach(LogSegment::close);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.autojob.logging.model.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 日志溢出文件，数据库写入跟不上时日志按批追加到本地文件，之后按文件从旧到新回放。
+ * 每批的格式为：条数(4) 记录...，读取时遇到不完整的批即停止
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/21 09:10
+ */
+@Slf4j
+public class AutoJobLogSpillFile<R> {
+    private static final String SUFFIX = ".spill";
+    private final File directory;
+    private final LogRecordCodec<R> codec;
+    private DataOutputStream writer;
+    private File writingFile;
+    private long sequence;
+
+    public AutoJobLogSpillFile(File directory, LogRecordCodec<R> codec) {
+        this.directory = directory;
+        this.codec = codec;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalStateException("无法创建日志溢出目录：" + directory.getAbsolutePath());
+        }
+        sequence = Arrays
+                .stream(listFiles())
+                .mapToLong(AutoJobLogSpillFile::sequenceOf)
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * 追加一批日志
+     *
+     * @param records 日志
+     * @return boolean 是否写入成功
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:15
+     */
+    public synchronized boolean append(List<R> records) {
+        if (records == null || records.isEmpty()) {
+            return true;
+        }
+        try {
+            if (writer == null) {
+                writingFile = new File(directory, String.format("%020d%s", ++sequence, SUFFIX));
+                writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(writingFile, true)));
+            }
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream(256 * records.size());
+            DataOutputStream out = new DataOutputStream(byteStream);
+            out.writeInt(records.size());
+            for (R record : records) {
+                codec.write(out, record);
+            }
+            out.flush();
+            byteStream.writeTo(writer);
+            writer.flush();
+            return true;
+        } catch (IOException e) {
+            log.error("写入日志溢出文件失败", e);
+            return false;
+        }
+    }
+
+    public boolean isEmpty() {
+        return listFiles().length == 0;
+    }
+
+    /**
+     * 获取最早的溢出文件，正在写入的文件会先关闭，之后的日志写入新文件
+     *
+     * @return java.io.File 没有溢出文件时返回null
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:20
+     */
+    public synchronized File oldest() {
+        File[] files = listFiles();
+        if (files.length == 0) {
+            return null;
+        }
+        File oldest = Arrays
+                .stream(files)
+                .min(Comparator.comparingLong(AutoJobLogSpillFile::sequenceOf))
+                .get();
+        if (oldest.equals(writingFile)) {
+            closeWriter();
+        }
+        return oldest;
+    }
+
+    /**
+     * 读取溢出文件中的全部日志
+     *
+     * @param file 溢出文件
+     * @return java.util.List<R> 读取失败时返回null
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:25
+     */
+    public List<R> read(File file) {
+        List<R> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                List<R> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    batch.add(codec.read(in));
+                }
+                records.addAll(batch);
+            }
+        } catch (EOFException e) {
+            log.warn("日志溢出文件{}末尾不完整，已忽略未写完的一批", file.getName());
+        } catch (IOException e) {
+            log.error("读取日志溢出文件{}失败", file.getName(), e);
+            return null;
+        }
+        return records;
+    }
+
+    public boolean delete(File file) {
+        return file.delete();
+    }
+
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+            writingFile = null;
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
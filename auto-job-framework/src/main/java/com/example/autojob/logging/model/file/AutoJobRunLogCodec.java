@@ -0,0 +1,76 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.logging.domain.AutoJobRunLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 运行日志的编解码器
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 09:25
+ */
+public class AutoJobRunLogCodec implements LogRecordCodec<AutoJobRunLog> {
+    private volatile AutoJobLogCodec.CachedTime cachedTime = new AutoJobLogCodec.CachedTime(null, 0);
+
+    @Override
+    public void write(DataOutput out, AutoJobRunLog record) throws IOException {
+        LogRecordCodec.writeNullableLong(out, record.getId());
+        LogRecordCodec.writeNullableLong(out, record.getSchedulingId());
+        LogRecordCodec.writeNullableLong(out, record.getTaskId());
+        LogRecordCodec.writeString(out, record.getTaskType());
+        out.writeBoolean(record.getRunStatus() != null);
+        if (record.getRunStatus() != null) {
+            out.writeInt(record.getRunStatus());
+        }
+        LogRecordCodec.writeString(out, record.getMessage());
+        LogRecordCodec.writeString(out, record.getWriteTime());
+        LogRecordCodec.writeString(out, record.getErrorStack());
+        LogRecordCodec.writeString(out, record.getRunResult());
+    }
+
+    @Override
+    public AutoJobRunLog read(DataInput in) throws IOException {
+        AutoJobRunLog runLog = new AutoJobRunLog();
+        runLog.setId(LogRecordCodec.readNullableLong(in));
+        runLog.setSchedulingId(LogRecordCodec.readNullableLong(in));
+        runLog.setTaskId(LogRecordCodec.readNullableLong(in));
+        runLog.setTaskType(LogRecordCodec.readString(in));
+        runLog.setRunStatus(in.readBoolean() ? in.readInt() : null);
+        runLog.setMessage(LogRecordCodec.readString(in));
+        runLog.setWriteTime(LogRecordCodec.readString(in));
+        runLog.setErrorStack(LogRecordCodec.readString(in));
+        runLog.setRunResult(LogRecordCodec.readString(in));
+        return runLog;
+    }
+
+    @Override
+    public Long getId(AutoJobRunLog record) {
+        return record.getId();
+    }
+
+    @Override
+    public Long getSchedulingId(AutoJobRunLog record) {
+        return record.getSchedulingId();
+    }
+
+    @Override
+    public Long getTaskId(AutoJobRunLog record) {
+        return record.getTaskId();
+    }
+
+    @Override
+    public long getTime(AutoJobRunLog record) {
+        AutoJobLogCodec.CachedTime current = cachedTime;
+        if (record.getWriteTime() != null && record
+                .getWriteTime()
+                .equals(current.text)) {
+            return current.millis;
+        }
+        long millis = LogRecordCodec.parseTime(record.getWriteTime());
+        cachedTime = new AutoJobLogCodec.CachedTime(record.getWriteTime(), millis);
+        return millis;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.autojob.logging.model.file;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 日志块编解码，把同一调度同一任务的多条日志编码为一个块，可选DEFLATE压缩，供数据库和内存存储使用，
+ * 压缩与解压方法同时供段文件使用
+ * <p>块格式：标志(1) 原始长度(4) 条数(4) 内容</p>
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/22 09:10
+ */
+public final class LogBlockCodec {
+    public static final byte FLAG_COMPRESSED = 1;
+    /**
+     * 块内容小于该长度时不压缩
+     */
+    public static final int COMPRESS_THRESHOLD = 512;
+    private static final int HEADER_SIZE = 9;
+
+    private LogBlockCodec() {
+    }
+
+    /**
+     * 将日志编码为块
+     *
+     * @param records  同一调度同一任务的日志
+     * @param codec    日志编解码器
+     * @param compress 是否压缩，压缩后不小于原始内容时不压缩
+     * @return byte[]
+     * @author Huang Yongxiang
+     * @date 2023/1/22 09:15
+     */
+    public static <R> byte[] encode(List<R> records, LogRecordCodec<R> codec, boolean compress) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(128 * records.size());
+        DataOutputStream out = new DataOutputStream(byteStream);
+        for (R record : records) {
+            codec.write(out, record);
+        }
+        out.flush();
+        byte[] raw = byteStream.toByteArray();
+        byte[] payload = raw;
+        byte flags = 0;
+        if (compress && raw.length >= COMPRESS_THRESHOLD) {
+            byte[] compressed = compress(raw);
+            if (compressed.length < raw.length) {
+                payload = compressed;
+                flags = FLAG_COMPRESSED;
+            }
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+        DataOutputStream blockOut = new DataOutputStream(block);
+        blockOut.writeByte(flags);
+        blockOut.writeInt(raw.length);
+        blockOut.writeInt(records.size());
+        blockOut.write(payload);
+        blockOut.flush();
+        return block.toByteArray();
+    }
+
+    /**
+     * 解码块中的全部日志
+     *
+     * @param block 块
+     * @param codec 日志编解码器
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/22 09:20
+     */
+    public static <R> List<R> decode(byte[] block, LogRecordCodec<R> codec) throws IOException {
+        if (block == null || block.length < HEADER_SIZE) {
+            throw new IOException("日志块不完整");
+        }
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(block, 0, HEADER_SIZE));
+        byte flags = header.readByte();
+        int rawLength = header.readInt();
+        int count = header.readInt();
+        byte[] raw;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            try {
+                raw = decompress(Arrays.copyOfRange(block, HEADER_SIZE, block.length), rawLength);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        } else {
+            raw = Arrays.copyOfRange(block, HEADER_SIZE, block.length);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        List<R> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(codec.read(in));
+        }
+        return records;
+    }
+
+    /**
+     * 按调度ID和任务ID分组，组内保持原有顺序，超过时间跨度或条数上限的组拆分为多块
+     *
+     * @param records  日志
+     * @param codec    日志编解码器
+     * @param maxSpan  一块内最早与最晚日志的最大时间差：ms
+     * @param maxCount 一块的最大条数
+     * @return java.util.List<java.util.List < R>>
+     * @author Huang Yongxiang
+     * @date 2023/1/22 09:25
+     */
+    public static <R> List<List<R>> split(List<R> records, LogRecordCodec<R> codec, long maxSpan, int maxCount) {
+        Map<List<Long>, List<R>> groups = new LinkedHashMap<>();
+        for (R record : records) {
+            groups
+                    .computeIfAbsent(Arrays.asList(codec.getSchedulingId(record), codec.getTaskId(record)), key -> new ArrayList<>())
+                    .add(record);
+        }
+        List<List<R>> blocks = new ArrayList<>(groups.size());
+        for (List<R> group : groups.values()) {
+            List<R> block = new ArrayList<>();
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+            for (R record : group) {
+                long time = codec.getTime(record);
+                if (!block.isEmpty() && (block.size() >= maxCount || Math.max(maxTime, time) - Math.min(minTime, time) > maxSpan)) {
+                    blocks.add(block);
+                    block = new ArrayList<>();
+                    minTime = Long.MAX_VALUE;
+                    maxTime = Long.MIN_VALUE;
+                }
+                block.add(record);
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    public static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] decompress(byte[] payload, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, rawLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != rawLength) {
+                throw new DataFormatException("日志块解压长度不符");
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.util.convert.DateUtils;
+import com.example.autojob.util.convert.StringUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * 日志记录在段文件中的编解码器，同时提供建立索引所需的调度ID、任务ID和写入时间
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 09:10
+ */
+public interface LogRecordCodec<R> {
+    void write(DataOutput out, R record) throws IOException;
+
+    R read(DataInput in) throws IOException;
+
+    Long getId(R record);
+
+    Long getSchedulingId(R record);
+
+    Long getTaskId(R record);
+
+    /**
+     * 记录的写入时间：ms，用于按时间查询和过期清理
+     */
+    long getTime(R record);
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * 解析日志中yyyy-MM-dd HH:mm:ss格式的时间，解析失败时返回当前时间
+     */
+    static long parseTime(String time) {
+        if (StringUtils.isEmpty(time)) {
+            return System.currentTimeMillis();
+        }
+        try {
+            return DateUtils
+                    .parseDate(time, DateUtils.YYYY_MM_DD_HH_MM_SS)
+                    .getTime();
+        } catch (ParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.autojob.logging.model.file;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 日志段文件，创建时按固定大小预分配并映射到内存，日志按块只追加写入。每个块只包含同一调度同一任务的日志，
+ * 块头记录调度ID、任务ID、时间范围和校验和，段内按块建立调度ID与任务ID的稀疏索引，逐行的日志不建索引。
+ * 校验和覆盖长度、校验和之后的全部块头字段与内容，块头损坏的块不会以错误的索引或条数被读取。
+ * 重新打开时按块头扫描重建索引，遇到长度为0或校验失败的块即视为写入末尾
+ * <p>块格式：长度(4) 校验和(4) 标志(1) 原始长度(4) 条数(4) 调度ID(8) 任务ID(8) 最早时间(8) 最晚时间(8) 最大ID(8) 内容</p>
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/20 09:40
+ */
+class LogSegment {
+    static final int HEADER_SIZE = 57;
+    static final byte FLAG_COMPRESSED = 1;
+    static final long NULL_ID = Long.MIN_VALUE;
+    static final String SUFFIX = ".seg";
+
+    @Getter
+    private final long segmentId;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile int writePosition;
+    @Getter
+    private volatile long minTime = Long.MAX_VALUE;
+    @Getter
+    private volatile long maxTime = Long.MIN_VALUE;
+    private final Map<Long, OffsetList> schedulingIndex = new ConcurrentHashMap<>();
+    private final Map<Long, OffsetList> taskIndex = new ConcurrentHashMap<>();
+
+    private LogSegment(long segmentId, File file, int capacity, boolean isCreate) throws IOException {
+        this.segmentId = segmentId;
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        if (isCreate) {
+            randomAccessFile.setLength(capacity);
+        }
+        this.capacity = (int) randomAccessFile.length();
+        this.buffer = randomAccessFile
+                .getChannel()
+                .map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+    }
+
+    static LogSegment create(File directory, long segmentId, int capacity) throws IOException {
+        return new LogSegment(segmentId, new File(directory, String.format("%020d%s", segmentId, SUFFIX)), capacity, true);
+    }
+
+    static LogSegment open(File file) throws IOException {
+        String name = file.getName();
+        LogSegment segment = new LogSegment(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file, 0, false);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > capacity) {
+                break;
+            }
+            BlockHeader header = readHeader(position);
+            if (header.crc != crc(position, length)) {
+                break;
+            }
+            index(position, header.schedulingId, header.taskId, header.minTime, header.maxTime);
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+    }
+
+    /**
+     * 追加一个块，单线程调用
+     *
+     * @return boolean 剩余空间不足时返回false
+     * @author Huang Yongxiang
+     * @date 2023/1/20 09:50
+     */
+    boolean append(byte[] payload, byte flags, int rawLength, int count, long schedulingId, long taskId, long blockMinTime, long blockMaxTime, long maxId) {
+        int position = writePosition;
+        if (position + HEADER_SIZE + payload.length > capacity) {
+            return false;
+        }
+        ByteBuffer block = buffer.duplicate();
+        block.position(position + 8);
+        block
+                .put(flags)
+                .putInt(rawLength)
+                .putInt(count)
+                .putLong(schedulingId)
+                .putLong(taskId)
+                .putLong(blockMinTime)
+                .putLong(blockMaxTime)
+                .putLong(maxId)
+                .put(payload);
+        buffer.putInt(position + 4, crc(position, payload.length));
+        //长度最后写入，长度非0的块即为完整的块
+        buffer.putInt(position, payload.length);
+        index(position, schedulingId, taskId, blockMinTime, blockMaxTime);
+        writePosition = position + HEADER_SIZE + payload.length;
+        return true;
+    }
+
+    private void index(int position, long schedulingId, long taskId, long blockMinTime, long blockMaxTime) {
+        if (schedulingId != NULL_ID) {
+            schedulingIndex
+                    .computeIfAbsent(schedulingId, id -> new OffsetList())
+                    .add(position);
+        }
+        if (taskId != NULL_ID) {
+            taskIndex
+                    .computeIfAbsent(taskId, id -> new OffsetList())
+                    .add(position);
+        }
+        if (blockMinTime < minTime) {
+            minTime = blockMinTime;
+        }
+        if (blockMaxTime > maxTime) {
+            maxTime = blockMaxTime;
+        }
+    }
+
+    int[] getSchedulingOffsets(long schedulingId) {
+        OffsetList offsets = schedulingIndex.get(schedulingId);
+        return offsets == null ? new int[0] : offsets.toArray();
+    }
+
+    int[] getTaskOffsets(long taskId) {
+        OffsetList offsets = taskIndex.get(taskId);
+        return offsets == null ? new int[0] : offsets.toArray();
+    }
+
+    BlockHeader readHeader(int position) {
+        ByteBuffer block = buffer.duplicate();
+        block.position(position);
+        BlockHeader header = new BlockHeader();
+        header.position = position;
+        header.length = block.getInt();
+        header.crc = block.getInt();
+        header.flags = block.get();
+        header.rawLength = block.getInt();
+        header.count = block.getInt();
+        header.schedulingId = block.getLong();
+        header.taskId = block.getLong();
+        header.minTime = block.getLong();
+        header.maxTime = block.getLong();
+        header.maxId = block.getLong();
+        return header;
+    }
+
+    byte[] readPayload(BlockHeader header) {
+        byte[] payload = new byte[header.length];
+        ByteBuffer block = buffer.duplicate();
+        block.position(header.position + HEADER_SIZE);
+        block.get(payload);
+        return payload;
+    }
+
+    /**
+     * 计算块的校验和，覆盖长度、校验和之后的块头字段与内容，长度以参数给出，追加时长度尚未写入
+     */
+    private int crc(int position, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(ByteBuffer
+                .allocate(4)
+                .putInt(0, length));
+        ByteBuffer block = buffer.duplicate();
+        block.limit(position + HEADER_SIZE + length);
+        block.position(position + 8);
+        crc32.update(block);
+        return (int) crc32.getValue();
+    }
+
+    boolean isEmpty() {
+        return writePosition == 0;
+    }
+
+    int getSize() {
+        return writePosition;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        try {
+            force();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 关闭并删除段文件，映射的内存在缓冲被回收后释放
+     */
+    boolean delete() {
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return file.delete();
+    }
+
+    static class BlockHeader {
+        int position;
+        int length;
+        int crc;
+        byte flags;
+        int rawLength;
+        int count;
+        long schedulingId;
+        long taskId;
+        long minTime;
+        long maxTime;
+        long maxId;
+
+        boolean isCompressed() {
+            return (flags & FLAG_COMPRESSED) != 0;
+        }
+    }
+
+    /**
+     * 单线程追加、多线程读取的块偏移列表，先发布数组再发布长度，读取方按长度读取的元素均已写入
+     */
+    private static class OffsetList {
+        private volatile int[] offsets = new int[4];
+        private volatile int size = 0;
+
+        void add(int offset) {
+            int[] current = offsets;
+            if (size == current.length) {
+                int[] grown = new int[current.length << 1];
+                System.arraycopy(current, 0, grown, 0, size);
+                current = grown;
+            }
+            current[size] = offset;
+            offsets = current;
+            size = size + 1;
+        }
+
+        int[] toArray() {
+            int currentSize = size;
+            int[] copy = new int[currentSize];
+            System.arraycopy(offsets, 0, copy, 0, currentSize);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.autojob.logging.model.handler;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 任务日志的统一写入线程，所有{@link AutoJobLogHandler}共用。有待写日志的处理器会登记到待写集合，写入线程周期性地检查，
+ * 缓冲达到条数阈值或停留超过保存周期的处理器会在同一次写入中合并保存；缓冲达到条数阈值时会提前触发一次写入
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/18 10:20
+ */
+@Slf4j
+public class AutoJobLogFlusher {
+    /**
+     * 有待写日志的处理器
+     */
+    private final Set<AutoJobLogHandler> dirtyHandlers = ConcurrentHashMap.newKeySet();
+    private final ScheduleTaskUtil flushThread;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean isClosed = false;
+
+    private AutoJobLogFlusher() {
+        AutoJobLogConfig logConfig = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getLogConfig();
+        long interval = DefaultValueUtil.defaultValue(logConfig.getTaskLogFlushInterval(), 500L);
+        flushThread = ScheduleTaskUtil.build(true, "logFlushThread");
+        flushThread.EFixedRateTask(() -> {
+            try {
+                flush(false);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static AutoJobLogFlusher getInstance() {
+        return InstanceHolder.FLUSHER;
+    }
+
+    /**
+     * 登记有待写日志的处理器
+     *
+     * @param handler 日志处理器
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:25
+     */
+    void markDirty(AutoJobLogHandler handler) {
+        dirtyHandlers.add(handler);
+    }
+
+    /**
+     * 请求尽快写入一次，已有提前写入在排队时不重复提交
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:28
+     */
+    void requestFlush() {
+        if (isClosed || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        flushThread.EOneTimeTask(() -> {
+            try {
+                flush(false);
+            } finally {
+                flushScheduled.set(false);
+            }
+            return null;
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入到期的日志，同一保存策略下所有任务的日志合并为一次写入
+     *
+     * @param all 是否忽略阈值写入全部日志
+     * @return int 写入的日志条数
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:30
+     */
+    public synchronized int flush(boolean all) {
+        if (dirtyHandlers.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        Map<ILogSaveStrategyDelegate<AutoJobLog>, Map<String, List<AutoJobLog>>> batches = new IdentityHashMap<>();
+        int count = 0;
+        for (Iterator<AutoJobLogHandler> iterator = dirtyHandlers.iterator(); iterator.hasNext(); ) {
+            AutoJobLogHandler handler = iterator.next();
+            if (!all && !handler.isFlushDue(now)) {
+                continue;
+            }
+            iterator.remove();
+            List<AutoJobLog> logs = handler.drainLogs();
+            //取出期间新加入的日志需要留到下次写入
+            if (handler.hasPendingLogs()) {
+                dirtyHandlers.add(handler);
+            }
+            if (logs.isEmpty()) {
+                continue;
+            }
+            batches
+                    .computeIfAbsent(handler.getLogSaveStrategyDelegate(), delegate -> new HashMap<>())
+                    .computeIfAbsent(handler.getTaskId() + "", taskId -> new ArrayList<>())
+                    .addAll(logs);
+            count += logs.size();
+        }
+        batches.forEach((delegate, logsByTask) -> {
+            try {
+                delegate
+                        .doDelegate(AutoJobApplication
+                                .getInstance()
+                                .getConfigHolder(), AutoJobLog.class)
+                        .doBatchHandle(logsByTask);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        return count;
+    }
+
+    /**
+     * 关闭写入线程并写入剩余的全部日志
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:35
+     */
+    public void close() {
+        isClosed = true;
+        flushThread.shutdown();
+        int count = flush(true);
+        if (count > 0) {
+            log.info("关闭前写入{}条缓冲的任务日志", count);
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobLogFlusher FLUSHER = new AutoJobLogFlusher();
+    }
+}
@@ -6,36 +6,40 @@ import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
 import com.example.autojob.logging.model.consumer.DefaultLogSaveStrategyDelegate;
 import com.example.autojob.logging.model.consumer.DefaultRunLogSaveStrategyDelegate;
 import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
-import com.example.autojob.skeleton.db.entity.EntityConvertor;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.logging.model.factory.AutoJobRunLogFactory;
+import com.example.autojob.skeleton.db.AutoJobSchedulingRecordBuffer;
+import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
-import com.example.autojob.skeleton.lang.WithDaemonThread;
+import com.example.autojob.skeleton.lifecycle.event.TaskEvent;
 import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.id.IdGenerator;
-import com.example.autojob.util.thread.SyncHelper;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
- * 一个任务一次完整的调度日志
+ * 一个任务一次完整的调度日志，任务日志缓冲在并发队列中，由共用的{@link AutoJobLogFlusher}按条数与时间阈值批量写入。
+ * 缓冲达到条数上限时由加入日志的线程同步保存，数据库写缓冲的溢出策略因此作用到加入日志的线程上，BLOCK策略下阻塞的是管道的消费线程，
+ * 管道写满后按其自身的策略丢弃并统计，缓冲不会无限增长
  *
  * @Author Huang Yongxiang
  * @Date 2022/10/21 14:30
  */
 @Slf4j
-public class AutoJobLogHandler implements WithDaemonThread {
+public class AutoJobLogHandler {
     /**
      * 调度ID
      */
-    private long schedulingId;
+    private volatile long schedulingId;
     /**
      * 任务ID
      */
@@ -47,30 +51,60 @@ public class AutoJobLogHandler implements WithDaemonThread {
     /**
      * 运行日志
      */
-    private final List<AutoJobRunLog> runLogs = new ArrayList<>();
+    private final Queue<AutoJobRunLog> runLogs = new ConcurrentLinkedQueue<>();
     /**
      * 处理的任务
      */
     private final AutoJobTask handleTask;
     /**
-     * 任务日志
+     * 任务日志，由{@link AutoJobLogFlusher}统一写入
      */
-    private final List<AutoJobLog> logs = new ArrayList<>();
+    private final Queue<AutoJobLog> logs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingLogCount = new AtomicInteger(0);
+    /**
+     * 缓冲中最早一条日志的加入时间
+     */
+    private volatile long firstPendingTime;
     private final ILogSaveStrategyDelegate<AutoJobLog> logSaveStrategyDelegate;
     private final ILogSaveStrategyDelegate<AutoJobRunLog> runLogSaveStrategyDelegate;
 
     /**
      * 保存周期，一定周期保存一次日志
      */
-    private long saveCycle;
+    private volatile long saveCycle;
 
     /**
      * 最大缓冲长度，日志达到该长度后自动保存
      */
-    private int maxBufferLength;
+    private volatile int maxBufferLength;
+
+    /**
+     * 缓冲的条数上限，任务日志与运行日志各自计算
+     */
+    private final int bufferCapacity;
 
     private volatile boolean isFinished = false;
 
+    /**
+     * 是否将一次调度的运行日志聚合为一条汇总
+     */
+    private final boolean enableRunLogAggregate;
+
+    /**
+     * 运行成功时是否保留逐条的运行日志
+     */
+    private final boolean isKeepRunLogDetail;
+
+    /**
+     * 当前调度的运行日志聚合，不在调度中时为null
+     */
+    private AutoJobRunLogAggregator runLogAggregator;
+
+    /**
+     * 最近一次在收到执行结果前就已生成汇总的调度ID
+     */
+    private long closedSchedulingId = -1;
+
     public AutoJobLogHandler(AutoJobTask task) {
         this(task, null, null);
     }
@@ -80,16 +114,50 @@ public class AutoJobLogHandler implements WithDaemonThread {
         record = new AutoJobSchedulingRecord(task);
         record.setSchedulingId(schedulingId);
         taskId = task.getId();
-        saveCycle = 5000;
-        maxBufferLength = 10;
+        AutoJobLogConfig logConfig = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getLogConfig();
+        saveCycle = DefaultValueUtil.defaultValue(logConfig.getTaskLogSaveCycle(), 5000L);
+        maxBufferLength = DefaultValueUtil.defaultValue(logConfig.getTaskLogBufferLength(), 10);
+        bufferCapacity = Math.max(DefaultValueUtil.defaultValue(logConfig.getTaskLogBufferCapacity(), 10000), maxBufferLength);
+        enableRunLogAggregate = DefaultValueUtil.defaultValue(logConfig.getEnableRunLogAggregate(), true);
+        isKeepRunLogDetail = DefaultValueUtil.defaultValue(logConfig.getEnableRunLogKeepDetail(), false);
         handleTask = task;
-        this.logSaveStrategyDelegate = DefaultValueUtil.defaultValue(logSaveStrategyDelegate, new DefaultLogSaveStrategyDelegate());
-        this.runLogSaveStrategyDelegate = DefaultValueUtil.defaultValue(runLogSaveStrategyDelegate, new DefaultRunLogSaveStrategyDelegate());
-        startWork();
+        this.logSaveStrategyDelegate = DefaultValueUtil.defaultValue(logSaveStrategyDelegate, DefaultLogSaveStrategyDelegate.getInstance());
+        this.runLogSaveStrategyDelegate = DefaultValueUtil.defaultValue(runLogSaveStrategyDelegate, DefaultRunLogSaveStrategyDelegate.getInstance());
     }
 
+    /**
+     * 开始调度，记录在调度结束时与执行结果一起写入，见{@link AutoJobSchedulingRecordBuffer}
+     *
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:50
+     */
     public boolean saveSchedulingRecord() {
-        return AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(Collections.singletonList(EntityConvertor.schedulingRecord2Entity(record))) == 1;
+        return saveSchedulingRecord(record);
+    }
+
+    /**
+     * 开始指定的调度，调度记录应在调度开始事件中取得，避免异步写入时处理器已刷新到下一次调度
+     *
+     * @param record 调度记录，见{@link #getSchedulingRecord()}
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/29 10:10
+     */
+    public boolean saveSchedulingRecord(AutoJobSchedulingRecord record) {
+        return AutoJobSchedulingRecordBuffer
+                .getInstance()
+                .begin(record);
+    }
+
+    /**
+     * 当前调度的记录，处理器刷新后指向下一次调度
+     */
+    public AutoJobSchedulingRecord getSchedulingRecord() {
+        return record;
     }
 
     public void addRunLog(AutoJobRunLog runLog) {
@@ -97,6 +165,90 @@ public class AutoJobLogHandler implements WithDaemonThread {
             return;
         }
         runLogs.add(runLog);
+        checkRunLogCapacity();
+    }
+
+    /**
+     * 加入一条运行日志，开启聚合时调度期间的运行日志先累积，调度结束时生成汇总后进入待写入队列，
+     * 不在调度中的运行日志直接进入待写入队列
+     *
+     * @param eventCode 事件简写，见{@link AutoJobRunLogFactory#getEventCode(TaskEvent)}
+     * @param runLog    运行日志
+     * @author Huang Yongxiang
+     * @date 2023/1/26 09:50
+     */
+    public synchronized void addRunLog(String eventCode, AutoJobRunLog runLog) {
+        if (runLog == null) {
+            return;
+        }
+        runLog.setSchedulingId(schedulingId);
+        if (!enableRunLogAggregate || eventCode == null) {
+            runLogs.add(runLog);
+            return;
+        }
+        if (runLogAggregator != null && runLogAggregator.getSchedulingId() != schedulingId) {
+            //上次调度未收到执行结果，按已有的事件生成汇总
+            runLogs.addAll(runLogAggregator.toRunLogs(isKeepRunLogDetail));
+            runLogAggregator = null;
+        }
+        if (AutoJobRunLogFactory.EVENT_START.equals(eventCode)) {
+            runLogAggregator = new AutoJobRunLogAggregator(schedulingId);
+        }
+        if (runLogAggregator == null) {
+            boolean isSuccess = AutoJobRunLogFactory.EVENT_SUCCESS.equals(eventCode);
+            //汇总已在调度结束时按执行结果生成，迟到的成功事件只在开启保留时写入
+            if (!isSuccess || closedSchedulingId != schedulingId || isKeepRunLogDetail) {
+                runLogs.add(runLog);
+            }
+            return;
+        }
+        if (runLogAggregator.add(eventCode, runLog)) {
+            runLogs.addAll(runLogAggregator.toRunLogs(isKeepRunLogDetail));
+            runLogAggregator = null;
+        }
+        checkRunLogCapacity();
+    }
+
+    /**
+     * 运行日志达到条数上限时在当前线程同步保存
+     */
+    private void checkRunLogCapacity() {
+        if (runLogs.size() >= bufferCapacity) {
+            saveRunLogs();
+        }
+    }
+
+    /**
+     * 结束当前调度的运行日志聚合，生成的汇总进入待写入队列
+     *
+     * @param isSuccess 调度的执行结果，为null时表示结果未知
+     * @author Huang Yongxiang
+     * @date 2023/1/28 15:20
+     */
+    public synchronized void closeRunLogAggregator(Boolean isSuccess) {
+        if (runLogAggregator != null) {
+            closeRunLogAggregator(runLogAggregator.getSchedulingId(), isSuccess);
+        }
+    }
+
+    /**
+     * 结束指定调度的运行日志聚合，聚合已属于其他调度或已生成汇总时不做处理
+     *
+     * @param schedulingId 调度ID
+     * @param isSuccess    调度的执行结果，为null时表示结果未知
+     * @author Huang Yongxiang
+     * @date 2023/1/29 10:15
+     */
+    public synchronized void closeRunLogAggregator(long schedulingId, Boolean isSuccess) {
+        if (runLogAggregator == null || runLogAggregator.getSchedulingId() != schedulingId) {
+            return;
+        }
+        if (isSuccess != null) {
+            runLogAggregator.finish(isSuccess);
+        }
+        runLogs.addAll(runLogAggregator.toRunLogs(isKeepRunLogDetail));
+        closedSchedulingId = runLogAggregator.getSchedulingId();
+        runLogAggregator = null;
     }
 
     public void addAllRunLogs(List<AutoJobRunLog> runLogs) {
@@ -104,48 +256,157 @@ public class AutoJobLogHandler implements WithDaemonThread {
                 .stream()
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList()));
+        checkRunLogCapacity();
     }
 
     public void addLog(AutoJobLog log) {
         if (log == null) {
             return;
         }
-        logs.add(log);
+        //日志归属加入时的调度，避免写入前调度已刷新
+        log.setSchedulingId(schedulingId);
+        logs.offer(log);
+        int count = pendingLogCount.getAndIncrement();
+        if (count == 0) {
+            firstPendingTime = System.currentTimeMillis();
+            AutoJobLogFlusher
+                    .getInstance()
+                    .markDirty(this);
+        }
+        if (count + 1 == maxBufferLength) {
+            AutoJobLogFlusher
+                    .getInstance()
+                    .requestFlush();
+        }
+        //写入线程跟不上时由当前线程保存，保存策略已满时阻塞或溢出的是当前线程
+        if (count + 1 >= bufferCapacity) {
+            saveLogs();
+        }
     }
 
     public void addAllLogs(List<AutoJobLog> logs) {
-        this.logs.addAll(logs
-                .stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList()));
+        logs.forEach(this::addLog);
     }
 
     public synchronized void saveRunLogs() {
-        runLogs.forEach(log -> log.setSchedulingId(schedulingId));
+        List<AutoJobRunLog> saveLogs = new ArrayList<>();
+        AutoJobRunLog runLog;
+        while ((runLog = runLogs.poll()) != null) {
+            if (runLog.getSchedulingId() == null) {
+                runLog.setSchedulingId(schedulingId);
+            }
+            saveLogs.add(runLog);
+        }
+        if (saveLogs.isEmpty()) {
+            return;
+        }
         runLogSaveStrategyDelegate
                 .doDelegate(AutoJobApplication
                         .getInstance()
                         .getConfigHolder(), AutoJobRunLog.class)
-                .doHandle(taskId + "", runLogs);
-        runLogs.clear();
+                .doHandle(taskId + "", saveLogs);
     }
 
-    public synchronized void saveLogs() {
-        logs.forEach(log -> log.setSchedulingId(schedulingId));
+    /**
+     * 立即写入该任务缓冲中的全部日志
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:40
+     */
+    public void saveLogs() {
+        List<AutoJobLog> saveLogs = drainLogs();
+        if (saveLogs.isEmpty()) {
+            return;
+        }
         logSaveStrategyDelegate
                 .doDelegate(AutoJobApplication
                         .getInstance()
                         .getConfigHolder(), AutoJobLog.class)
-                .doHandle(taskId + "", logs);
+                .doHandle(taskId + "", saveLogs);
+    }
+
+    /**
+     * 取出缓冲中的全部日志
+     *
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/18 10:42
+     */
+    List<AutoJobLog> drainLogs() {
+        List<AutoJobLog> drained = new ArrayList<>();
+        AutoJobLog autoJobLog;
+        while ((autoJobLog = logs.poll()) != null) {
+            drained.add(autoJobLog);
+        }
+        if (drained.size() > 0) {
+            pendingLogCount.addAndGet(-drained.size());
+        }
+        return drained;
+    }
+
+    boolean hasPendingLogs() {
+        return pendingLogCount.get() > 0;
+    }
 
-        logs.clear();
+    int getPendingLogCount() {
+        return pendingLogCount.get();
+    }
+
+    /**
+     * 缓冲是否达到条数阈值或停留超过保存周期
+     */
+    boolean isFlushDue(long now) {
+        int count = pendingLogCount.get();
+        return count >= maxBufferLength || (count > 0 && now - firstPendingTime >= saveCycle);
+    }
+
+    long getTaskId() {
+        return taskId;
+    }
+
+    ILogSaveStrategyDelegate<AutoJobLog> getLogSaveStrategyDelegate() {
+        return logSaveStrategyDelegate;
     }
 
     public void finishScheduling(boolean isSuccess, String result, long executingTime) {
-        AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.updateResult(schedulingId, isSuccess, result, executingTime);
+        AutoJobSchedulingRecord record = this.record;
+        closeRunLogAggregator(record.getSchedulingId(), isSuccess);
+        finishScheduling(record, isSuccess, result, executingTime);
+    }
+
+    /**
+     * 结束指定的调度，写入调度记录与缓冲中的日志。调度记录应在调度结束事件中取得并同步结束其运行日志聚合，
+     * 异步写入时处理器可能已刷新到下一次调度，不能再读取处理器当前的调度
+     *
+     * @param record        调度记录，见{@link #getSchedulingRecord()}
+     * @param isSuccess     是否成功
+     * @param result        执行结果
+     * @param executingTime 执行时长：ms
+     * @author Huang Yongxiang
+     * @date 2023/1/29 10:20
+     */
+    public void finishScheduling(AutoJobSchedulingRecord record, boolean isSuccess, String result, long executingTime) {
+        //调度记录与剩余日志的写入复用同一个连接
+        TransactionManager.doInUnitOfWork(false, () -> {
+            AutoJobSchedulingRecordBuffer
+                    .getInstance()
+                    .finish(record, isSuccess, result, executingTime);
+            saveLogs();
+            saveRunLogs();
+        });
+        isFinished = true;
+    }
+
+    /**
+     * 处理器移除或应用关闭时调用，生成未结束的运行日志汇总并写入缓冲中的全部日志
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/28 15:25
+     */
+    public void close() {
+        closeRunLogAggregator(null);
         saveLogs();
         saveRunLogs();
-        isFinished = true;
     }
 
     public boolean isFinished() {
@@ -167,26 +428,4 @@ public class AutoJobLogHandler implements WithDaemonThread {
         record = new AutoJobSchedulingRecord(handleTask);
         record.setSchedulingId(schedulingId);
     }
-
-    @Override
-    public void startWork() {
-        AtomicLong lastSaveTime = new AtomicLong(System.currentTimeMillis());
-        Thread thread = new Thread(() -> {
-            try {
-                while (!isFinished) {
-                    SyncHelper.sleepQuietly(1, TimeUnit.SECONDS);
-                    if (System.currentTimeMillis() - lastSaveTime.get() >= saveCycle || logs.size() >= maxBufferLength) {
-                        //log.info("自动日志保存：{}条", logs.size());
-                        saveLogs();
-                        lastSaveTime.set(System.currentTimeMillis());
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
-        thread.setName("logHandler");
-        thread.setDaemon(true);
-        thread.start();
-    }
 }
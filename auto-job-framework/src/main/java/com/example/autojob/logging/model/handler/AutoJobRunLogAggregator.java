@@ -0,0 +1,112 @@
+package com.example.autojob.logging.model.handler;
+
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.factory.AutoJobRunLogFactory;
+import com.example.autojob.util.id.IdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次调度的运行日志聚合，调度期间的运行日志只在内存中累积，收到执行成功或执行异常事件时生成一条汇总，
+ * 调度结束、处理器移除或应用关闭时未收到执行结果的聚合同样生成汇总，执行结果取调度结束时的结果。
+ * 汇总的消息中以“事件@相对开始的毫秒数”的形式记录事件时间线，逐条的运行日志只在运行失败或开启保留时写入
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/26 09:30
+ */
+class AutoJobRunLogAggregator {
+    private final long schedulingId;
+    private final long startTime = System.currentTimeMillis();
+    private final StringBuilder timeline = new StringBuilder();
+    private final List<AutoJobRunLog> details = new ArrayList<>();
+    private String lastEvent;
+    /**
+     * 调度结束时的执行结果，收到执行成功或执行异常事件时以事件为准
+     */
+    private Boolean finishedSuccess;
+
+    AutoJobRunLogAggregator(long schedulingId) {
+        this.schedulingId = schedulingId;
+    }
+
+    long getSchedulingId() {
+        return schedulingId;
+    }
+
+    /**
+     * 累积一条运行日志
+     *
+     * @param eventCode 事件简写
+     * @param runLog    运行日志
+     * @return boolean 本次调度是否已结束
+     * @author Huang Yongxiang
+     * @date 2023/1/26 09:35
+     */
+    boolean add(String eventCode, AutoJobRunLog runLog) {
+        if (timeline.length() > 0) {
+            timeline.append(',');
+        }
+        timeline
+                .append(eventCode)
+                .append('@')
+                .append(System.currentTimeMillis() - startTime);
+        details.add(runLog);
+        lastEvent = eventCode;
+        return AutoJobRunLogFactory.EVENT_SUCCESS.equals(eventCode) || AutoJobRunLogFactory.EVENT_ERROR.equals(eventCode);
+    }
+
+    /**
+     * 记录调度结束时的执行结果，用于尚未收到执行成功或执行异常事件时生成汇总
+     *
+     * @param isSuccess 是否执行成功
+     * @author Huang Yongxiang
+     * @date 2023/1/28 15:10
+     */
+    void finish(boolean isSuccess) {
+        finishedSuccess = isSuccess;
+    }
+
+    /**
+     * 生成本次调度需要写入的运行日志，汇总在前
+     *
+     * @param isKeepDetail 运行成功时是否保留逐条的运行日志
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobRunLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/26 09:40
+     */
+    List<AutoJobRunLog> toRunLogs(boolean isKeepDetail) {
+        List<AutoJobRunLog> runLogs = new ArrayList<>();
+        if (details.isEmpty()) {
+            return runLogs;
+        }
+        boolean isSuccess = AutoJobRunLogFactory.EVENT_SUCCESS.equals(lastEvent);
+        boolean isError = AutoJobRunLogFactory.EVENT_ERROR.equals(lastEvent);
+        if (!isSuccess && !isError && finishedSuccess != null) {
+            isSuccess = finishedSuccess;
+            isError = !finishedSuccess;
+        }
+        AutoJobRunLog first = details.get(0);
+        AutoJobRunLog summary = new AutoJobRunLog()
+                .setId(IdGenerator.getNextIdAsLong())
+                .setSchedulingId(schedulingId)
+                .setTaskId(first.getTaskId())
+                .setTaskType(first.getTaskType())
+                .setWriteTime(first.getWriteTime())
+                .setRunStatus(isSuccess ? 1 : 0)
+                .setMessage(String.format("任务：%d%s，耗时%dms，时间线：%s", first.getTaskId(), isSuccess ? "执行成功" : isError ? "执行异常" : "未收到执行结果", System.currentTimeMillis() - startTime, timeline));
+        for (AutoJobRunLog runLog : details) {
+            if (runLog.getErrorStack() != null) {
+                summary.setErrorStack(runLog.getErrorStack());
+            }
+            if (runLog.getRunResult() != null) {
+                summary.setRunResult(runLog.getRunResult());
+            }
+        }
+        runLogs.add(summary);
+        if (!isSuccess || isKeepDetail) {
+            runLogs.addAll(details);
+        }
+        return runLogs;
+    }
+}
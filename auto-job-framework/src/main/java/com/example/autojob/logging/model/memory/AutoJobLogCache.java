@@ -2,33 +2,26 @@ package com.example.autojob.logging.model.memory;
 
 import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
 import com.example.autojob.logging.domain.AutoJobLog;
-import com.example.autojob.util.cache.LocalCacheManager;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.convert.StringUtils;
-import net.jodah.expiringmap.ExpirationPolicy;
 
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
- * 任务日志内存缓存，内存Cache推荐仅做测试用，实际生成日志应该放到数据库里
+ * 任务日志内存缓存，内存Cache推荐仅做测试用，实际生成日志应该放到数据库里。每批日志编码为一个日志块存放，可选DEFLATE压缩，
+ * 按总字节限额、单任务字节限额和保存时间淘汰
  *
  * @Author Huang Yongxiang
  * @Date 2022/07/12 15:40
  */
 public class AutoJobLogCache implements IAutoJobLogCache<AutoJobLog> {
-    private LocalCacheManager<String, List<AutoJobLog>> taskLogCache;
+    private AutoJobLogMemoryStore<AutoJobLog> taskLogStore;
 
     public AutoJobLogCache(AutoJobLogConfig config) {
-        if (config.getEnableMemory()) {
-            taskLogCache = LocalCacheManager
-                    .builder()
-                    .setEntriesExpiration(false)
-                    .setExpiringTime((long) (config.getMemoryDefaultExpireTime() * 60 * 1000), TimeUnit.MILLISECONDS)
-                    .setMaxLength(config.getMemoryLength())
-                    .setPolicy(ExpirationPolicy.CREATED)
-                    .build();
+        if (DefaultValueUtil.defaultValue(config.getEnableMemory(), false)) {
+            taskLogStore = new AutoJobLogMemoryStore<>(new AutoJobLogCodec(), DefaultValueUtil.defaultValue(config.getMemoryMaxSize(), 64L * 1024 * 1024), DefaultValueUtil.defaultValue(config.getMemoryTaskMaxSize(), 4L * 1024 * 1024), DefaultValueUtil.defaultValue(config.getMemoryLength(), 100), (long) (DefaultValueUtil.defaultValue(config.getMemoryDefaultExpireTime(), 10D) * 60 * 1000), DefaultValueUtil.defaultValue(config.getEnableMemoryCompress(), false));
         }
     }
 
@@ -39,47 +32,106 @@ public class AutoJobLogCache implements IAutoJobLogCache<AutoJobLog> {
 
     @Override
     public boolean insertAll(String taskPath, List<AutoJobLog> autoJobLogs) {
-        if (StringUtils.isEmpty(taskPath) || autoJobLogs == null) {
+        if (StringUtils.isEmpty(taskPath) || autoJobLogs == null || taskLogStore == null) {
             return false;
         }
-        if (taskLogCache != null) {
-            try {
-                if (!taskLogCache.exist(taskPath)) {
-                    taskLogCache.set(taskPath, new LinkedList<>());
-                }
-                taskLogCache
-                        .get(taskPath)
-                        .addAll(autoJobLogs);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
-            return true;
-        }
-        return false;
+        return taskLogStore.append(taskPath, autoJobLogs);
     }
 
     @Override
     public boolean exist(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null) {
+        if (StringUtils.isEmpty(taskPath) || taskLogStore == null) {
             return false;
         }
-        return taskLogCache.exist(taskPath);
+        return taskLogStore.exist(taskPath);
     }
 
     @Override
     public List<AutoJobLog> get(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null || !taskLogCache.exist(taskPath)) {
+        if (StringUtils.isEmpty(taskPath) || taskLogStore == null) {
+            return Collections.emptyList();
+        }
+        return taskLogStore.get(taskPath);
+    }
+
+    /**
+     * 获取任务在游标之后的日志，只解码包含新日志的块
+     *
+     * @param taskPath 任务路径
+     * @param lastId   上次获取到的最后一条日志的ID
+     * @param size     最多返回的条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/25 10:10
+     */
+    public List<AutoJobLog> getAfter(String taskPath, Long lastId, int size) {
+        if (StringUtils.isEmpty(taskPath) || taskLogStore == null) {
+            return Collections.emptyList();
+        }
+        return taskLogStore.getAfter(taskPath, lastId, size);
+    }
+
+    /**
+     * 获取指定调度的全部日志
+     *
+     * @param schedulingId 调度ID
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:20
+     */
+    public List<AutoJobLog> getBySchedulingId(long schedulingId) {
+        if (taskLogStore == null) {
+            return Collections.emptyList();
+        }
+        return taskLogStore.getBySchedulingId(schedulingId);
+    }
+
+    /**
+     * 获取任务在时间区间内的日志
+     *
+     * @param taskPath 任务路径
+     * @param start    起时间：ms
+     * @param end      止时间：ms
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:25
+     */
+    public List<AutoJobLog> getBetween(String taskPath, long start, long end) {
+        if (StringUtils.isEmpty(taskPath) || taskLogStore == null) {
+            return Collections.emptyList();
+        }
+        return taskLogStore.getBetween(taskPath, start, end);
+    }
+
+    /**
+     * 是否开启了内存存储
+     */
+    public boolean isEnable() {
+        return taskLogStore != null;
+    }
+
+    /**
+     * 获取指定调度在游标之后的日志，只解码包含该调度日志的块
+     *
+     * @param schedulingId 调度ID
+     * @param lastId       上次获取到的最后一条日志的ID
+     * @param size         最多返回的条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:30
+     */
+    public List<AutoJobLog> getBySchedulingIdAfter(long schedulingId, Long lastId, int size) {
+        if (taskLogStore == null) {
             return Collections.emptyList();
         }
-        return taskLogCache.get(taskPath);
+        return taskLogStore.getBySchedulingIdAfter(schedulingId, lastId, size);
     }
 
     @Override
     public boolean remove(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null) {
+        if (StringUtils.isEmpty(taskPath) || taskLogStore == null) {
             return false;
         }
-        return taskLogCache.remove(taskPath);
+        return taskLogStore.remove(taskPath);
     }
 }
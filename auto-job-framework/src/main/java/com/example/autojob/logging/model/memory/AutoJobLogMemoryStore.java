@@ -0,0 +1,386 @@
+package com.example.autojob.logging.model.memory;
+
+import com.example.autojob.logging.model.file.LogBlockCodec;
+import com.example.autojob.logging.model.file.LogRecordCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 按字节限额的内存日志存储，每次写入的日志编码为一个紧凑的日志块，不保留逐条的日志对象。
+ * 每个任务的块组成一个环形队列，超过单任务限额时淘汰该任务最早的块；所有块另按写入顺序排成一个全局队列，
+ * 超过总限额、任务数上限或过期时从全局队列头部淘汰。被淘汰的块立即释放内容，全局队列中残留的空块超过一半时整体清理。
+ * 另按调度ID索引包含该调度日志的块，按调度查询时只解码这些块。读取时只在锁内复制块的引用，解码在锁外进行
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/25 09:20
+ */
+@Slf4j
+public class AutoJobLogMemoryStore<R> {
+    private final LogRecordCodec<R> codec;
+    private final long maxSize;
+    private final long taskMaxSize;
+    private final int maxTasks;
+    private final long expireTime;
+    private final boolean enableCompress;
+    private final Map<String, TaskRing> rings = new HashMap<>();
+    /**
+     * 调度ID=>包含该调度日志的块，按写入顺序排列
+     */
+    private final Map<Long, List<Block>> schedulingBlocks = new HashMap<>();
+    /**
+     * 所有块按写入顺序排列，头部即最早的块
+     */
+    private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+    /**
+     * 全局队列中已淘汰但尚未移除的块数
+     */
+    private int evictedInQueue;
+    private long usedSize;
+
+    /**
+     * 创建内存日志存储
+     *
+     * @param codec          日志编解码器
+     * @param maxSize        总字节限额
+     * @param taskMaxSize    单个任务的字节限额
+     * @param maxTasks       最多保存的任务数
+     * @param expireTime     日志的保存时间：ms
+     * @param enableCompress 日志块是否压缩
+     * @author Huang Yongxiang
+     * @date 2023/1/25 09:25
+     */
+    public AutoJobLogMemoryStore(LogRecordCodec<R> codec, long maxSize, long taskMaxSize, int maxTasks, long expireTime, boolean enableCompress) {
+        this.codec = codec;
+        this.maxSize = maxSize;
+        this.taskMaxSize = Math.min(taskMaxSize, maxSize);
+        this.maxTasks = Math.max(maxTasks, 1);
+        this.expireTime = expireTime;
+        this.enableCompress = enableCompress;
+    }
+
+    /**
+     * 写入一批日志
+     *
+     * @param key     任务路径
+     * @param records 日志
+     * @return boolean 是否写入成功
+     * @author Huang Yongxiang
+     * @date 2023/1/25 09:30
+     */
+    public boolean append(String key, List<R> records) {
+        if (records == null || records.isEmpty()) {
+            return true;
+        }
+        Block block;
+        try {
+            block = new Block(key, LogBlockCodec.encode(records, codec, enableCompress), records.size(), maxId(records), schedulingIds(records));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (block.size > taskMaxSize) {
+            log.warn("单批日志大小{}超过任务内存限额{}，已丢弃", block.size, taskMaxSize);
+            return false;
+        }
+        synchronized (this) {
+            expire(System.currentTimeMillis());
+            TaskRing ring = rings.get(key);
+            if (ring == null) {
+                while (rings.size() >= maxTasks && evictOldest()) {
+                    //淘汰最早写入的任务直到有空位
+                }
+                ring = new TaskRing();
+                rings.put(key, ring);
+            }
+            ring.blocks.addLast(block);
+            ring.size += block.size;
+            blocks.addLast(block);
+            usedSize += block.size;
+            for (Long schedulingId : block.schedulingIds) {
+                schedulingBlocks
+                        .computeIfAbsent(schedulingId, id -> new ArrayList<>())
+                        .add(block);
+            }
+            while (ring.size > taskMaxSize) {
+                evict(ring
+                        .blocks
+                        .peekFirst());
+            }
+            while (usedSize > maxSize && evictOldest()) {
+                //按写入顺序淘汰直到满足总限额
+            }
+            compact();
+        }
+        return true;
+    }
+
+    public synchronized boolean exist(String key) {
+        expire(System.currentTimeMillis());
+        return rings.containsKey(key);
+    }
+
+    /**
+     * 获取任务的全部日志
+     *
+     * @param key 任务路径
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/25 09:35
+     */
+    public List<R> get(String key) {
+        return decode(snapshot(key), Long.MIN_VALUE, Integer.MAX_VALUE, record -> true);
+    }
+
+    /**
+     * 获取任务在时间区间内的日志
+     *
+     * @param key   任务路径
+     * @param start 起时间：ms
+     * @param end   止时间：ms
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:10
+     */
+    public List<R> getBetween(String key, long start, long end) {
+        return decode(snapshot(key), Long.MIN_VALUE, Integer.MAX_VALUE, record -> {
+            long time = codec.getTime(record);
+            return time >= start && time <= end;
+        });
+    }
+
+    /**
+     * 获取指定调度的全部日志
+     *
+     * @param schedulingId 调度ID
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:00
+     */
+    public List<R> getBySchedulingId(long schedulingId) {
+        return getBySchedulingIdAfter(schedulingId, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 获取指定调度在游标之后的日志，只解码包含该调度日志的块
+     *
+     * @param schedulingId 调度ID
+     * @param lastId       上次获取到的最后一条日志的ID，为null时从头获取
+     * @param size         最多返回的条数
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:05
+     */
+    public List<R> getBySchedulingIdAfter(long schedulingId, Long lastId, int size) {
+        return decode(schedulingSnapshot(schedulingId), lastId == null ? Long.MIN_VALUE : lastId, size, record -> Objects.equals(codec.getSchedulingId(record), schedulingId));
+    }
+
+    /**
+     * 获取任务在游标之后的日志，最大ID不大于游标的块不会被解码
+     *
+     * @param key    任务路径
+     * @param lastId 上次获取到的最后一条日志的ID，为null时从头获取
+     * @param size   最多返回的条数
+     * @return java.util.List<R>
+     * @author Huang Yongxiang
+     * @date 2023/1/25 09:40
+     */
+    public List<R> getAfter(String key, Long lastId, int size) {
+        return decode(snapshot(key), lastId == null ? Long.MIN_VALUE : lastId, size, record -> true);
+    }
+
+    public synchronized boolean remove(String key) {
+        TaskRing ring = rings.get(key);
+        if (ring == null) {
+            return false;
+        }
+        while (!ring.blocks.isEmpty()) {
+            evict(ring.blocks.peekFirst());
+        }
+        compact();
+        return true;
+    }
+
+    public synchronized long getUsedSize() {
+        return usedSize;
+    }
+
+    public synchronized int getTaskCount() {
+        return rings.size();
+    }
+
+    synchronized int getQueuedBlockCount() {
+        return blocks.size();
+    }
+
+    private synchronized List<Block> snapshot(String key) {
+        expire(System.currentTimeMillis());
+        TaskRing ring = rings.get(key);
+        return ring == null ? Collections.emptyList() : new ArrayList<>(ring.blocks);
+    }
+
+    private synchronized List<Block> schedulingSnapshot(long schedulingId) {
+        expire(System.currentTimeMillis());
+        List<Block> schedulingBlockList = schedulingBlocks.get(schedulingId);
+        return schedulingBlockList == null ? Collections.emptyList() : new ArrayList<>(schedulingBlockList);
+    }
+
+    private List<R> decode(List<Block> snapshot, long after, int size, Predicate<R> filter) {
+        List<R> records = new ArrayList<>();
+        for (Block block : snapshot) {
+            if (records.size() >= size) {
+                break;
+            }
+            //复制引用后被淘汰的块内容已释放，按已淘汰处理
+            byte[] data = block.data;
+            if (data == null || (block.maxId != null && block.maxId <= after)) {
+                continue;
+            }
+            try {
+                for (R record : LogBlockCodec.decode(data, codec)) {
+                    Long id = codec.getId(record);
+                    if ((after == Long.MIN_VALUE || (id != null && id > after)) && filter.test(record)) {
+                        records.add(record);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return records.size() > size ? new ArrayList<>(records.subList(0, size)) : records;
+    }
+
+    private void expire(long now) {
+        if (expireTime <= 0) {
+            return;
+        }
+        Block head;
+        while ((head = blocks.peekFirst()) != null && (head.isEvicted || now - head.createTime > expireTime)) {
+            if (head.isEvicted) {
+                pollEvictedHead();
+            } else {
+                evict(head);
+            }
+        }
+    }
+
+    /**
+     * 淘汰全局队列中最早的有效块
+     *
+     * @return boolean 是否淘汰了块
+     */
+    private boolean evictOldest() {
+        Block head;
+        while ((head = blocks.peekFirst()) != null) {
+            if (head.isEvicted) {
+                pollEvictedHead();
+                continue;
+            }
+            evict(head);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 淘汰一个块并释放内容，块从所属任务的环中移除，全局队列中的空块在到达头部或整体清理时移除
+     */
+    private void evict(Block block) {
+        if (block == null || block.isEvicted) {
+            return;
+        }
+        block.isEvicted = true;
+        block.data = null;
+        usedSize -= block.size;
+        TaskRing ring = rings.get(block.key);
+        if (ring != null) {
+            ring.blocks.remove(block);
+            ring.size -= block.size;
+            if (ring.blocks.isEmpty()) {
+                rings.remove(block.key);
+            }
+        }
+        for (Long schedulingId : block.schedulingIds) {
+            List<Block> schedulingBlockList = schedulingBlocks.get(schedulingId);
+            if (schedulingBlockList != null && schedulingBlockList.remove(block) && schedulingBlockList.isEmpty()) {
+                schedulingBlocks.remove(schedulingId);
+            }
+        }
+        if (blocks.peekFirst() == block) {
+            blocks.pollFirst();
+        } else {
+            evictedInQueue++;
+        }
+    }
+
+    private void pollEvictedHead() {
+        blocks.pollFirst();
+        evictedInQueue--;
+    }
+
+    /**
+     * 任务环中淘汰的块不一定位于全局队列头部，长期不写入的任务会使其后的空块一直残留，空块超过一半时整体清理
+     */
+    private void compact() {
+        if (evictedInQueue > 0 && evictedInQueue * 2 >= blocks.size()) {
+            blocks.removeIf(block -> block.isEvicted);
+            evictedInQueue = 0;
+        }
+    }
+
+    private Long maxId(List<R> records) {
+        Long maxId = null;
+        for (R record : records) {
+            Long id = codec.getId(record);
+            if (id != null && (maxId == null || id > maxId)) {
+                maxId = id;
+            }
+        }
+        return maxId;
+    }
+
+    private Set<Long> schedulingIds(List<R> records) {
+        Set<Long> schedulingIds = new HashSet<>();
+        for (R record : records) {
+            Long schedulingId = codec.getSchedulingId(record);
+            if (schedulingId != null) {
+                schedulingIds.add(schedulingId);
+            }
+        }
+        return schedulingIds;
+    }
+
+    synchronized int getIndexedSchedulingCount() {
+        return schedulingBlocks.size();
+    }
+
+    private static class Block {
+        private final String key;
+        /**
+         * 淘汰后置为null
+         */
+        private byte[] data;
+        private final int size;
+        private final int count;
+        private final Long maxId;
+        private final Set<Long> schedulingIds;
+        private final long createTime = System.currentTimeMillis();
+        private boolean isEvicted;
+
+        Block(String key, byte[] data, int count, Long maxId, Set<Long> schedulingIds) {
+            this.key = key;
+            this.data = data;
+            this.size = data.length;
+            this.count = count;
+            this.maxId = maxId;
+            this.schedulingIds = schedulingIds;
+        }
+    }
+
+    private static class TaskRing {
+        private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+        private long size;
+    }
+}
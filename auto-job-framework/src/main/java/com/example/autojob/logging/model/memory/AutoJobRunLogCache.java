@@ -2,33 +2,25 @@ package com.example.autojob.logging.model.memory;
 
 import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
 import com.example.autojob.logging.domain.AutoJobRunLog;
-import com.example.autojob.util.cache.LocalCacheManager;
+import com.example.autojob.logging.model.file.AutoJobRunLogCodec;
+import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.convert.StringUtils;
-import net.jodah.expiringmap.ExpirationPolicy;
 
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
- * 运行日志缓存
+ * 运行日志缓存，每批日志编码为一个日志块存放，按总字节限额、单任务字节限额和保存时间淘汰
  *
  * @Author Huang Yongxiang
  * @Date 2022/07/12 16:16
  */
 public class AutoJobRunLogCache implements IAutoJobLogCache<AutoJobRunLog> {
-    private LocalCacheManager<String, List<AutoJobRunLog>> taskLogCache;
+    private AutoJobLogMemoryStore<AutoJobRunLog> runLogStore;
 
     public AutoJobRunLogCache(AutoJobLogConfig config) {
-        if (config.getEnableMemory()) {
-            taskLogCache = LocalCacheManager
-                    .builder()
-                    .setEntriesExpiration(false)
-                    .setExpiringTime((long) (config.getMemoryDefaultExpireTime() * 60 * 1000), TimeUnit.MILLISECONDS)
-                    .setMaxLength(config.getMemoryLength())
-                    .setPolicy(ExpirationPolicy.CREATED)
-                    .build();
+        if (DefaultValueUtil.defaultValue(config.getEnableRunLogMemory(), false)) {
+            runLogStore = new AutoJobLogMemoryStore<>(new AutoJobRunLogCodec(), DefaultValueUtil.defaultValue(config.getMemoryRunLogMaxSize(), 16L * 1024 * 1024), DefaultValueUtil.defaultValue(config.getMemoryRunLogTaskMaxSize(), 1024L * 1024), DefaultValueUtil.defaultValue(config.getMemoryRunLogLength(), 100), (long) (DefaultValueUtil.defaultValue(config.getMemoryRunLogDefaultExpireTime(), 10D) * 60 * 1000), false);
         }
     }
 
@@ -39,47 +31,89 @@ public class AutoJobRunLogCache implements IAutoJobLogCache<AutoJobRunLog> {
 
     @Override
     public boolean insertAll(String taskPath, List<AutoJobRunLog> autoJobLogs) {
-        if (StringUtils.isEmpty(taskPath) || autoJobLogs == null) {
+        if (StringUtils.isEmpty(taskPath) || autoJobLogs == null || runLogStore == null) {
             return false;
         }
-        if (taskLogCache != null) {
-            try {
-                if (!taskLogCache.exist(taskPath)) {
-                    taskLogCache.set(taskPath, new LinkedList<>());
-                }
-                taskLogCache
-                        .get(taskPath)
-                        .addAll(autoJobLogs);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
-            return true;
-        }
-        return false;
+        return runLogStore.append(taskPath, autoJobLogs);
     }
 
     @Override
     public boolean exist(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null) {
+        if (StringUtils.isEmpty(taskPath) || runLogStore == null) {
             return false;
         }
-        return taskLogCache.exist(taskPath);
+        return runLogStore.exist(taskPath);
     }
 
     @Override
     public List<AutoJobRunLog> get(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null || !taskLogCache.exist(taskPath)) {
+        if (StringUtils.isEmpty(taskPath) || runLogStore == null) {
+            return Collections.emptyList();
+        }
+        return runLogStore.get(taskPath);
+    }
+
+    /**
+     * 获取指定调度的全部日志
+     *
+     * @param schedulingId 调度ID
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobRunLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:20
+     */
+    public List<AutoJobRunLog> getBySchedulingId(long schedulingId) {
+        if (runLogStore == null) {
+            return Collections.emptyList();
+        }
+        return runLogStore.getBySchedulingId(schedulingId);
+    }
+
+    /**
+     * 获取任务在时间区间内的日志
+     *
+     * @param taskPath 任务路径
+     * @param start    起时间：ms
+     * @param end      止时间：ms
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobRunLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:25
+     */
+    public List<AutoJobRunLog> getBetween(String taskPath, long start, long end) {
+        if (StringUtils.isEmpty(taskPath) || runLogStore == null) {
+            return Collections.emptyList();
+        }
+        return runLogStore.getBetween(taskPath, start, end);
+    }
+
+    /**
+     * 是否开启了内存存储
+     */
+    public boolean isEnable() {
+        return runLogStore != null;
+    }
+
+    /**
+     * 获取任务在游标之后的日志
+     *
+     * @param taskPath 任务路径
+     * @param lastId   上次获取到的最后一条日志的ID
+     * @param size     最多返回的条数
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobRunLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/29 18:35
+     */
+    public List<AutoJobRunLog> getAfter(String taskPath, Long lastId, int size) {
+        if (StringUtils.isEmpty(taskPath) || runLogStore == null) {
             return Collections.emptyList();
         }
-        return taskLogCache.get(taskPath);
+        return runLogStore.getAfter(taskPath, lastId, size);
     }
 
     @Override
     public boolean remove(String taskPath) {
-        if (StringUtils.isEmpty(taskPath) || taskLogCache == null) {
+        if (StringUtils.isEmpty(taskPath) || runLogStore == null) {
             return false;
         }
-        return taskLogCache.remove(taskPath);
+        return runLogStore.remove(taskPath);
     }
 }
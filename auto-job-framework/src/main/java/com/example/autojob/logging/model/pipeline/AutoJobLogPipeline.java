@@ -0,0 +1,288 @@
+package com.example.autojob.logging.model.pipeline;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.util.convert.DateUtils;
+import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.id.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 任务日志管道，任务线程将日志写入预分配的环形缓冲，由一个消费线程批量取出后交给日志接收者。
+ * 缓冲占用超过高水位时DEBUG、INFO日志按采样率保留，缓冲写满时丢弃日志，任务线程始终不会因日志阻塞；
+ * 被丢弃的条数按任务统计，消费线程会为相应任务补写一条警告日志
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/19 10:40
+ */
+@Slf4j
+public class AutoJobLogPipeline {
+    /**
+     * 一次预留的日志ID个数上限，即一毫秒内可生成的ID数
+     */
+    private static final int ID_BATCH_SIZE = 4096;
+    private final LogRingBuffer ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final int sampleRate;
+    private final long highWaterMark;
+    /**
+     * 各任务被丢弃的日志条数
+     */
+    private final Map<Long, LongAdder> droppedCounts = new ConcurrentHashMap<>();
+    private final Thread consumerThread;
+    private volatile boolean isConsumerParked = false;
+    private volatile Consumer<AutoJobLog> sink;
+    private volatile boolean isClosed = false;
+
+    private AutoJobLogPipeline() {
+        this(getLogConfig());
+    }
+
+    private AutoJobLogPipeline(AutoJobLogConfig logConfig) {
+        this(DefaultValueUtil.defaultValue(logConfig.getPipelineBufferSize(), 8192), DefaultValueUtil.defaultValue(WaitStrategy.findByName(logConfig.getPipelineWaitStrategy()), WaitStrategy.SLEEPING), DefaultValueUtil.defaultValue(logConfig.getPipelineSampleRate(), 10), DefaultValueUtil.defaultValue(logConfig.getPipelineHighWaterMark(), 0.75));
+    }
+
+    /**
+     * 以给定参数创建一个独立的管道，全局使用{@link #getInstance()}
+     *
+     * @param bufferSize   缓冲大小，向上取整为2的幂
+     * @param waitStrategy 消费线程的等待策略
+     * @param sampleRate   超过高水位后低级别日志的采样率
+     * @param ratio        高水位占缓冲大小的比例
+     */
+    AutoJobLogPipeline(int bufferSize, WaitStrategy waitStrategy, int sampleRate, double ratio) {
+        this.ringBuffer = new LogRingBuffer(bufferSize);
+        this.waitStrategy = waitStrategy;
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.highWaterMark = (long) (ringBuffer.getSize() * Math.min(Math.max(ratio, 0), 1));
+        consumerThread = new Thread(this::consume, "logPipelineConsumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    private static AutoJobLogConfig getLogConfig() {
+        AutoJobConfigHolder configHolder = AutoJobApplication
+                .getInstance()
+                .getConfigHolder();
+        return configHolder == null ? new AutoJobLogConfig() : configHolder.getLogConfig();
+    }
+
+    public static AutoJobLogPipeline getInstance() {
+        return InstanceHolder.PIPELINE;
+    }
+
+    /**
+     * 设置日志接收者，接收者在消费线程中被调用
+     *
+     * @param sink 日志接收者
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:45
+     */
+    public void setSink(Consumer<AutoJobLog> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 发布一条日志，不会阻塞
+     *
+     * @param taskId    任务ID
+     * @param level     日志级别
+     * @param inputTime 写入时间
+     * @param message   日志内容
+     * @return boolean 是否写入了缓冲，被采样或缓冲已满时返回false
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:50
+     */
+    public boolean publish(long taskId, LogLevel level, String inputTime, String message) {
+        if (isClosed) {
+            return false;
+        }
+        //超过高水位后低级别日志按采样率保留
+        if (ringBuffer.occupied() >= highWaterMark && !level.isEnabled(LogLevel.WARN) && sampleRate > 1 && ThreadLocalRandom
+                .current()
+                .nextInt(sampleRate) != 0) {
+            drop(taskId);
+            return false;
+        }
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            drop(taskId);
+            return false;
+        }
+        ringBuffer
+                .get(sequence)
+                .set(taskId, level.name(), inputTime, message);
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            //发布与读取挂起标志之间需要全屏障，否则消费者挂起前的检查可能看不到本条日志而错过唤醒
+            ringBuffer.publishVolatile(sequence);
+            if (isConsumerParked) {
+                LockSupport.unpark(consumerThread);
+            }
+        } else {
+            ringBuffer.publish(sequence);
+        }
+        return true;
+    }
+
+    public boolean publish(AutoJobLog autoJobLog) {
+        if (autoJobLog == null) {
+            return false;
+        }
+        LogLevel level = DefaultValueUtil.defaultValue(LogLevel.findByName(autoJobLog.getLevel()), LogLevel.INFO);
+        return publish(autoJobLog.getTaskId(), level, DefaultValueUtil.defaultValue(autoJobLog.getInputTime(), DateUtils.getTime()), autoJobLog.getMessage());
+    }
+
+    private void drop(long taskId) {
+        droppedCounts
+                .computeIfAbsent(taskId, id -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * 等待当前已发布的日志全部被消费，用于调度结束时保证日志先于调度记录写入
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return boolean 是否在超时前全部消费
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:55
+     */
+    public boolean awaitConsumed(long timeout, TimeUnit unit) {
+        long target = ringBuffer.getCursor();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (ringBuffer.getConsumed() < target) {
+            if (System.nanoTime() >= deadline || !consumerThread.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(consumerThread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return true;
+    }
+
+    private void consume() {
+        int idleCount = 0;
+        while (true) {
+            int count = consumeBatch();
+            if (count > 0) {
+                idleCount = 0;
+                continue;
+            }
+            if (!droppedCounts.isEmpty()) {
+                reportDropped();
+            }
+            if (isClosed) {
+                //关闭后发布的日志会被拒绝，取完剩余日志即可退出
+                if (ringBuffer.highestAvailable() <= ringBuffer.getConsumed()) {
+                    return;
+                }
+                continue;
+            }
+            if (waitStrategy == WaitStrategy.BLOCKING) {
+                isConsumerParked = true;
+                //挂起前再检查一次，避免错过挂起标志设置前发布的日志
+                if (ringBuffer.highestAvailable() <= ringBuffer.getConsumed()) {
+                    waitStrategy.idle(++idleCount);
+                }
+                isConsumerParked = false;
+            } else {
+                waitStrategy.idle(++idleCount);
+            }
+        }
+    }
+
+    /**
+     * 批量取出连续可读的日志交给接收者
+     *
+     * @return int 本批处理的条数
+     * @author Huang Yongxiang
+     * @date 2023/1/19 11:00
+     */
+    private int consumeBatch() {
+        long consumed = ringBuffer.getConsumed();
+        long highest = ringBuffer.highestAvailable();
+        if (highest <= consumed) {
+            return 0;
+        }
+        Consumer<AutoJobLog> currentSink = sink;
+        //每批预留一段连续的ID，避免逐条加锁生成
+        long nextId = 0;
+        int reserved = 0;
+        for (long sequence = consumed + 1; sequence <= highest; sequence++) {
+            LogEvent event = ringBuffer.get(sequence);
+            try {
+                if (currentSink != null) {
+                    if (reserved == 0) {
+                        reserved = (int) Math.min(highest - sequence + 1, ID_BATCH_SIZE);
+                        nextId = IdGenerator.getNextIds(reserved);
+                    }
+                    reserved--;
+                    currentSink.accept(event.toLog(nextId++));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                event.clear();
+            }
+        }
+        ringBuffer.markConsumed(highest);
+        return (int) (highest - consumed);
+    }
+
+    private void reportDropped() {
+        Consumer<AutoJobLog> currentSink = sink;
+        for (Iterator<Map.Entry<Long, LongAdder>> iterator = droppedCounts
+                .entrySet()
+                .iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, LongAdder> entry = iterator.next();
+            iterator.remove();
+            long dropped = entry
+                    .getValue()
+                    .sum();
+            if (dropped <= 0 || currentSink == null) {
+                continue;
+            }
+            LogEvent event = new LogEvent();
+            event.set(entry.getKey(), LogLevel.WARN.name(), DateUtils.getTime(), String.format("日志缓冲繁忙，已丢弃该任务%d条日志", dropped));
+            try {
+                currentSink.accept(event.toLog(IdGenerator.getNextIdAsLong()));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 关闭管道，拒绝新日志并等待已发布的日志消费完毕
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/19 11:05
+     */
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobLogPipeline PIPELINE = new AutoJobLogPipeline();
+    }
+}
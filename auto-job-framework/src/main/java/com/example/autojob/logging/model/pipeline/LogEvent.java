@@ -0,0 +1,39 @@
+package com.example.autojob.logging.model.pipeline;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+
+/**
+ * 环形缓冲中预分配的日志槽位，生产者写入字段后发布，消费者读取后清空以便复用
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/19 10:05
+ */
+class LogEvent {
+    long taskId;
+    String level;
+    String inputTime;
+    String message;
+
+    void set(long taskId, String level, String inputTime, String message) {
+        this.taskId = taskId;
+        this.level = level;
+        this.inputTime = inputTime;
+        this.message = message;
+    }
+
+    AutoJobLog toLog(long id) {
+        AutoJobLog autoJobLog = new AutoJobLog();
+        autoJobLog.setId(id);
+        autoJobLog.setTaskId(taskId);
+        autoJobLog.setLevel(level);
+        autoJobLog.setInputTime(inputTime);
+        autoJobLog.setMessage(message);
+        return autoJobLog;
+    }
+
+    void clear() {
+        level = null;
+        inputTime = null;
+        message = null;
+    }
+}
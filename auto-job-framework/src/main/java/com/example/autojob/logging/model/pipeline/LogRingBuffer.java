@@ -0,0 +1,130 @@
+package com.example.autojob.logging.model.pipeline;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多生产者单消费者的环形缓冲，槽位在创建时预分配。生产者通过CAS申请序号，写入槽位后按序号的圈数标记可读，
+ * 消费者按序号顺序批量读取连续可读的槽位，读取完成后推进消费序号释放槽位。缓冲已满时申请直接失败，不阻塞生产者
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/19 10:20
+ */
+class LogRingBuffer {
+    private final int size;
+    private final int mask;
+    private final int indexShift;
+    private final LogEvent[] events;
+    /**
+     * 每个槽位当前可读的圈数，生产者写入完成后设置，消费者据此判断槽位是否可读
+     */
+    private final AtomicIntegerArray available;
+    /**
+     * 已被申请的最大序号
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * 已被消费的最大序号
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    LogRingBuffer(int requestSize) {
+        int size = 1;
+        while (size < Math.max(requestSize, 2)) {
+            size <<= 1;
+        }
+        this.size = size;
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.events = new LogEvent[size];
+        this.available = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new LogEvent();
+            available.set(i, -1);
+        }
+    }
+
+    /**
+     * 申请一个序号
+     *
+     * @return long 申请到的序号，缓冲已满时返回-1
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:25
+     */
+    long tryNext() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            if (next - size > consumed.get()) {
+                return -1;
+            }
+        } while (!cursor.compareAndSet(current, next));
+        return next;
+    }
+
+    LogEvent get(long sequence) {
+        return events[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        available.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    /**
+     * 以volatile写发布序号，之后对消费者挂起标志的读取不会重排到发布之前，供需要唤醒消费者的等待策略使用
+     *
+     * @param sequence 已写入的序号
+     * @author Huang Yongxiang
+     * @date 2023/1/27 20:20
+     */
+    void publishVolatile(long sequence) {
+        available.set((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    boolean isAvailable(long sequence) {
+        return available.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    /**
+     * 从下一个待消费的序号起，获取连续可读的最大序号
+     *
+     * @return long 没有可读槽位时返回已消费的序号
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:30
+     */
+    long highestAvailable() {
+        long next = consumed.get() + 1;
+        long claimed = cursor.get();
+        for (long sequence = next; sequence <= claimed; sequence++) {
+            if (!isAvailable(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    void markConsumed(long sequence) {
+        consumed.lazySet(sequence);
+    }
+
+    long getCursor() {
+        return cursor.get();
+    }
+
+    long getConsumed() {
+        return consumed.get();
+    }
+
+    /**
+     * 已申请但尚未消费的槽位数
+     */
+    long occupied() {
+        return cursor.get() - consumed.get();
+    }
+
+    int getSize() {
+        return size;
+    }
+}
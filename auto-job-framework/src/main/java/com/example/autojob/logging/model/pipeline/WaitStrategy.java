@@ -0,0 +1,82 @@
+package com.example.autojob.logging.model.pipeline;
+
+import com.example.autojob.util.convert.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 日志消费线程在没有日志可消费时的等待策略，越靠前延迟越低、CPU占用越高
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/19 10:10
+ */
+public enum WaitStrategy {
+    /**
+     * 忙等，独占一个CPU核心
+     */
+    BUSY_SPIN,
+    /**
+     * 自旋一段时间后让出CPU
+     */
+    YIELDING,
+    /**
+     * 自旋、让出CPU后短暂休眠，默认策略
+     */
+    SLEEPING,
+    /**
+     * 挂起直到生产者唤醒，CPU占用最低
+     */
+    BLOCKING;
+
+    private static final int SPIN_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public static WaitStrategy findByName(String name) {
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+        for (WaitStrategy strategy : values()) {
+            if (strategy
+                    .name()
+                    .equalsIgnoreCase(name.trim())) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 执行一次等待
+     *
+     * @param idleCount 连续空闲的次数
+     * @author Huang Yongxiang
+     * @date 2023/1/19 10:15
+     */
+    void idle(int idleCount) {
+        switch (this) {
+            case BUSY_SPIN: {
+                return;
+            }
+            case YIELDING: {
+                if (idleCount > SPIN_TRIES) {
+                    Thread.yield();
+                }
+                return;
+            }
+            case SLEEPING: {
+                if (idleCount > SPIN_TRIES * 2) {
+                    LockSupport.parkNanos(SLEEP_NANOS);
+                } else if (idleCount > SPIN_TRIES) {
+                    Thread.yield();
+                }
+                return;
+            }
+            default: {
+                //生产者发布时若发现消费线程挂起会将其唤醒，超时只用于兜底
+                LockSupport.parkNanos(BLOCK_NANOS);
+            }
+        }
+    }
+}
@@ -1,27 +1,35 @@
 package com.example.autojob.logging.model.producer;
 
 import com.example.autojob.logging.domain.AutoJobLog;
-import com.example.autojob.logging.model.AutoJobLogContainer;
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
 import com.example.autojob.skeleton.framework.mq.MessageProducer;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
 import com.example.autojob.skeleton.framework.task.TaskRunningContext;
 import com.example.autojob.util.convert.DateUtils;
 import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.convert.StringUtils;
-import com.example.autojob.util.id.IdGenerator;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.helpers.FormattingTuple;
 import org.slf4j.helpers.MessageFormatter;
 
-import java.util.Date;
-import java.util.concurrent.TimeUnit;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
  * 日志辅助类，该类可直接实现日志打印，同时该类打印的日志会被直接加入任务日志
  * 该类支持子方法、子线程日志捕获
- * <p>为了保证项目统一使用slf4j logger，该类允许设置对slf4j logger进行代理，为了能真实记录原log输出位置，将会在原日志上增加
+ * <p>为了保证项目统一使用slf4j logger，该类允许设置对slf4j logger进行代理，开启位置记录时为了能真实记录原log输出位置，将会在原日志上增加
  * $Actual-Location - [fileName:lineNum]$</p>
+ * <p>低于配置级别的日志在格式化之前即被丢弃；获取输出位置需要遍历调用栈，默认关闭，可通过autoJob.logging.taskLog.location.enable开启</p>
+ * <p>任务日志写入{@link AutoJobLogPipeline}，日志缓冲繁忙时不会阻塞任务线程</p>
+ * <p>任务日志受{@link AutoJobLogLimiter}的每秒条数和单次运行大小限额约束，条数在格式化前检查，大小在格式化后检查</p>
  *
  * @Author Huang Yongxiang
  * @Date 2022/08/05 14:33
@@ -31,10 +39,13 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
 
     private volatile Logger slf4jLogger;
 
-    private final MessageProducer<AutoJobLog> producer;
-
     private AutoJobTask heldTask;
 
+    /**
+     * 是否记录输出位置，为null时使用全局配置
+     */
+    private Boolean enableLocation;
+
 
     public AutoJobLogHelper() {
         this(null);
@@ -42,12 +53,6 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
 
     public AutoJobLogHelper(Logger slf4jLogger) {
         this.slf4jLogger = slf4jLogger;
-        this.producer = new MessageProducer<>(AutoJobLogContainer
-                .getInstance()
-                .getMessageQueueContext(AutoJobLog.class));
-        if (producer.getMessageQueueContext() == null) {
-            throw new IllegalStateException("AutoJob上下文尚未初始化");
-        }
     }
 
     public AutoJobLogHelper(Logger slf4jLogger, AutoJobTask heldTask) {
@@ -56,9 +61,6 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
         }
         this.slf4jLogger = slf4jLogger;
         this.heldTask = heldTask;
-        this.producer = new MessageProducer<>(AutoJobLogContainer
-                .getInstance()
-                .getMessageQueueContext(AutoJobLog.class));
     }
 
     /**
@@ -76,8 +78,25 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
     }
 
 
+    /**
+     * 当前时刻的格式化时间，同一秒内复用秒级部分，只拼接毫秒
+     */
     private static String now() {
-        return DateUtils.formatDate(new Date(), "yyyy-MM-dd HH:mm:ss,SSS");
+        long millis = System.currentTimeMillis();
+        String second = CachedSecond.format(millis);
+        int ms = (int) (millis % 1000);
+        StringBuilder time = new StringBuilder(second.length() + 4)
+                .append(second)
+                .append(',');
+        if (ms < 100) {
+            time.append('0');
+        }
+        if (ms < 10) {
+            time.append('0');
+        }
+        return time
+                .append(ms)
+                .toString();
     }
 
     private static String getThreadName() {
@@ -86,16 +105,26 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
                 .getName();
     }
 
-
-    private static String getLogLocation() {
-        StackTraceElement stackTraceElement = Thread
-                .currentThread()
-                .getStackTrace()[4];
-        return String.format("%s - [%s:%d]", stackTraceElement.getClassName(), stackTraceElement.getFileName(), stackTraceElement.getLineNumber());
+    /**
+     * 获取日志的输出位置，一次调用只获取一次调用栈，跳过本类的栈帧即为调用者
+     */
+    private static StackTraceElement getLogLocation() {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        for (StackTraceElement element : stackTrace) {
+            if (!AutoJobLogHelper.class
+                    .getName()
+                    .equals(element.getClassName())) {
+                return element;
+            }
+        }
+        return null;
     }
 
 
     private static String getFormatMessage(String appendLogPattern, Object... appendLogArguments) {
+        if (appendLogArguments == null || appendLogArguments.length == 0) {
+            return appendLogPattern;
+        }
         FormattingTuple ft = MessageFormatter.arrayFormat(appendLogPattern, appendLogArguments);
         return ft.getMessage();
     }
@@ -113,113 +142,247 @@ public class AutoJobLogHelper implements IAutoJobLogProducer<AutoJobLog> {
         return this;
     }
 
-    public void debug(String appendLogPattern, Object... appendLogArguments) {
-        String message = getLevelMessage("DEBUG", appendLogPattern, appendLogArguments);
-        String id = getBindingTaskId();
-        if (!StringUtils.isEmpty(id)) {
-            produce(producer, id, getAutoJobLog(message, "DEBUG"));
-        }
-        if (slf4jLogger != null) {
-            slf4jLogger.debug(getActualLocation() + appendLogPattern, appendLogArguments);
-        } else {
-            System.out.println(message);
+    /**
+     * 设置该实例是否记录日志的输出位置，不设置时使用全局配置autoJob.logging.taskLog.location.enable
+     *
+     * @param enableLocation 是否记录输出位置
+     * @return com.example.autojob.logging.model.producer.AutoJobLogHelper
+     * @author Huang Yongxiang
+     * @date 2023/1/17 10:20
+     */
+    public AutoJobLogHelper setEnableLocation(boolean enableLocation) {
+        this.enableLocation = enableLocation;
+        return this;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(LogLevel.INFO);
+    }
+
+    /**
+     * 给定级别的日志是否会被输出，可用于避免构造开销较大的日志参数
+     *
+     * @param level 日志级别
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/17 10:22
+     */
+    public boolean isEnabled(LogLevel level) {
+        if (slf4jLogger != null && isSlf4jEnabled(level)) {
+            return true;
         }
+        return level.isEnabled(LogSettings
+                .get()
+                .getLevel());
+    }
+
+    public void debug(String appendLogPattern, Object... appendLogArguments) {
+        log(LogLevel.DEBUG, appendLogPattern, appendLogArguments);
     }
 
     public void info(String appendLogPattern, Object... appendLogArguments) {
-        String message = getLevelMessage("INFO", appendLogPattern, appendLogArguments);
-        String id = getBindingTaskId();
-        if (!StringUtils.isEmpty(id)) {
-            produce(producer, id, getAutoJobLog(message, "INFO"));
-        }
-        if (slf4jLogger != null) {
-            slf4jLogger.info(getActualLocation() + appendLogPattern, appendLogArguments);
-        } else {
-            System.out.println(message);
-        }
+        log(LogLevel.INFO, appendLogPattern, appendLogArguments);
     }
 
     public void warn(String appendLogPattern, Object... appendLogArguments) {
-        String message = getLevelMessage("WARN", appendLogPattern, appendLogArguments);
-        String id = getBindingTaskId();
-        if (!StringUtils.isEmpty(id)) {
-            produce(producer, id, getAutoJobLog(message, "WARN"));
-        }
-        if (slf4jLogger != null) {
-            slf4jLogger.warn(getActualLocation() + appendLogPattern, appendLogArguments);
-        } else {
-            System.out.println(message);
-        }
+        log(LogLevel.WARN, appendLogPattern, appendLogArguments);
     }
 
     public void error(String appendLogPattern, Object... appendLogArguments) {
-        String message = getLevelMessage("ERROR", appendLogPattern, appendLogArguments);
-        String id = getBindingTaskId();
-        if (!StringUtils.isEmpty(id)) {
-            produce(producer, id, getAutoJobLog(message, "ERROR"));
+        log(LogLevel.ERROR, appendLogPattern, appendLogArguments);
+    }
+
+    /**
+     * 输出日志，先判断级别，确定需要输出后才获取位置和格式化消息
+     *
+     * @param level              日志级别
+     * @param appendLogPattern   消息模板
+     * @param appendLogArguments 模板参数
+     * @author Huang Yongxiang
+     * @date 2023/1/17 10:25
+     */
+    private void log(LogLevel level, String appendLogPattern, Object... appendLogArguments) {
+        LogSettings settings = LogSettings.get();
+        boolean isLevelEnabled = level.isEnabled(settings.getLevel());
+        Long taskId = isLevelEnabled ? getBindingTaskId() : null;
+        boolean toTaskLog = taskId != null && AutoJobLogLimiter
+                .getInstance()
+                .tryAcquire(taskId, level);
+        boolean toConsole = slf4jLogger == null && isLevelEnabled;
+        boolean toSlf4j = slf4jLogger != null && isSlf4jEnabled(level);
+        if (!toTaskLog && !toConsole && !toSlf4j) {
+            return;
+        }
+        StackTraceElement location = DefaultValueUtil.defaultValue(enableLocation, settings.isEnableLocation()) ? getLogLocation() : null;
+        if (toTaskLog || toConsole) {
+            String message = getLevelMessage(level, location, appendLogPattern, appendLogArguments);
+            if (toTaskLog && AutoJobLogLimiter
+                    .getInstance()
+                    .tryAcquireSize(taskId, level, StringUtils.utf8Length(message))) {
+                AutoJobLogPipeline
+                        .getInstance()
+                        .publish(taskId, level, CachedSecond.format(System.currentTimeMillis()), message);
+            }
+            if (toConsole) {
+                System.out.println(message);
+            }
+        }
+        if (toSlf4j) {
+            String pattern = location == null ? appendLogPattern : getActualLocation(location) + appendLogPattern;
+            switch (level) {
+                case DEBUG: {
+                    slf4jLogger.debug(pattern, appendLogArguments);
+                    break;
+                }
+                case INFO: {
+                    slf4jLogger.info(pattern, appendLogArguments);
+                    break;
+                }
+                case WARN: {
+                    slf4jLogger.warn(pattern, appendLogArguments);
+                    break;
+                }
+                default: {
+                    slf4jLogger.error(pattern, appendLogArguments);
+                }
+            }
         }
-        if (slf4jLogger != null) {
-            slf4jLogger.error(getActualLocation() + appendLogPattern, appendLogArguments);
-        } else {
-            System.out.println(message);
+    }
+
+    private boolean isSlf4jEnabled(LogLevel level) {
+        switch (level) {
+            case DEBUG: {
+                return slf4jLogger.isDebugEnabled();
+            }
+            case INFO: {
+                return slf4jLogger.isInfoEnabled();
+            }
+            case WARN: {
+                return slf4jLogger.isWarnEnabled();
+            }
+            default: {
+                return slf4jLogger.isErrorEnabled();
+            }
         }
     }
 
-    private String getActualLocation() {
-        StackTraceElement stackTraceElement = Thread
-                .currentThread()
-                .getStackTrace()[3];
-        return String.format("$Actual-Location - [%s:%s]$ - ", stackTraceElement.getFileName(), stackTraceElement.getLineNumber());
+    private static String getActualLocation(StackTraceElement location) {
+        return "$Actual-Location - [" + location.getFileName() + ":" + location.getLineNumber() + "]$ - ";
     }
 
-    private String getBindingTaskId() {
+    private Long getBindingTaskId() {
         if (heldTask != null && heldTask.getId() != null) {
-            return heldTask.getId() + "";
+            return heldTask.getId();
         }
-        return DefaultValueUtil.chooseString(TaskRunningContext
-                .getContextHolder()
-                .get() == null, null, "" + TaskRunningContext
+        return TaskRunningContext
                 .getContextHolder()
-                .get());
+                .get();
     }
 
-    private AutoJobTask getBindingTask() {
-        return heldTask == null ? TaskRunningContext
-                .getConcurrentThreadTask()
-                .get() : heldTask;
+    private static String getLevelMessage(LogLevel level, StackTraceElement location, String appendLogPattern, Object... appendLogArguments) {
+        StringBuilder message = new StringBuilder(64)
+                .append(now())
+                .append(" - ")
+                .append(level.name())
+                .append(" - [")
+                .append(getThreadName())
+                .append("] ");
+        if (location != null) {
+            message
+                    .append(location.getClassName())
+                    .append(" - [")
+                    .append(location.getFileName())
+                    .append(':')
+                    .append(location.getLineNumber())
+                    .append("] ");
+        }
+        return message
+                .append("- ")
+                .append(getFormatMessage(appendLogPattern, appendLogArguments))
+                .toString();
     }
 
-    private static String getLevelMessage(String level, String appendLogPattern, Object... appendLogArguments) {
-        return String.format("%s - %s - [%s] %s - %s", now(), level, getThreadName(), getLogLocation(), getFormatMessage(appendLogPattern, appendLogArguments));
+    /**
+     * 任务日志统一写入日志管道，不再经过消息队列，保留参数以兼容原接口，同样受任务日志限额约束
+     */
+    @Override
+    public void produce(MessageProducer<AutoJobLog> producer, String topic, AutoJobLog autoJobLog) {
+        if (autoJobLog == null) {
+            return;
+        }
+        LogLevel level = DefaultValueUtil.defaultValue(LogLevel.findByName(autoJobLog.getLevel()), LogLevel.INFO);
+        AutoJobLogLimiter limiter = AutoJobLogLimiter.getInstance();
+        if (!limiter.tryAcquire(autoJobLog.getTaskId(), level) || !limiter.tryAcquireSize(autoJobLog.getTaskId(), level, StringUtils.utf8Length(autoJobLog.getMessage()))) {
+            return;
+        }
+        AutoJobLogPipeline
+                .getInstance()
+                .publish(autoJobLog);
     }
 
-    private AutoJobLog getAutoJobLog(String message, String level) {
-        AutoJobLog autoJobLog = new AutoJobLog();
-        autoJobLog.setId(IdGenerator.getNextIdAsLong());
-        autoJobLog.setInputTime(DateUtils.getTime());
-        autoJobLog.setLevel(level);
-        autoJobLog.setTaskId(Long.parseLong(getBindingTaskId()));
-        autoJobLog.setMessage(message);
-        return autoJobLog;
+    /**
+     * 秒级时间格式的缓存，格式化结果在同一秒内复用
+     */
+    private static class CachedSecond {
+        private static final DateTimeFormatter FORMATTER = DateTimeFormatter
+                .ofPattern(DateUtils.YYYY_MM_DD_HH_MM_SS)
+                .withZone(ZoneId.systemDefault());
+        private static volatile CachedSecond cached = new CachedSecond(-1, null);
+
+        private final long second;
+        private final String text;
+
+        CachedSecond(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+
+        static String format(long millis) {
+            long second = millis / 1000;
+            CachedSecond current = cached;
+            if (current.second != second) {
+                current = new CachedSecond(second, FORMATTER.format(Instant.ofEpochSecond(second)));
+                cached = current;
+            }
+            return current.text;
+        }
     }
 
+    /**
+     * 日志级别与位置配置，配置加载后缓存，加载前使用默认值
+     */
+    @Getter
+    private static class LogSettings {
+        private static final LogSettings DEFAULT = new LogSettings(LogLevel.DEBUG, false);
+        private static volatile LogSettings loaded;
+
+        private final LogLevel level;
+        private final boolean enableLocation;
 
-    @Override
-    public void produce(MessageProducer<AutoJobLog> producer, String topic, AutoJobLog autoJobLog) {
+        LogSettings(LogLevel level, boolean enableLocation) {
+            this.level = level;
+            this.enableLocation = enableLocation;
+        }
 
-        if (producer != null && autoJobLog != null) {
-            if (!producer.hasTopic(topic)) {
-                producer.registerMessageQueue(topic);
+        static LogSettings get() {
+            LogSettings settings = loaded;
+            if (settings != null) {
+                return settings;
             }
-            AutoJobTask concurrentTask = getBindingTask();
-            if (concurrentTask != null) {
-                producer.publishMessageBlock(autoJobLog, topic, concurrentTask
-                        .getTrigger()
-                        .getMaximumExecutionTime() * 1000 + 10000, TimeUnit.MILLISECONDS);
-            } else {
-                producer.publishMessageBlock(autoJobLog, topic);
+            AutoJobConfigHolder configHolder = AutoJobApplication
+                    .getInstance()
+                    .getConfigHolder();
+            if (configHolder == null) {
+                return DEFAULT;
             }
+            AutoJobLogConfig logConfig = configHolder.getLogConfig();
+            settings = new LogSettings(DefaultValueUtil.defaultValue(logConfig.getTaskLogLevel(), LogLevel.DEBUG), DefaultValueUtil.defaultValue(logConfig.getEnableTaskLogLocation(), false));
+            loaded = settings;
+            return settings;
         }
     }
-
 }
@@ -0,0 +1,229 @@
+package com.example.autojob.logging.model.producer;
+
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.util.convert.DateUtils;
+import com.example.autojob.util.convert.DefaultValueUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务日志限额，默认关闭，按任务和级别统计每秒的日志条数和单次运行的日志大小（UTF-8字节数），超出限额的日志按采样率保留。
+ * 被丢弃的条数按级别汇总，每秒最多为任务补写一条警告日志，运行结束时补写剩余的汇总。
+ * 限额只作用于任务日志，slf4j代理和控制台输出不受影响
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/23 09:30
+ */
+public class AutoJobLogLimiter {
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private final boolean enable;
+    private final int linesPerSecond;
+    private final long sizePerRun;
+    private final int sampleRate;
+    private final int[] levelLinesPerSecond = new int[LEVELS.length];
+    private final long[] levelSizePerRun = new long[LEVELS.length];
+    private final Map<Long, TaskBudget> budgets = new ConcurrentHashMap<>();
+
+    private AutoJobLogLimiter() {
+        AutoJobConfigHolder configHolder = AutoJobApplication
+                .getInstance()
+                .getConfigHolder();
+        AutoJobLogConfig logConfig = configHolder == null ? new AutoJobLogConfig() : configHolder.getLogConfig();
+        this.enable = DefaultValueUtil.defaultValue(logConfig.getEnableTaskLogLimit(), false);
+        this.linesPerSecond = DefaultValueUtil.defaultValue(logConfig.getTaskLogLinesPerSecond(), 1000);
+        this.sizePerRun = DefaultValueUtil.defaultValue(logConfig.getTaskLogSizePerRun(), 32L * 1024 * 1024);
+        this.sampleRate = DefaultValueUtil.defaultValue(logConfig.getTaskLogLimitSampleRate(), 100);
+        for (LogLevel level : LEVELS) {
+            if (logConfig.getLevelLinesPerSecond() != null) {
+                levelLinesPerSecond[level.ordinal()] = DefaultValueUtil.defaultValue(logConfig
+                        .getLevelLinesPerSecond()
+                        .get(level), 0);
+            }
+            if (logConfig.getLevelSizePerRun() != null) {
+                levelSizePerRun[level.ordinal()] = DefaultValueUtil.defaultValue(logConfig
+                        .getLevelSizePerRun()
+                        .get(level), 0L);
+            }
+        }
+    }
+
+    public static AutoJobLogLimiter getInstance() {
+        return InstanceHolder.LIMITER;
+    }
+
+    /**
+     * 申请写入一条日志，在格式化之前调用，只检查条数限额
+     *
+     * @param taskId 任务ID
+     * @param level  日志级别
+     * @return boolean 是否允许写入
+     * @author Huang Yongxiang
+     * @date 2023/1/23 09:40
+     */
+    public boolean tryAcquire(long taskId, LogLevel level) {
+        if (!enable) {
+            return true;
+        }
+        TaskBudget budget = budgets.computeIfAbsent(taskId, id -> new TaskBudget());
+        String summary;
+        boolean allowed;
+        synchronized (budget) {
+            summary = budget.roll(System.currentTimeMillis() / 1000);
+            allowed = budget.acquireLine(level.ordinal());
+        }
+        if (summary != null) {
+            report(taskId, summary);
+        }
+        return allowed;
+    }
+
+    /**
+     * 申请写入格式化后的日志，检查单次运行的大小限额
+     *
+     * @param taskId 任务ID
+     * @param level  日志级别
+     * @param length 日志长度：UTF-8编码后的字节数
+     * @return boolean 是否允许写入
+     * @author Huang Yongxiang
+     * @date 2023/1/23 09:45
+     */
+    public boolean tryAcquireSize(long taskId, LogLevel level, int length) {
+        if (!enable) {
+            return true;
+        }
+        TaskBudget budget = budgets.computeIfAbsent(taskId, id -> new TaskBudget());
+        synchronized (budget) {
+            return budget.acquireSize(level.ordinal(), length);
+        }
+    }
+
+    /**
+     * 任务开始运行，重新计算单次运行的限额
+     *
+     * @param taskId 任务ID
+     * @author Huang Yongxiang
+     * @date 2023/1/23 09:50
+     */
+    public void startRun(long taskId) {
+        budgets.remove(taskId);
+    }
+
+    /**
+     * 任务运行结束，补写尚未汇总的丢弃条数
+     *
+     * @param taskId 任务ID
+     * @author Huang Yongxiang
+     * @date 2023/1/23 09:55
+     */
+    public void finishRun(long taskId) {
+        TaskBudget budget = budgets.remove(taskId);
+        if (budget == null) {
+            return;
+        }
+        String summary;
+        synchronized (budget) {
+            summary = budget.drainSummary();
+        }
+        if (summary != null) {
+            report(taskId, summary);
+        }
+    }
+
+    private void report(long taskId, String summary) {
+        AutoJobLogPipeline
+                .getInstance()
+                .publish(taskId, LogLevel.WARN, DateUtils.getTime(), summary);
+    }
+
+    /**
+     * 单个任务的限额统计，调用方需持有该对象的锁
+     */
+    private class TaskBudget {
+        private long windowSecond = -1;
+        private int windowLines;
+        private final int[] windowLevelLines = new int[LEVELS.length];
+        private long runSize;
+        private final long[] levelRunSize = new long[LEVELS.length];
+        private long overCount;
+        private final long[] dropped = new long[LEVELS.length];
+        private boolean hasDropped;
+
+        /**
+         * 进入新的一秒时重置条数统计，并返回上一秒及之前尚未汇总的丢弃条数
+         */
+        String roll(long second) {
+            if (second == windowSecond) {
+                return null;
+            }
+            windowSecond = second;
+            windowLines = 0;
+            for (int i = 0; i < windowLevelLines.length; i++) {
+                windowLevelLines[i] = 0;
+            }
+            return drainSummary();
+        }
+
+        boolean acquireLine(int levelIndex) {
+            windowLines++;
+            windowLevelLines[levelIndex]++;
+            boolean isOver = (linesPerSecond > 0 && windowLines > linesPerSecond) || (levelLinesPerSecond[levelIndex] > 0 && windowLevelLines[levelIndex] > levelLinesPerSecond[levelIndex]);
+            return !isOver || sample(levelIndex);
+        }
+
+        boolean acquireSize(int levelIndex, int length) {
+            boolean isOver = (sizePerRun > 0 && runSize + length > sizePerRun) || (levelSizePerRun[levelIndex] > 0 && levelRunSize[levelIndex] + length > levelSizePerRun[levelIndex]);
+            if (isOver && !sample(levelIndex)) {
+                return false;
+            }
+            runSize += length;
+            levelRunSize[levelIndex] += length;
+            return true;
+        }
+
+        /**
+         * 超出限额的日志保留第一条，之后每sampleRate条保留一条
+         */
+        private boolean sample(int levelIndex) {
+            if (sampleRate > 0 && overCount++ % sampleRate == 0) {
+                return true;
+            }
+            dropped[levelIndex]++;
+            hasDropped = true;
+            return false;
+        }
+
+        String drainSummary() {
+            if (!hasDropped) {
+                return null;
+            }
+            StringBuilder summary = new StringBuilder("日志超出限额，已丢弃");
+            boolean isFirst = true;
+            for (int i = 0; i < dropped.length; i++) {
+                if (dropped[i] == 0) {
+                    continue;
+                }
+                if (!isFirst) {
+                    summary.append('、');
+                }
+                summary
+                        .append(LEVELS[i].name())
+                        .append("日志")
+                        .append(dropped[i])
+                        .append("条");
+                dropped[i] = 0;
+                isFirst = false;
+            }
+            hasDropped = false;
+            return summary.toString();
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobLogLimiter LIMITER = new AutoJobLogLimiter();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.autojob.skeleton.cluster.api;
+
+import com.example.autojob.skeleton.annotation.AutoJobRPCClient;
+
+import java.util.List;
+
+/**
+ * 实体缓存失效的集群通信接口
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/13 11:00
+ */
+@AutoJobRPCClient("EntityCacheAPI")
+public interface AutoJobEntityCacheAPI extends ClusterAPI {
+    /**
+     * 失效节点上的实体缓存
+     *
+     * @param all     是否失效全部
+     * @param taskIds 失效的任务id，all为true时忽略
+     * @return java.lang.Boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/13 11:02
+     */
+    Boolean invalidate(Boolean all, List<Long> taskIds);
+}
@@ -0,0 +1,23 @@
+package com.example.autojob.skeleton.cluster.api;
+
+import com.example.autojob.skeleton.annotation.AutoJobRPCService;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
+
+import java.util.List;
+
+/**
+ * 实体缓存失效服务，接收其他节点广播的失效
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/13 11:05
+ */
+@AutoJobRPCService("EntityCacheAPI")
+public class AutoJobEntityCacheService implements AutoJobEntityCacheAPI {
+    @Override
+    public Boolean invalidate(Boolean all, List<Long> taskIds) {
+        AutoJobEntityCache
+                .getInstance()
+                .onRemoteInvalidate(all != null && all, taskIds);
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.autojob.skeleton.cluster.model;
 
+import com.example.autojob.skeleton.cluster.api.AutoJobEntityCacheAPI;
 import com.example.autojob.skeleton.framework.config.ClusterConfig;
 import com.example.autojob.skeleton.lang.WithDaemonThread;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
@@ -36,6 +37,8 @@ public class AutoJobClusterManager implements WithDaemonThread, IAutoJobEnd {
 
     private final Map<ClusterNode, AtomicInteger> clusterNodeOfflineCount;
 
+    private final Map<ClusterNode, AutoJobEntityCacheAPI> entityCacheAPIMap = new ConcurrentHashMap<>();
+
     public AutoJobClusterManager() {
         this.config = AutoJobApplication.getInstance().getConfigHolder().getClusterConfig();
         this.clusterContext = AutoJobClusterContext.builder().setOpenProtectedMode(config.getEnableProtectedModel()).setOpenProtectedModeThreshold(config.getOpenProtectedModelThreshold()).build();
@@ -118,6 +121,7 @@ public class AutoJobClusterManager implements WithDaemonThread, IAutoJobEnd {
                             if (clusterContext.offLine(node.getHost(), node.getPort())) {
                                 log.warn("节点：{}:{}已被剔除", node.getHost(), node.getPort());
                                 clusterClientMap.remove(node);
+                                entityCacheAPIMap.remove(node);
                                 clusterNodeOfflineCount.remove(node);
                             } else {
                                 clusterNodeOfflineCount.get(node).set(0);
@@ -132,6 +136,36 @@ public class AutoJobClusterManager implements WithDaemonThread, IAutoJobEnd {
         };
     }
 
+    /**
+     * 向所有在线节点广播实体缓存失效，广播失败时由调用方稍后重试，缓存过期兜底
+     *
+     * @param all     是否失效全部
+     * @param taskIds 失效的任务id
+     * @return boolean 是否已送达所有在线节点
+     * @author Huang Yongxiang
+     * @date 2023/1/13 11:10
+     */
+    public boolean broadcastEntityInvalidation(boolean all, List<Long> taskIds) {
+        boolean isAllReached = true;
+        for (ClusterNode node : clusterContext.getAllNodes()) {
+            if (isMe(node) || (node.getIsOnline() != null && !node.getIsOnline())) {
+                continue;
+            }
+            try {
+                entityCacheAPIMap
+                        .computeIfAbsent(node, n -> AutoJobApplication
+                                .getInstance()
+                                .getNetWorkManager()
+                                .getProxyInterface(AutoJobEntityCacheAPI.class, n.getHost(), n.getPort()))
+                        .invalidate(all, taskIds);
+            } catch (Exception e) {
+                log.warn("向节点：{}广播缓存失效失败：{}", node, e.getMessage());
+                isAllReached = false;
+            }
+        }
+        return isAllReached;
+    }
+
     private boolean isMe(ClusterNode node) {
         try {
             String host = InetUtil.getLocalhostIp();
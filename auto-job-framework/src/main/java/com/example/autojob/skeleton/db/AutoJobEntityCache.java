@@ -0,0 +1,320 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.cluster.model.AutoJobTaskTransferManager;
+import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
+import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfig;
+import com.example.autojob.util.bean.ObjectUtil;
+import com.example.autojob.util.cache.LocalCacheManager;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+import net.jodah.expiringmap.ExpirationPolicy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiPredicate;
+import java.util.function.LongFunction;
+
+/**
+ * 任务与触发器实体的读穿透缓存，任务按id缓存，触发器按所属任务id缓存。本地写入时立即失效，集群模式下任务API的写操作
+ * 返回前将失效同步广播给其他节点，其余写入以及发送失败的失效由周期广播兜底。缓存中实体的锁字段与change_time不随锁操作失效，不能作为判断依据，
+ * 调度器的认领与加锁仍直接读写数据库
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/13 10:10
+ */
+@Slf4j
+public class AutoJobEntityCache {
+    private static final int STRIPES = 64;
+
+    private final boolean enable;
+    private final LocalCacheManager<Long, AutoJobTaskEntity> taskCache;
+    private final LocalCacheManager<Long, AutoJobTriggerEntity> triggerCache;
+    /**
+     * 分段的失效版本号，加载前后版本号不一致说明加载期间发生了失效，加载的结果不放入缓存
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    /**
+     * 事务中失效的任务，事务结束后需再次失效并广播，防止事务提交前其他线程加载到旧值
+     */
+    private final ThreadLocal<Set<Long>> transactionInvalidations = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> transactionInvalidateAll = new ThreadLocal<>();
+    private final Set<Long> pendingBroadcast = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingBroadcastAll = new AtomicBoolean(false);
+    private final ScheduleTaskUtil broadcastThread;
+    /**
+     * 失效的发送方式，返回是否已送达所有在线节点
+     */
+    private volatile BiPredicate<Boolean, List<Long>> broadcaster = AutoJobEntityCache::broadcastToCluster;
+
+    private AutoJobEntityCache() {
+        AutoJobConfig config = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getAutoJobConfig();
+        this.enable = config.getEnableEntityCache();
+        this.taskCache = LocalCacheManager
+                .builder()
+                .setExpiringTime(config.getEntityCacheExpiringTime(), TimeUnit.MILLISECONDS)
+                .setMaxLength(config.getEntityCacheMaxSize())
+                .setPolicy(ExpirationPolicy.CREATED)
+                .build();
+        this.triggerCache = LocalCacheManager
+                .builder()
+                .setExpiringTime(config.getEntityCacheExpiringTime(), TimeUnit.MILLISECONDS)
+                .setMaxLength(config.getEntityCacheMaxSize())
+                .setPolicy(ExpirationPolicy.CREATED)
+                .build();
+        if (enable && config.getEnableCluster()) {
+            long interval = config.getEntityCacheBroadcastInterval();
+            broadcastThread = ScheduleTaskUtil.build(true, "entityCacheBroadcastThread");
+            broadcastThread.EFixedRateTask(() -> {
+                try {
+                    broadcast();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            broadcastThread = null;
+        }
+    }
+
+    public static AutoJobEntityCache getInstance() {
+        return InstanceHolder.CACHE;
+    }
+
+    /**
+     * 获取任务实体，缓存未命中时从数据库加载，返回的实体为共享对象，请勿修改
+     *
+     * @param taskId 任务id
+     * @return com.example.autojob.skeleton.db.entity.AutoJobTaskEntity
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:20
+     */
+    public AutoJobTaskEntity getTask(long taskId) {
+        return readThrough(taskCache, taskId, AutoJobMapperHolder.TASK_ENTITY_MAPPER::selectById);
+    }
+
+    /**
+     * 获取任务的触发器实体，缓存未命中时从数据库加载，返回的实体为共享对象，请勿修改
+     *
+     * @param taskId 任务id
+     * @return com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:22
+     */
+    public AutoJobTriggerEntity getTrigger(long taskId) {
+        return readThrough(triggerCache, taskId, AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER::selectOneByTaskId);
+    }
+
+    private <V> V readThrough(LocalCacheManager<Long, V> cache, long taskId, LongFunction<V> loader) {
+        if (!enable) {
+            return loader.apply(taskId);
+        }
+        V value = cache.get(taskId);
+        if (value != null) {
+            return value;
+        }
+        long generation = generations.get(stripe(taskId));
+        value = loader.apply(taskId);
+        //事务中可能读到未提交的数据，不放入缓存
+        //查询不到时结果为所有字段为空的实例，不放入缓存
+        if (!ObjectUtil.isNull(value) && !TransactionManager.isInTransaction() && generations.get(stripe(taskId)) == generation) {
+            cache.set(taskId, value);
+        }
+        return value;
+    }
+
+    /**
+     * 失效任务及其触发器的缓存，集群模式下同时广播给其他节点
+     *
+     * @param taskId 任务id
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:25
+     */
+    public void invalidate(long taskId) {
+        if (!enable) {
+            return;
+        }
+        invalidateLocal(taskId);
+        if (TransactionManager.isInTransaction()) {
+            Set<Long> invalidations = transactionInvalidations.get();
+            if (invalidations == null) {
+                invalidations = new HashSet<>();
+                transactionInvalidations.set(invalidations);
+            }
+            invalidations.add(taskId);
+        } else if (broadcastThread != null) {
+            pendingBroadcast.add(taskId);
+        }
+    }
+
+    public void invalidate(Collection<Long> taskIds) {
+        if (taskIds != null) {
+            taskIds.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * 失效全部缓存，用于无法确定受影响任务的批量更新
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:28
+     */
+    public void invalidateAll() {
+        if (!enable) {
+            return;
+        }
+        invalidateAllLocal();
+        if (TransactionManager.isInTransaction()) {
+            transactionInvalidateAll.set(true);
+        } else if (broadcastThread != null) {
+            pendingBroadcastAll.set(true);
+        }
+    }
+
+    /**
+     * 事务结束后调用，再次失效事务中涉及的任务并广播
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:30
+     */
+    public void afterTransaction() {
+        //外层的事务型工作单元尚未提交
+        if (TransactionManager.isInTransaction()) {
+            return;
+        }
+        if (transactionInvalidateAll.get() != null) {
+            transactionInvalidateAll.remove();
+            transactionInvalidations.remove();
+            invalidateAllLocal();
+            if (broadcastThread != null) {
+                pendingBroadcastAll.set(true);
+            }
+            return;
+        }
+        Set<Long> invalidations = transactionInvalidations.get();
+        if (invalidations == null) {
+            return;
+        }
+        transactionInvalidations.remove();
+        for (Long taskId : invalidations) {
+            invalidateLocal(taskId);
+            if (broadcastThread != null) {
+                pendingBroadcast.add(taskId);
+            }
+        }
+    }
+
+    /**
+     * 处理其他节点广播的失效，不再向外广播
+     *
+     * @param all     是否失效全部
+     * @param taskIds 失效的任务id
+     * @author Huang Yongxiang
+     * @date 2023/1/13 10:32
+     */
+    public void onRemoteInvalidate(boolean all, List<Long> taskIds) {
+        if (!enable) {
+            return;
+        }
+        if (all) {
+            invalidateAllLocal();
+        } else if (taskIds != null) {
+            taskIds.forEach(this::invalidateLocal);
+        }
+    }
+
+    private void invalidateLocal(long taskId) {
+        //先递增版本号再移除，正在加载的线程发现版本变化后不会写回旧值
+        generations.incrementAndGet(stripe(taskId));
+        taskCache.remove(taskId);
+        triggerCache.remove(taskId);
+    }
+
+    private void invalidateAllLocal() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        taskCache.clear();
+        triggerCache.clear();
+    }
+
+    /**
+     * 立即广播尚未广播的失效，供写接口在返回前调用，发送失败的失效留给周期广播重试
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/29 17:10
+     */
+    public void broadcastNow() {
+        if (broadcastThread != null) {
+            broadcast();
+        }
+    }
+
+    public int getPendingBroadcastCount() {
+        return pendingBroadcast.size();
+    }
+
+    void setBroadcaster(BiPredicate<Boolean, List<Long>> broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    private void broadcast() {
+        boolean all = pendingBroadcastAll.getAndSet(false);
+        List<Long> taskIds = new ArrayList<>();
+        for (Iterator<Long> iterator = pendingBroadcast.iterator(); iterator.hasNext(); ) {
+            taskIds.add(iterator.next());
+            iterator.remove();
+        }
+        if (!all && taskIds.isEmpty()) {
+            return;
+        }
+        boolean isSent = false;
+        try {
+            isSent = broadcaster.test(all, all ? Collections.emptyList() : taskIds);
+        } catch (Exception e) {
+            log.warn("广播缓存失效失败：{}", e.getMessage());
+        }
+        if (!isSent) {
+            //下次周期广播时重试
+            if (all) {
+                pendingBroadcastAll.set(true);
+            }
+            pendingBroadcast.addAll(taskIds);
+        }
+    }
+
+    private static boolean broadcastToCluster(boolean all, List<Long> taskIds) {
+        AutoJobTaskTransferManager transferManager = AutoJobApplication
+                .getInstance()
+                .getTransferManager();
+        if (transferManager == null) {
+            return false;
+        }
+        return transferManager
+                .getClusterManager()
+                .broadcastEntityInvalidation(all, taskIds);
+    }
+
+    private static int stripe(long taskId) {
+        return (int) ((taskId ^ (taskId >>> 32)) & (STRIPES - 1));
+    }
+
+    public void close() {
+        if (broadcastThread != null) {
+            broadcastThread.shutdown();
+            broadcast();
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobEntityCache CACHE = new AutoJobEntityCache();
+    }
+}
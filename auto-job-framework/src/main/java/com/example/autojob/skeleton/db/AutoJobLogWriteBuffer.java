@@ -0,0 +1,641 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.AutoJobLogTailNotifier;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.AutoJobLogSpillFile;
+import com.example.autojob.logging.model.file.AutoJobRunLogCodec;
+import com.example.autojob.logging.model.file.LogBlockCodec;
+import com.example.autojob.skeleton.db.entity.AutoJobLogEntity;
+import com.example.autojob.skeleton.db.entity.AutoJobRunLogEntity;
+import com.example.autojob.skeleton.db.entity.EntityConvertor;
+import com.example.autojob.skeleton.db.mapper.AutoJobLogEntityMapper;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.mapper.BaseMapper;
+import com.example.autojob.skeleton.enumerate.LogOverflowPolicy;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.util.bean.ObjectUtil;
+import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 数据库日志写缓冲，任务日志和运行日志先进入有界队列，由一个写入线程把所有任务的日志按分片合并，
+ * 以JDBC批量插入在一个事务中提交。队列已满时按配置阻塞、丢弃最早的日志或溢出到本地文件；
+ * 提交失败的批次改为逐条写入，写入失败的日志按指数退避重试，多次失败的日志作为死信丢弃；数据库不可用时暂停取出队列中的日志，
+ * BLOCK策略下一直重试不丢弃，其他策略超过重试次数后溢出到文件或丢弃。启用压缩时同一调度的任务日志合并为压缩的日志块写入。
+ * 队列深度、提交耗时等指标可通过getter获取
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/21 09:30
+ */
+@Slf4j
+public class AutoJobLogWriteBuffer {
+    private static final long MAX_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final AutoJobLogCodec LOG_CODEC = new AutoJobLogCodec();
+    private final BlockingQueue<AutoJobLog> logQueue;
+    private final BlockingQueue<AutoJobRunLog> runLogQueue;
+    private final LogOverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final int maxRetry;
+    private final long retryInterval;
+    private final boolean enableCompress;
+    /**
+     * 等待重试的批次，仅写入线程访问
+     */
+    private final List<PendingBatch> retryBatches = new LinkedList<>();
+    /**
+     * 逐条写入时各实体的失败次数，仅写入线程访问
+     */
+    private final Map<Long, Integer> rowAttempts = new HashMap<>();
+    private final AutoJobLogSpillFile<AutoJobLog> logSpillFile;
+    private final AutoJobLogSpillFile<AutoJobRunLog> runLogSpillFile;
+    private volatile boolean hasSpilled;
+    private final ScheduleTaskUtil flushThread;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean isClosed = false;
+
+    /*=================指标=================>*/
+    private final LongAdder committedCount = new LongAdder();
+    private final LongAdder commitCount = new LongAdder();
+    private final LongAdder commitLatencyTotal = new LongAdder();
+    private volatile long maxCommitLatency;
+    private volatile long lastCommitLatency;
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder deadLetterCount = new LongAdder();
+    /*=======================Finished======================<*/
+
+    private AutoJobLogWriteBuffer() {
+        AutoJobLogConfig config = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getLogConfig();
+        int capacity = DefaultValueUtil.defaultValue(config.getDbWriteQueueCapacity(), 10000);
+        this.logQueue = new LinkedBlockingQueue<>(capacity);
+        this.runLogQueue = new LinkedBlockingQueue<>(capacity);
+        this.overflowPolicy = DefaultValueUtil.defaultValue(config.getDbWriteOverflowPolicy(), LogOverflowPolicy.BLOCK);
+        this.batchSize = DefaultValueUtil.defaultValue(config.getDbWriteBatchSize(), 500);
+        this.maxRetry = DefaultValueUtil.defaultValue(config.getDbWriteMaxRetry(), 5);
+        this.retryInterval = DefaultValueUtil.defaultValue(config.getDbWriteRetryInterval(), 1000L);
+        this.enableCompress = DefaultValueUtil.defaultValue(config.getEnableDbCompress(), false);
+        if (overflowPolicy == LogOverflowPolicy.SPILL) {
+            File spillDirectory = new File(DefaultValueUtil.defaultValue(config.getFileStorePath(), "autoJobLogs"), "spill");
+            logSpillFile = new AutoJobLogSpillFile<>(new File(spillDirectory, "taskLog"), new AutoJobLogCodec());
+            runLogSpillFile = new AutoJobLogSpillFile<>(new File(spillDirectory, "runLog"), new AutoJobRunLogCodec());
+            hasSpilled = !logSpillFile.isEmpty() || !runLogSpillFile.isEmpty();
+        } else {
+            logSpillFile = null;
+            runLogSpillFile = null;
+        }
+        long interval = DefaultValueUtil.defaultValue(config.getDbWriteFlushInterval(), 200L);
+        flushThread = ScheduleTaskUtil.build(true, "logDBWriteThread");
+        flushThread.EFixedRateTask(() -> {
+            try {
+                flush(false);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static AutoJobLogWriteBuffer getInstance() {
+        return InstanceHolder.BUFFER;
+    }
+
+    /**
+     * 提交任务日志
+     *
+     * @param logs 任务日志
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:40
+     */
+    public void offerLogs(List<AutoJobLog> logs) {
+        offer(logQueue, logs, logSpillFile);
+    }
+
+    /**
+     * 提交运行日志
+     *
+     * @param runLogs 运行日志
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:42
+     */
+    public void offerRunLogs(List<AutoJobRunLog> runLogs) {
+        offer(runLogQueue, runLogs, runLogSpillFile);
+    }
+
+    private <L> void offer(BlockingQueue<L> queue, List<L> logs, AutoJobLogSpillFile<L> spillFile) {
+        if (logs == null || logs.isEmpty()) {
+            return;
+        }
+        List<L> overflow = null;
+        for (L entry : logs) {
+            if (queue.offer(entry)) {
+                continue;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST: {
+                    while (!queue.offer(entry)) {
+                        if (queue.poll() != null) {
+                            droppedCount.increment();
+                        }
+                    }
+                    break;
+                }
+                case SPILL: {
+                    if (overflow == null) {
+                        overflow = new ArrayList<>();
+                    }
+                    overflow.add(entry);
+                    break;
+                }
+                default: {
+                    requestFlush();
+                    putBlocking(queue, entry);
+                }
+            }
+        }
+        if (overflow != null) {
+            spill(spillFile, overflow);
+        }
+        //关闭后写入线程已停止，直接写入
+        if (isClosed) {
+            flush(true);
+        } else if (queue.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 阻塞直到队列有空位，关闭后不再等待
+     */
+    private <L> void putBlocking(BlockingQueue<L> queue, L entry) {
+        try {
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                if (isClosed) {
+                    droppedCount.increment();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            droppedCount.increment();
+            Thread
+                    .currentThread()
+                    .interrupt();
+        }
+    }
+
+    private <L> void spill(AutoJobLogSpillFile<L> spillFile, List<L> logs) {
+        if (spillFile != null && spillFile.append(logs)) {
+            hasSpilled = true;
+            spilledCount.add(logs.size());
+        } else {
+            droppedCount.add(logs.size());
+        }
+    }
+
+    /**
+     * 请求尽快写入一次，已有提前写入在排队时不重复提交
+     */
+    private void requestFlush() {
+        if (isClosed || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        flushThread.EOneTimeTask(() -> {
+            try {
+                flush(false);
+            } finally {
+                flushScheduled.set(false);
+            }
+            return null;
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入队列中的日志，先重试到期的失败批次。有批次因数据库不可用等待重试时不再取出队列中的日志，
+     * 队列写满后按溢出策略处理，BLOCK策略下提交日志的线程随之阻塞；队列空闲时回放溢出文件
+     *
+     * @param all 是否忽略退避时间重试所有失败批次，并且不论是否有等待重试的批次都取出队列中的日志
+     * @return int 写入的条数
+     * @author Huang Yongxiang
+     * @date 2023/1/21 09:50
+     */
+    public synchronized int flush(boolean all) {
+        int count = retry(all);
+        if (!all && isWaitingForDatabase()) {
+            return count;
+        }
+        List<AutoJobLog> logs = new ArrayList<>();
+        List<AutoJobRunLog> runLogs = new ArrayList<>();
+        logQueue.drainTo(logs);
+        runLogQueue.drainTo(runLogs);
+        if (!logs.isEmpty() || !runLogs.isEmpty()) {
+            count += commit(logs, runLogs);
+        } else if (hasSpilled && retryBatches.isEmpty()) {
+            count += replaySpilled();
+        }
+        return count;
+    }
+
+    private boolean isWaitingForDatabase() {
+        for (PendingBatch batch : retryBatches) {
+            if (batch.isUnreachable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按分片提交，同一分片的任务日志和运行日志在一个事务中写入，失败的分片改为逐条写入，仍未写入的进入重试
+     */
+    private int commit(List<AutoJobLog> logs, List<AutoJobRunLog> runLogs) {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        Map<Integer, List<AutoJobLog>> shardLogs = router.groupByShard(logs, AutoJobLog::getTaskId);
+        Map<Integer, List<AutoJobRunLog>> shardRunLogs = router.groupByShard(runLogs, runLog -> DefaultValueUtil.defaultValue(runLog.getTaskId(), 0L));
+        Set<Integer> shards = new TreeSet<>(shardLogs.keySet());
+        shards.addAll(shardRunLogs.keySet());
+        int count = 0;
+        for (int shard : shards) {
+            PendingBatch batch = new PendingBatch(shard, toLogEntities(shardLogs.getOrDefault(shard, Collections.emptyList())), toRunLogEntities(shardRunLogs.getOrDefault(shard, Collections.emptyList())));
+            count += write(batch);
+            if (!batch.isEmpty()) {
+                batch.attempts = 1;
+                batch.nextRetryTime = System.currentTimeMillis() + retryInterval;
+                retryBatches.add(batch);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 写入一个批次，整批提交失败时逐条写入，写入成功的实体从批次中移除
+     *
+     * @return int 写入的日志条数
+     */
+    private int write(PendingBatch batch) {
+        batch.isUnreachable = false;
+        int size = batch.size();
+        if (commit(batch)) {
+            batch.logEntities.clear();
+            batch.runLogEntities.clear();
+            return size;
+        }
+        int count = writeRows(batch.shard, batch.logEntities, AutoJobMapperHolder.LOG_ENTITY_MAPPER, AutoJobLogEntity::getId, batch);
+        if (!batch.isUnreachable) {
+            count += writeRows(batch.shard, batch.runLogEntities, AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER, AutoJobRunLogEntity::getId, batch);
+        }
+        if (count > 0) {
+            committedCount.add(count);
+            AutoJobLogTailNotifier
+                    .getInstance()
+                    .signal();
+        }
+        return count;
+    }
+
+    private boolean commit(PendingBatch batch) {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        long start = System.nanoTime();
+        try {
+            router.doInShard(batch.shard, () -> TransactionManager.doInUnitOfWork(router.getDataSourceHolder(batch.shard), true, () -> {
+                for (int i = 0; i < batch.logEntities.size(); i += batchSize) {
+                    AutoJobMapperHolder.LOG_ENTITY_MAPPER.insertList(batch.logEntities.subList(i, Math.min(i + batchSize, batch.logEntities.size())));
+                }
+                for (int i = 0; i < batch.runLogEntities.size(); i += batchSize) {
+                    AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER.insertList(batch.runLogEntities.subList(i, Math.min(i + batchSize, batch.runLogEntities.size())));
+                }
+                return null;
+            }));
+        } catch (Exception e) {
+            log.error("分片{}批量写入{}条日志失败，改为逐条写入：{}", batch.shard, batch.size(), e.getMessage());
+            return false;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastCommitLatency = latency;
+        if (latency > maxCommitLatency) {
+            maxCommitLatency = latency;
+        }
+        commitLatencyTotal.add(latency);
+        commitCount.increment();
+        committedCount.add(batch.size());
+        if (!batch.logEntities.isEmpty()) {
+            AutoJobLogTailNotifier
+                    .getInstance()
+                    .signal();
+        }
+        log.debug("分片{}批量写入{}条日志，耗时{}ms", batch.shard, batch.size(), latency);
+        return true;
+    }
+
+    /**
+     * 逐条写入一个分片的实体。写入失败但实体已在库中的视为成功，例如已提交却报告失败的事务；
+     * 数据库无法访问时停止写入并标记批次，剩余实体留在批次中且不计入失败次数；其余失败计入该实体的失败次数，超过上限后作为死信丢弃
+     *
+     * @param shard    分片
+     * @param entities 待写入的实体，写入成功和成为死信的实体会被移除
+     * @param mapper   实体对应的mapper
+     * @param idGetter 实体主键
+     * @param batch    实体所在的批次
+     * @return int 写入的日志条数
+     * @author Huang Yongxiang
+     * @date 2023/1/27 21:30
+     */
+    private <E> int writeRows(int shard, List<E> entities, BaseMapper<E> mapper, Function<E, Long> idGetter, PendingBatch batch) {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        int count = 0;
+        for (Iterator<E> iterator = entities.iterator(); iterator.hasNext(); ) {
+            E entity = iterator.next();
+            Long id = idGetter.apply(entity);
+            try {
+                router.doInShard(shard, () -> mapper.insertList(Collections.singletonList(entity)));
+                rowAttempts.remove(id);
+                iterator.remove();
+                count += logCount(entity);
+                continue;
+            } catch (Exception e) {
+                log.warn("分片{}写入日志{}失败：{}", shard, id, e.getMessage());
+            }
+            boolean isExist;
+            try {
+                isExist = !ObjectUtil.isNull(router.doInShard(shard, () -> mapper.selectById(id)));
+            } catch (Exception e) {
+                //数据库不可用，不是日志本身的问题
+                batch.isUnreachable = true;
+                return count;
+            }
+            if (isExist) {
+                rowAttempts.remove(id);
+                iterator.remove();
+                count += logCount(entity);
+                continue;
+            }
+            int attempts = rowAttempts.merge(id, 1, Integer::sum);
+            if (attempts >= maxRetry) {
+                rowAttempts.remove(id);
+                iterator.remove();
+                deadLetterCount.add(logCount(entity));
+                log.error("分片{}的日志写入{}次仍失败，已丢弃：{}", shard, attempts, entity);
+            }
+        }
+        return count;
+    }
+
+    private static int logCount(Object entity) {
+        if (entity instanceof AutoJobLogEntity) {
+            return DefaultValueUtil.defaultValue(((AutoJobLogEntity) entity).getLogCount(), 1);
+        }
+        return 1;
+    }
+
+    /**
+     * 重试到期的批次。数据库不可用的批次在BLOCK策略下一直重试，不会丢弃；其他策略下超过重试次数后溢出到文件或丢弃。
+     * 数据库可用但个别实体写入失败的批次由逐条写入的失败次数决定何时成为死信
+     */
+    private int retry(boolean all) {
+        if (retryBatches.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Iterator<PendingBatch> iterator = retryBatches.iterator(); iterator.hasNext(); ) {
+            PendingBatch batch = iterator.next();
+            if (!all && batch.nextRetryTime > now) {
+                continue;
+            }
+            retryCount.increment();
+            count += write(batch);
+            if (batch.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+            batch.attempts++;
+            if (batch.isUnreachable && overflowPolicy != LogOverflowPolicy.BLOCK && batch.attempts > maxRetry) {
+                iterator.remove();
+                giveUp(batch);
+            } else {
+                batch.nextRetryTime = now + Math.min(retryInterval << Math.min(batch.attempts - 1, 30), MAX_RETRY_INTERVAL);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 放弃写入的批次溢出到文件，未开启溢出时丢弃
+     */
+    private void giveUp(PendingBatch batch) {
+        batch.logEntities.forEach(entity -> rowAttempts.remove(entity.getId()));
+        batch.runLogEntities.forEach(entity -> rowAttempts.remove(entity.getId()));
+        if (overflowPolicy == LogOverflowPolicy.SPILL) {
+            log.warn("分片{}的{}条日志超过重试次数，写入溢出文件", batch.shard, batch.size());
+            List<AutoJobLog> logs = new ArrayList<>();
+            batch.logEntities.forEach(entity -> logs.addAll(EntityConvertor.logEntity2Logs(entity)));
+            spill(logSpillFile, logs);
+            spill(runLogSpillFile, batch.runLogEntities
+                    .stream()
+                    .map(EntityConvertor::runLogEntity2RunLog)
+                    .collect(Collectors.toList()));
+        } else {
+            log.error("分片{}的{}条日志超过重试次数，已丢弃", batch.shard, batch.size());
+            droppedCount.add(batch.size());
+        }
+    }
+
+    /**
+     * 回放最早的一个溢出文件，写入成功后删除
+     */
+    private int replaySpilled() {
+        int count = replaySpilled(logSpillFile, logs -> commit(logs, Collections.emptyList()));
+        count += replaySpilled(runLogSpillFile, runLogs -> commit(Collections.emptyList(), runLogs));
+        hasSpilled = !logSpillFile.isEmpty() || !runLogSpillFile.isEmpty();
+        return count;
+    }
+
+    /**
+     * 按批大小分段提交溢出文件中的日志，每段一个事务
+     */
+    private <L> int replaySpilled(AutoJobLogSpillFile<L> spillFile, ToIntFunction<List<L>> committer) {
+        File file = spillFile.oldest();
+        if (file == null) {
+            return 0;
+        }
+        List<L> logs = spillFile.read(file);
+        if (logs == null) {
+            return 0;
+        }
+        //提交失败的部分进入重试队列，文件即可删除
+        int count = 0;
+        for (int i = 0; i < logs.size(); i += batchSize) {
+            count += committer.applyAsInt(new ArrayList<>(logs.subList(i, Math.min(i + batchSize, logs.size()))));
+        }
+        spillFile.delete(file);
+        log.info("回放日志溢出文件{}，共{}条", file.getName(), logs.size());
+        return count;
+    }
+
+    /**
+     * 实体只转换一次，重试时沿用相同的主键。启用压缩时同一调度同一任务的日志合并为日志块，只有一条的仍逐条存放
+     */
+    private List<AutoJobLogEntity> toLogEntities(List<AutoJobLog> logs) {
+        if (!enableCompress) {
+            return logs
+                    .stream()
+                    .map(EntityConvertor::log2LogEntity)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        List<AutoJobLogEntity> entities = new ArrayList<>();
+        for (List<AutoJobLog> block : LogBlockCodec.split(logs, LOG_CODEC, AutoJobLogEntityMapper.BLOCK_SPAN, AutoJobLogEntityMapper.BLOCK_MAX_COUNT)) {
+            if (block.size() > 1) {
+                try {
+                    entities.add(EntityConvertor.logs2LogBlockEntity(block, true));
+                    continue;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            block
+                    .stream()
+                    .map(EntityConvertor::log2LogEntity)
+                    .forEach(entities::add);
+        }
+        return entities;
+    }
+
+    private static List<AutoJobRunLogEntity> toRunLogEntities(List<AutoJobRunLog> runLogs) {
+        return runLogs
+                .stream()
+                .map(EntityConvertor::runLog2RunLogEntity)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    public int getLogQueueDepth() {
+        return logQueue.size();
+    }
+
+    public int getRunLogQueueDepth() {
+        return runLogQueue.size();
+    }
+
+    public long getCommittedCount() {
+        return committedCount.sum();
+    }
+
+    /**
+     * 整批提交成功的次数
+     */
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    /**
+     * 平均每次提交的耗时：ms
+     */
+    public long getAverageCommitLatency() {
+        long commits = commitCount.sum();
+        return commits == 0 ? 0 : commitLatencyTotal.sum() / commits;
+    }
+
+    public long getMaxCommitLatency() {
+        return maxCommitLatency;
+    }
+
+    public long getLastCommitLatency() {
+        return lastCommitLatency;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * 多次写入失败后丢弃的日志条数
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.sum();
+    }
+
+    /**
+     * 关闭写入线程，写入剩余日志，仍失败的日志溢出到文件或丢弃
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/21 10:00
+     */
+    public void close() {
+        isClosed = true;
+        flushThread.shutdown();
+        int count;
+        synchronized (this) {
+            count = flush(true);
+            retryBatches.forEach(this::giveUp);
+            retryBatches.clear();
+            if (logSpillFile != null) {
+                logSpillFile.close();
+                runLogSpillFile.close();
+            }
+        }
+        if (count > 0) {
+            log.info("关闭前写入{}条缓冲的日志", count);
+        }
+    }
+
+    private static class PendingBatch {
+        private final int shard;
+        private final List<AutoJobLogEntity> logEntities;
+        private final List<AutoJobRunLogEntity> runLogEntities;
+        private int attempts;
+        private long nextRetryTime;
+        /**
+         * 最近一次写入是否因数据库不可用而中止
+         */
+        private boolean isUnreachable;
+
+        PendingBatch(int shard, List<AutoJobLogEntity> logEntities, List<AutoJobRunLogEntity> runLogEntities) {
+            this.shard = shard;
+            this.logEntities = logEntities;
+            this.runLogEntities = runLogEntities;
+        }
+
+        /**
+         * 批次中的日志条数，日志块按块内条数计
+         */
+        int size() {
+            int size = runLogEntities.size();
+            for (AutoJobLogEntity entity : logEntities) {
+                size += logCount(entity);
+            }
+            return size;
+        }
+
+        boolean isEmpty() {
+            return logEntities.isEmpty() && runLogEntities.isEmpty();
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobLogWriteBuffer BUFFER = new AutoJobLogWriteBuffer();
+    }
+}
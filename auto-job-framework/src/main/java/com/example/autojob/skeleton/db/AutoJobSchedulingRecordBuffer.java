@@ -0,0 +1,369 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
+import com.example.autojob.skeleton.db.entity.AutoJobSchedulingRecordEntity;
+import com.example.autojob.skeleton.db.entity.EntityConvertor;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfig;
+import com.example.autojob.util.bean.ObjectUtil;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 调度记录缓冲，调度开始时记录只保存在内存中，结束时带上执行结果一次性写入，多条记录按数量或时间阈值批量提交。
+ * 运行超过标记阈值的调度会先写入一条运行中的记录作为标记，结束时再更新结果，应用崩溃后仍能从标记看到中断的调度；
+ * 短于阈值的调度在崩溃时不会留下记录。批量写入失败时逐条重写，单条记录多次写入失败后作为死信记录到错误日志并丢弃，
+ * 避免一条无法写入的记录使整个分片的记录无限重试。运行中的调度只按调度ID对应，结束时找不到对应的运行中调度或调度属于其他任务时
+ * 只记录日志，不会改写其他调度的记录
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/15 10:10
+ */
+@Slf4j
+public class AutoJobSchedulingRecordBuffer {
+    /**
+     * 单条记录最多的写入次数，超过后作为死信丢弃
+     */
+    private static final int MAX_ROW_ATTEMPTS = 3;
+    /**
+     * 正在运行的调度，调度ID=>记录
+     */
+    private final Map<Long, InFlightRecord> inFlight = new ConcurrentHashMap<>();
+    /**
+     * 待插入的完整记录
+     */
+    private final Queue<AutoJobSchedulingRecordEntity> pendingInserts = new ConcurrentLinkedQueue<>();
+    /**
+     * 已写入标记、待更新结果的记录
+     */
+    private final Queue<AutoJobSchedulingRecordEntity> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    /**
+     * 逐条写入失败的次数，记录ID=>次数，仅在flush中访问
+     */
+    private final Map<Long, Integer> rowAttempts = new HashMap<>();
+    private final LongAdder deadLetterCount = new LongAdder();
+    private final boolean enable;
+    private final int batchSize;
+    private final long markerThreshold;
+    private final ScheduleTaskUtil flushThread;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean isClosed = false;
+
+    private AutoJobSchedulingRecordBuffer() {
+        AutoJobConfig config = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getAutoJobConfig();
+        this.enable = config.getEnableSchedulingRecordGroupCommit();
+        this.batchSize = config.getSchedulingRecordBatchSize();
+        this.markerThreshold = config.getSchedulingRecordMarkerThreshold();
+        if (enable) {
+            long interval = config.getSchedulingRecordFlushInterval();
+            flushThread = ScheduleTaskUtil.build(true, "schedulingRecordFlushThread");
+            flushThread.EFixedRateTask(() -> {
+                try {
+                    writeMarkers(false);
+                    flush();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            flushThread = null;
+        }
+    }
+
+    public static AutoJobSchedulingRecordBuffer getInstance() {
+        return InstanceHolder.BUFFER;
+    }
+
+    /**
+     * 调度开始，未启用缓冲时直接插入运行中的记录
+     *
+     * @param record 调度记录
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:20
+     */
+    public boolean begin(AutoJobSchedulingRecord record) {
+        if (!isBuffered()) {
+            return AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(Collections.singletonList(EntityConvertor.schedulingRecord2Entity(record))) == 1;
+        }
+        inFlight.put(record.getSchedulingId(), new InFlightRecord(record));
+        return true;
+    }
+
+    /**
+     * 调度结束，写入执行结果
+     *
+     * @param record        调度记录
+     * @param isSuccess     是否成功
+     * @param result        执行结果
+     * @param executionTime 执行时长：ms
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:25
+     */
+    public void finish(AutoJobSchedulingRecord record, boolean isSuccess, String result, long executionTime) {
+        InFlightRecord inFlightRecord = inFlight.get(record.getSchedulingId());
+        if (inFlightRecord == null) {
+            //开始时未经过缓冲，记录已在库中
+            if (!isBuffered()) {
+                AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.updateResult(record.getSchedulingId(), isSuccess, result, executionTime);
+                return;
+            }
+            log.warn("调度{}不在运行中的调度里，可能已经结束或从未开始，忽略本次结束", record.getSchedulingId());
+            return;
+        }
+        if (!Objects.equals(inFlightRecord.record.getTaskId(), record.getTaskId())) {
+            log.error("调度{}属于任务{}，不能按任务{}的结果结束，已丢弃该运行中的调度", record.getSchedulingId(), inFlightRecord.record.getTaskId(), record.getTaskId());
+            inFlight.remove(record.getSchedulingId(), inFlightRecord);
+            return;
+        }
+        inFlight.remove(record.getSchedulingId(), inFlightRecord);
+        synchronized (inFlightRecord) {
+            inFlightRecord.isFinished = true;
+            record.setRun(false);
+            record.setSuccess(isSuccess);
+            record.setResult(result);
+            record.setExecutionTime(executionTime);
+            AutoJobSchedulingRecordEntity entity = EntityConvertor.schedulingRecord2Entity(record);
+            if (isClosed) {
+                if (inFlightRecord.isMarked) {
+                    AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.updateResults(Collections.singletonList(entity));
+                } else {
+                    AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(Collections.singletonList(entity));
+                }
+                return;
+            }
+            (inFlightRecord.isMarked ? pendingUpdates : pendingInserts).offer(entity);
+        }
+        //达到数量阈值时提前写入，已有提前写入在排队时不重复提交
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 请求由写入线程尽快写入一次，已有提前写入在排队时不重复提交
+     */
+    private void requestFlush() {
+        if (isClosed || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushThread.EOneTimeTask(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushScheduled.set(false);
+                }
+                return null;
+            }, 0, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //缓冲正在关闭，剩余的记录由关闭时写入
+            flushScheduled.set(false);
+        }
+    }
+
+    private boolean isBuffered() {
+        return enable && !isClosed;
+    }
+
+    /**
+     * 将已结束调度的记录全部写入，同一分片的插入与结果更新在一个事务中提交，失败时该分片的记录逐条写入
+     *
+     * @return int 写入的记录数
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:30
+     */
+    public synchronized int flush() {
+        List<AutoJobSchedulingRecordEntity> inserts = drain(pendingInserts);
+        List<AutoJobSchedulingRecordEntity> updates = drain(pendingUpdates);
+        if (inserts.isEmpty() && updates.isEmpty()) {
+            return 0;
+        }
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        Map<Integer, List<AutoJobSchedulingRecordEntity>> shardInserts = router.groupByShard(inserts, AutoJobSchedulingRecordEntity::getTaskId);
+        Map<Integer, List<AutoJobSchedulingRecordEntity>> shardUpdates = router.groupByShard(updates, AutoJobSchedulingRecordEntity::getTaskId);
+        Set<Integer> shards = new TreeSet<>(shardInserts.keySet());
+        shards.addAll(shardUpdates.keySet());
+        int total = 0;
+        for (int shard : shards) {
+            List<AutoJobSchedulingRecordEntity> insertsOfShard = shardInserts.getOrDefault(shard, Collections.emptyList());
+            List<AutoJobSchedulingRecordEntity> updatesOfShard = shardUpdates.getOrDefault(shard, Collections.emptyList());
+            try {
+                total += router.doInShard(shard, () -> TransactionManager.doInUnitOfWork(router.getDataSourceHolder(shard), true, () -> {
+                    for (int i = 0; i < insertsOfShard.size(); i += batchSize) {
+                        AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(insertsOfShard.subList(i, Math.min(i + batchSize, insertsOfShard.size())));
+                    }
+                    for (int i = 0; i < updatesOfShard.size(); i += batchSize) {
+                        AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.updateResults(updatesOfShard.subList(i, Math.min(i + batchSize, updatesOfShard.size())));
+                    }
+                    return insertsOfShard.size() + updatesOfShard.size();
+                }));
+            } catch (Exception e) {
+                log.error("分片{}批量写入调度记录失败，改为逐条写入：{}", shard, e.getMessage());
+                total += writeRows(shard, insertsOfShard, pendingInserts, true);
+                total += writeRows(shard, updatesOfShard, pendingUpdates, false);
+            }
+        }
+        log.debug("批量写入{}条调度记录", total);
+        return total;
+    }
+
+    /**
+     * 逐条写入一个分片的记录。写入失败但记录已在库中的视为成功，例如已提交却报告失败的事务；
+     * 数据库无法访问时剩余的记录原样放回缓冲，不计入失败次数；其余失败计入该记录的失败次数，超过上限后作为死信丢弃
+     *
+     * @param shard    分片
+     * @param entities 要写入的记录
+     * @param queue    失败时放回的缓冲队列
+     * @param isInsert 是否为插入，否则为结果更新
+     * @return int 写入的记录数
+     * @author Huang Yongxiang
+     * @date 2023/1/27 17:10
+     */
+    private int writeRows(int shard, List<AutoJobSchedulingRecordEntity> entities, Queue<AutoJobSchedulingRecordEntity> queue, boolean isInsert) {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        int count = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            AutoJobSchedulingRecordEntity entity = entities.get(i);
+            try {
+                router.doInShard(shard, () -> isInsert ? AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(Collections.singletonList(entity)) : AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.updateResults(Collections.singletonList(entity)));
+                rowAttempts.remove(entity.getId());
+                count++;
+                continue;
+            } catch (Exception e) {
+                log.warn("分片{}写入调度记录{}失败：{}", shard, entity.getId(), e.getMessage());
+            }
+            boolean isExist;
+            try {
+                isExist = !ObjectUtil.isNull(router.doInShard(shard, () -> AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.selectById(entity.getId())));
+            } catch (Exception e) {
+                //数据库不可用，不是记录本身的问题
+                List<AutoJobSchedulingRecordEntity> rest = entities.subList(i, entities.size());
+                queue.addAll(rest);
+                pendingCount.addAndGet(rest.size());
+                return count;
+            }
+            if (isExist && isInsert) {
+                rowAttempts.remove(entity.getId());
+                count++;
+                continue;
+            }
+            int attempts = rowAttempts.merge(entity.getId(), 1, Integer::sum);
+            if (attempts >= MAX_ROW_ATTEMPTS) {
+                rowAttempts.remove(entity.getId());
+                deadLetterCount.increment();
+                log.error("调度记录写入{}次仍失败，已丢弃：{}", attempts, entity);
+            } else {
+                queue.offer(entity);
+                pendingCount.incrementAndGet();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 正在运行、尚未结束的调度数
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 多次写入失败后丢弃的记录数
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.sum();
+    }
+
+    /**
+     * 为运行超过阈值的调度写入运行中的标记
+     *
+     * @param all 是否忽略阈值为所有正在运行的调度写入标记
+     * @return int 写入的标记数
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:35
+     */
+    private int writeMarkers(boolean all) {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (InFlightRecord inFlightRecord : inFlight.values()) {
+            if (!all && now - inFlightRecord.beginTime < markerThreshold) {
+                continue;
+            }
+            synchronized (inFlightRecord) {
+                if (inFlightRecord.isFinished || inFlightRecord.isMarked) {
+                    continue;
+                }
+                try {
+                    AutoJobSchedulingRecordEntity marker = EntityConvertor
+                            .schedulingRecord2Entity(inFlightRecord.record)
+                            .setIsRun(1);
+                    AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.insertList(Collections.singletonList(marker));
+                    inFlightRecord.isMarked = true;
+                    count++;
+                } catch (Exception e) {
+                    //标记写入失败时结束后按完整记录插入
+                    log.warn("写入调度{}的运行标记失败：{}", inFlightRecord.record.getSchedulingId(), e.getMessage());
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<AutoJobSchedulingRecordEntity> drain(Queue<AutoJobSchedulingRecordEntity> queue) {
+        List<AutoJobSchedulingRecordEntity> entities = new ArrayList<>();
+        AutoJobSchedulingRecordEntity entity;
+        while ((entity = queue.poll()) != null) {
+            entities.add(entity);
+        }
+        pendingCount.addAndGet(-entities.size());
+        return entities;
+    }
+
+    /**
+     * 关闭缓冲，写入剩余的记录并为仍在运行的调度写入标记，关闭后的记录将直接写入数据库
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:45
+     */
+    public void close() {
+        isClosed = true;
+        if (flushThread != null) {
+            flushThread.shutdown();
+        }
+        int count = flush();
+        int markers = writeMarkers(true);
+        if (count > 0 || markers > 0) {
+            log.info("关闭前写入{}条缓冲的调度记录，{}条运行中的调度标记", count, markers);
+        }
+    }
+
+    private static class InFlightRecord {
+        private final AutoJobSchedulingRecord record;
+        private final long beginTime = System.currentTimeMillis();
+        private boolean isMarked;
+        private boolean isFinished;
+
+        InFlightRecord(AutoJobSchedulingRecord record) {
+            this.record = record;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobSchedulingRecordBuffer BUFFER = new AutoJobSchedulingRecordBuffer();
+    }
+}
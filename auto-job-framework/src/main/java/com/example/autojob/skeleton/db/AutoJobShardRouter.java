@@ -0,0 +1,176 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 分片路由，主连接池为0号分片，分片连接池依次编号。任务、触发器、调度记录与日志按任务ID路由到同一个分片，
+ * Mapper在分片作用域内执行的SQL使用该分片的连接，不在任何作用域内时使用主连接池。未配置分片时所有操作直接执行
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/16 10:20
+ */
+@Slf4j
+public class AutoJobShardRouter {
+    private final List<DataSourceHolder> dataSourceHolders;
+    private final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    private AutoJobShardRouter() {
+        List<DataSourceHolder> holders = new ArrayList<>();
+        holders.add(AutoJobApplication
+                .getInstance()
+                .getDataSourceHolder());
+        holders.addAll(AutoJobApplication
+                .getInstance()
+                .getShardDataSourceHolders());
+        this.dataSourceHolders = Collections.unmodifiableList(holders);
+        if (isSharded()) {
+            log.info("已启用{}个数据库分片", holders.size());
+        }
+    }
+
+    public static AutoJobShardRouter getInstance() {
+        return InstanceHolder.ROUTER;
+    }
+
+    public int getShardCount() {
+        return dataSourceHolders.size();
+    }
+
+    public boolean isSharded() {
+        return dataSourceHolders.size() > 1;
+    }
+
+    public DataSourceHolder getDataSourceHolder(int shard) {
+        return dataSourceHolders.get(shard);
+    }
+
+    public List<DataSourceHolder> getDataSourceHolders() {
+        return dataSourceHolders;
+    }
+
+    /**
+     * 获取分片键所在的分片，雪花ID的低位在低并发下几乎恒为0，需先打散再取模。取模路由在分片数改变后会重新分配几乎所有任务，
+     * 已有数据不会随之迁移，因此分片布局在首次启动时记录，之后不允许改变，见{@link com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator#checkShardLayout(DataSourceHolder, int, int)}
+     *
+     * @param key 分片键，即任务ID
+     * @return int
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:25
+     */
+    public int shardOf(long key) {
+        if (!isSharded()) {
+            return 0;
+        }
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) dataSourceHolders.size());
+    }
+
+    /**
+     * 获取当前作用域的连接池，不在分片作用域内时返回主连接池
+     *
+     * @return com.example.autojob.skeleton.db.DataSourceHolder
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:28
+     */
+    public DataSourceHolder currentDataSourceHolder() {
+        Integer shard = currentShard.get();
+        return dataSourceHolders.get(shard == null ? 0 : shard);
+    }
+
+    /**
+     * 在指定分片的作用域内执行操作，作用域可以嵌套，结束后恢复外层作用域
+     *
+     * @param shard  分片号
+     * @param action 要执行的操作
+     * @return R
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:30
+     */
+    public <R> R doInShard(int shard, Supplier<R> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        Integer outer = currentShard.get();
+        if (outer != null && outer == shard) {
+            return action.get();
+        }
+        currentShard.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(outer);
+            }
+        }
+    }
+
+    /**
+     * 在分片键所在分片的作用域内执行操作
+     *
+     * @param key    分片键，即任务ID
+     * @param action 要执行的操作
+     * @return R
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:32
+     */
+    public <R> R route(long key, Supplier<R> action) {
+        return doInShard(shardOf(key), action);
+    }
+
+    /**
+     * 在每个分片上依次执行操作
+     *
+     * @param action 要执行的操作
+     * @return java.util.List<R> 各分片的结果，按分片号排列
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:35
+     */
+    public <R> List<R> fanOut(Supplier<R> action) {
+        if (!isSharded()) {
+            return Collections.singletonList(action.get());
+        }
+        List<R> results = new ArrayList<>(dataSourceHolders.size());
+        for (int i = 0; i < dataSourceHolders.size(); i++) {
+            results.add(doInShard(i, action));
+        }
+        return results;
+    }
+
+    /**
+     * 将元素按分片分组，分组内保持原有顺序
+     *
+     * @param elements  元素
+     * @param keyMapper 分片键
+     * @return java.util.Map<java.lang.Integer, java.util.List < T>> 分片号=>元素
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:38
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> elements, ToLongFunction<T> keyMapper) {
+        Map<Integer, List<T>> groups = new TreeMap<>();
+        if (elements == null) {
+            return groups;
+        }
+        for (T element : elements) {
+            groups
+                    .computeIfAbsent(shardOf(keyMapper.applyAsLong(element)), shard -> new ArrayList<>())
+                    .add(element);
+        }
+        return groups;
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobShardRouter ROUTER = new AutoJobShardRouter();
+    }
+}
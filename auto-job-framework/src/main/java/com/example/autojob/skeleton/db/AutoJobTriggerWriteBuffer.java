@@ -0,0 +1,336 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.mapper.AutoJobTriggerEntityMapper;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfig;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 触发器状态写缓冲，同一触发器的连续更新在缓冲中按写入顺序合并为一次更新，达到数量或时间阈值后以JDBC批量的方式写入，
+ * 应用关闭时会将缓冲中剩余的更新全部写入
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/09 10:20
+ */
+@Slf4j
+public class AutoJobTriggerWriteBuffer {
+    private static final int RUN = 1;
+    private static final int STATUS = 1 << 1;
+    private static final int NEXT_TIME = 1 << 2;
+
+    private final Map<Long, PendingUpdate> pending = new ConcurrentHashMap<>();
+    /**
+     * 按列组合缓存的更新语句
+     */
+    private final Map<Integer, String> sqlCache = new ConcurrentHashMap<>();
+    private final boolean enable;
+    private final int batchSize;
+    private final ScheduleTaskUtil flushThread;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean isClosed = false;
+
+    private AutoJobTriggerWriteBuffer() {
+        AutoJobConfig config = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getAutoJobConfig();
+        this.enable = config.getEnableTriggerWriteBehind();
+        this.batchSize = config.getTriggerWriteBehindBatchSize();
+        if (enable) {
+            long interval = config.getTriggerWriteBehindFlushInterval();
+            flushThread = ScheduleTaskUtil.build(true, "triggerWriteBufferFlushThread");
+            flushThread.EFixedRateTask(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            flushThread = null;
+        }
+    }
+
+    public static AutoJobTriggerWriteBuffer getInstance() {
+        return InstanceHolder.BUFFER;
+    }
+
+    /**
+     * 更新任务的运行状态
+     *
+     * @param isRunning 是否正在运行
+     * @param taskId    任务id
+     * @author Huang Yongxiang
+     * @date 2023/1/9 10:30
+     */
+    public void updateOperatingStatus(boolean isRunning, long taskId) {
+        if (!isBuffered()) {
+            AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateOperatingStatus(isRunning, taskId);
+            return;
+        }
+        merge(taskId, update -> {
+            update.mask |= RUN;
+            update.isRun = isRunning ? 1 : 0;
+        });
+    }
+
+    /**
+     * 更新触发器状态，参数同{@link AutoJobTriggerEntityMapper#updateStatus(int, long, long, long, boolean, long)}
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/9 10:32
+     */
+    public void updateStatus(int finishedTimes, long lastTriggeringTime, long nextTriggeringTime, long lastRunTime, boolean isLastSuccess, long taskId) {
+        if (!isBuffered()) {
+            AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateStatus(finishedTimes, lastTriggeringTime, nextTriggeringTime, lastRunTime, isLastSuccess, taskId);
+            return;
+        }
+        merge(taskId, update -> {
+            update.mask |= STATUS;
+            update.mask &= ~NEXT_TIME;
+            update.finishedTimes = finishedTimes;
+            update.lastTriggeringTime = lastTriggeringTime;
+            update.nextTriggeringTime = nextTriggeringTime;
+            update.lastRunTime = lastRunTime;
+            update.isLastSuccess = isLastSuccess ? 1 : 0;
+        });
+    }
+
+    /**
+     * 更新下次触发时间
+     *
+     * @param taskId         任务id
+     * @param triggeringTime 下次触发时间
+     * @author Huang Yongxiang
+     * @date 2023/1/9 10:35
+     */
+    public void updateTriggeringTime(long taskId, long triggeringTime) {
+        if (!isBuffered()) {
+            AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateTriggeringTime(taskId, triggeringTime);
+            return;
+        }
+        merge(taskId, update -> {
+            //已有完整状态更新时直接覆盖其中的下次触发时间即可
+            if ((update.mask & STATUS) == 0) {
+                update.mask |= NEXT_TIME;
+            }
+            update.nextTriggeringTime = triggeringTime;
+        });
+    }
+
+    private boolean isBuffered() {
+        return enable && !isClosed;
+    }
+
+    private void merge(long taskId, Consumer<PendingUpdate> merger) {
+        pending.compute(taskId, (id, update) -> {
+            if (update == null) {
+                update = new PendingUpdate(id);
+            }
+            merger.accept(update);
+            return update;
+        });
+        //达到数量阈值时提前写入，已有提前写入在排队时不重复提交
+        if (pending.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 请求由写入线程尽快写入一次，已有提前写入在排队时不重复提交
+     */
+    private void requestFlush() {
+        if (isClosed || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushThread.EOneTimeTask(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushScheduled.set(false);
+                }
+                return null;
+            }, 0, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //缓冲正在关闭，剩余的更新由关闭时写入
+            flushScheduled.set(false);
+        }
+    }
+
+    /**
+     * 将缓冲中的更新全部写入，同一时刻只会有一个线程写入，保证同一触发器的更新按顺序落库
+     *
+     * @return int 写入的触发器数
+     * @author Huang Yongxiang
+     * @date 2023/1/9 10:40
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<PendingUpdate> updates = new ArrayList<>();
+        for (Long taskId : new ArrayList<>(pending.keySet())) {
+            PendingUpdate update = pending.remove(taskId);
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        int count = 0;
+        //每个分片的所有批次在一个事务中提交，连接只借还一次，失败时该分片整体回滚后放回缓冲
+        for (Map.Entry<Integer, List<PendingUpdate>> shardEntry : router
+                .groupByShard(updates, update -> update.taskId)
+                .entrySet()) {
+            int shard = shardEntry.getKey();
+            Map<Integer, List<PendingUpdate>> batches = new HashMap<>();
+            for (PendingUpdate update : shardEntry.getValue()) {
+                batches
+                        .computeIfAbsent(update.mask, mask -> new ArrayList<>())
+                        .add(update);
+            }
+            try {
+                count += router.doInShard(shard, () -> TransactionManager.doInUnitOfWork(router.getDataSourceHolder(shard), true, () -> writeBatches(batches)));
+            } catch (Exception e) {
+                //期间产生的新更新优先
+                log.error("批量写入触发器状态失败，将在下次重试：{}", e.getMessage());
+                shardEntry
+                        .getValue()
+                        .forEach(update -> pending.merge(update.taskId, update, (newer, older) -> newer.absorbOlder(older)));
+            }
+        }
+        log.debug("批量写入{}个触发器状态", count);
+        return count;
+    }
+
+    private int writeBatches(Map<Integer, List<PendingUpdate>> batches) {
+        int count = 0;
+        for (Map.Entry<Integer, List<PendingUpdate>> entry : batches.entrySet()) {
+            String sql = sqlCache.computeIfAbsent(entry.getKey(), AutoJobTriggerWriteBuffer::buildSql);
+            List<PendingUpdate> updates = entry.getValue();
+            for (int i = 0; i < updates.size(); i += batchSize) {
+                List<PendingUpdate> batch = updates.subList(i, Math.min(i + batchSize, updates.size()));
+                Object[][] params = new Object[batch.size()][];
+                for (int j = 0; j < batch.size(); j++) {
+                    params[j] = batch
+                            .get(j)
+                            .toParams();
+                }
+                AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateBatch(sql, params);
+                count += batch.size();
+                //事务型工作单元中的失效会在提交后再次执行并广播
+                batch.forEach(update -> AutoJobEntityCache
+                        .getInstance()
+                        .invalidate(update.taskId));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 关闭缓冲，关闭前会将剩余更新全部写入，关闭后的更新将直接写入数据库
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/9 10:45
+     */
+    public void close() {
+        isClosed = true;
+        if (flushThread != null) {
+            flushThread.shutdown();
+        }
+        int count = flush();
+        if (count > 0) {
+            log.info("关闭前写入{}个缓冲的触发器状态", count);
+        }
+    }
+
+    private static String buildSql(int mask) {
+        StringBuilder sql = new StringBuilder("update " + AutoJobTriggerEntityMapper.TABLE_NAME + " set ");
+        if ((mask & RUN) != 0) {
+            sql.append("is_run = ?, ");
+        }
+        if ((mask & STATUS) != 0) {
+            sql.append("finished_times = ?, next_triggering_time = ?, last_triggering_time = ?, is_last_success = ?, last_run_time = ?, change_time = ?, ");
+        } else if ((mask & NEXT_TIME) != 0) {
+            sql.append("next_triggering_time = ?, change_time = ?, ");
+        }
+        sql.setLength(sql.length() - 2);
+        return sql
+                .append(" where task_id = ? and del_flag = 0")
+                .toString();
+    }
+
+    private static class PendingUpdate {
+        private final long taskId;
+        private int mask;
+        private Integer isRun;
+        private Integer finishedTimes;
+        private Long lastTriggeringTime;
+        private Long nextTriggeringTime;
+        private Long lastRunTime;
+        private Integer isLastSuccess;
+
+        PendingUpdate(long taskId) {
+            this.taskId = taskId;
+        }
+
+        /**
+         * 合并一个更早的更新，本更新未涉及的列取旧值
+         */
+        PendingUpdate absorbOlder(PendingUpdate older) {
+            if ((mask & RUN) == 0 && (older.mask & RUN) != 0) {
+                mask |= RUN;
+                isRun = older.isRun;
+            }
+            if ((mask & STATUS) == 0 && (older.mask & STATUS) != 0) {
+                finishedTimes = older.finishedTimes;
+                lastTriggeringTime = older.lastTriggeringTime;
+                lastRunTime = older.lastRunTime;
+                isLastSuccess = older.isLastSuccess;
+                if ((mask & NEXT_TIME) == 0) {
+                    nextTriggeringTime = older.nextTriggeringTime;
+                }
+                mask = (mask | STATUS) & ~NEXT_TIME;
+            } else if ((mask & (STATUS | NEXT_TIME)) == 0 && (older.mask & NEXT_TIME) != 0) {
+                mask |= NEXT_TIME;
+                nextTriggeringTime = older.nextTriggeringTime;
+            }
+            return this;
+        }
+
+        Object[] toParams() {
+            //变更时间取实际写入的时刻而非进入缓冲的时刻，避免落后于其他节点的变更水位
+            long changeTime = System.currentTimeMillis();
+            List<Object> params = new ArrayList<>(8);
+            if ((mask & RUN) != 0) {
+                params.add(isRun);
+            }
+            if ((mask & STATUS) != 0) {
+                params.add(finishedTimes);
+                params.add(nextTriggeringTime);
+                params.add(lastTriggeringTime);
+                params.add(isLastSuccess);
+                params.add(lastRunTime);
+                params.add(changeTime);
+            } else if ((mask & NEXT_TIME) != 0) {
+                params.add(nextTriggeringTime);
+                params.add(changeTime);
+            }
+            params.add(taskId);
+            return params.toArray();
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final AutoJobTriggerWriteBuffer BUFFER = new AutoJobTriggerWriteBuffer();
+    }
+}
@@ -22,16 +22,27 @@ public class DataSourceHolder {
     private final DataSource dataSource;
 
     public DataSourceHolder() {
+        this("druid.properties");
+    }
+
+    /**
+     * 通过类路径下的druid配置文件创建连接池
+     *
+     * @param configPath 配置文件路径
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:10
+     */
+    public DataSourceHolder(String configPath) {
         try {
             InputStream in = JdbcUtils.class
                     .getClassLoader()
-                    .getResourceAsStream("druid.properties");
+                    .getResourceAsStream(configPath);
             Properties properties = new Properties();
             properties.load(in);
             dataSource = DruidDataSourceFactory.createDataSource(properties);
         } catch (Exception e) {
             e.printStackTrace();
-            throw new RuntimeException("druid连接池初始化失败...");
+            throw new RuntimeException("druid连接池初始化失败：" + configPath);
         }
 
     }
@@ -1,6 +1,9 @@
 package com.example.autojob.skeleton.db;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.function.Supplier;
 
 /**
  * OrientDB会话事务管理器
@@ -11,8 +14,38 @@ import java.sql.Connection;
 public class TransactionManager {
     private static final ThreadLocal<Boolean> isOpenTransaction = new ThreadLocal<>();
     private static final ThreadLocal<Connection> currentConnection = new ThreadLocal<>();
+    /**
+     * 事务所属的数据源，分片时只有同一数据源上的操作才会加入事务
+     */
+    private static final ThreadLocal<DataSourceHolder> transactionDataSourceHolder = new ThreadLocal<>();
+    /**
+     * 工作单元绑定的连接，工作单元内的所有SQL操作复用该连接
+     */
+    private static final ThreadLocal<Connection> unitConnection = new ThreadLocal<>();
+    private static final ThreadLocal<DataSourceHolder> unitDataSourceHolder = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> isTransactionalUnit = new ThreadLocal<>();
+    /**
+     * 事务型工作单元内开启的事务以保存点实现
+     */
+    private static final ThreadLocal<Savepoint> currentSavepoint = new ThreadLocal<>();
 
     public static boolean openTransaction(DataSourceHolder dataSourceHolder) {
+        Connection unit = getUnitConnection(dataSourceHolder);
+        if (unit != null) {
+            try {
+                if (isTransactionalUnit()) {
+                    currentSavepoint.set(unit.setSavepoint());
+                } else {
+                    unit.setAutoCommit(false);
+                }
+            } catch (SQLException e) {
+                return false;
+            }
+            isOpenTransaction.set(true);
+            currentConnection.set(unit);
+            transactionDataSourceHolder.set(dataSourceHolder);
+            return true;
+        }
         isOpenTransaction.set(true);
         Connection connection = dataSourceHolder.getConnection();
         try {
@@ -22,17 +55,75 @@ public class TransactionManager {
             return false;
         }
         currentConnection.set(connection);
+        transactionDataSourceHolder.set(dataSourceHolder);
         return true;
     }
 
     public static void closeTransaction() {
         isOpenTransaction.set(false);
         isOpenTransaction.remove();
-        if (currentConnection.get() != null) {
+        Connection connection = currentConnection.get();
+        currentConnection.remove();
+        transactionDataSourceHolder.remove();
+        if (connection == null) {
+            return;
+        }
+        if (connection == unitConnection.get()) {
+            Savepoint savepoint = currentSavepoint.get();
+            currentSavepoint.remove();
+            try {
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                } else {
+                    connection.commit();
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception ignored) {
+            }
+            return;
+        }
+        try {
+            connection.commit();
+            connection.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * 回滚当前事务并结束事务，工作单元内的事务只回滚到事务开始时，不影响工作单元中之前的操作
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/14 10:05
+     */
+    public static void rollbackTransaction() {
+        isOpenTransaction.set(false);
+        isOpenTransaction.remove();
+        Connection connection = currentConnection.get();
+        currentConnection.remove();
+        transactionDataSourceHolder.remove();
+        if (connection == null) {
+            return;
+        }
+        if (connection == unitConnection.get()) {
+            Savepoint savepoint = currentSavepoint.get();
+            currentSavepoint.remove();
+            try {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                } else {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception ignored) {
+            }
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (Exception ignored) {
+        } finally {
             try {
-                currentConnection.get().commit();
-                currentConnection.get().close();
-                currentConnection.remove();
+                connection.close();
             } catch (Exception ignored) {
             }
         }
@@ -42,6 +133,17 @@ public class TransactionManager {
         return isOpenTransaction.get() != null && isOpenTransaction.get();
     }
 
+    /**
+     * 当前线程的写入是否尚未提交，处于事务或事务型工作单元中时为true
+     *
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/14 10:08
+     */
+    public static boolean isInTransaction() {
+        return isOpenTransaction() || isTransactionalUnit();
+    }
+
     /**
      * 获取当前线程绑定的会话实例
      *
@@ -52,4 +154,106 @@ public class TransactionManager {
     public static Connection getCurrentConnection() {
         return currentConnection.get();
     }
+
+    /**
+     * 获取当前线程在给定数据源上开启的事务连接，事务不属于该数据源时返回null
+     *
+     * @param dataSourceHolder 数据源
+     * @return java.sql.Connection
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:45
+     */
+    public static Connection getTransactionConnection(DataSourceHolder dataSourceHolder) {
+        if (!isOpenTransaction() || dataSourceHolder == null || transactionDataSourceHolder.get() != dataSourceHolder) {
+            return null;
+        }
+        return currentConnection.get();
+    }
+
+    /**
+     * 获取当前线程工作单元绑定的连接，工作单元不属于给定数据源时返回null
+     *
+     * @param dataSourceHolder 数据源
+     * @return java.sql.Connection
+     * @author Huang Yongxiang
+     * @date 2023/1/14 10:10
+     */
+    public static Connection getUnitConnection(DataSourceHolder dataSourceHolder) {
+        if (dataSourceHolder == null || unitDataSourceHolder.get() != dataSourceHolder) {
+            return null;
+        }
+        return unitConnection.get();
+    }
+
+    private static boolean isTransactionalUnit() {
+        return isTransactionalUnit.get() != null && isTransactionalUnit.get();
+    }
+
+    public static void doInUnitOfWork(boolean transactional, Runnable work) {
+        doInUnitOfWork(AutoJobShardRouter
+                .getInstance()
+                .currentDataSourceHolder(), transactional, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在工作单元中执行操作，工作单元内通过Mapper执行的SQL复用同一个连接，避免一次调度周期内反复借还连接。
+     * 事务型工作单元的所有写入在结束时一起提交，执行出现异常时全部回滚，只应用于可整体重试的写入；
+     * 已处于工作单元或事务中时直接加入外层
+     *
+     * @param dataSourceHolder 数据源
+     * @param transactional    是否以一个事务提交工作单元内的写入
+     * @param work             要执行的操作
+     * @return R
+     * @author Huang Yongxiang
+     * @date 2023/1/14 10:15
+     */
+    public static <R> R doInUnitOfWork(DataSourceHolder dataSourceHolder, boolean transactional, Supplier<R> work) {
+        if (unitConnection.get() != null || isOpenTransaction()) {
+            return work.get();
+        }
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            return work.get();
+        }
+        boolean isSuccess = false;
+        try {
+            if (transactional) {
+                connection.setAutoCommit(false);
+            }
+            unitConnection.set(connection);
+            unitDataSourceHolder.set(dataSourceHolder);
+            isTransactionalUnit.set(transactional);
+            R result = work.get();
+            if (transactional) {
+                connection.commit();
+            }
+            isSuccess = true;
+            return result;
+        } catch (SQLException e) {
+            throw new AutoJobSQLException("工作单元提交失败：" + e.getMessage(), e);
+        } finally {
+            unitConnection.remove();
+            unitDataSourceHolder.remove();
+            isTransactionalUnit.remove();
+            currentSavepoint.remove();
+            if (transactional) {
+                try {
+                    if (!isSuccess) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                }
+            }
+            dataSourceHolder.release(connection);
+            if (transactional) {
+                AutoJobEntityCache
+                        .getInstance()
+                        .afterTransaction();
+            }
+        }
+    }
 }
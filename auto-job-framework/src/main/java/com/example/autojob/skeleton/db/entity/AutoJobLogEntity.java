@@ -57,5 +57,14 @@ public class AutoJobLogEntity implements Serializable {
 
     private Integer delFlag;
 
+    /**
+     * 日志条数，逐条存放的日志为1，日志块为块内的条数
+     */
+    private Integer logCount;
+
+    /**
+     * 日志块内容，逐条存放的日志为null
+     */
+    private byte[] content;
 
 }
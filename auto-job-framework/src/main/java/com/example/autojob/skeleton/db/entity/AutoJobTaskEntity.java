@@ -91,6 +91,21 @@ public class AutoJobTaskEntity {
      */
     private Integer runLock;
 
+    /**
+     * 锁持有者
+     */
+    private String lockOwner;
+
+    /**
+     * 锁租约到期时间戳
+     */
+    private Long lockExpire;
+
+    /**
+     * 加锁令牌，每次加锁都会生成新的令牌，解锁时需要校验
+     */
+    private Long lockVersion;
+
     /**
      * 任务优先级
      */
@@ -101,6 +116,11 @@ public class AutoJobTaskEntity {
      */
     private Long version;
 
+    /**
+     * 是否是最新版本 0-否 1-是
+     */
+    private Integer isLatest;
+
     /**
      * 预留字段，所属于
      */
@@ -95,6 +95,11 @@ public class AutoJobTriggerEntity implements Serializable {
      */
     private Timestamp createTime;
 
+    /**
+     * 最近一次影响调度的变更时间戳，DB调度器据此增量拉取被修改的触发器
+     */
+    private Long changeTime;
+
     /**
      * 逻辑删除标识
      */
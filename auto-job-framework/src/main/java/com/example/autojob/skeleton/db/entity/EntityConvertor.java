@@ -3,7 +3,12 @@ package com.example.autojob.skeleton.db.entity;
 import com.example.autojob.logging.domain.AutoJobLog;
 import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.LogBlockCodec;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.enumerate.LogLevel;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
 import com.example.autojob.skeleton.framework.task.AutoJobTrigger;
 import com.example.autojob.skeleton.model.executor.IMethodObjectFactory;
@@ -16,10 +21,11 @@ import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.convert.StringUtils;
 import com.example.autojob.util.id.IdGenerator;
 
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.text.ParseException;
-import java.util.Arrays;
-import java.util.Date;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +35,12 @@ import java.util.stream.Collectors;
  * @Date 2022/08/20 17:38
  */
 public class EntityConvertor {
+    private static final AutoJobLogCodec LOG_CODEC = new AutoJobLogCodec();
+    /**
+     * 已解析的类缓存，DB任务每次轮询都会重新转化，避免重复的类加载查找
+     */
+    private static final Map<String, Class<?>> CLASS_CACHE = new ConcurrentHashMap<>();
+
     public static AutoJobTaskEntity task2TaskEntity(AutoJobTask task, Long triggerId) {
         AutoJobTaskEntity entity = new AutoJobTaskEntity();
         entity.setId(task.getId());
@@ -87,7 +99,54 @@ public class EntityConvertor {
         if (ObjectUtil.isNull(entity)) {
             return null;
         }
-        AutoJobTriggerEntity triggerEntity = AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.selectOneByTaskId(entity.getId());
+        return taskEntity2Task(entity, AutoJobEntityCache
+                .getInstance()
+                .getTrigger(entity.getId()));
+    }
+
+    /**
+     * 批量将任务实体转化为任务，所有任务的触发器通过一次查询取出，避免逐个任务查询触发器
+     *
+     * @param entities 任务实体
+     * @return java.util.List<com.example.autojob.skeleton.framework.task.AutoJobTask>
+     * @author Huang Yongxiang
+     * @date 2023/1/5 10:20
+     */
+    public static List<AutoJobTask> taskEntities2Tasks(List<AutoJobTaskEntity> entities) {
+        if (entities == null || entities.size() == 0) {
+            return Collections.emptyList();
+        }
+        //触发器与任务位于同一分片，按分片分别查询
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        Map<Long, AutoJobTriggerEntity> triggerEntityMap = new HashMap<>();
+        router
+                .groupByShard(entities
+                        .stream()
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()), AutoJobTaskEntity::getId)
+                .forEach((shard, shardEntities) -> {
+                    List<Long> triggerIds = shardEntities
+                            .stream()
+                            .map(AutoJobTaskEntity::getTriggerId)
+                            .filter(Objects::nonNull)
+                            .distinct()
+                            .collect(Collectors.toList());
+                    router
+                            .doInShard(shard, () -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.selectByIds(triggerIds))
+                            .forEach(trigger -> triggerEntityMap.putIfAbsent(trigger.getId(), trigger));
+                });
+        return entities
+                .stream()
+                .filter(entity -> !ObjectUtil.isNull(entity))
+                .map(entity -> taskEntity2Task(entity, entity.getTriggerId() == null ? null : triggerEntityMap.get(entity.getTriggerId())))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    public static AutoJobTask taskEntity2Task(AutoJobTaskEntity entity, AutoJobTriggerEntity triggerEntity) {
+        if (ObjectUtil.isNull(entity)) {
+            return null;
+        }
         if (entity.getType() == 0) {
             MethodTask task = new MethodTask();
             task.setId(entity.getId());
@@ -95,10 +154,10 @@ public class EntityConvertor {
             task.setTaskLevel(entity.getTaskLevel());
             task.setType(AutoJobTask.TaskType.DB_TASK);
             task.setMethodClassName(entity.getMethodClassName());
-            task.setMethodClass(ObjectUtil.classPath2Class(entity.getMethodClassName()));
+            task.setMethodClass(loadClass(entity.getMethodClassName()));
             task.setMethodName(entity.getMethodName());
             if (!StringUtils.isEmpty(entity.getMethodObjectFactory())) {
-                task.setMethodObjectFactory((IMethodObjectFactory) ObjectUtil.getClassInstance(ObjectUtil.classPath2Class(entity.getMethodObjectFactory())));
+                task.setMethodObjectFactory((IMethodObjectFactory) ObjectUtil.getClassInstance(loadClass(entity.getMethodObjectFactory())));
             }
             task.setParamsString(entity.getParams());
             if (!StringUtils.isEmpty(entity.getParams())) {
@@ -150,6 +209,20 @@ public class EntityConvertor {
         return null;
     }
 
+    private static Class<?> loadClass(String className) {
+        if (StringUtils.isEmpty(className)) {
+            return null;
+        }
+        Class<?> clazz = CLASS_CACHE.get(className);
+        if (clazz == null) {
+            clazz = ObjectUtil.classPath2Class(className);
+            if (clazz != null) {
+                CLASS_CACHE.put(className, clazz);
+            }
+        }
+        return clazz;
+    }
+
     public static AutoJobTrigger triggerEntity2Trigger(AutoJobTriggerEntity entity) {
         if (ObjectUtil.isNull(entity)) {
             return null;
@@ -175,6 +248,7 @@ public class EntityConvertor {
         trigger.setLastRunTime(entity.getLastRunTime());
         trigger.setRepeatTimes(entity.getRepeatTimes());
         trigger.setFinishedTimes(entity.getFinishedTimes());
+        trigger.setChangeTime(entity.getChangeTime());
         return trigger;
     }
 
@@ -206,6 +280,7 @@ public class EntityConvertor {
         entity.setLastTriggeringTime(trigger.getLastTriggeringTime());
         entity.setRepeatTimes(trigger.getRepeatTimes());
         entity.setTaskId(trigger.getTaskId());
+        entity.setChangeTime(System.currentTimeMillis());
         return entity;
     }
 
@@ -227,7 +302,7 @@ public class EntityConvertor {
 
     public static AutoJobLogEntity log2LogEntity(AutoJobLog log) {
         AutoJobLogEntity entity = new AutoJobLogEntity();
-        entity.setId(IdGenerator.getNextIdAsLong());
+        entity.setId(getLogId(log));
         entity.setLogLevel(log.getLevel());
         entity.setTaskId(log.getTaskId());
         entity.setSchedulingId(log.getSchedulingId());
@@ -246,9 +321,89 @@ public class EntityConvertor {
         }
         entity.setWriteTime(timestamp);
         entity.setWriteTimestamp(timestamp == null ? System.currentTimeMillis() : timestamp.getTime());
+        entity.setLogCount(1);
+        return entity;
+    }
+
+    /**
+     * 将同一调度同一任务的多条日志转换为一个日志块，块内日志沿用日志管道预留的ID，块的ID为块内最大的日志ID，
+     * 写入时间为块内最早的日志时间，日志级别为块内最严重的级别
+     *
+     * @param logs     同一调度同一任务的日志
+     * @param compress 是否压缩
+     * @return com.example.autojob.skeleton.db.entity.AutoJobLogEntity
+     * @author Huang Yongxiang
+     * @date 2023/1/22 10:10
+     */
+    public static AutoJobLogEntity logs2LogBlockEntity(List<AutoJobLog> logs, boolean compress) throws IOException {
+        List<AutoJobLog> blockLogs = new ArrayList<>(logs.size());
+        long minTime = Long.MAX_VALUE;
+        LogLevel maxLevel = null;
+        for (AutoJobLog log : logs) {
+            AutoJobLog blockLog = new AutoJobLog()
+                    .setId(getLogId(log))
+                    .setSchedulingId(log.getSchedulingId())
+                    .setTaskId(log.getTaskId())
+                    .setInputTime(log.getInputTime())
+                    .setLevel(log.getLevel())
+                    .setMessage(log.getMessage());
+            blockLogs.add(blockLog);
+            minTime = Math.min(minTime, LOG_CODEC.getTime(blockLog));
+            LogLevel level = LogLevel.findByName(log.getLevel());
+            if (level != null && (maxLevel == null || level.ordinal() > maxLevel.ordinal())) {
+                maxLevel = level;
+            }
+        }
+        AutoJobLogEntity entity = new AutoJobLogEntity();
+        entity.setId(blockLogs
+                .stream()
+                .mapToLong(AutoJobLog::getId)
+                .max()
+                .getAsLong());
+        entity.setSchedulingId(logs
+                .get(0)
+                .getSchedulingId());
+        entity.setTaskId(logs
+                .get(0)
+                .getTaskId());
+        entity.setWriteTimestamp(minTime);
+        entity.setWriteTime(new Timestamp(minTime));
+        entity.setLogLevel(maxLevel == null ? null : maxLevel.name());
+        entity.setLogCount(blockLogs.size());
+        entity.setContent(LogBlockCodec.encode(blockLogs, LOG_CODEC, compress));
         return entity;
     }
 
+    /**
+     * 日志管道写入的日志已分配ID，沿用该ID；未分配ID的日志在转换时生成
+     */
+    private static long getLogId(AutoJobLog log) {
+        return log.getId() > 0 ? log.getId() : IdGenerator.getNextIdAsLong();
+    }
+
+    /**
+     * 将日志实体还原为日志，日志块会解码为块内的全部日志，解码失败时返回空列表
+     *
+     * @param entity 日志实体
+     * @return java.util.List<com.example.autojob.logging.domain.AutoJobLog>
+     * @author Huang Yongxiang
+     * @date 2023/1/22 10:15
+     */
+    public static List<AutoJobLog> logEntity2Logs(AutoJobLogEntity entity) {
+        if (ObjectUtil.isNull(entity)) {
+            return Collections.emptyList();
+        }
+        if (entity.getContent() == null) {
+            return Collections.singletonList(logEntity2Log(entity));
+        }
+        try {
+            return LogBlockCodec.decode(entity.getContent(), LOG_CODEC);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
     public static AutoJobRunLog runLogEntity2RunLog(AutoJobRunLogEntity entity) {
         if (ObjectUtil.isNull(entity)) {
             return null;
@@ -1,10 +1,9 @@
 package com.example.autojob.skeleton.db.mapper;
 
 import com.example.autojob.skeleton.db.entity.AutoJobLogEntity;
+import com.example.autojob.util.id.IdGenerator;
 
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * 任务日志持久层对象mapper
@@ -16,12 +15,28 @@ public class AutoJobLogEntityMapper extends BaseMapper<AutoJobLogEntity> {
     /**
      * 所有列
      */
-    public static final String ALL_COLUMNS = "id, scheduling_id, task_id, write_timestamp,write_time, log_level, message, del_flag";
+    public static final String ALL_COLUMNS = "id, scheduling_id, task_id, write_timestamp,write_time, log_level, message, del_flag, log_count, content";
     /**
      * 表名
      */
     public static final String TABLE_NAME = "aj_job_logs";
 
+    /**
+     * 日志写入时间相对调度ID生成时间的容差：ms。调度ID与日志可能由不同节点生成，写入时间也可能被截断到秒，
+     * 该下界只用于分区裁剪，放宽容差最多多扫描一个相邻分区，但过窄会在节点时钟偏差时漏查日志
+     */
+    private static final long SCHEDULING_TIME_TOLERANCE = 10 * 60 * 1000;
+
+    /**
+     * 一个日志块内最早与最晚日志的最大时间差：ms，块的写入时间为块内最早的日志时间，按时间查询时下界需放宽该值
+     */
+    public static final long BLOCK_SPAN = 60 * 1000;
+
+    /**
+     * 一个日志块的最大条数
+     */
+    public static final int BLOCK_MAX_COUNT = 1000;
+
 
     public AutoJobLogEntityMapper() {
         super(AutoJobLogEntity.class);
@@ -29,27 +44,102 @@ public class AutoJobLogEntityMapper extends BaseMapper<AutoJobLogEntity> {
 
     public List<AutoJobLogEntity> selectLogByTaskId(long taskId) {
         String condition = " where del_flag = 0 and task_id = ?";
-        return queryList(getSelectExpression() + condition, taskId);
+        return inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId));
     }
 
     public int deleteByTaskId(long taskId) {
-        String condition = " where del_flag = 0";
-        return updateOne(getLogicDeleteExpression() + condition);
+        String condition = " where del_flag = 0 and task_id = ?";
+        return inShard(taskId, () -> updateOne(getLogicDeleteExpression() + condition, taskId));
     }
 
+    /**
+     * 查询任务在时间范围内的日志，写入时间早于开始时间的日志块可能包含范围内的日志，一并返回，
+     * 块内日志需调用方按时间过滤
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param taskId    任务id
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobLogEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/22 10:30
+     */
     public List<AutoJobLogEntity> selectByTaskIdBetween(Date startTime, Date endTime, long taskId) {
         String condition = " where task_id = ? AND del_flag = 0 AND write_timestamp >= ? AND write_timestamp <= ?";
-        return queryList(getSelectExpression() + condition, taskId, startTime.getTime(), endTime.getTime());
+        List<AutoJobLogEntity> entities = inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId, startTime.getTime() - BLOCK_SPAN, endTime.getTime()));
+        entities.removeIf(entity -> entity.getContent() == null && entity.getWriteTimestamp() != null && entity.getWriteTimestamp() < startTime.getTime());
+        return entities;
+    }
+
+    /**
+     * 游标分页查询任务的日志，按id升序即按写入顺序返回，日志块的id为块内最大的日志id，块内可能包含id不大于lastId的日志
+     *
+     * @param taskId 任务id
+     * @param lastId 上一页最后一条日志的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobLogEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:55
+     */
+    public List<AutoJobLogEntity> selectByTaskIdAfter(long taskId, Long lastId, int size) {
+        String condition = " where task_id = ? and del_flag = 0 and id > ? order by id " + getLimitSql(size);
+        return inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId, lastId == null ? Long.MIN_VALUE : lastId));
     }
 
     public List<AutoJobLogEntity> selectBySchedulingId(Long schedulingId) {
         if (schedulingId == null) {
             return Collections.emptyList();
         }
-        String condition = " where scheduling_id = ? and del_flag = 0";
-        return queryList(getSelectExpression() + condition, schedulingId);
+        //日志均在调度ID生成之后写入，带上写入时间下界使分区表只扫描调度之后的分区
+        String condition = " where scheduling_id = ? and del_flag = 0 and write_timestamp >= ?";
+        long from = IdGenerator.getTimestamp(schedulingId) - SCHEDULING_TIME_TOLERANCE;
+        //调度ID不含任务信息，分片时需查询所有分片
+        return mergeShards(() -> queryList(getSelectExpression() + condition, schedulingId, from));
     }
 
+    /**
+     * 增量查询某次调度在游标之后的日志，按id升序返回，日志块内可能包含id不大于lastId的日志
+     *
+     * @param schedulingId 调度id
+     * @param lastId       上次查询到的最后一条日志的id，为null时从头查询
+     * @param size         最多返回的行数
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobLogEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/24 09:40
+     */
+    public List<AutoJobLogEntity> selectBySchedulingIdAfter(Long schedulingId, Long lastId, int size) {
+        if (schedulingId == null) {
+            return Collections.emptyList();
+        }
+        String condition = " where scheduling_id = ? and del_flag = 0 and write_timestamp >= ? and id > ? order by id " + getLimitSql(size);
+        long from = IdGenerator.getTimestamp(schedulingId) - SCHEDULING_TIME_TOLERANCE;
+        List<AutoJobLogEntity> entities = mergeShards(() -> queryList(getSelectExpression() + condition, schedulingId, from, lastId == null ? Long.MIN_VALUE : lastId));
+        entities.sort(Comparator.comparing(AutoJobLogEntity::getId));
+        return entities.size() > size ? new ArrayList<>(entities.subList(0, size)) : entities;
+    }
+
+    /**
+     * 分块删除写入时间早于指定时间的日志
+     *
+     * @param timestamp 早于该时间的日志会被删除
+     * @param chunkSize 块大小
+     * @return int 本次删除的日志数
+     * @author Huang Yongxiang
+     * @date 2023/1/11 14:30
+     */
+    public int purgeBefore(long timestamp, int chunkSize) {
+        return deleteChunkBefore("write_timestamp", timestamp, chunkSize);
+    }
+
+
+    @Override
+    protected boolean isShardTable() {
+        return true;
+    }
+
+    @Override
+    protected Long getShardKey(AutoJobLogEntity entity) {
+        return entity.getTaskId();
+    }
 
     @Override
     public String getAllColumns() {
@@ -1,6 +1,7 @@
 package com.example.autojob.skeleton.db.mapper;
 
 import com.example.autojob.skeleton.db.entity.AutoJobRunLogEntity;
+import com.example.autojob.util.id.IdGenerator;
 
 import java.util.Collections;
 import java.util.Date;
@@ -17,6 +18,10 @@ public class AutoJobRunLogEntityMapper extends BaseMapper<AutoJobRunLogEntity> {
 
     private static final String TABLE_NAME = "aj_run_logs";
 
+    /**
+     * 日志写入时间相对调度ID生成时间的容差：ms，同{@link AutoJobLogEntityMapper}，需容忍节点间的时钟偏差
+     */
+    private static final long SCHEDULING_TIME_TOLERANCE = 10 * 60 * 1000;
 
     public AutoJobRunLogEntityMapper() {
         super(AutoJobRunLogEntity.class);
@@ -24,27 +29,68 @@ public class AutoJobRunLogEntityMapper extends BaseMapper<AutoJobRunLogEntity> {
 
     public List<AutoJobRunLogEntity> selectLogByTaskId(long taskId) {
         String condition = " where del_flag = 0 and task_id = ?";
-        return queryList(getSelectExpression() + condition, taskId);
+        return inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId));
     }
 
     public int deleteByTaskId(long taskId) {
-        String condition = " where del_flag = 0";
-        return updateOne(getLogicDeleteExpression() + condition);
+        String condition = " where del_flag = 0 and task_id = ?";
+        return inShard(taskId, () -> updateOne(getLogicDeleteExpression() + condition, taskId));
     }
 
     public List<AutoJobRunLogEntity> selectByTaskIdBetween(Date startTime, Date endTime, long taskId) {
         String condition = " where task_id = ? AND del_flag = 0 AND write_timestamp >= ? AND write_timestamp <= ?";
-        return queryList(getSelectExpression() + condition, taskId, startTime.getTime(), endTime.getTime());
+        return inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId, startTime.getTime(), endTime.getTime()));
+    }
+
+    /**
+     * 游标分页查询任务的日志，按id升序即按写入顺序返回
+     *
+     * @param taskId 任务id
+     * @param lastId 上一页最后一条日志的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobRunLogEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:55
+     */
+    public List<AutoJobRunLogEntity> selectByTaskIdAfter(long taskId, Long lastId, int size) {
+        String condition = " where task_id = ? and del_flag = 0 and id > ? order by id " + getLimitSql(size);
+        return inShard(taskId, () -> queryList(getSelectExpression() + condition, taskId, lastId == null ? Long.MIN_VALUE : lastId));
     }
 
     public List<AutoJobRunLogEntity> selectBySchedulingId(Long schedulingId) {
         if (schedulingId == null) {
             return Collections.emptyList();
         }
-        String condition = " where scheduling_id = ? and del_flag = 0";
-        return queryList(getSelectExpression() + condition, schedulingId);
+        //日志均在调度ID生成之后写入，带上写入时间下界使分区表只扫描调度之后的分区
+        String condition = " where scheduling_id = ? and del_flag = 0 and write_timestamp >= ?";
+        long from = IdGenerator.getTimestamp(schedulingId) - SCHEDULING_TIME_TOLERANCE;
+        //调度ID不含任务信息，分片时需查询所有分片
+        return mergeShards(() -> queryList(getSelectExpression() + condition, schedulingId, from));
     }
 
+    /**
+     * 分块删除写入时间早于指定时间的日志
+     *
+     * @param timestamp 早于该时间的日志会被删除
+     * @param chunkSize 块大小
+     * @return int 本次删除的日志数
+     * @author Huang Yongxiang
+     * @date 2023/1/11 14:30
+     */
+    public int purgeBefore(long timestamp, int chunkSize) {
+        return deleteChunkBefore("write_timestamp", timestamp, chunkSize);
+    }
+
+
+    @Override
+    protected boolean isShardTable() {
+        return true;
+    }
+
+    @Override
+    protected Long getShardKey(AutoJobRunLogEntity entity) {
+        return entity.getTaskId();
+    }
 
     @Override
     public String getAllColumns() {
@@ -1,9 +1,11 @@
 package com.example.autojob.skeleton.db.mapper;
 
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.entity.AutoJobSchedulingRecordEntity;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 调度记录mapper
@@ -21,24 +23,100 @@ public class AutoJobSchedulingRecordEntityMapper extends BaseMapper<AutoJobSched
     }
 
     public int updateResult(long id, boolean isSuccess, String result, long executionTime) {
-        String sql = getUpdateExpression() + "set is_success = ?, result = ?,execution_time = ?, is_run = 0 where " + "del_flag = 0 and id = ?";
-        return updateOne(sql, isSuccess ? 1 : 0, result, executionTime, id);
+        //调度ID不含任务信息，分片时在所有分片上更新，只有一个分片会命中
+        return sumShards(() -> updateOne(getUpdateResultSql(), isSuccess ? 1 : 0, result, executionTime, id));
+    }
+
+    /**
+     * 批量写入调度记录的执行结果，实体的id、isSuccess、result、executionTime需非空
+     *
+     * @param entities 调度记录
+     * @return int 更新的记录数
+     * @author Huang Yongxiang
+     * @date 2023/1/15 10:40
+     */
+    public int updateResults(List<AutoJobSchedulingRecordEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+        if (isShardRouted()) {
+            AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+            int count = 0;
+            for (Map.Entry<Integer, List<AutoJobSchedulingRecordEntity>> entry : router
+                    .groupByShard(entities, AutoJobSchedulingRecordEntity::getTaskId)
+                    .entrySet()) {
+                count += router.doInShard(entry.getKey(), () -> updateResultRows(entry.getValue()));
+            }
+            return count;
+        }
+        return updateResultRows(entities);
+    }
+
+    private int updateResultRows(List<AutoJobSchedulingRecordEntity> entities) {
+        Object[][] params = new Object[entities.size()][];
+        for (int i = 0; i < entities.size(); i++) {
+            AutoJobSchedulingRecordEntity entity = entities.get(i);
+            params[i] = new Object[]{entity.getIsSuccess(), entity.getResult(), entity.getExecutionTime(), entity.getId()};
+        }
+        return updateBatch(getUpdateResultSql(), params);
+    }
+
+    private String getUpdateResultSql() {
+        return getUpdateExpression() + "set is_success = ?, result = ?,execution_time = ?, is_run = 0 where " + "del_flag = 0 and id = ?";
     }
 
     public List<AutoJobSchedulingRecordEntity> pageByTaskId(int pageNum, int size, long taskId) {
         int skip = (pageNum - 1) * size;
-        String sql = getSelectExpression() + String.format(" where task_id = ? and del_flag = 0 limit %d, %d", skip, size);
-        return queryList(sql, taskId);
+        String sql = getSelectExpression() + String.format(" where task_id = ? and del_flag = 0 %s", getPageSql(skip, size));
+        return inShard(taskId, () -> queryList(sql, taskId));
+    }
+
+    /**
+     * 游标分页查询任务的调度记录，按id降序即最新的记录在前
+     *
+     * @param taskId 任务id
+     * @param lastId 上一页最后一条记录的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobSchedulingRecordEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:50
+     */
+    public List<AutoJobSchedulingRecordEntity> pageByTaskIdAfter(long taskId, Long lastId, int size) {
+        String sql = getSelectExpression() + " where task_id = ? and del_flag = 0 and id < ? order by id desc " + getLimitSql(size);
+        return inShard(taskId, () -> queryList(sql, taskId, lastId == null ? Long.MAX_VALUE : lastId));
+    }
+
+    /**
+     * 分块删除写入时间早于指定时间的调度记录
+     *
+     * @param timestamp 早于该时间的记录会被删除
+     * @param chunkSize 块大小
+     * @return int 本次删除的记录数
+     * @author Huang Yongxiang
+     * @date 2023/1/11 14:32
+     */
+    public int purgeBefore(long timestamp, int chunkSize) {
+        return deleteChunkBefore("write_timestamp", timestamp, chunkSize);
     }
 
     public int countByTaskId(long taskId) {
         String sql = " select count(*) from " + getTableName() + " where task_id = ? and del_flag = 0";
-        return conditionalCount(sql, taskId);
+        return inShard(taskId, () -> conditionalCount(sql, taskId));
     }
 
     public List<AutoJobSchedulingRecordEntity> listBetween(long taskId, Date from, Date to) {
         String sql = getSelectExpression() + " where task_id = ? AND del_flag = 0 AND write_timestamp >= ? AND write_timestamp <= ?";
-        return queryList(sql, taskId, from.getTime(), to.getTime());
+        return inShard(taskId, () -> queryList(sql, taskId, from.getTime(), to.getTime()));
+    }
+
+    @Override
+    protected boolean isShardTable() {
+        return true;
+    }
+
+    @Override
+    protected Long getShardKey(AutoJobSchedulingRecordEntity entity) {
+        return entity.getTaskId();
     }
 
     @Override
@@ -3,12 +3,20 @@ package com.example.autojob.skeleton.db.mapper;
 import com.example.autojob.api.task.params.MethodTaskEditParams;
 import com.example.autojob.api.task.params.ScriptTaskEditParams;
 import com.example.autojob.api.task.params.TaskEditParams;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
+import com.example.autojob.skeleton.db.AutoJobSQLException;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
-import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
 import com.example.autojob.skeleton.model.builder.AttributesBuilder;
 import com.example.autojob.util.bean.ObjectUtil;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,6 +25,7 @@ import java.util.concurrent.TimeUnit;
  * @Author Huang Yongxiang
  * @Date 2022/08/17 16:46
  */
+@Slf4j
 public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
 
 
@@ -27,15 +36,17 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
     /**
      * 所有列
      */
-    public static final String ALL_COLUMNS = "id, alias, annotation_id, method_class_name, method_name,params, content, method_object_factory, script_content, script_path, script_file_name, script_cmd, trigger_id, type, is_child_task, run_lock, task_level, version, belong_to, status, create_time, del_flag";
+    public static final String ALL_COLUMNS = "id, alias, annotation_id, method_class_name, method_name,params, content, method_object_factory, script_content, script_path, script_file_name, script_cmd, trigger_id, type, is_child_task, run_lock, lock_owner, lock_expire, lock_version, task_level, version, is_latest, belong_to, status, create_time, del_flag";
     /**
      * 表名
      */
     public static final String TABLE_NAME = "aj_auto_job";
 
+    private volatile Boolean supportSkipLocked;
+
 
     /**
-     * 判断一个任务是否被上锁
+     * 判断一个任务是否被上锁，租约已过期的锁视为未上锁
      *
      * @param taskId 任务id
      * @return boolean
@@ -44,36 +55,120 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public boolean isLock(long taskId) {
         AutoJobTaskEntity taskEntity = selectById(taskId);
-        if (taskEntity == null) {
+        if (ObjectUtil.isNull(taskEntity)) {
             return false;
         }
-        return taskEntity.getRunLock() == 1;
+        return taskEntity.getRunLock() == 1 && taskEntity.getLockExpire() != null && taskEntity.getLockExpire() > System.currentTimeMillis();
     }
 
     /**
-     * 尝试对任务进行上锁
+     * 尝试对任务进行上锁，通过一条条件更新完成检查与加锁，未上锁或租约已过期的启用任务且触发器未暂停时才能加锁成功，
+     * 旧版本遗留的没有租约的锁视为已过期
      *
-     * @param taskId 要上锁的任务Id
+     * @param taskId      要上锁的任务Id
+     * @param owner       锁持有者
+     * @param token       加锁令牌，解锁时需提供相同的令牌
+     * @param leaseMillis 租约时长：ms
      * @return boolean
      * @author Huang Yongxiang
-     * @date 2022/8/18 11:04
+     * @date 2023/1/6 10:30
      */
-    public boolean lock(long taskId) {
-        AutoJobTaskEntity entity = selectById(taskId);
-        AutoJobTriggerEntity triggerEntity = AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.selectOneByTaskId(taskId);
+    public boolean lock(long taskId, String owner, long token, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        String sql = getUpdateExpression() + " set run_lock = 1, lock_owner = ?, lock_expire = ?, lock_version = ? where id = ? and del_flag = 0 and status = 1 and (run_lock = 0 or lock_expire is null or lock_expire < ?) and not exists (select 1 from " + AutoJobTriggerEntityMapper.TABLE_NAME + " where task_id = ? and del_flag = 0 and is_pause = 1)";
+        return inShard(taskId, () -> updateOne(sql, owner, now + leaseMillis, token, taskId, now, taskId) == 1);
+    }
 
-        if (entity == null || ObjectUtil.isNull(entity)) {
-            return true;
-        }
-        if (entity.getRunLock() == 1 || (triggerEntity != null && triggerEntity.getIsPause() == 1) || entity.getStatus() == 0) {
-            return false;
-        }
-        int count = updateOne(getUpdateExpression() + " set run_lock = 1 where del_flag = 0 and id = ?", taskId);
-        return count == 1;
+    /**
+     * 释放任务锁，只有锁持有者和令牌都匹配时才会释放，租约过期后被其他节点重新获取的锁不会被误释放
+     *
+     * @param taskId 任务id
+     * @param owner  锁持有者
+     * @param token  加锁令牌
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/6 10:32
+     */
+    public boolean unLock(long taskId, String owner, long token) {
+        String sql = getUpdateExpression() + " set run_lock = 0, lock_owner = null, lock_expire = null where del_flag = 0 and id = ? and lock_owner = ? and lock_version = ?";
+        return inShard(taskId, () -> {
+            //解锁后的任务可能已位于其他节点的扫描水位之前，标记变更使其被重新拉取
+            touchTriggers("del_flag = 0 and id = ? and lock_owner = ? and lock_version = ?", taskId, owner, token);
+            return updateOne(sql, taskId, owner, token) == 1;
+        });
     }
 
+    /**
+     * 不校验持有者和令牌强制释放任务锁，调度流程不应使用该方法，仅供手动解除异常的锁
+     *
+     * @param taskId 任务id
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/27 10:20
+     */
     public boolean unLock(long taskId) {
-        return updateOne(getUpdateExpression() + " set run_lock = 0 where del_flag = 0 and id = ?", taskId) == 1;
+        return inShard(taskId, () -> {
+            touchTriggers("del_flag = 0 and id = ?", taskId);
+            return updateOne(getUpdateExpression() + " set run_lock = 0, lock_owner = null, lock_expire = null where del_flag = 0 and id = ?", taskId) == 1;
+        });
+    }
+
+    /**
+     * 释放某个持有者持有的所有任务锁
+     *
+     * @param owner 锁持有者
+     * @return int 释放的锁数
+     * @author Huang Yongxiang
+     * @date 2023/1/6 10:35
+     */
+    public int unLockByOwner(String owner) {
+        return sumShards(() -> {
+            //释放的任务可能已位于其他节点的扫描水位之前，标记变更使其被重新拉取
+            touchTriggers("run_lock = 1 and lock_owner = ?", owner);
+            return updateOne(getUpdateExpression() + " set run_lock = 0, lock_owner = null, lock_expire = null where run_lock = 1 and lock_owner = ?", owner);
+        });
+    }
+
+    /**
+     * 批量续租
+     *
+     * @param taskIds     要续租的任务
+     * @param owner       锁持有者
+     * @param leaseMillis 租约时长：ms
+     * @return int 续租成功的锁数
+     * @author Huang Yongxiang
+     * @date 2023/1/6 10:38
+     */
+    public int renewLease(List<Long> taskIds, String owner, long leaseMillis) {
+        if (taskIds == null || taskIds.size() == 0) {
+            return 0;
+        }
+        long expire = System.currentTimeMillis() + leaseMillis;
+        return sumByShard(taskIds, ids -> updateOne(getUpdateExpression() + " set lock_expire = ? where run_lock = 1 and lock_owner = ? and id in (" + idRepeat(ids) + ")", expire, owner));
+    }
+
+    /**
+     * 回收已过期的租约，持有节点宕机后其持有的锁会在租约到期后被回收，旧版本遗留的没有租约的锁一并回收
+     *
+     * @return int 回收的锁数
+     * @author Huang Yongxiang
+     * @date 2023/1/6 10:40
+     */
+    public int reclaimExpiredLease() {
+        long now = System.currentTimeMillis();
+        String sql = getUpdateExpression() + " set run_lock = 0, lock_owner = null, lock_expire = null where run_lock = 1 and (lock_expire is null or lock_expire < ?)";
+        return sumShards(() -> {
+            touchTriggers("run_lock = 1 and (lock_expire is null or lock_expire < ?)", now);
+            return updateOne(sql, now);
+        });
+    }
+
+    private void touchTriggers(String taskCondition, Object... params) {
+        String sql = String.format("update %s set change_time = ? where del_flag = 0 and task_id in (select id from %s where %s)", AutoJobTriggerEntityMapper.TABLE_NAME, getTableName(), taskCondition);
+        Object[] allParams = new Object[params.length + 1];
+        allParams[0] = System.currentTimeMillis();
+        System.arraycopy(params, 0, allParams, 1, params.length);
+        updateOne(sql, allParams);
     }
 
     /**
@@ -87,21 +182,257 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public List<AutoJobTaskEntity> selectNearTask(long nearTime, TimeUnit unit) {
         String sql = getSelectExpression() + " where (id in (SELECT task_id FROM aj_trigger where next_triggering_time >= ? and next_triggering_time <= ? and del_flag = 0 and is_pause = 0)) and del_flag = 0 and status = 1";
-        return queryList(sql, System.currentTimeMillis(), System.currentTimeMillis() + unit.toMillis(nearTime));
+        long now = System.currentTimeMillis();
+        return mergeShards(() -> queryList(sql, now, now + unit.toMillis(nearTime)));
+    }
+
+    /**
+     * 为本节点批量认领未来时间内会执行的任务，认领即对任务加租约锁，被其他节点认领或正在运行的任务不会被认领。
+     * 支持SKIP LOCKED的数据库（MySQL 8+、PostgreSQL 9.5+）在一个事务内锁定候选行后加锁，并发节点之间互不阻塞；
+     * 其他情况下先查询候选任务，再通过条件更新加锁，由更新条件保证同一任务只会被一个节点认领。分片时只认领当前分片作用域内的任务
+     *
+     * @param nearTime    未来时间段
+     * @param unit        时间单位
+     * @param limit       最多认领的任务数
+     * @param owner       锁持有者
+     * @param token       加锁令牌，本批认领的任务共享该令牌
+     * @param leaseMillis 租约时长：ms
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobTaskEntity> 认领成功的任务
+     * @author Huang Yongxiang
+     * @date 2023/1/6 15:20
+     */
+    public List<AutoJobTaskEntity> claimNearTask(long nearTime, TimeUnit unit, int limit, String owner, long token, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        return claimNearTask(now - 1, now + unit.toMillis(nearTime), Long.MAX_VALUE, limit, owner, token, leaseMillis);
+    }
+
+    /**
+     * 基于水位增量认领任务，只认领下次触发时间位于(triggeringTimeWatermark, horizon]内的任务，
+     * 以及触发器在changeWatermark之后发生过变更且下次触发时间位于[now, horizon]内的任务
+     *
+     * @param triggeringTimeWatermark 触发时间水位，该时间之前的任务已被扫描过
+     * @param horizon                 本次扫描的最远触发时间
+     * @param changeWatermark         变更水位，该时间及之后变更的触发器会被重新扫描
+     * @param limit                   最多认领的任务数
+     * @param owner                   锁持有者
+     * @param token                   加锁令牌，本批认领的任务共享该令牌
+     * @param leaseMillis             租约时长：ms
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobTaskEntity> 认领成功的任务
+     * @author Huang Yongxiang
+     * @date 2023/1/11 10:30
+     */
+    public List<AutoJobTaskEntity> claimNearTask(long triggeringTimeWatermark, long horizon, long changeWatermark, int limit, String owner, long token, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        String candidateSql = String.format("select a.id from %s a inner join %s t on t.task_id = a.id where t.next_triggering_time <= ? and (t.next_triggering_time > ? or (t.change_time >= ? and t.next_triggering_time >= ?)) and t.del_flag = 0 and t.is_pause = 0 and a.del_flag = 0 and a.status = 1 and (a.run_lock = 0 or a.lock_expire is null or a.lock_expire < ?) order by t.next_triggering_time limit %d", getTableName(), AutoJobTriggerEntityMapper.TABLE_NAME, limit);
+        String claimSql = getUpdateExpression() + " set run_lock = 1, lock_owner = ?, lock_expire = ?, lock_version = ? where del_flag = 0 and status = 1 and (run_lock = 0 or lock_expire is null or lock_expire < ?) and id in (%s)";
+        Object[] candidateParams = new Object[]{horizon, Math.max(triggeringTimeWatermark, now - 1), changeWatermark, now, now};
+        List<Long> ids;
+        int count;
+        if (isSupportSkipLocked()) {
+            //处于工作单元中时复用工作单元的连接
+            if (!TransactionManager.openTransaction(currentDataSourceHolder())) {
+                throw new AutoJobSQLException("开启事务异常");
+            }
+            try {
+                Connection connection = TransactionManager.getCurrentConnection();
+                ids = queryRunner.query(connection, candidateSql + " for update of a skip locked", ID_LIST_HANDLER, candidateParams);
+                count = ids.size() == 0 ? 0 : queryRunner.update(connection, String.format(claimSql, idRepeat(ids)), owner, now + leaseMillis, token, now);
+                TransactionManager.closeTransaction();
+            } catch (SQLException e) {
+                TransactionManager.rollbackTransaction();
+                e.printStackTrace();
+                throw new AutoJobSQLException(e.getMessage(), e.getCause());
+            }
+        } else {
+            ids = queryIds(candidateSql, candidateParams);
+            count = ids.size() == 0 ? 0 : updateOne(String.format(claimSql, idRepeat(ids)), owner, now + leaseMillis, token, now);
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        //按主键回读候选任务，持有者与令牌只用于过滤被其他节点抢先认领的任务，lock_owner与lock_version上没有索引
+        return queryList(getSelectExpression() + String.format(" where id in (%s) and lock_owner = ? and lock_version = ? and del_flag = 0", idRepeat(ids)), owner, token);
+    }
+
+    /**
+     * 当前数据库是否支持SELECT ... FOR UPDATE SKIP LOCKED
+     *
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/6 15:26
+     */
+    public boolean isSupportSkipLocked() {
+        if (supportSkipLocked == null) {
+            DataSourceHolder holder = currentDataSourceHolder();
+            Connection connection = holder.getConnection();
+            try {
+                DatabaseMetaData metaData = connection.getMetaData();
+                int major = metaData.getDatabaseMajorVersion();
+                int minor = metaData.getDatabaseMinorVersion();
+                DatabaseType type = DatabaseType.getCurrentDatabaseType();
+                if (type == DatabaseType.POSTGRES_SQL) {
+                    supportSkipLocked = major > 9 || (major == 9 && minor >= 5);
+                } else if (type == DatabaseType.MY_SQL) {
+                    supportSkipLocked = major >= 8;
+                } else {
+                    //H2等不支持的数据库使用条件更新认领
+                    supportSkipLocked = false;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                supportSkipLocked = false;
+            } finally {
+                holder.release(connection);
+            }
+            log.debug("数据库{}SKIP LOCKED", supportSkipLocked ? "支持" : "不支持");
+        }
+        return supportSkipLocked;
     }
 
     @Override
     public List<AutoJobTaskEntity> page(int pageNum, int size) {
         int skip = (pageNum - 1) * size;
-        String sql = getSelectExpression() + String.format(" where id in ( SELECT max( id ) FROM aj_auto_job WHERE " + "del_flag = 0 GROUP BY annotation_id ) %s", getPageSql(skip, size));
+        if (isShardRouted()) {
+            //每个分片取出前skip+size条后合并，再截取所需的页
+            String sql = getSelectExpression() + String.format(" where is_latest = 1 and del_flag = 0 order by id %s", getPageSql(0, skip + size));
+            return sortedPage(mergeShards(() -> queryList(sql)), skip, size);
+        }
+        String sql = getSelectExpression() + String.format(" where is_latest = 1 and del_flag = 0 order by id %s", getPageSql(skip, size));
         return queryList(sql);
     }
 
+    /**
+     * 游标分页查询所有注解任务的最新版本
+     *
+     * @param lastId 上一页最后一个任务的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobTaskEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:35
+     */
+    @Override
+    public List<AutoJobTaskEntity> pageAfter(Long lastId, int size) {
+        String sql = getSelectExpression() + " where is_latest = 1 and del_flag = 0 and id > ? order by id " + getLimitSql(size);
+        return sortedPage(mergeShards(() -> queryList(sql, lastId == null ? Long.MIN_VALUE : lastId)), 0, size);
+    }
+
+    private List<AutoJobTaskEntity> sortedPage(List<AutoJobTaskEntity> entities, int skip, int size) {
+        if (!isShardRouted()) {
+            return entities;
+        }
+        entities.sort(Comparator.comparing(AutoJobTaskEntity::getId));
+        if (skip >= entities.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(entities.subList(skip, Math.min(skip + size, entities.size())));
+    }
+
     public int count() {
-        String sql = "SELECT count(*) FROM aj_auto_job WHERE id in (SELECT max( id ) FROM aj_auto_job WHERE del_flag = 0 GROUP BY annotation_id)";
-        return conditionalCount(sql);
+        String sql = "select count(*) from " + getTableName() + " where is_latest = 1 and del_flag = 0";
+        return sumShards(() -> conditionalCount(sql));
     }
 
+    /**
+     * 插入任务，插入的任务均标记为最新版本，同时清除同一注解任务旧版本的最新版本标记，插入与清除在同一事务中时标记始终唯一
+     *
+     * @param entities 要插入的任务
+     * @return int
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:40
+     */
+    @Override
+    public int insertList(List<AutoJobTaskEntity> entities) {
+        if (entities == null || entities.size() == 0) {
+            return 0;
+        }
+        List<Long> annotationIds = new ArrayList<>();
+        for (AutoJobTaskEntity entity : entities) {
+            entity.setIsLatest(1);
+            if (entity.getAnnotationId() != null) {
+                annotationIds.add(entity.getAnnotationId());
+            }
+        }
+        if (annotationIds.size() > 0) {
+            //同一注解任务的各个版本可能位于不同分片
+            sumShards(() -> updateOne(getUpdateExpression() + String.format(" set is_latest = 0 where is_latest = 1 and annotation_id in (%s)", idRepeat(annotationIds))));
+            //旧版本的id未知，直接失效全部缓存
+            AutoJobEntityCache
+                    .getInstance()
+                    .invalidateAll();
+        }
+        return super.insertList(entities);
+    }
+
+    /**
+     * 删除任务，删除的是注解任务的最新版本时将上一个版本重新标记为最新版本
+     *
+     * @param id 任务id
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:45
+     */
+    @Override
+    public boolean deleteById(long id) {
+        AutoJobTaskEntity entity = selectById(id);
+        if (!inShard(id, () -> super.deleteById(id))) {
+            return false;
+        }
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(id);
+        if (entity != null && entity.getAnnotationId() != null && entity.getIsLatest() != null && entity.getIsLatest() == 1) {
+            if (isShardRouted()) {
+                //各版本可能位于不同分片，先找出所有分片中最大的版本id
+                String sql = String.format("select id from %s where annotation_id = ? and del_flag = 0 order by id desc %s", getTableName(), getLimitSql(1));
+                eachShard(() -> queryIds(sql, entity.getAnnotationId()))
+                        .stream()
+                        .flatMap(List::stream)
+                        .max(Long::compare)
+                        .ifPresent(latestId -> inShard(latestId, () -> updateOne(getUpdateExpression() + " set is_latest = 1 where id = ?", latestId)));
+            } else {
+                String sql = getUpdateExpression() + " set is_latest = 1 where id in (select t.id from (select max(id) as id from " + getTableName() + " where annotation_id = ? and del_flag = 0) t)";
+                updateOne(sql, entity.getAnnotationId());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public AutoJobTaskEntity selectById(long id) {
+        return inShard(id, () -> super.selectById(id));
+    }
+
+    /**
+     * 压缩注解任务的历史版本，每个注解任务只保留最新的若干个版本，被删除版本的触发器一并删除，正在运行的版本不会被删除。
+     * 分片时每个分片只压缩与最新版本位于同一分片的历史版本
+     *
+     * @param keepVersions 保留的版本数，包含最新版本
+     * @param chunkSize    单次删除的最大版本数
+     * @return int 本次删除的版本数，小于块大小时说明已压缩完毕
+     * @author Huang Yongxiang
+     * @date 2023/1/11 14:40
+     */
+    public int compactAnnotationVersions(int keepVersions, int chunkSize) {
+        return sumShards(() -> compactAnnotationVersionsInShard(keepVersions, chunkSize));
+    }
+
+    private int compactAnnotationVersionsInShard(int keepVersions, int chunkSize) {
+        String sql = String.format("select a.id from %s a inner join %s l on l.annotation_id = a.annotation_id and l.is_latest = 1 and l.del_flag = 0 where a.is_latest = 0 and a.run_lock = 0 and a.version <= l.version - ? order by a.id %s", getTableName(), getTableName(), getLimitSql(chunkSize));
+        List<Long> ids = queryIds(sql, Math.max(keepVersions, 1));
+        if (ids.size() == 0) {
+            return 0;
+        }
+        String idString = idRepeat(ids);
+        TransactionEntry deleteTriggers = connection -> updateOne(String.format("delete from %s where task_id in (%s)", AutoJobTriggerEntityMapper.TABLE_NAME, idString));
+        TransactionEntry deleteTasks = connection -> updateOne(getDeleteExpression() + String.format(" where id in (%s)", idString));
+        if (!doTransaction(new TransactionEntry[]{deleteTriggers, deleteTasks})) {
+            return 0;
+        }
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(ids);
+        return ids.size();
+    }
 
     /**
      * 通过id查询子任务
@@ -113,7 +444,7 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public AutoJobTaskEntity selectChildTask(long id) {
         String condition = " where is_child_task = 1 and del_flag = 0 and (id = ? or annotation_id = ?) and status = 1";
-        return queryOne(getSelectExpression() + condition, id, id);
+        return latestOf(eachShard(() -> queryOne(getSelectExpression() + condition, id, id)));
     }
 
     /**
@@ -126,7 +457,23 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public List<AutoJobTaskEntity> selectChildTasks(List<Long> ids) {
         String sql = getSelectExpression() + String.format(" where id in ( select max(id) from %s where (id in (%s) or annotation_id in (%s)) and is_child_task = 1 and del_flag = 0 and status = 1)", getTableName(), idRepeat(ids), idRepeat(ids));
-        return queryList(sql);
+        List<AutoJobTaskEntity> entities = mergeShards(() -> queryList(sql));
+        if (entities.size() <= 1) {
+            return entities;
+        }
+        //每个分片各自取出了本分片的最大id，合并后同样只保留最大的一个
+        return Collections.singletonList(latestOf(entities));
+    }
+
+    /**
+     * 从各分片的查询结果中取id最大的一个
+     */
+    private AutoJobTaskEntity latestOf(List<AutoJobTaskEntity> entities) {
+        return entities
+                .stream()
+                .filter(entity -> !ObjectUtil.isNull(entity))
+                .max(Comparator.comparing(AutoJobTaskEntity::getId))
+                .orElse(null);
     }
 
     /**
@@ -139,7 +486,7 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public AutoJobTaskEntity selectLatestAnnotationTask(long annotationId) {
         String sql = getSelectExpression() + " where id = (select max(id) from " + getTableName() + " where annotation_id = ? and del_flag = 0 and status = 1)";
-        return queryOne(sql, annotationId);
+        return latestOf(eachShard(() -> queryOne(sql, annotationId)));
     }
 
     /**
@@ -154,21 +501,31 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
         if (ids == null || ids.size() == 0) {
             return 0;
         }
-        String condition = " where id in (" + idRepeat(ids) + ")";
-        return updateOne(getDeleteExpression() + condition);
+        int count = sumByShard(ids, shardIds -> updateOne(getDeleteExpression() + " where id in (" + idRepeat(shardIds) + ")"));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(ids);
+        return count;
     }
 
     public int deleteTasksByIds(List<Long> ids) {
         if (ids == null || ids.size() == 0) {
             return 0;
         }
-        String condition = " where id in (" + idRepeat(ids) + ")";
-        return updateOne(getDeleteExpression() + condition);
+        int count = sumByShard(ids, shardIds -> updateOne(getDeleteExpression() + " where id in (" + idRepeat(shardIds) + ")"));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(ids);
+        return count;
     }
 
     public boolean bindingTrigger(long triggerId, long taskId) {
         String sql = getUpdateExpression() + " set trigger_id = ? where id = ? and del_flag = 0";
-        return updateOne(sql, triggerId, taskId) == 1;
+        boolean flag = inShard(taskId, () -> updateOne(sql, triggerId, taskId) == 1);
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return flag;
     }
 
     /**
@@ -181,7 +538,7 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
      */
     public AutoJobTaskEntity selectPausedTaskById(long taskId) {
         String condition = " where exists (select id from " + AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.getTableName() + " where task_id = ? and del_flag = 0 and is_pause = 1) and del_flag = 0 and status = 1 and id = ?";
-        return queryOne(getSelectExpression() + condition, taskId, taskId);
+        return inShard(taskId, () -> queryOne(getSelectExpression() + condition, taskId, taskId));
     }
 
     public int updateById(TaskEditParams editParams, long taskId) {
@@ -206,10 +563,24 @@ public class AutoJobTaskEntityMapper extends BaseMapper<AutoJobTaskEntity> {
                     });
             entity.setParams(builder.getAttributesString());
         }
-        return updateEntity(entity, "id = ?", taskId);
+        int count = inShard(taskId, () -> updateEntity(entity, "id = ?", taskId));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return count;
     }
 
 
+    @Override
+    protected boolean isShardTable() {
+        return true;
+    }
+
+    @Override
+    protected Long getShardKey(AutoJobTaskEntity entity) {
+        return entity.getId();
+    }
+
     @Override
     public String getAllColumns() {
         return ALL_COLUMNS;
@@ -1,9 +1,11 @@
 package com.example.autojob.skeleton.db.mapper;
 
 import com.example.autojob.api.task.params.TriggerEditParams;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
 import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
 import com.example.autojob.util.bean.ObjectUtil;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -17,7 +19,7 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
     /**
      * 所有列
      */
-    public static final String ALL_COLUMNS = "id,cron_expression, last_run_time, last_triggering_time, next_triggering_time, is_last_success, repeat_times,finished_times, cycle,task_id, child_tasks_id, maximum_execution_time, is_run, is_pause, create_time, del_flag";
+    public static final String ALL_COLUMNS = "id,cron_expression, last_run_time, last_triggering_time, next_triggering_time, is_last_success, repeat_times,finished_times, cycle,task_id, child_tasks_id, maximum_execution_time, is_run, is_pause, create_time, change_time, del_flag";
     /**
      * 表名
      */
@@ -30,7 +32,24 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
 
     public AutoJobTriggerEntity selectOneByTaskId(long taskId) {
         String sql = "select " + getAllColumns() + " from " + getTableName() + " where id=(select trigger_id from aj_auto_job where id = ? and del_flag = 0) and del_flag = 0";
-        return queryOne(sql, taskId);
+        return inShard(taskId, () -> queryOne(sql, taskId));
+    }
+
+    /**
+     * 通过触发器ID批量查询触发器，用于批量加载任务时一次性取出所有任务的触发器。分片时只在当前分片作用域内查询，
+     * 调用方需按任务所在的分片分组调用
+     *
+     * @param triggerIds 触发器ID
+     * @return java.util.List<com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity>
+     * @author Huang Yongxiang
+     * @date 2023/1/5 10:12
+     */
+    public List<AutoJobTriggerEntity> selectByIds(List<Long> triggerIds) {
+        if (triggerIds == null || triggerIds.size() == 0) {
+            return Collections.emptyList();
+        }
+        String condition = " where id in (" + idRepeat(triggerIds) + ") and del_flag = 0";
+        return queryList(getSelectExpression() + condition);
     }
 
     /**
@@ -42,9 +61,12 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
      * @date 2022/8/26 9:39
      */
     public boolean pauseTaskById(long taskId) {
-        String sql = getUpdateExpression() + " set is_pause = 1 where del_flag = 0 and task_id = ?";
+        String sql = getUpdateExpression() + " set is_pause = 1, change_time = ? where del_flag = 0 and task_id = ?";
         try {
-            updateOne(sql, taskId);
+            inShard(taskId, () -> updateOne(sql, System.currentTimeMillis(), taskId));
+            AutoJobEntityCache
+                    .getInstance()
+                    .invalidate(taskId);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -61,9 +83,12 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
      * @date 2022/8/26 9:51
      */
     public boolean unpauseTaskById(long taskId) {
-        String sql = getUpdateExpression() + " set is_pause = 0 where del_flag = 0 and task_id = ?";
+        String sql = getUpdateExpression() + " set is_pause = 0, change_time = ? where del_flag = 0 and task_id = ?";
         try {
-            updateOne(sql, taskId);
+            inShard(taskId, () -> updateOne(sql, System.currentTimeMillis(), taskId));
+            AutoJobEntityCache
+                    .getInstance()
+                    .invalidate(taskId);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -73,12 +98,19 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
 
     public boolean updateOperatingStatus(boolean isRunning, long taskId) {
         String condition = String.format(" set is_run = %d where task_id = ?", isRunning ? 1 : 0);
-        return updateOne(getUpdateExpression() + condition, taskId) == 1;
+        boolean flag = inShard(taskId, () -> updateOne(getUpdateExpression() + condition, taskId) == 1);
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return flag;
     }
 
     public int updateOperatingStatuses(boolean isRunning, List<Long> taskId) {
-        String condition = String.format(" set is_run = %d where task_id in (" + idRepeat(taskId) + ") and del_flag = 0", isRunning ? 1 : 0);
-        return updateOne(getUpdateExpression() + condition);
+        int count = sumByShard(taskId, ids -> updateOne(getUpdateExpression() + String.format(" set is_run = %d where task_id in (%s) and del_flag = 0", isRunning ? 1 : 0, idRepeat(ids))));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return count;
     }
 
     /**
@@ -94,18 +126,29 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
      * @date 2022/8/21 9:28
      */
     public boolean updateStatus(int finishedTimes, long lastTriggeringTime, long nextTriggeringTime, long lastRunTime, boolean isLastSuccess, long taskId) {
-        String sql = " set finished_times = ? ,next_triggering_time = ? ,last_triggering_time = ? ,is_last_success = ? ,last_run_time = ? where task_id = ? and del_flag = 0";
-        return updateOne(getUpdateExpression() + sql, finishedTimes, nextTriggeringTime, lastTriggeringTime, isLastSuccess ? 1 : 0, lastRunTime, taskId) == 1;
+        String sql = " set finished_times = ? ,next_triggering_time = ? ,last_triggering_time = ? ,is_last_success = ? ,last_run_time = ?, change_time = ? where task_id = ? and del_flag = 0";
+        boolean flag = inShard(taskId, () -> updateOne(getUpdateExpression() + sql, finishedTimes, nextTriggeringTime, lastTriggeringTime, isLastSuccess ? 1 : 0, lastRunTime, System.currentTimeMillis(), taskId) == 1);
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return flag;
     }
 
     public boolean updateTriggeringTime(long taskId, long triggeringTime) {
-        String sql = " set next_triggering_time = ? where task_id  = ? and del_flag = 0";
-        return updateOne(getUpdateExpression() + sql, triggeringTime, taskId) == 1;
+        String sql = " set next_triggering_time = ?, change_time = ? where task_id  = ? and del_flag = 0";
+        boolean flag = inShard(taskId, () -> updateOne(getUpdateExpression() + sql, triggeringTime, System.currentTimeMillis(), taskId) == 1);
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return flag;
     }
 
     public int deleteByTaskIds(List<Long> taskIds) {
-        String condition = " where task_id in (" + idRepeat(taskIds) + ") and del_flag = 0";
-        return updateBatch(getDeleteExpression() + condition, new Object[][]{});
+        int count = sumByShard(taskIds, ids -> updateBatch(getDeleteExpression() + " where task_id in (" + idRepeat(ids) + ") and del_flag = 0", new Object[][]{}));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskIds);
+        return count;
     }
 
     public int updateByTaskId(TriggerEditParams triggerEditParams, long taskId) {
@@ -119,7 +162,12 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
         updateEntity.setCycle(triggerEditParams.getCycle());
         updateEntity.setChildTasksId(triggerEditParams.getChildTasksId());
         updateEntity.setMaximumExecutionTime(triggerEditParams.getMaximumExecutionTime());
-        return updateEntity(updateEntity, "task_id = ?", taskId);
+        updateEntity.setChangeTime(System.currentTimeMillis());
+        int count = inShard(taskId, () -> updateEntity(updateEntity, "task_id = ?", taskId));
+        AutoJobEntityCache
+                .getInstance()
+                .invalidate(taskId);
+        return count;
     }
 
     /**
@@ -133,7 +181,21 @@ public class AutoJobTriggerEntityMapper extends BaseMapper<AutoJobTriggerEntity>
      */
     public List<AutoJobTriggerEntity> selectNearTrigger(long nearTime, TimeUnit unit) {
         String condition = "  where next_triggering_time > ? and next_triggering_time < ? and finished_times< repeat_times and del_flag = 0 and is_pause = 0";
-        return queryList(getSelectExpression() + condition, System.currentTimeMillis(), System.currentTimeMillis() + unit.toMillis(nearTime));
+        long now = System.currentTimeMillis();
+        return mergeShards(() -> queryList(getSelectExpression() + condition, now, now + unit.toMillis(nearTime)));
+    }
+
+    /**
+     * 触发器与所属任务位于同一分片
+     */
+    @Override
+    protected boolean isShardTable() {
+        return true;
+    }
+
+    @Override
+    protected Long getShardKey(AutoJobTriggerEntity entity) {
+        return entity.getTaskId();
     }
 
 
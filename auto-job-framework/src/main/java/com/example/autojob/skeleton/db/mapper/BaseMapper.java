@@ -1,22 +1,29 @@
 package com.example.autojob.skeleton.db.mapper;
 
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
 import com.example.autojob.skeleton.db.AutoJobSQLException;
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.DataSourceHolder;
 import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.enumerate.DatabaseType;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
-import com.example.autojob.util.convert.DateUtils;
 import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.convert.StringUtils;
 import com.example.autojob.util.id.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.dbutils.BaseResultSetHandler;
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
 
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * 基础Mapper
@@ -26,6 +33,20 @@ import java.util.*;
  */
 @Slf4j
 public abstract class BaseMapper<T> {
+    /**
+     * updateEntity生成的SQL缓存
+     */
+    private static final Map<String, String> UPDATE_SQL_CACHE = new ConcurrentHashMap<>();
+    /**
+     * 读取第一列为id列表，重复的id只保留一个
+     */
+    protected static final ResultSetHandler<List<Long>> ID_LIST_HANDLER = resultSet -> {
+        Set<Long> ids = new LinkedHashSet<>();
+        while (resultSet.next()) {
+            ids.add(resultSet.getLong(1));
+        }
+        return new ArrayList<>(ids);
+    };
     protected DataSourceHolder dataSourceHolder;
     protected final QueryRunner queryRunner;
     private final Class<T> type;
@@ -47,7 +68,7 @@ public abstract class BaseMapper<T> {
 
     public int count() {
         String sql = "select count(id) from " + getTableName() + " where del_flag = 0";
-        return conditionalCount(sql);
+        return sumShards(() -> conditionalCount(sql));
     }
 
     public int conditionalCount(String sql, Object... params) {
@@ -118,6 +139,18 @@ public abstract class BaseMapper<T> {
         }
     }
 
+    public List<Long> queryIds(String sql, Object... params) {
+        Connection connection = getConnection();
+        try {
+            return printExecuteLogs(sql, queryRunner.query(connection, sql, ID_LIST_HANDLER, params), params);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new AutoJobSQLException(e.getMessage(), e.getCause());
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
     public int updateOne(String sql, Object... params) {
         Connection connection = getConnection();
         try {
@@ -144,46 +177,55 @@ public abstract class BaseMapper<T> {
         }
     }
 
+    /**
+     * 按实体的非空字段更新，生成的SQL使用占位符，同一实体类、同一组非空字段与条件的SQL只生成一次
+     *
+     * @param entity    实体，值为null的字段不会被更新
+     * @param condition 更新条件，不含where
+     * @param params    条件参数
+     * @return int
+     * @author Huang Yongxiang
+     * @date 2023/1/9 15:10
+     */
     public int updateEntity(T entity, String condition, Object... params) {
         if (entity == null || StringUtils.isEmpty(condition)) {
             return 0;
         }
         try {
-            StringBuilder sql = new StringBuilder();
-            sql
-                    .append(getUpdateExpression())
-                    .append("set ");
-            Field[] fields = entity
-                    .getClass()
-                    .getDeclaredFields();
-            for (Field field : fields) {
-                field.setAccessible(true);
-                Object value = field.get(entity);
+            EntityRowMapper<?> rowMapper = EntityRowMapper.of(entity.getClass());
+            Object[] fieldValues = rowMapper.getValues(entity);
+            BitSet fieldSet = new BitSet(fieldValues.length);
+            List<Object> values = new ArrayList<>(fieldValues.length + (params == null ? 0 : params.length));
+            for (int i = 0; i < fieldValues.length; i++) {
+                Object value = fieldValues[i];
                 if (value != null) {
-                    sql
-                            .append(field.getName())
-                            .append(" = ");
-                    if (value instanceof String) {
-                        sql
-                                .append("\"")
-                                .append(value)
-                                .append("\"");
-                    } else if (value instanceof Date) {
-                        sql
-                                .append("\"")
-                                .append(DateUtils.parseDateToStr("yyyy-MM-dd HH:mm:ss", (Date) value))
-                                .append("\"");
-                    } else {
-                        sql.append(value);
-                    }
-                    sql.append(",");
+                    fieldSet.set(i);
+                    values.add(value instanceof Date && !(value instanceof java.sql.Date || value instanceof Timestamp) ? new Timestamp(((Date) value).getTime()) : value);
+                }
+            }
+            if (fieldSet.isEmpty()) {
+                return 0;
+            }
+            String key = entity
+                    .getClass()
+                    .getName() + fieldSet + condition;
+            String sql = UPDATE_SQL_CACHE.computeIfAbsent(key, k -> {
+                StringBuilder builder = new StringBuilder(getUpdateExpression()).append("set ");
+                for (int i = fieldSet.nextSetBit(0); i >= 0; i = fieldSet.nextSetBit(i + 1)) {
+                    builder
+                            .append(rowMapper.getColumnName(i))
+                            .append(" = ?,");
                 }
+                builder.deleteCharAt(builder.length() - 1);
+                return builder
+                        .append(" where ")
+                        .append(condition)
+                        .toString();
+            });
+            if (params != null) {
+                values.addAll(Arrays.asList(params));
             }
-            sql.deleteCharAt(sql.length() - 1);
-            sql
-                    .append(" where ")
-                    .append(condition);
-            return updateOne(sql.toString(), params);
+            return updateOne(sql, values.toArray());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -201,7 +243,7 @@ public abstract class BaseMapper<T> {
      */
     @SafeVarargs
     public final boolean doTransaction(TransactionEntry[] transactionEntries, Class<? extends Exception>... exceptions) {
-        boolean flag = TransactionManager.openTransaction(dataSourceHolder);
+        boolean flag = TransactionManager.openTransaction(currentDataSourceHolder());
         if (!flag) {
             throw new IllegalStateException("开启事务异常");
         }
@@ -214,16 +256,25 @@ public abstract class BaseMapper<T> {
             return true;
         } catch (Exception e) {
             e.printStackTrace();
-            if (exceptions != null && exceptions.length > 0) {
+            boolean isRollback = exceptions == null || exceptions.length == 0;
+            if (!isRollback) {
                 for (Class<? extends Exception> ex : exceptions) {
                     if (e.getClass() == ex) {
-                        dataSourceHolder.rollbackQuietly(connection);
+                        isRollback = true;
                         break;
                     }
                 }
+            }
+            //无论是否回滚都要结束事务，否则当前线程会一直处于事务中
+            if (isRollback) {
+                TransactionManager.rollbackTransaction();
             } else {
-                dataSourceHolder.rollbackQuietly(connection);
+                TransactionManager.closeTransaction();
             }
+        } finally {
+            AutoJobEntityCache
+                    .getInstance()
+                    .afterTransaction();
         }
         return false;
     }
@@ -232,10 +283,25 @@ public abstract class BaseMapper<T> {
         if (entities == null || entities.size() == 0) {
             return 0;
         }
-        int length = entities
-                .get(0)
-                .getClass()
-                .getDeclaredFields().length;
+        if (isShardRouted()) {
+            AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+            int count = 0;
+            for (Map.Entry<Integer, List<T>> entry : router
+                    .groupByShard(entities, this::requireShardKey)
+                    .entrySet()) {
+                count += router.doInShard(entry.getKey(), () -> insertRows(entry.getValue()));
+            }
+            return count;
+        }
+        return insertRows(entities);
+    }
+
+    private int insertRows(List<T> entities) {
+        int length = EntityRowMapper
+                .of(entities
+                        .get(0)
+                        .getClass())
+                .getFieldCount();
         String slot = StringUtils.repeat("?", ",", length);
         String sql = "insert into " + getTableName() + "(" + getAllColumns() + ") values" + " (" + slot + ")";
         Object[][] params = new Object[entities.size()][];
@@ -249,7 +315,7 @@ public abstract class BaseMapper<T> {
         DatabaseType type = DatabaseType.getCurrentDatabaseType();
         if (type == null || type == DatabaseType.MY_SQL) {
             return String.format("limit %d, %d", skip, size);
-        } else if (type == DatabaseType.POSTGRES_SQL) {
+        } else if (type == DatabaseType.POSTGRES_SQL || type == DatabaseType.H2) {
             return String.format("limit %d offset %d", size, skip);
         }
         return String.format("limit %d,%d", skip, size);
@@ -261,6 +327,46 @@ public abstract class BaseMapper<T> {
         return queryList(getSelectExpression() + condition);
     }
 
+    /**
+     * 游标分页，按id升序返回id大于上一页最后一条记录id的记录，查询代价与页的深度无关
+     *
+     * @param lastId 上一页最后一条记录的id，为null时查询第一页
+     * @param size   每页条数
+     * @return java.util.List<T>
+     * @author Huang Yongxiang
+     * @date 2023/1/10 14:30
+     */
+    public List<T> pageAfter(Long lastId, int size) {
+        String sql = getSelectExpression() + " where del_flag = 0 and id > ? order by id " + getLimitSql(size);
+        return queryList(sql, lastId == null ? Long.MIN_VALUE : lastId);
+    }
+
+    /**
+     * 物理删除一块时间列早于指定时间的记录，先按主键查出一块id再按id删除，单次删除持有的行锁数不超过块大小
+     *
+     * @param timeColumn 时间列，值为毫秒时间戳
+     * @param timestamp  早于该时间的记录会被删除
+     * @param chunkSize  块大小
+     * @return int 本次删除的记录数，小于块大小时说明已删除完毕
+     * @author Huang Yongxiang
+     * @date 2023/1/11 14:20
+     */
+    protected int deleteChunkBefore(String timeColumn, long timestamp, int chunkSize) {
+        if (isShardRouted()) {
+            return sumShards(() -> deleteChunkBefore(timeColumn, timestamp, chunkSize));
+        }
+        String sql = String.format("select id from %s where %s < ? order by id %s", getTableName(), timeColumn, getLimitSql(chunkSize));
+        List<Long> ids = queryIds(sql, timestamp);
+        if (ids.size() == 0) {
+            return 0;
+        }
+        return updateOne(getDeleteExpression() + String.format(" where id in (%s)", idRepeat(ids)));
+    }
+
+    protected String getLimitSql(int size) {
+        return String.format("limit %d", size);
+    }
+
     /**
      * 实现对SQL执行的日志打印
      *
@@ -274,7 +380,7 @@ public abstract class BaseMapper<T> {
     protected static <T> T printExecuteLogs(String sql, T result, Object... params) {
         if (StringUtils.isEmpty(sql)) {
             log.error("empty Sql");
-        } else {
+        } else if (log.isDebugEnabled()) {
             log.debug("Sql ===============> {}", sql);
             if (params != null) {
                 StringBuilder stringBuilder = new StringBuilder();
@@ -319,23 +425,16 @@ public abstract class BaseMapper<T> {
         if (entity == null) {
             return new Object[]{};
         }
-        Field[] fields = entity
-                .getClass()
-                .getDeclaredFields();
-        Object[] entityValues = new Object[fields.length];
-        for (int i = 0; i < fields.length; i++) {
-            fields[i].setAccessible(true);
-            try {
-                entityValues[i] = fields[i].get(entity);
-                if ("delFlag".equals(fields[i].getName()) && entityValues[i] == null) {
-                    entityValues[i] = 0;
-                }
-                if ("id".equals(fields[i].getName()) && entityValues[i] == null) {
-                    entityValues[i] = IdGenerator.getNextIdAsLong();
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                return new Object[]{};
+        EntityRowMapper<?> rowMapper = EntityRowMapper.of(entity.getClass());
+        Object[] entityValues = rowMapper.getValues(entity);
+        for (int i = 0; i < entityValues.length; i++) {
+            if (entityValues[i] != null) {
+                continue;
+            }
+            if ("delFlag".equals(rowMapper.getFieldName(i))) {
+                entityValues[i] = 0;
+            } else if ("id".equals(rowMapper.getFieldName(i))) {
+                entityValues[i] = IdGenerator.getNextIdAsLong();
             }
         }
         return entityValues;
@@ -497,16 +596,159 @@ public abstract class BaseMapper<T> {
         return "insert into " + getTableName() + "(" + getAllColumns() + ") values ";
     }
 
+    /**
+     * 实体的分片键，返回null表示该表不分片，所有数据位于主库。分片的表中同一任务的数据必须返回相同的分片键
+     *
+     * @param entity 实体
+     * @return java.lang.Long
+     * @author Huang Yongxiang
+     * @date 2023/1/16 11:00
+     */
+    protected Long getShardKey(T entity) {
+        return null;
+    }
+
+    /**
+     * 获取分片表中实体的分片键，分片键为空时无法确定实体所在的分片，直接拒绝写入，避免数据被写入与查询不一致的分片
+     */
+    private long requireShardKey(T entity) {
+        Long shardKey = getShardKey(entity);
+        if (shardKey == null) {
+            throw new IllegalArgumentException(String.format("写入分片表%s的实体缺少分片键：%s", getTableName(), entity));
+        }
+        return shardKey;
+    }
+
+    /**
+     * 当前mapper的操作是否需要按分片路由，只有使用主连接池且表参与分片时才路由
+     *
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/16 11:02
+     */
+    protected boolean isShardRouted() {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        return isShardTable() && router.isSharded() && dataSourceHolder == router.getDataSourceHolder(0);
+    }
+
+    /**
+     * 表是否参与分片，参与分片的mapper需重写该方法与{@link #getShardKey(Object)}
+     *
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/16 11:03
+     */
+    protected boolean isShardTable() {
+        return false;
+    }
+
+    /**
+     * 在分片键所在的分片上执行操作
+     */
+    protected <R> R inShard(long shardKey, Supplier<R> action) {
+        if (!isShardRouted()) {
+            return action.get();
+        }
+        return AutoJobShardRouter
+                .getInstance()
+                .route(shardKey, action);
+    }
+
+    /**
+     * 在所有分片上执行操作，返回各分片的结果
+     */
+    protected <R> List<R> eachShard(Supplier<R> action) {
+        if (!isShardRouted()) {
+            return Collections.singletonList(action.get());
+        }
+        return AutoJobShardRouter
+                .getInstance()
+                .fanOut(action);
+    }
+
+    /**
+     * 在所有分片上执行操作并累加结果
+     */
+    protected int sumShards(IntSupplier action) {
+        if (!isShardRouted()) {
+            return action.getAsInt();
+        }
+        return AutoJobShardRouter
+                .getInstance()
+                .fanOut(action::getAsInt)
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * 在所有分片上执行查询并合并结果
+     */
+    protected List<T> mergeShards(Supplier<List<T>> query) {
+        if (!isShardRouted()) {
+            return query.get();
+        }
+        List<T> result = new ArrayList<>();
+        AutoJobShardRouter
+                .getInstance()
+                .fanOut(query)
+                .forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * 将分片键按分片分组，在各分片上对该分片的分片键执行操作并累加结果
+     */
+    protected int sumByShard(List<Long> shardKeys, ToIntFunction<List<Long>> action) {
+        if (shardKeys == null || shardKeys.size() == 0) {
+            return 0;
+        }
+        if (!isShardRouted()) {
+            return action.applyAsInt(shardKeys);
+        }
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        int count = 0;
+        for (Map.Entry<Integer, List<Long>> entry : router
+                .groupByShard(shardKeys, Long::longValue)
+                .entrySet()) {
+            count += router.doInShard(entry.getKey(), () -> action.applyAsInt(entry.getValue()));
+        }
+        return count;
+    }
+
+    /**
+     * 当前作用域使用的连接池，分片路由的mapper在分片作用域内使用对应分片的连接池
+     *
+     * @return com.example.autojob.skeleton.db.DataSourceHolder
+     * @author Huang Yongxiang
+     * @date 2023/1/16 11:05
+     */
+    protected DataSourceHolder currentDataSourceHolder() {
+        if (!isShardRouted()) {
+            return dataSourceHolder;
+        }
+        return AutoJobShardRouter
+                .getInstance()
+                .currentDataSourceHolder();
+    }
+
     private Connection getConnection() {
-        if (TransactionManager.isOpenTransaction()) {
-            return TransactionManager.getCurrentConnection();
+        DataSourceHolder holder = currentDataSourceHolder();
+        Connection transactionConnection = TransactionManager.getTransactionConnection(holder);
+        if (transactionConnection != null) {
+            return transactionConnection;
+        }
+        Connection unitConnection = TransactionManager.getUnitConnection(holder);
+        if (unitConnection != null) {
+            return unitConnection;
         }
-        return dataSourceHolder.getConnection();
+        return holder.getConnection();
     }
 
     private void closeConnection(Connection connection) {
-        if (!TransactionManager.isOpenTransaction()) {
-            dataSourceHolder.release(connection);
+        DataSourceHolder holder = currentDataSourceHolder();
+        if (connection != TransactionManager.getTransactionConnection(holder) && connection != TransactionManager.getUnitConnection(holder)) {
+            holder.release(connection);
         }
     }
 
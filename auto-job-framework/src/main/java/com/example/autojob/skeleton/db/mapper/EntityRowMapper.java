@@ -0,0 +1,199 @@
+package com.example.autojob.skeleton.db.mapper;
+
+import com.example.autojob.util.convert.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体行映射器，每个实体类只在首次使用时解析一次，之后通过MethodHandle读写字段，结果集按列下标映射，
+ * 列名与字段名的对应规则为下划线命名对应驼峰命名
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/10 9:40
+ */
+public class EntityRowMapper<T> {
+    private static final Map<Class<?>, EntityRowMapper<?>> MAPPER_CACHE = new ConcurrentHashMap<>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final String[] fieldNames;
+    private final String[] columnNames;
+    private final Class<?>[] fieldTypes;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    /**
+     * 列名（小写）到字段下标
+     */
+    private final Map<String, Integer> columnIndex;
+    /**
+     * 声明的字段总数，包含静态字段，与按字段反射映射时判断全空行的条件一致
+     */
+    private final int declaredFieldCount;
+
+    private EntityRowMapper(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Field> fields = new ArrayList<>();
+        Field[] declaredFields = type.getDeclaredFields();
+        declaredFieldCount = declaredFields.length;
+        for (Field field : declaredFields) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                fields.add(field);
+            }
+        }
+        int size = fields.size();
+        fieldNames = new String[size];
+        columnNames = new String[size];
+        fieldTypes = new Class<?>[size];
+        getters = new MethodHandle[size];
+        setters = new MethodHandle[size];
+        columnIndex = new HashMap<>();
+        try {
+            Constructor<T> declaredConstructor = type.getDeclaredConstructor();
+            declaredConstructor.setAccessible(true);
+            constructor = lookup
+                    .unreflectConstructor(declaredConstructor)
+                    .asType(CONSTRUCTOR_TYPE);
+            for (int i = 0; i < size; i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                fieldNames[i] = field.getName();
+                columnNames[i] = StringUtils.uncamelCase(field.getName());
+                fieldTypes[i] = field.getType();
+                getters[i] = lookup
+                        .unreflectGetter(field)
+                        .asType(GETTER_TYPE);
+                setters[i] = lookup
+                        .unreflectSetter(field)
+                        .asType(SETTER_TYPE);
+                columnIndex.put(columnNames[i], i);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无法为实体类" + type.getName() + "创建行映射器", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityRowMapper<T> of(Class<T> type) {
+        return (EntityRowMapper<T>) MAPPER_CACHE.computeIfAbsent(type, EntityRowMapper::new);
+    }
+
+    /**
+     * 根据结果集的列生成映射计划，计划的第i项为结果集第i+1列对应的字段下标，没有对应字段时为-1。
+     * 同名的列只有第一列映射到字段，与按列名读取时一致
+     *
+     * @param rs 结果集
+     * @return int[]
+     * @author Huang Yongxiang
+     * @date 2023/1/10 9:52
+     */
+    public int[] plan(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int[] plan = new int[metaData.getColumnCount()];
+        boolean[] isMapped = new boolean[fieldNames.length];
+        for (int i = 0; i < plan.length; i++) {
+            Integer index = columnIndex.get(metaData
+                    .getColumnLabel(i + 1)
+                    .toLowerCase());
+            if (index == null || isMapped[index]) {
+                plan[i] = -1;
+                continue;
+            }
+            isMapped[index] = true;
+            plan[i] = index;
+        }
+        return plan;
+    }
+
+    /**
+     * 创建一个所有字段均为默认值的实例
+     *
+     * @return T
+     * @author Huang Yongxiang
+     * @date 2023/1/27 15:10
+     */
+    public T newInstance() {
+        try {
+            return type.cast(constructor.invokeExact());
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("实例化" + type.getName() + "失败", throwable);
+        }
+    }
+
+    /**
+     * 按映射计划读取结果集当前行，只有实体声明的每个字段都在结果集中且均为null时返回null，声明了静态字段的实体不会返回null。
+     * 单个字段转换失败时跳过该字段
+     *
+     * @param rs   结果集，游标需已指向要读取的行
+     * @param plan 映射计划
+     * @return T
+     * @author Huang Yongxiang
+     * @date 2023/1/10 9:55
+     */
+    public T mapRow(ResultSet rs, int[] plan) {
+        T instance = newInstance();
+        int nullCount = 0;
+        for (int i = 0; i < plan.length; i++) {
+            int fieldIndex = plan[i];
+            if (fieldIndex < 0) {
+                continue;
+            }
+            try {
+                Object value = rs.getObject(i + 1, fieldTypes[fieldIndex]);
+                if (value == null) {
+                    nullCount++;
+                    continue;
+                }
+                setters[fieldIndex].invokeExact((Object) instance, value);
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+        return nullCount == declaredFieldCount ? null : instance;
+    }
+
+    /**
+     * 按字段声明顺序获取实体的所有字段值
+     *
+     * @param entity 实体
+     * @return java.lang.Object[]
+     * @author Huang Yongxiang
+     * @date 2023/1/10 9:58
+     */
+    public Object[] getValues(Object entity) {
+        Object[] values = new Object[getters.length];
+        for (int i = 0; i < getters.length; i++) {
+            try {
+                values[i] = getters[i].invokeExact(entity);
+            } catch (Throwable throwable) {
+                throw new IllegalStateException("读取字段" + fieldNames[i] + "失败", throwable);
+            }
+        }
+        return values;
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+
+    public String getColumnName(int index) {
+        return columnNames[index];
+    }
+}
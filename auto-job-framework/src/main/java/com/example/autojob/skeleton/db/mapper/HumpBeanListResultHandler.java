@@ -1,10 +1,7 @@
 package com.example.autojob.skeleton.db.mapper;
 
-import com.example.autojob.util.bean.ObjectUtil;
-import com.example.autojob.util.convert.StringUtils;
 import org.apache.commons.dbutils.ResultSetHandler;
 
-import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -17,42 +14,24 @@ import java.util.List;
  * @Date 2022/08/18 9:44
  */
 public class HumpBeanListResultHandler<T> implements ResultSetHandler<List<T>> {
-    private final Class<T> thisType;
+    private final EntityRowMapper<T> rowMapper;
 
     public HumpBeanListResultHandler(Class<T> type) {
-        this.thisType = type;
+        this.rowMapper = EntityRowMapper.of(type);
     }
 
     @Override
     public List<T> handle(ResultSet rs) throws SQLException {
         List<T> humpResult = new ArrayList<>();
-        Field[] fields = thisType.getDeclaredFields();
+        int[] plan = null;
         while (rs.next()) {
-            T instance = ObjectUtil.getClassInstance(thisType);
-            if (instance == null) {
-                throw new NullPointerException();
+            if (plan == null) {
+                plan = rowMapper.plan(rs);
             }
-            int nullCount = 0;
-            for (Field field : fields) {
-                field.setAccessible(true);
-                String humpName = field.getName();
-                String unHumpName = StringUtils.uncamelCase(humpName);
-                try {
-                    Object value = rs.getObject(unHumpName, field.getType());
-                    if (value == null) {
-                        nullCount++;
-                        continue;
-                    }
-
-                    field.set(instance, value);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            if (nullCount == fields.length) {
-                continue;
+            T instance = rowMapper.mapRow(rs, plan);
+            if (instance != null) {
+                humpResult.add(instance);
             }
-            humpResult.add(instance);
         }
         return humpResult;
     }
@@ -1,10 +1,7 @@
 package com.example.autojob.skeleton.db.mapper;
 
-import com.example.autojob.util.bean.ObjectUtil;
-import com.example.autojob.util.convert.StringUtils;
 import org.apache.commons.dbutils.ResultSetHandler;
 
-import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -15,45 +12,19 @@ import java.sql.SQLException;
  * @Date 2022/08/17 22:02
  */
 public class HumpBeanResultHandler<T> implements ResultSetHandler<T> {
-    private final Class<T> type;
+    private final EntityRowMapper<T> rowMapper;
 
 
     public HumpBeanResultHandler(Class<T> type) {
-        this.type = type;
+        this.rowMapper = EntityRowMapper.of(type);
     }
 
     @Override
     public T handle(ResultSet rs) throws SQLException {
-        T instance = ObjectUtil.getClassInstance(type);
-        if (instance == null) {
-            throw new NullPointerException();
+        //没有结果时返回所有字段为默认值的实例
+        if (!rs.next()) {
+            return rowMapper.newInstance();
         }
-        int count = 0;
-        int nullCount = 0;
-        Field[] fields = type.getDeclaredFields();
-        while (rs.next()) {
-            for (Field field : fields) {
-                field.setAccessible(true);
-                String humpName = field.getName();
-                String unHumpName = StringUtils.uncamelCase(humpName);
-                try {
-                    Object value = rs.getObject(unHumpName, field.getType());
-                    if (value == null) {
-                        nullCount++;
-                        continue;
-                    }
-                    field.set(instance, value);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            if (++count == 1) {
-                break;
-            }
-        }
-        if (nullCount == fields.length) {
-            return null;
-        }
-        return instance;
+        return rowMapper.mapRow(rs, rowMapper.plan(rs));
     }
 }
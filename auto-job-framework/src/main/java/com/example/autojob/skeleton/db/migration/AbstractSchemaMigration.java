@@ -0,0 +1,128 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 数据库结构迁移，每个迁移拥有唯一递增的版本号，迁移的每一步都应该是幂等的，同一版本可能在多个节点上同时执行
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/05 14:02
+ */
+@Slf4j
+public abstract class AbstractSchemaMigration {
+    /**
+     * 迁移版本号，必须唯一且递增
+     *
+     * @return int
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:03
+     */
+    public abstract int getVersion();
+
+    public abstract String getDescription();
+
+    /**
+     * 执行迁移
+     *
+     * @param connection   数据库连接
+     * @param databaseType 数据库类型
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:05
+     */
+    public abstract void migrate(Connection connection, DatabaseType databaseType) throws SQLException;
+
+    /**
+     * 当索引不存在时创建索引
+     *
+     * @param connection 数据库连接
+     * @param tableName  表名
+     * @param indexName  索引名，PostgreSQL下索引名在模式内唯一，建议带上表名前缀
+     * @param columns    索引列，按顺序组成联合索引
+     * @return boolean 是否新建了索引
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:10
+     */
+    protected boolean createIndexIfAbsent(Connection connection, String tableName, String indexName, String... columns) throws SQLException {
+        if (hasIndex(connection, tableName, indexName)) {
+            return false;
+        }
+        String sql = String.format("create index %s on %s (%s)", indexName, tableName, String.join(", ", columns));
+        execute(connection, sql);
+        log.info("表{}创建索引{}({})", tableName, indexName, String.join(", ", columns));
+        return true;
+    }
+
+    /**
+     * 当列不存在时添加列
+     *
+     * @param connection 数据库连接
+     * @param tableName  表名
+     * @param columnName 列名
+     * @param definition 列定义，如：bigint default null
+     * @return boolean 是否新增了列
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:12
+     */
+    protected boolean addColumnIfAbsent(Connection connection, String tableName, String columnName, String definition) throws SQLException {
+        if (hasColumn(connection, tableName, columnName)) {
+            return false;
+        }
+        execute(connection, String.format("alter table %s add column %s %s", tableName, columnName, definition));
+        log.info("表{}新增列{}", tableName, columnName);
+        return true;
+    }
+
+    protected boolean hasIndex(Connection connection, String tableName, String indexName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet resultSet = metaData.getIndexInfo(connection.getCatalog(), null, identifier(metaData, tableName), false, true)) {
+            while (resultSet.next()) {
+                if (indexName.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected boolean hasColumn(Connection connection, String tableName, String columnName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet resultSet = metaData.getColumns(connection.getCatalog(), null, identifier(metaData, tableName), null)) {
+            while (resultSet.next()) {
+                if (columnName.equalsIgnoreCase(resultSet.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected boolean hasTable(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, identifier(metaData, tableName), new String[]{"TABLE"})) {
+            return resultSet.next();
+        }
+    }
+
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase();
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase();
+        }
+        return name;
+    }
+
+    protected void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.annotation.ProcessorLevel;
+import com.example.autojob.skeleton.db.AutoJobSQLException;
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import com.example.autojob.skeleton.framework.processor.IAutoJobLoader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 数据库结构迁移器，在应用启动时按版本号顺序执行尚未应用的迁移，已应用的版本记录在aj_schema_version表中。
+ * 迁移器的处理器级别严格高于注册器加载器，保证注册任务前表结构已是最新
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/05 14:40
+ */
+@Slf4j
+@ProcessorLevel(Integer.MAX_VALUE)
+public class AutoJobSchemaMigrator implements IAutoJobLoader {
+    public static final String VERSION_TABLE = "aj_schema_version";
+    /**
+     * 分片布局表，每个库记录自己的分片号与首次启动时的分片总数
+     */
+    public static final String SHARD_LAYOUT_TABLE = "aj_shard_layout";
+    /**
+     * 类路径下的H2建表脚本
+     */
+    public static final String H2_SCHEMA_SCRIPT = "db/auto_job_plus_h2.sql";
+
+    private final Map<Integer, AbstractSchemaMigration> migrations = new TreeMap<>();
+
+    public AutoJobSchemaMigrator() {
+        addMigration(new V1IndexMigration());
+        addMigration(new V2TaskLeaseMigration());
+        addMigration(new V3LatestVersionMigration());
+        addMigration(new V4TriggerChangeMarkerMigration());
+        addMigration(new V5LogBlockMigration());
+    }
+
+    /**
+     * 添加一个迁移，版本号相同的迁移会被覆盖
+     *
+     * @param migration 迁移
+     * @return com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:42
+     */
+    public AutoJobSchemaMigrator addMigration(AbstractSchemaMigration migration) {
+        if (migration != null) {
+            migrations.put(migration.getVersion(), migration);
+        }
+        return this;
+    }
+
+    @Override
+    public void load() {
+        List<DataSourceHolder> dataSourceHolders = AutoJobShardRouter
+                .getInstance()
+                .getDataSourceHolders();
+        //先校验所有分片的布局，任一分片布局错误时不在任何库上记录布局或执行迁移
+        for (int shard = 0; shard < dataSourceHolders.size(); shard++) {
+            checkShardLayout(dataSourceHolders.get(shard), shard, dataSourceHolders.size(), false);
+        }
+        for (int shard = 0; shard < dataSourceHolders.size(); shard++) {
+            checkShardLayout(dataSourceHolders.get(shard), shard, dataSourceHolders.size(), true);
+        }
+        //每个分片的表结构需分别迁移
+        for (DataSourceHolder dataSourceHolder : dataSourceHolders) {
+            migrate(dataSourceHolder, DatabaseType.getCurrentDatabaseType());
+        }
+    }
+
+    /**
+     * 校验分片布局。任务按任务ID对分片数取模路由，已有数据的分片数或分片顺序改变后大部分任务会被路由到数据所在之外的分片，
+     * 因此首次启动时在每个库中记录分片号与分片总数，之后配置与记录不一致时拒绝启动。确需调整分片时应先按新的分片布局迁移数据，
+     * 再修改各库aj_shard_layout表中的记录
+     *
+     * @param dataSourceHolder 分片的数据源
+     * @param shard            分片号
+     * @param shardCount       分片总数
+     * @author Huang Yongxiang
+     * @date 2023/1/27 18:10
+     */
+    public void checkShardLayout(DataSourceHolder dataSourceHolder, int shard, int shardCount) {
+        checkShardLayout(dataSourceHolder, shard, shardCount, true);
+    }
+
+    private void checkShardLayout(DataSourceHolder dataSourceHolder, int shard, int shardCount, boolean isRecord) {
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            log.warn("无法获取分片{}的数据库连接，跳过分片布局校验", shard);
+            return;
+        }
+        try {
+            connection.setAutoCommit(true);
+            if (isRecord) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table if not exists " + SHARD_LAYOUT_TABLE + " (shard_index int not null, shard_count int not null, installed_time bigint, primary key (shard_index))");
+                }
+            }
+            try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select shard_index, shard_count from " + SHARD_LAYOUT_TABLE)) {
+                if (resultSet.next()) {
+                    int recordedShard = resultSet.getInt(1);
+                    int recordedCount = resultSet.getInt(2);
+                    if (recordedShard != shard || recordedCount != shardCount) {
+                        throw new AutoJobSQLException(String.format("分片布局已改变：该库记录为%d个分片中的%d号分片，当前配置为%d个分片中的%d号分片。改变分片数或分片顺序会使已有任务路由到错误的分片，请先迁移数据后再修改%s表", recordedCount, recordedShard, shardCount, shard, SHARD_LAYOUT_TABLE));
+                    }
+                    return;
+                }
+            } catch (SQLException e) {
+                //只校验时布局表可能尚未创建，视为未记录布局
+                if (isRecord) {
+                    throw e;
+                }
+                return;
+            }
+            if (!isRecord) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement("insert into " + SHARD_LAYOUT_TABLE + " (shard_index, shard_count, installed_time) values (?, ?, ?)")) {
+                statement.setInt(1, shard);
+                statement.setInt(2, shardCount);
+                statement.setLong(3, System.currentTimeMillis());
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                //集群中其他节点同时记录了布局，下次启动时再校验
+                log.debug("分片{}的布局已被记录：{}", shard, e.getMessage());
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new AutoJobSQLException("分片布局校验失败：" + e.getMessage(), e);
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+    }
+
+    /**
+     * 执行所有未应用的迁移
+     *
+     * @param dataSourceHolder 数据源
+     * @param databaseType     数据库类型
+     * @return int 本次应用的迁移数
+     * @author Huang Yongxiang
+     * @date 2023/1/5 14:48
+     */
+    public int migrate(DataSourceHolder dataSourceHolder, DatabaseType databaseType) {
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            log.warn("无法获取数据库连接，跳过数据库结构迁移");
+            return 0;
+        }
+        int count = 0;
+        try {
+            connection.setAutoCommit(true);
+            //嵌入式数据库通常随应用首次启动创建，库中尚无任务表时先执行建表脚本
+            if (databaseType == DatabaseType.H2) {
+                initEmbeddedSchema(connection);
+            }
+            createVersionTable(connection);
+            Set<Integer> appliedVersions = appliedVersions(connection);
+            for (AbstractSchemaMigration migration : migrations.values()) {
+                if (appliedVersions.contains(migration.getVersion())) {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                migration.migrate(connection, databaseType);
+                recordVersion(connection, migration);
+                count++;
+                log.info("数据库结构迁移V{}：{}完成，用时{}ms", migration.getVersion(), migration.getDescription(), System.currentTimeMillis() - start);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new AutoJobSQLException("数据库结构迁移失败：" + e.getMessage(), e);
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+        return count;
+    }
+
+    private void initEmbeddedSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, "AJ_AUTO_JOB", new String[]{"TABLE"})) {
+            if (resultSet.next()) {
+                return;
+            }
+        }
+        InputStream inputStream = AutoJobSchemaMigrator.class
+                .getClassLoader()
+                .getResourceAsStream(H2_SCHEMA_SCRIPT);
+        if (inputStream == null) {
+            log.warn("类路径下未找到建表脚本{}，请手动建表", H2_SCHEMA_SCRIPT);
+            return;
+        }
+        StringBuilder script = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                //注释中可能含有分号，先去掉注释行再按分号切分语句
+                if (!line
+                        .trim()
+                        .startsWith("--")) {
+                    script
+                            .append(line)
+                            .append("\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new AutoJobSQLException("读取建表脚本失败：" + e.getMessage(), e);
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : script
+                    .toString()
+                    .split(";")) {
+                if (!sql
+                        .trim()
+                        .isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        log.info("已根据{}初始化嵌入式数据库表结构", H2_SCHEMA_SCRIPT);
+    }
+
+    private void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists " + VERSION_TABLE + " (version int not null, description varchar(255), installed_time bigint, primary key (version))");
+        }
+    }
+
+    private Set<Integer> appliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select version from " + VERSION_TABLE)) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private void recordVersion(Connection connection, AbstractSchemaMigration migration) {
+        try (PreparedStatement statement = connection.prepareStatement("insert into " + VERSION_TABLE + " (version, description, installed_time) values (?, ?, ?)")) {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.setLong(3, System.currentTimeMillis());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            //集群中其他节点已记录了该版本，迁移本身是幂等的，忽略即可
+            log.debug("迁移版本V{}已被记录：{}", migration.getVersion(), e.getMessage());
+        }
+    }
+}
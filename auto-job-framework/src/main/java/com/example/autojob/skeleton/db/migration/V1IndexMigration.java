@@ -0,0 +1,39 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 为调度与日志查询的热点路径添加二级索引
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/05 14:30
+ */
+public class V1IndexMigration extends AbstractSchemaMigration {
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public String getDescription() {
+        return "add secondary indexes";
+    }
+
+    @Override
+    public void migrate(Connection connection, DatabaseType databaseType) throws SQLException {
+        //selectNearTask按下次触发时间范围扫描，带上task_id使子查询可直接走索引
+        createIndexIfAbsent(connection, "aj_trigger", "idx_aj_trigger_next_time", "next_triggering_time", "is_pause", "del_flag", "task_id");
+        //触发器状态的更新均以task_id为条件
+        createIndexIfAbsent(connection, "aj_trigger", "idx_aj_trigger_task_id", "task_id", "del_flag");
+        //注解任务按annotation_id分组取最新版本，子任务查找同样按annotation_id
+        createIndexIfAbsent(connection, "aj_auto_job", "idx_aj_auto_job_annotation", "annotation_id", "del_flag", "status", "id");
+        createIndexIfAbsent(connection, "aj_job_logs", "idx_aj_job_logs_scheduling_id", "scheduling_id", "del_flag");
+        createIndexIfAbsent(connection, "aj_job_logs", "idx_aj_job_logs_task_time", "task_id", "write_timestamp");
+        createIndexIfAbsent(connection, "aj_run_logs", "idx_aj_run_logs_scheduling_id", "scheduling_id", "del_flag");
+        createIndexIfAbsent(connection, "aj_run_logs", "idx_aj_run_logs_task_time", "task_id", "write_timestamp");
+        createIndexIfAbsent(connection, "aj_scheduling_record", "idx_aj_scheduling_record_task_time", "task_id", "write_timestamp");
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 任务锁改为租约模式，新增锁持有者、租约到期时间以及加锁令牌
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/06 10:15
+ */
+public class V2TaskLeaseMigration extends AbstractSchemaMigration {
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public String getDescription() {
+        return "add task lock lease columns";
+    }
+
+    @Override
+    public void migrate(Connection connection, DatabaseType databaseType) throws SQLException {
+        addColumnIfAbsent(connection, "aj_auto_job", "lock_owner", "varchar(64) default null");
+        addColumnIfAbsent(connection, "aj_auto_job", "lock_expire", "bigint default null");
+        addColumnIfAbsent(connection, "aj_auto_job", "lock_version", "bigint default null");
+    }
+}
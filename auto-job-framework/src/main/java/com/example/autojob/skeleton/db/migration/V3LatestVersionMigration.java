@@ -0,0 +1,38 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 为注解任务新增最新版本标记，并为游标分页添加索引
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/10 14:20
+ */
+public class V3LatestVersionMigration extends AbstractSchemaMigration {
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public String getDescription() {
+        return "add latest version marker and keyset indexes";
+    }
+
+    @Override
+    public void migrate(Connection connection, DatabaseType databaseType) throws SQLException {
+        if (addColumnIfAbsent(connection, "aj_auto_job", "is_latest", "int not null default 0")) {
+            //MySQL不允许更新语句的子查询直接引用被更新的表，需要再包一层派生表
+            execute(connection, "update aj_auto_job set is_latest = 1 where id in (select t.id from (select max(id) as id from aj_auto_job where del_flag = 0 and annotation_id is not null group by annotation_id) t)");
+            //非注解任务没有版本，每个都是最新版本
+            execute(connection, "update aj_auto_job set is_latest = 1 where annotation_id is null and del_flag = 0");
+        }
+        createIndexIfAbsent(connection, "aj_auto_job", "idx_aj_auto_job_latest", "is_latest", "del_flag", "id");
+        createIndexIfAbsent(connection, "aj_scheduling_record", "idx_aj_scheduling_record_task_id", "task_id", "del_flag", "id");
+        createIndexIfAbsent(connection, "aj_job_logs", "idx_aj_job_logs_task_id", "task_id", "del_flag", "id");
+        createIndexIfAbsent(connection, "aj_run_logs", "idx_aj_run_logs_task_id", "task_id", "del_flag", "id");
+    }
+}
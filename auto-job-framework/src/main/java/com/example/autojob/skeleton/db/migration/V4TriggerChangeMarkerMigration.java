@@ -0,0 +1,30 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 为触发器新增变更时间戳，DB调度器据此增量拉取被修改的触发器
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/11 10:10
+ */
+public class V4TriggerChangeMarkerMigration extends AbstractSchemaMigration {
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @Override
+    public String getDescription() {
+        return "add trigger change marker";
+    }
+
+    @Override
+    public void migrate(Connection connection, DatabaseType databaseType) throws SQLException {
+        addColumnIfAbsent(connection, "aj_trigger", "change_time", "bigint not null default 0");
+        createIndexIfAbsent(connection, "aj_trigger", "idx_aj_trigger_change_time", "change_time", "next_triggering_time");
+    }
+}
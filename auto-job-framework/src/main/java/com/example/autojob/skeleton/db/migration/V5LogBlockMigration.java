@@ -0,0 +1,31 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 为任务日志新增日志块所需的条数与内容列，同一调度的日志可压缩为一行存放
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/22 10:40
+ */
+public class V5LogBlockMigration extends AbstractSchemaMigration {
+    @Override
+    public int getVersion() {
+        return 5;
+    }
+
+    @Override
+    public String getDescription() {
+        return "add compressed log block columns";
+    }
+
+    @Override
+    public void migrate(Connection connection, DatabaseType databaseType) throws SQLException {
+        String contentType = databaseType == DatabaseType.MY_SQL ? "mediumblob" : databaseType == DatabaseType.POSTGRES_SQL ? "bytea" : "blob";
+        addColumnIfAbsent(connection, "aj_job_logs", "log_count", "int not null default 1");
+        addColumnIfAbsent(connection, "aj_job_logs", "content", contentType + " default null");
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.autojob.skeleton.db.retention;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按天分区的日志表维护，分区表结构见db目录下的*_partition.sql。每个日分区以pyyyyMMdd命名，
+ * 过期分区直接删除，未来几天的分区提前创建，非分区表不做任何处理
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/12 10:20
+ */
+@Slf4j
+public class AutoJobPartitionManager {
+    private static final DateTimeFormatter PARTITION_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String PARTITION_PREFIX = "p";
+    private static final String MY_SQL_MAX_PARTITION = "p_max";
+
+    private final DataSourceHolder dataSourceHolder;
+    private final DatabaseType databaseType;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    public AutoJobPartitionManager(DataSourceHolder dataSourceHolder, DatabaseType databaseType) {
+        this.dataSourceHolder = dataSourceHolder;
+        this.databaseType = databaseType;
+    }
+
+    /**
+     * 判断表是否为按write_timestamp分区的分区表
+     *
+     * @param tableName 表名
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/12 10:25
+     */
+    public boolean isPartitioned(String tableName) {
+        String sql;
+        if (databaseType == DatabaseType.MY_SQL) {
+            sql = "select count(*) from information_schema.partitions where table_schema = database() and table_name = ? and partition_name is not null";
+        } else if (databaseType == DatabaseType.POSTGRES_SQL) {
+            sql = "select count(*) from pg_partitioned_table pt join pg_class c on pt.partrelid = c.oid where c.relname = ? and pg_table_is_visible(c.oid)";
+        } else {
+            return false;
+        }
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getLong(1) > 0;
+            }
+        } catch (SQLException e) {
+            log.warn("检查表{}是否为分区表失败：{}", tableName, e.getMessage());
+            return false;
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+    }
+
+    /**
+     * 删除数据全部早于截止时间的日分区
+     *
+     * @param tableName 表名
+     * @param cutoff    截止时间戳
+     * @return int 删除的分区数
+     * @author Huang Yongxiang
+     * @date 2023/1/12 10:30
+     */
+    public int dropExpiredPartitions(String tableName, long cutoff) {
+        LocalDate cutoffDate = LocalDate.now(zoneId);
+        int count = 0;
+        for (String partition : listDailyPartitions(tableName)) {
+            LocalDate date = parseDate(tableName, partition);
+            if (date == null || dayStart(date.plusDays(1)) > cutoff) {
+                continue;
+            }
+            //不删除当天及以后的分区，防止截止时间配置异常时误删
+            if (!date.isBefore(cutoffDate)) {
+                continue;
+            }
+            String sql;
+            if (databaseType == DatabaseType.MY_SQL) {
+                sql = String.format("alter table %s drop partition %s", tableName, partition);
+            } else {
+                sql = String.format("drop table if exists %s", partition);
+            }
+            if (executeQuietly(sql)) {
+                log.info("删除表{}的过期分区{}", tableName, partition);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提前创建从今天起若干天的日分区，已存在的分区跳过
+     *
+     * @param tableName 表名
+     * @param days      创建的天数
+     * @return int 新建的分区数
+     * @author Huang Yongxiang
+     * @date 2023/1/12 10:35
+     */
+    public int preCreatePartitions(String tableName, int days) {
+        List<String> exists = listDailyPartitions(tableName);
+        LocalDate today = LocalDate.now(zoneId);
+        int count = 0;
+        for (int i = 0; i <= days; i++) {
+            LocalDate date = today.plusDays(i);
+            String partition = partitionName(tableName, date);
+            if (exists.contains(partition)) {
+                continue;
+            }
+            long upper = dayStart(date.plusDays(1));
+            String sql;
+            if (databaseType == DatabaseType.MY_SQL) {
+                //RANGE分区只能在末尾追加，有MAXVALUE分区时需要从中拆分
+                if (hasMySQLMaxPartition(tableName)) {
+                    sql = String.format("alter table %s reorganize partition %s into (partition %s values less than (%d), partition %s values less than maxvalue)", tableName, MY_SQL_MAX_PARTITION, partition, upper, MY_SQL_MAX_PARTITION);
+                } else {
+                    sql = String.format("alter table %s add partition (partition %s values less than (%d))", tableName, partition, upper);
+                }
+            } else {
+                sql = String.format("create table if not exists %s partition of %s for values from (%d) to (%d)", partition, tableName, dayStart(date), upper);
+            }
+            if (executeQuietly(sql)) {
+                log.info("表{}创建分区{}", tableName, partition);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<String> listDailyPartitions(String tableName) {
+        String sql;
+        if (databaseType == DatabaseType.MY_SQL) {
+            sql = "select partition_name from information_schema.partitions where table_schema = database() and table_name = ? and partition_name is not null";
+        } else {
+            sql = "select c.relname from pg_inherits i join pg_class c on i.inhrelid = c.oid join pg_class p on i.inhparent = p.oid where p.relname = ? and pg_table_is_visible(p.oid)";
+        }
+        List<String> partitions = new ArrayList<>();
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            return partitions;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String partition = resultSet.getString(1);
+                    if (parseDate(tableName, partition) != null) {
+                        partitions.add(partition);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("获取表{}的分区失败：{}", tableName, e.getMessage());
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+        return partitions;
+    }
+
+    private boolean hasMySQLMaxPartition(String tableName) {
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("select count(*) from information_schema.partitions where table_schema = database() and table_name = ? and partition_name = ?")) {
+            statement.setString(1, tableName);
+            statement.setString(2, MY_SQL_MAX_PARTITION);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getLong(1) > 0;
+            }
+        } catch (SQLException e) {
+            return false;
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+    }
+
+    /**
+     * 执行分区DDL，集群中其他节点可能已执行同样的DDL，失败时只记录日志
+     */
+    private boolean executeQuietly(String sql) {
+        Connection connection = dataSourceHolder.getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute(sql);
+            return true;
+        } catch (SQLException e) {
+            log.warn("分区维护语句执行失败：{}，原因：{}", sql, e.getMessage());
+            return false;
+        } finally {
+            dataSourceHolder.release(connection);
+        }
+    }
+
+    private String partitionName(String tableName, LocalDate date) {
+        String partition = PARTITION_PREFIX + PARTITION_DATE_FORMATTER.format(date);
+        //PostgreSQL的分区是独立的表，需要带上父表名
+        return databaseType == DatabaseType.MY_SQL ? partition : tableName + "_" + partition;
+    }
+
+    private LocalDate parseDate(String tableName, String partition) {
+        if (partition == null) {
+            return null;
+        }
+        String prefix = databaseType == DatabaseType.MY_SQL ? PARTITION_PREFIX : tableName + "_" + PARTITION_PREFIX;
+        if (!partition.startsWith(prefix) || partition.length() != prefix.length() + 8) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), PARTITION_DATE_FORMATTER);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private long dayStart(LocalDate date) {
+        return date
+                .atStartOfDay(zoneId)
+                .toInstant()
+                .toEpochMilli();
+    }
+}
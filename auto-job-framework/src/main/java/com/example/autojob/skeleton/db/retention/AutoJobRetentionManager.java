@@ -0,0 +1,116 @@
+package com.example.autojob.skeleton.db.retention;
+
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.mapper.AutoJobTaskEntityMapper;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.config.AutoJobConfig;
+import com.example.autojob.skeleton.framework.processor.IAutoJobEnd;
+import com.example.autojob.skeleton.framework.processor.IAutoJobLoader;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import com.example.autojob.util.thread.SyncHelper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * 日志与调度记录的保留管理，定期清理超过保留期的数据。分区表直接删除过期的日分区，非分区表按主键分块删除，
+ * 每块之间短暂停顿以避免长事务和锁竞争；同时清理注解任务过多的历史版本
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/12 11:00
+ */
+@Slf4j
+public class AutoJobRetentionManager implements IAutoJobLoader, IAutoJobEnd {
+    /**
+     * 单次清理每张表最多删除的块数，剩余的留到下个周期
+     */
+    private static final int MAX_CHUNKS_PER_RUN = 200;
+    /**
+     * 两块之间的停顿：ms
+     */
+    private static final long CHUNK_PAUSE = 50;
+
+    private final ScheduleTaskUtil purgeThread = ScheduleTaskUtil.build(true, "retentionPurgeThread");
+    private AutoJobConfig config;
+    /**
+     * 每个分片一个分区管理器
+     */
+    private final List<AutoJobPartitionManager> partitionManagers = new ArrayList<>();
+
+    @Override
+    public void load() {
+        config = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getAutoJobConfig();
+        AutoJobShardRouter
+                .getInstance()
+                .getDataSourceHolders()
+                .forEach(holder -> partitionManagers.add(new AutoJobPartitionManager(holder, DatabaseType.getCurrentDatabaseType())));
+        long interval = config.getRetentionPurgeInterval();
+        purgeThread.EFixedRateTask(() -> {
+            try {
+                purge();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("日志保留管理已启动，保留{}天，清理周期{}ms", config.getRetentionDays(), interval);
+    }
+
+    /**
+     * 执行一次清理
+     *
+     * @author Huang Yongxiang
+     * @date 2023/1/12 11:10
+     */
+    public void purge() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getRetentionDays());
+        int chunkSize = config.getRetentionChunkSize();
+        purgeTable("aj_job_logs", cutoff, () -> AutoJobMapperHolder.LOG_ENTITY_MAPPER.purgeBefore(cutoff, chunkSize));
+        purgeTable("aj_run_logs", cutoff, () -> AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER.purgeBefore(cutoff, chunkSize));
+        purgeTable("aj_scheduling_record", cutoff, () -> AutoJobMapperHolder.SCHEDULING_RECORD_ENTITY_MAPPER.purgeBefore(cutoff, chunkSize));
+        AutoJobTaskEntityMapper taskMapper = AutoJobMapperHolder.TASK_ENTITY_MAPPER;
+        int versions = purgeInChunks(() -> taskMapper.compactAnnotationVersions(config.getAnnotationKeepVersions(), chunkSize));
+        if (versions > 0) {
+            log.info("清理{}个注解任务的历史版本", versions);
+        }
+    }
+
+    private void purgeTable(String tableName, long cutoff, IntSupplier chunkDeleter) {
+        for (AutoJobPartitionManager partitionManager : partitionManagers) {
+            if (partitionManager.isPartitioned(tableName)) {
+                partitionManager.preCreatePartitions(tableName, config.getPartitionPreCreateDays());
+                partitionManager.dropExpiredPartitions(tableName, cutoff);
+            }
+        }
+        //分区按天删除，截止时间所在分区中的过期数据仍需逐块删除
+        int count = purgeInChunks(chunkDeleter);
+        if (count > 0) {
+            log.info("表{}清理{}条过期记录", tableName, count);
+        }
+    }
+
+    private int purgeInChunks(IntSupplier chunkDeleter) {
+        int total = 0;
+        for (int i = 0; i < MAX_CHUNKS_PER_RUN; i++) {
+            int count = chunkDeleter.getAsInt();
+            total += count;
+            if (count <= 0) {
+                break;
+            }
+            SyncHelper.sleepQuietly(CHUNK_PAUSE, TimeUnit.MILLISECONDS);
+        }
+        return total;
+    }
+
+    @Override
+    public void end() {
+        purgeThread.shutdown();
+    }
+}
@@ -9,7 +9,11 @@ import com.example.autojob.util.convert.StringUtils;
  * @email 1158055613@qq.com
  */
 public enum DatabaseType {
-    MY_SQL, POSTGRES_SQL;
+    MY_SQL, POSTGRES_SQL,
+    /**
+     * H2嵌入式数据库，用于单节点部署与集成测试
+     */
+    H2;
 
     public static DatabaseType findByName(String name) {
         if (StringUtils.isEmpty(name)) {
@@ -19,6 +23,8 @@ public enum DatabaseType {
             return POSTGRES_SQL;
         } else if ("mysql".equalsIgnoreCase(name)) {
             return MY_SQL;
+        } else if ("h2".equalsIgnoreCase(name)) {
+            return H2;
         }
         return null;
     }
@@ -0,0 +1,39 @@
+package com.example.autojob.skeleton.enumerate;
+
+import com.example.autojob.util.convert.StringUtils;
+
+/**
+ * 任务日志级别，按严重程度递增
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/17 10:05
+ */
+public enum LogLevel {
+    DEBUG, INFO, WARN, ERROR;
+
+    public static LogLevel findByName(String name) {
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+        for (LogLevel level : values()) {
+            if (level
+                    .name()
+                    .equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 该级别的日志在给定的最低级别下是否需要输出
+     *
+     * @param threshold 最低级别
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/17 10:08
+     */
+    public boolean isEnabled(LogLevel threshold) {
+        return threshold == null || ordinal() >= threshold.ordinal();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.autojob.skeleton.enumerate;
+
+import com.example.autojob.util.convert.StringUtils;
+
+/**
+ * 日志写入队列已满时的处理策略
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/21 09:05
+ */
+public enum LogOverflowPolicy {
+    /**
+     * 阻塞写入方直到队列有空位
+     */
+    BLOCK,
+    /**
+     * 丢弃队列中最早的日志
+     */
+    DROP_OLDEST,
+    /**
+     * 写入本地溢出文件，数据库空闲后回放
+     */
+    SPILL;
+
+    public static LogOverflowPolicy findByName(String name) {
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+        for (LogOverflowPolicy policy : values()) {
+            if (policy
+                    .name()
+                    .equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -31,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -115,6 +116,10 @@ public class AutoJobApplication implements Closeable {
      * 连接池
      */
     private DataSourceHolder dataSourceHolder;
+    /**
+     * 分片连接池，不含主连接池，任务、触发器与日志按任务ID分布在主连接池与分片连接池上
+     */
+    private List<DataSourceHolder> shardDataSourceHolders = new ArrayList<>();
     public static final int NO_CREATE = 0;
     public static final int CREATED = 1;
     public static final int RUNNING = 2;
@@ -1,6 +1,8 @@
 package com.example.autojob.skeleton.framework.boot;
 
 import com.example.autojob.api.log.AutoJobLogDBAPI;
+import com.example.autojob.api.log.AutoJobLogFileAPI;
+import com.example.autojob.api.log.AutoJobLogMemoryAPI;
 import com.example.autojob.api.task.DBTaskAPI;
 import com.example.autojob.api.task.MemoryTaskAPI;
 import com.example.autojob.logging.domain.AutoJobLog;
@@ -9,6 +11,9 @@ import com.example.autojob.logging.model.AutoJobLogContainer;
 import com.example.autojob.logging.model.AutoJobLogContext;
 import com.example.autojob.logging.model.consumer.AutoJobLogConsumer;
 import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.AutoJobLogFileStore;
+import com.example.autojob.logging.model.file.AutoJobRunLogCodec;
 import com.example.autojob.logging.model.memory.AutoJobLogCache;
 import com.example.autojob.logging.model.memory.AutoJobRunLogCache;
 import com.example.autojob.logging.model.producer.AutoJobLogHelper;
@@ -17,9 +22,12 @@ import com.example.autojob.skeleton.annotation.AutoJobScan;
 import com.example.autojob.skeleton.cluster.model.AutoJobClusterManager;
 import com.example.autojob.skeleton.cluster.model.AutoJobTaskTransferManager;
 import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator;
+import com.example.autojob.skeleton.db.retention.AutoJobRetentionManager;
 import com.example.autojob.skeleton.framework.config.AutoJobConfig;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 import com.example.autojob.skeleton.framework.config.AutoJobExecutorPoolConfig;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
 import com.example.autojob.skeleton.framework.config.ClusterConfig;
 import com.example.autojob.skeleton.framework.container.MemoryTaskContainer;
 import com.example.autojob.skeleton.framework.mq.ExpirationListenerPolicy;
@@ -179,7 +187,14 @@ public class AutoJobBootstrap {
         /*=================API配置=================>*/
         this.runningContext.setDbTaskAPI(new DBTaskAPI());
         this.runningContext.setMemoryTaskAPI(new MemoryTaskAPI());
-        this.runningContext.setLogDbAPI(new AutoJobLogDBAPI());
+        AutoJobLogConfig logConfig = configHolder.getLogConfig();
+        if (logConfig.getEnableFileStore()) {
+            this.runningContext.setLogDbAPI(new AutoJobLogFileAPI());
+        } else if (logConfig.getEnableMemory() || logConfig.getEnableRunLogMemory()) {
+            this.runningContext.setLogDbAPI(new AutoJobLogMemoryAPI());
+        } else {
+            this.runningContext.setLogDbAPI(new AutoJobLogDBAPI());
+        }
         /*=======================Finished======================<*/
 
         this.runningContext.setSchedulers(new LinkedList<>());
@@ -308,6 +323,25 @@ public class AutoJobBootstrap {
         return this;
     }
 
+    /**
+     * 添加一个分片连接池，任务、触发器与日志按任务ID分布在主连接池与各分片连接池上，各分片的表结构需与主库一致。
+     * 分片的数目与顺序决定了任务的分布，集群中的所有节点必须以相同的顺序配置相同的分片
+     *
+     * @param dataSource 分片连接池
+     * @return com.example.autojob.skeleton.framework.boot.AutoJobBootstrap
+     * @author Huang Yongxiang
+     * @date 2023/1/16 10:15
+     */
+    public AutoJobBootstrap addShardDataSource(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new NullPointerException();
+        }
+        this.runningContext
+                .getShardDataSourceHolders()
+                .add(new DataSourceHolder(dataSource));
+        return this;
+    }
+
     /**
      * 设置注册器
      *
@@ -420,6 +454,14 @@ public class AutoJobBootstrap {
                 .setLogHelper(new AutoJobLogHelper())
                 .setLogCache(new AutoJobLogCache(configHolder.getLogConfig()))
                 .setRunLogCache(new AutoJobRunLogCache(configHolder.getLogConfig()));
+        if (configHolder
+                .getLogConfig()
+                .getEnableFileStore()) {
+            AutoJobLogContext
+                    .getInstance()
+                    .setLogFileStore(new AutoJobLogFileStore<>(configHolder.getLogConfig(), "taskLog", new AutoJobLogCodec()))
+                    .setRunLogFileStore(new AutoJobLogFileStore<>(configHolder.getLogConfig(), "runLog", new AutoJobRunLogCodec()));
+        }
         runningContext.setLogContext(AutoJobLogContext.getInstance());
         /*=======================Finished======================<*/
     }
@@ -442,12 +484,33 @@ public class AutoJobBootstrap {
                 .addProcessor(new TaskListenerLoader())
                 .addProcessor(new AutoJobRegisterLoader())
                 .addProcessor(new DefaultEndProcessor());
+        if (configHolder
+                .getAutoJobConfig()
+                .getEnableSchemaMigration()) {
+            this.addProcessor(new AutoJobSchemaMigrator());
+        }
+        if (configHolder
+                .getAutoJobConfig()
+                .getEnableRetention()) {
+            this.addProcessor(new AutoJobRetentionManager());
+        }
     }
 
     protected void createDefaultDataSource() {
         if (this.runningContext.getDataSourceHolder() == null) {
             this.runningContext.setDataSourceHolder(new DataSourceHolder());
         }
+        if (this.runningContext
+                .getShardDataSourceHolders()
+                .isEmpty()) {
+            for (String configPath : configHolder
+                    .getAutoJobConfig()
+                    .getShardDataSourceConfigs()) {
+                this.runningContext
+                        .getShardDataSourceHolders()
+                        .add(new DataSourceHolder(configPath));
+            }
+        }
     }
 
     public AutoJobBootstrap setLogSaveStrategyDelegate(ILogSaveStrategyDelegate<AutoJobLog> logSaveStrategyDelegate) {
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * 框架配置
@@ -32,6 +33,123 @@ public class AutoJobConfig extends AbstractAutoJobConfig {
 
     private DatabaseType databaseType;
 
+    private Boolean enableSchemaMigration;
+
+    /**
+     * DB任务锁租约时长：ms
+     */
+    private Long taskLockLeaseTime;
+
+    /**
+     * DB调度器每次认领的最大任务数
+     */
+    private Integer dbTaskClaimBatchSize;
+
+    /**
+     * DB调度器的最小轮询周期：ms，任务密集时轮询周期会缩短到该值
+     */
+    private Long dbTaskMinPollInterval;
+
+    /**
+     * DB调度器的最大轮询周期：ms，任务稀疏时轮询周期会延长到该值
+     */
+    private Long dbTaskMaxPollInterval;
+
+    /**
+     * DB调度器忽略水位进行完整扫描的周期：ms
+     */
+    private Long dbTaskFullScanInterval;
+
+    /**
+     * 是否缓冲合并触发器状态的更新
+     */
+    private Boolean enableTriggerWriteBehind;
+
+    /**
+     * 触发器状态缓冲的写入周期：ms
+     */
+    private Long triggerWriteBehindFlushInterval;
+
+    /**
+     * 触发器状态缓冲达到该数量时提前写入，同时也是单次JDBC批量的大小
+     */
+    private Integer triggerWriteBehindBatchSize;
+
+    /**
+     * 分片连接池的druid配置文件，任务、触发器与日志按任务ID分布在主库与各分片上
+     */
+    private List<String> shardDataSourceConfigs;
+
+    /**
+     * 是否在调度结束时一次性批量写入调度记录
+     */
+    private Boolean enableSchedulingRecordGroupCommit;
+
+    /**
+     * 调度记录的批量写入周期：ms
+     */
+    private Long schedulingRecordFlushInterval;
+
+    /**
+     * 调度记录达到该数量时提前写入，同时也是单次JDBC批量的大小
+     */
+    private Integer schedulingRecordBatchSize;
+
+    /**
+     * 运行超过该时长的调度先写入运行中的记录作为标记：ms
+     */
+    private Long schedulingRecordMarkerThreshold;
+
+    /**
+     * 是否定期清理过期的日志和调度记录
+     */
+    private Boolean enableRetention;
+
+    /**
+     * 日志和调度记录的保留天数
+     */
+    private Integer retentionDays;
+
+    /**
+     * 清理周期：ms
+     */
+    private Long retentionPurgeInterval;
+
+    /**
+     * 分块删除时每块的记录数
+     */
+    private Integer retentionChunkSize;
+
+    /**
+     * 每个注解任务保留的版本数
+     */
+    private Integer annotationKeepVersions;
+
+    /**
+     * 分区表提前创建的日分区数
+     */
+    private Integer partitionPreCreateDays;
+
+    /**
+     * 是否启用任务与触发器实体的本地缓存
+     */
+    private Boolean enableEntityCache;
+
+    /**
+     * 实体缓存的最大条目数
+     */
+    private Integer entityCacheMaxSize;
+
+    /**
+     * 实体缓存的过期时间：ms
+     */
+    private Long entityCacheExpiringTime;
+
+    /**
+     * 集群模式下广播缓存失效的周期：ms
+     */
+    private Long entityCacheBroadcastInterval;
+
     @HotLoadable
     private Boolean enableRegisterFilter;
 
@@ -80,6 +198,36 @@ public class AutoJobConfig extends AbstractAutoJobConfig {
             if (databaseType == null) {
                 log.warn("未知的数据库类型：{}", propertiesHolder.getProperty("autoJob.database.type", String.class));
             }
+            enableSchemaMigration = propertiesHolder.getProperty("autoJob.database.migration.enable", Boolean.class, "true");
+            taskLockLeaseTime = propertiesHolder.getProperty("autoJob.scheduler.lock.leaseTime", Long.class, "60") * 1000;
+            dbTaskClaimBatchSize = propertiesHolder.getProperty("autoJob.scheduler.claim.batchSize", Integer.class, "100");
+            dbTaskMinPollInterval = propertiesHolder.getProperty("autoJob.scheduler.poll.minInterval", Long.class, "1000");
+            dbTaskMaxPollInterval = Math.max(dbTaskMinPollInterval, propertiesHolder.getProperty("autoJob.scheduler.poll.maxInterval", Long.class, "5000"));
+            dbTaskFullScanInterval = propertiesHolder.getProperty("autoJob.scheduler.poll.fullScanInterval", Long.class, "30000");
+            enableTriggerWriteBehind = propertiesHolder.getProperty("autoJob.database.writeBehind.enable", Boolean.class, "true");
+            triggerWriteBehindFlushInterval = propertiesHolder.getProperty("autoJob.database.writeBehind.flushInterval", Long.class, "500");
+            triggerWriteBehindBatchSize = propertiesHolder.getProperty("autoJob.database.writeBehind.batchSize", Integer.class, "200");
+            shardDataSourceConfigs = Arrays
+                    .stream(propertiesHolder
+                            .getProperty("autoJob.database.shard.dataSources", "")
+                            .split(","))
+                    .map(String::trim)
+                    .filter(path -> !path.isEmpty())
+                    .collect(Collectors.toList());
+            enableSchedulingRecordGroupCommit = propertiesHolder.getProperty("autoJob.database.schedulingRecord.groupCommit.enable", Boolean.class, "true");
+            schedulingRecordFlushInterval = propertiesHolder.getProperty("autoJob.database.schedulingRecord.groupCommit.flushInterval", Long.class, "500");
+            schedulingRecordBatchSize = propertiesHolder.getProperty("autoJob.database.schedulingRecord.groupCommit.batchSize", Integer.class, "200");
+            schedulingRecordMarkerThreshold = propertiesHolder.getProperty("autoJob.database.schedulingRecord.groupCommit.markerThreshold", Long.class, "30") * 1000;
+            enableRetention = propertiesHolder.getProperty("autoJob.database.retention.enable", Boolean.class, "false");
+            retentionDays = propertiesHolder.getProperty("autoJob.database.retention.days", Integer.class, "30");
+            retentionPurgeInterval = propertiesHolder.getProperty("autoJob.database.retention.purgeInterval", Long.class, "60") * 60 * 1000;
+            retentionChunkSize = propertiesHolder.getProperty("autoJob.database.retention.chunkSize", Integer.class, "1000");
+            annotationKeepVersions = propertiesHolder.getProperty("autoJob.database.retention.keepVersions", Integer.class, "3");
+            partitionPreCreateDays = propertiesHolder.getProperty("autoJob.database.retention.partition.preCreateDays", Integer.class, "3");
+            enableEntityCache = propertiesHolder.getProperty("autoJob.database.cache.enable", Boolean.class, "true");
+            entityCacheMaxSize = propertiesHolder.getProperty("autoJob.database.cache.maxSize", Integer.class, "2000");
+            entityCacheExpiringTime = propertiesHolder.getProperty("autoJob.database.cache.expiringTime", Long.class, "60") * 1000;
+            entityCacheBroadcastInterval = propertiesHolder.getProperty("autoJob.database.cache.broadcastInterval", Long.class, "500");
             enableAnnotation = propertiesHolder.getProperty("autoJob.annotation.enable", Boolean.class, "true");
             annotationDefaultDelayTime = propertiesHolder.getProperty("autoJob.annotation.defaultDelayTime", Double.class, "30");
             enableRegisterFilter = propertiesHolder.getProperty("autoJob.register.filter.enable", Boolean.class, "false");
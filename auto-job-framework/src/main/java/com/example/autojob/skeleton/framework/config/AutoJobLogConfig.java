@@ -1,8 +1,14 @@
 package com.example.autojob.skeleton.framework.config;
 
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import com.example.autojob.skeleton.enumerate.LogOverflowPolicy;
+import com.example.autojob.util.convert.DefaultValueUtil;
 import com.example.autojob.util.io.PropertiesHolder;
 import lombok.Getter;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * @Description
  * @Author Huang Yongxiang
@@ -23,15 +29,232 @@ public class AutoJobLogConfig extends AbstractAutoJobConfig {
 
     private Double memoryRunLogDefaultExpireTime;
 
+    /**
+     * 内存任务日志的总字节限额
+     */
+    private Long memoryMaxSize;
+
+    /**
+     * 单个任务在内存中的任务日志字节限额
+     */
+    private Long memoryTaskMaxSize;
+
+    /**
+     * 内存运行日志的总字节限额
+     */
+    private Long memoryRunLogMaxSize;
+
+    /**
+     * 单个任务在内存中的运行日志字节限额
+     */
+    private Long memoryRunLogTaskMaxSize;
+
+    /**
+     * 是否将一次调度的运行日志聚合为一条汇总
+     */
+    private Boolean enableRunLogAggregate;
+
+    /**
+     * 聚合后运行成功的调度是否仍保留逐条的运行日志，运行失败的调度总是保留
+     */
+    private Boolean enableRunLogKeepDetail;
+
+    /**
+     * 任务日志的最低输出级别，低于该级别的日志不会格式化也不会写入任务日志
+     */
+    private LogLevel taskLogLevel;
+
+    /**
+     * 是否记录日志的输出位置，需要获取调用栈，开销较大
+     */
+    private Boolean enableTaskLogLocation;
+
+    /**
+     * 单个任务缓冲的日志达到该条数后提前写入
+     */
+    private Integer taskLogBufferLength;
+
+    /**
+     * 单个任务缓冲的日志条数上限，写入线程跟不上时由加入日志的线程同步保存，保存策略的溢出策略随之作用于加入日志的线程
+     */
+    private Integer taskLogBufferCapacity;
+
+    /**
+     * 日志在缓冲中的最长停留时间：ms
+     */
+    private Long taskLogSaveCycle;
+
+    /**
+     * 日志写入线程的检查周期：ms
+     */
+    private Long taskLogFlushInterval;
+
+    /**
+     * 是否启用任务日志限额，默认关闭
+     */
+    private Boolean enableTaskLogLimit;
+
+    /**
+     * 单个任务每秒最多写入的日志条数，0表示不限制
+     */
+    private Integer taskLogLinesPerSecond;
+
+    /**
+     * 单个任务一次运行最多写入的日志大小：UTF-8字节数，0表示不限制
+     */
+    private Long taskLogSizePerRun;
+
+    /**
+     * 超出限额的日志每N条保留1条，0表示全部丢弃
+     */
+    private Integer taskLogLimitSampleRate;
+
+    /**
+     * 各级别日志单独的每秒条数限额，0表示不单独限制
+     */
+    private Map<LogLevel, Integer> levelLinesPerSecond;
+
+    /**
+     * 各级别日志单独的每次运行大小限额：UTF-8字节数，0表示不单独限制
+     */
+    private Map<LogLevel, Long> levelSizePerRun;
+
+    /**
+     * 日志环形缓冲的容量，向上取整为2的幂
+     */
+    private Integer pipelineBufferSize;
+
+    /**
+     * 日志消费线程无日志可消费时的等待策略
+     */
+    private String pipelineWaitStrategy;
+
+    /**
+     * 缓冲占用超过高水位后DEBUG、INFO日志的采样率，每N条保留1条
+     */
+    private Integer pipelineSampleRate;
+
+    /**
+     * 开始采样的缓冲占用比例
+     */
+    private Double pipelineHighWaterMark;
+
+    /**
+     * 是否使用本地文件保存任务日志和运行日志
+     */
+    private Boolean enableFileStore;
+
+    /**
+     * 日志文件目录
+     */
+    private String fileStorePath;
+
+    /**
+     * 单个日志段文件的大小：MB
+     */
+    private Integer fileSegmentSize;
+
+    /**
+     * 日志块是否压缩
+     */
+    private Boolean enableFileCompress;
+
+    /**
+     * 日志文件的保留时间：ms
+     */
+    private Long fileRetention;
+
+    /**
+     * 数据库日志写入队列的容量，任务日志和运行日志各一个队列
+     */
+    private Integer dbWriteQueueCapacity;
+
+    /**
+     * 数据库日志写入队列已满时的处理策略
+     */
+    private LogOverflowPolicy dbWriteOverflowPolicy;
+
+    /**
+     * 单次JDBC批量插入的条数
+     */
+    private Integer dbWriteBatchSize;
+
+    /**
+     * 数据库日志写入线程的写入周期：ms
+     */
+    private Long dbWriteFlushInterval;
+
+    /**
+     * 写入失败的最大重试次数
+     */
+    private Integer dbWriteMaxRetry;
+
+    /**
+     * 首次重试的等待时间：ms，之后每次翻倍
+     */
+    private Long dbWriteRetryInterval;
+
+    /**
+     * 是否将同一调度的任务日志压缩为块写入数据库
+     */
+    private Boolean enableDbCompress;
+
+    /**
+     * 内存中的任务日志是否按块压缩存放
+     */
+    private Boolean enableMemoryCompress;
+
     public AutoJobLogConfig(PropertiesHolder propertiesHolder) {
         super(propertiesHolder);
         if (propertiesHolder != null) {
             enableMemory = propertiesHolder.getProperty("autoJob.logging.taskLog.memory.enable", Boolean.class, "true");
             memoryLength = propertiesHolder.getProperty("autoJob.logging.taskLog.memory.length", Integer.class, "100");
-            memoryDefaultExpireTime = propertiesHolder.getProperty("autoJob.logging.taskLog.memory.enable", Double.class, "10");
+            memoryDefaultExpireTime = propertiesHolder.getProperty("autoJob.logging.taskLog.memory.defaultExpireTime", Double.class, "10");
+            memoryMaxSize = (long) (propertiesHolder.getProperty("autoJob.logging.taskLog.memory.maxSize", Double.class, "64") * 1024 * 1024);
+            memoryTaskMaxSize = (long) (propertiesHolder.getProperty("autoJob.logging.taskLog.memory.taskMaxSize", Double.class, "4") * 1024 * 1024);
             enableRunLogMemory = propertiesHolder.getProperty("autoJob.logging.runLog.memory.enable", Boolean.class, "true");
             memoryRunLogLength = propertiesHolder.getProperty("autoJob.logging.runLog.memory.length", Integer.class, "100");
             memoryRunLogDefaultExpireTime = propertiesHolder.getProperty("autoJob.logging.runLog.memory.defaultExpireTime", Double.class, "10");
+            memoryRunLogMaxSize = (long) (propertiesHolder.getProperty("autoJob.logging.runLog.memory.maxSize", Double.class, "16") * 1024 * 1024);
+            memoryRunLogTaskMaxSize = (long) (propertiesHolder.getProperty("autoJob.logging.runLog.memory.taskMaxSize", Double.class, "1") * 1024 * 1024);
+            enableRunLogAggregate = propertiesHolder.getProperty("autoJob.logging.runLog.aggregate.enable", Boolean.class, "true");
+            enableRunLogKeepDetail = propertiesHolder.getProperty("autoJob.logging.runLog.aggregate.keepDetail", Boolean.class, "false");
+            taskLogLevel = DefaultValueUtil.defaultValue(LogLevel.findByName(propertiesHolder.getProperty("autoJob.logging.taskLog.level", String.class, "DEBUG")), LogLevel.DEBUG);
+            enableTaskLogLocation = propertiesHolder.getProperty("autoJob.logging.taskLog.location.enable", Boolean.class, "false");
+            taskLogBufferLength = propertiesHolder.getProperty("autoJob.logging.taskLog.buffer.length", Integer.class, "10");
+            taskLogBufferCapacity = propertiesHolder.getProperty("autoJob.logging.taskLog.buffer.capacity", Integer.class, "10000");
+            taskLogSaveCycle = (long) (propertiesHolder.getProperty("autoJob.logging.taskLog.buffer.saveCycle", Double.class, "5") * 1000);
+            taskLogFlushInterval = propertiesHolder.getProperty("autoJob.logging.taskLog.flush.interval", Long.class, "500");
+            enableTaskLogLimit = propertiesHolder.getProperty("autoJob.logging.taskLog.limit.enable", Boolean.class, "false");
+            taskLogLinesPerSecond = propertiesHolder.getProperty("autoJob.logging.taskLog.limit.linesPerSecond", Integer.class, "1000");
+            taskLogSizePerRun = (long) (propertiesHolder.getProperty("autoJob.logging.taskLog.limit.sizePerRun", Double.class, "32") * 1024 * 1024);
+            taskLogLimitSampleRate = propertiesHolder.getProperty("autoJob.logging.taskLog.limit.sampleRate", Integer.class, "100");
+            levelLinesPerSecond = new EnumMap<>(LogLevel.class);
+            levelSizePerRun = new EnumMap<>(LogLevel.class);
+            for (LogLevel level : LogLevel.values()) {
+                String prefix = "autoJob.logging.taskLog.limit." + level
+                        .name()
+                        .toLowerCase();
+                levelLinesPerSecond.put(level, propertiesHolder.getProperty(prefix + ".linesPerSecond", Integer.class, "0"));
+                levelSizePerRun.put(level, (long) (propertiesHolder.getProperty(prefix + ".sizePerRun", Double.class, "0") * 1024 * 1024));
+            }
+            pipelineBufferSize = propertiesHolder.getProperty("autoJob.logging.pipeline.bufferSize", Integer.class, "8192");
+            pipelineWaitStrategy = propertiesHolder.getProperty("autoJob.logging.pipeline.waitStrategy", String.class, "SLEEPING");
+            pipelineSampleRate = propertiesHolder.getProperty("autoJob.logging.pipeline.sampleRate", Integer.class, "10");
+            pipelineHighWaterMark = propertiesHolder.getProperty("autoJob.logging.pipeline.highWaterMark", Double.class, "0.75");
+            enableFileStore = propertiesHolder.getProperty("autoJob.logging.file.enable", Boolean.class, "false");
+            fileStorePath = propertiesHolder.getProperty("autoJob.logging.file.path", String.class, "autoJobLogs");
+            fileSegmentSize = propertiesHolder.getProperty("autoJob.logging.file.segmentSize", Integer.class, "64");
+            enableFileCompress = propertiesHolder.getProperty("autoJob.logging.file.compress.enable", Boolean.class, "false");
+            fileRetention = (long) (propertiesHolder.getProperty("autoJob.logging.file.retention", Double.class, "7") * TimeConstant.A_DAY);
+            dbWriteQueueCapacity = propertiesHolder.getProperty("autoJob.logging.db.queue.capacity", Integer.class, "10000");
+            dbWriteOverflowPolicy = DefaultValueUtil.defaultValue(LogOverflowPolicy.findByName(propertiesHolder.getProperty("autoJob.logging.db.queue.overflowPolicy", String.class, "BLOCK")), LogOverflowPolicy.BLOCK);
+            dbWriteBatchSize = propertiesHolder.getProperty("autoJob.logging.db.batchSize", Integer.class, "500");
+            dbWriteFlushInterval = propertiesHolder.getProperty("autoJob.logging.db.flushInterval", Long.class, "200");
+            dbWriteMaxRetry = propertiesHolder.getProperty("autoJob.logging.db.retry.count", Integer.class, "5");
+            dbWriteRetryInterval = propertiesHolder.getProperty("autoJob.logging.db.retry.interval", Long.class, "1000");
+            enableDbCompress = propertiesHolder.getProperty("autoJob.logging.db.compress.enable", Boolean.class, "false");
+            enableMemoryCompress = propertiesHolder.getProperty("autoJob.logging.taskLog.memory.compress.enable", Boolean.class, "false");
         }
     }
 
@@ -82,6 +82,10 @@ public class AutoJobTrigger {
      * 是否暂停
      */
     private Boolean isPause = false;
+    /**
+     * DB任务构建时触发器的变更时间，数据库中的变更时间更新时需要重新构建任务
+     */
+    private Long changeTime;
 
     public AutoJobTrigger(Long triggeringTime, String cronExpression, Integer repeatTimes, int finishedTimes, long cycle) {
         if (triggeringTime == null && cronExpression == null) {
@@ -2,15 +2,21 @@ package com.example.autojob.skeleton.framework.task;
 
 import com.example.autojob.logging.model.producer.AutoJobLogHelper;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 import com.example.autojob.skeleton.lang.WithDaemonThread;
 import com.example.autojob.skeleton.model.executor.AutoJobTaskExecutorPool;
 import com.example.autojob.skeleton.model.register.IAutoJobRegister;
 import com.example.autojob.skeleton.model.scheduler.AbstractScheduler;
 import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.id.IdGenerator;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
 import com.example.autojob.util.thread.SyncHelper;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -32,9 +38,19 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
      */
     private static final InheritableThreadLocal<AutoJobTask> concurrentThreadTask = new InheritableThreadLocal<>();
     /**
-     * 已加锁的DB任务
+     * 已加锁的DB任务及其加锁令牌
      */
-    private static final Map<Long, Boolean> lockedMap = new ConcurrentHashMap<>();
+    private static final Map<Long, Long> lockedMap = new ConcurrentHashMap<>();
+    /**
+     * 已被本节点认领但还未执行的DB任务及其租约到期时间，认领时已加锁
+     */
+    private static final Map<Long, Long> claimedTasks = new ConcurrentHashMap<>();
+    /**
+     * 本节点的锁持有者标识，进程重启后会变化，避免重启后误认旧锁
+     */
+    private static final String lockOwner = ManagementFactory
+            .getRuntimeMXBean()
+            .getName() + "#" + IdGenerator.getNextIdAsString();
     /**
      * 正在运行的任务
      */
@@ -46,9 +62,12 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
 
     private boolean isStop = false;
 
+    private final ScheduleTaskUtil leaseThread;
+
 
     public TaskRunningContext(AutoJobTaskExecutorPool executorPool, IAutoJobRegister register, AutoJobConfigHolder configHolder) {
         super(executorPool, register, configHolder);
+        this.leaseThread = ScheduleTaskUtil.build(true, "taskLockLeaseThread");
     }
 
     /**
@@ -78,22 +97,83 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
     }
 
     /**
-     * 尝试对已经加锁的DB任务解锁
+     * 释放本节点持有的所有DB任务锁
      *
-     * @return int 成功解锁的任务书
+     * @return int 成功解锁的任务数
      * @author Huang Yongxiang
      * @date 2022/8/22 17:06
      */
     public static int unlock() {
-        int count = 0;
-        for (Map.Entry<Long, Boolean> entry : lockedMap.entrySet()) {
-            if (entry.getValue()) {
-                if (AutoJobMapperHolder.TASK_ENTITY_MAPPER.unLock(entry.getKey())) {
-                    count++;
-                }
+        int count = AutoJobMapperHolder.TASK_ENTITY_MAPPER.unLockByOwner(lockOwner);
+        lockedMap.clear();
+        claimedTasks.clear();
+        return count;
+    }
+
+    /**
+     * 释放一个已被本节点认领但还未执行的DB任务，已触发的任务保留锁直到执行结束
+     *
+     * @param taskId 任务ID
+     * @return boolean 是否释放了认领
+     * @author Huang Yongxiang
+     * @date 2023/1/29 15:20
+     */
+    public static boolean releaseClaim(long taskId) {
+        if (claimedTasks.remove(taskId) == null) {
+            return false;
+        }
+        Long token = lockedMap.remove(taskId);
+        return token != null && AutoJobMapperHolder.TASK_ENTITY_MAPPER.unLock(taskId, lockOwner, token);
+    }
+
+    /**
+     * 对本节点持有的DB任务锁批量续租，并回收其他节点已过期的租约。已触发的任务续租到执行结束后解锁，
+     * 认领但未触发的任务只在仍位于注册器时续租，离开注册器后未触发的认领在租约到期后释放
+     *
+     * @return void
+     * @author Huang Yongxiang
+     * @date 2023/1/6 11:10
+     */
+    void renewLease() {
+        long now = System.currentTimeMillis();
+        long leaseTime = getLockLeaseTime();
+        List<Long> renewIds = new ArrayList<>(lockedMap.size());
+        for (Map.Entry<Long, Long> entry : lockedMap.entrySet()) {
+            long taskId = entry.getKey();
+            Long claimExpire = claimedTasks.get(taskId);
+            if (claimExpire == null) {
+                renewIds.add(taskId);
+            } else if (register.getTaskById(taskId) != null) {
+                renewIds.add(taskId);
+                claimedTasks.replace(taskId, claimExpire, now + leaseTime);
+            } else if (claimExpire < now && claimedTasks.remove(taskId, claimExpire)) {
+                //已被移除、暂停或错过触发的认领，租约已到期，不再续租
+                lockedMap.remove(taskId, entry.getValue());
+                AutoJobMapperHolder.TASK_ENTITY_MAPPER.unLock(taskId, lockOwner, entry.getValue());
+                log.debug("DB任务：{}认领后未触发，释放认领", taskId);
             }
+            //其余认领已转入时间轮即将触发，由最近一次续租的租约覆盖
         }
-        return count;
+        if (renewIds.size() > 0) {
+            int count = AutoJobMapperHolder.TASK_ENTITY_MAPPER.renewLease(renewIds, lockOwner, leaseTime);
+            log.debug("续租{}个DB任务锁", count);
+        }
+        int reclaimed = AutoJobMapperHolder.TASK_ENTITY_MAPPER.reclaimExpiredLease();
+        if (reclaimed > 0) {
+            log.warn("回收{}个已过期的DB任务锁", reclaimed);
+        }
+    }
+
+    public static String getLockOwner() {
+        return lockOwner;
+    }
+
+    public static long getLockLeaseTime() {
+        return AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getAutoJobConfig()
+                .getTaskLockLeaseTime();
     }
 
     public static AutoJobTask getRunningTask(long taskId) {
@@ -128,7 +208,11 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
         return contextHolder;
     }
 
-    public static Map<Long, Boolean> getOnLockMap() {
+    public static Map<Long, Long> getClaimedTasks() {
+        return claimedTasks;
+    }
+
+    public static Map<Long, Long> getOnLockMap() {
         return lockedMap;
     }
 
@@ -149,6 +233,7 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
     @Override
     public void destroy() {
         isStop = true;
+        leaseThread.shutdown();
     }
 
     /**
@@ -207,5 +292,14 @@ public class TaskRunningContext extends AbstractScheduler implements WithDaemonT
         }); stopLongTaskThread.setDaemon(true);
         stopLongTaskThread.setName("stopLongTaskThread");
         stopLongTaskThread.start();
+        //每三分之一个租约时长续租一次，保证租约在网络抖动时不会过期
+        long renewCycle = Math.max(getLockLeaseTime() / 3, 1000);
+        leaseThread.EFixedRateTask(() -> {
+            try {
+                renewLease();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, renewCycle, renewCycle, TimeUnit.MILLISECONDS);
     }
 }
@@ -1,5 +1,6 @@
 package com.example.autojob.skeleton.model.builder;
 
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
 import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
@@ -299,9 +300,13 @@ public class AutoJobMethodTaskBuilder {
         if (taskType == AutoJobTask.TaskType.DB_TASK && isSaveWhenDB) {
             AutoJobTriggerEntity triggerEntity = EntityConvertor.trigger2TriggerEntity(trigger);
             AutoJobTaskEntity taskEntity = EntityConvertor.task2TaskEntity(methodTask, triggerEntity.getId());
+            triggerEntity.setTaskId(taskEntity.getId());
             TransactionEntry insertTask = connection -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.insertList(Collections.singletonList(taskEntity));
             TransactionEntry insertTrigger = connection -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.insertList(Collections.singletonList(triggerEntity));
-            AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTask, insertTrigger});
+            //任务与触发器写入任务ID所在的分片
+            AutoJobShardRouter
+                    .getInstance()
+                    .route(taskEntity.getId(), () -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTask, insertTrigger}));
         }
         return methodTask;
     }
@@ -1,6 +1,6 @@
 package com.example.autojob.skeleton.model.handler;
 
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.skeleton.framework.config.AutoJobRetryConfig;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
@@ -63,9 +63,11 @@ public class AutoJobRetryHandler {
                         .registerTask(task);
             }
             if (task.getType() == AutoJobTask.TaskType.DB_TASK) {
-                AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateTriggeringTime(task.getId(), task
-                        .getTrigger()
-                        .getTriggeringTime());
+                AutoJobTriggerWriteBuffer
+                        .getInstance()
+                        .updateTriggeringTime(task.getId(), task
+                                .getTrigger()
+                                .getTriggeringTime());
             }
             retryMap
                     .get(task.getId())
@@ -1,5 +1,6 @@
 package com.example.autojob.skeleton.model.handler;
 
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
 import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
@@ -11,6 +12,8 @@ import com.example.autojob.skeleton.framework.task.AutoJobTask;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -32,11 +35,30 @@ public class DBTaskLoader implements AutoJobTaskLoader {
                 triggerEntities.add(triggerEntity);
             }
             AutoJobTaskEntity taskEntity = EntityConvertor.task2TaskEntity(task, triggerEntity == null ? null : triggerEntity.getId());
+            if (triggerEntity != null) {
+                //触发器按任务ID路由，需与任务位于同一分片
+                triggerEntity.setTaskId(taskEntity.getId());
+            }
             taskEntities.add(taskEntity);
         });
-        TransactionEntry insertTriggers = connection -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.insertList(triggerEntities);
-        TransactionEntry insertTasks = connection -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.insertList(taskEntities);
-        AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTriggers, insertTasks});
+        //每个分片的任务与触发器在该分片上以一个事务写入
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        Map<Long, AutoJobTriggerEntity> triggerMap = triggerEntities
+                .stream()
+                .collect(Collectors.toMap(AutoJobTriggerEntity::getId, trigger -> trigger));
+        router
+                .groupByShard(taskEntities, AutoJobTaskEntity::getId)
+                .forEach((shard, shardTasks) -> {
+                    List<AutoJobTriggerEntity> triggersOfShard = shardTasks
+                            .stream()
+                            .filter(task -> task.getTriggerId() != null)
+                            .map(task -> triggerMap.get(task.getTriggerId()))
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+                    TransactionEntry insertTriggers = connection -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.insertList(triggersOfShard);
+                    TransactionEntry insertTasks = connection -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.insertList(shardTasks);
+                    router.doInShard(shard, () -> AutoJobMapperHolder.TASK_ENTITY_MAPPER.doTransaction(new TransactionEntry[]{insertTriggers, insertTasks}));
+                });
         List<AutoJobTask> soon = tasks
                 .stream()
                 .filter(task -> task.getSchedulingStrategy() != SchedulingStrategy.ONLY_SAVE && task.getSchedulingStrategy() != SchedulingStrategy.AS_CHILD_TASK && task
@@ -1,6 +1,13 @@
 package com.example.autojob.skeleton.model.handler;
 
+import com.example.autojob.logging.model.AutoJobLogContext;
+import com.example.autojob.logging.model.handler.AutoJobLogFlusher;
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
 import com.example.autojob.logging.model.producer.AutoJobLogHelper;
+import com.example.autojob.skeleton.db.AutoJobEntityCache;
+import com.example.autojob.skeleton.db.AutoJobLogWriteBuffer;
+import com.example.autojob.skeleton.db.AutoJobSchedulingRecordBuffer;
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
 import com.example.autojob.skeleton.framework.processor.IAutoJobEnd;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
@@ -19,6 +26,46 @@ public class DefaultEndProcessor implements IAutoJobEnd {
     @Override
     public void end() {
         AutoJobLogHelper logger = AutoJobLogHelper.getInstance();
+        //先写入缓冲中的触发器状态，避免其覆盖下面的结束态
+        AutoJobTriggerWriteBuffer
+                .getInstance()
+                .close();
+        //写入缓冲的调度记录，仍在运行的调度写入运行标记
+        AutoJobSchedulingRecordBuffer
+                .getInstance()
+                .close();
+        //取完日志管道中的任务日志，再写入缓冲的任务日志
+        AutoJobLogPipeline
+                .getInstance()
+                .close();
+        //运行中的调度生成运行日志汇总
+        AutoJobLogContext logContext = AutoJobLogContext.getInstance();
+        if (logContext.getLogManager() != null) {
+            logContext
+                    .getLogManager()
+                    .close();
+        }
+        AutoJobLogFlusher
+                .getInstance()
+                .close();
+        AutoJobLogWriteBuffer
+                .getInstance()
+                .close();
+        //日志文件落盘
+        if (logContext.getLogFileStore() != null) {
+            logContext
+                    .getLogFileStore()
+                    .close();
+        }
+        if (logContext.getRunLogFileStore() != null) {
+            logContext
+                    .getRunLogFileStore()
+                    .close();
+        }
+        //广播剩余的缓存失效
+        AutoJobEntityCache
+                .getInstance()
+                .close();
         //退出前释放该节点持有的任务锁
         logger.info("释放{}个DB任务锁成功", TaskRunningContext.unlock());
         /*=================将正在运行的DB任务运行态更新为结束态=================>*/
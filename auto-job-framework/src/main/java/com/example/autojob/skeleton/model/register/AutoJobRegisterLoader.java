@@ -20,7 +20,7 @@ import java.util.Set;
  * @Author Huang Yongxiang
  * @Date 2022/07/30 11:19
  */
-@ProcessorLevel(Integer.MAX_VALUE)
+@ProcessorLevel(Integer.MAX_VALUE - 1)
 @Slf4j
 public class AutoJobRegisterLoader implements IAutoJobLoader {
 
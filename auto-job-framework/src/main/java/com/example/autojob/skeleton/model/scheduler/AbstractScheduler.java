@@ -12,6 +12,7 @@ import com.example.autojob.skeleton.lifecycle.event.imp.TaskMissFireEvent;
 import com.example.autojob.skeleton.lifecycle.manager.TaskEventManager;
 import com.example.autojob.skeleton.model.executor.AutoJobTaskExecutorPool;
 import com.example.autojob.skeleton.model.register.IAutoJobRegister;
+import com.example.autojob.util.id.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.TimeUnit;
@@ -44,10 +45,25 @@ public abstract class AbstractScheduler {
         this.configHolder = configHolder;
     }
 
+    /**
+     * 尝试获取DB任务的租约锁，锁的租约会由{@link TaskRunningContext}定期续租
+     *
+     * @param taskId 任务id
+     * @return boolean
+     * @author Huang Yongxiang
+     * @date 2023/1/6 11:02
+     */
     public boolean lock(long taskId) {
-        AutoJobTaskEntityMapper mapper = new AutoJobTaskEntityMapper();
+        //已被本节点认领的任务在认领时已经加锁
+        if (TaskRunningContext
+                .getClaimedTasks()
+                .remove(taskId) != null) {
+            return true;
+        }
+        AutoJobTaskEntityMapper mapper = AutoJobMapperHolder.TASK_ENTITY_MAPPER;
+        long token = IdGenerator.getNextIdAsLong();
         try {
-            if (!mapper.lock(taskId)) {
+            if (!mapper.lock(taskId, TaskRunningContext.getLockOwner(), token, TaskRunningContext.getLockLeaseTime())) {
                 log.warn("获取DB任务：{}的锁失败，任务将不会执行", taskId);
                 register.removeTask(taskId);
                 return false;
@@ -58,20 +74,25 @@ public abstract class AbstractScheduler {
         }
         TaskRunningContext
                 .getOnLockMap()
-                .put(taskId, true);
+                .put(taskId, token);
         //log.info("获取DB任务：{}的锁成功", taskId);
         return true;
     }
 
     public boolean unlock(long taskId) {
         AutoJobTaskEntityMapper mapper = AutoJobMapperHolder.TASK_ENTITY_MAPPER;
-        if (mapper.unLock(taskId)) {
-            TaskRunningContext
-                    .getOnLockMap()
-                    .put(taskId, false);
-            return true;
+        TaskRunningContext
+                .getClaimedTasks()
+                .remove(taskId);
+        Long token = TaskRunningContext
+                .getOnLockMap()
+                .remove(taskId);
+        if (token == null) {
+            //没有本节点的加锁令牌，强制解锁可能释放其他节点在租约过期后重新获取的锁
+            log.warn("DB任务：{}没有本节点持有的锁，跳过解锁", taskId);
+            return false;
         }
-        return false;
+        return mapper.unLock(taskId, TaskRunningContext.getLockOwner(), token);
     }
 
     /**
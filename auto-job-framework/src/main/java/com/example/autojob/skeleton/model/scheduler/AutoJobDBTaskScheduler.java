@@ -1,30 +1,52 @@
 package com.example.autojob.skeleton.model.scheduler;
 
 import com.example.autojob.skeleton.lang.WithDaemonThread;
+import com.example.autojob.skeleton.db.AutoJobShardRouter;
+import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
+import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobConfig;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.framework.task.AutoJobTrigger;
+import com.example.autojob.skeleton.framework.task.TaskRunningContext;
 import com.example.autojob.skeleton.model.executor.AutoJobTaskExecutorPool;
 import com.example.autojob.skeleton.model.register.AutoJobRegisterRefusedException;
 import com.example.autojob.skeleton.model.register.IAutoJobRegister;
+import com.example.autojob.util.convert.DefaultValueUtil;
+import com.example.autojob.util.id.IdGenerator;
 import com.example.autojob.util.thread.ScheduleTaskUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
- * DB task调度器
+ * DB task调度器，基于水位增量轮询：每次只拉取触发时间位于上次扫描范围之后的任务以及触发器发生过变更的任务，
+ * 轮询周期和预取窗口根据观测到的任务触发密度自适应调整，并周期性地进行一次完整扫描兜底。配置了分片时每个分片独立轮询
  *
  * @Author Huang Yongxiang
  * @Date 2022/08/20 18:19
  */
 @Slf4j
 public class AutoJobDBTaskScheduler extends AbstractScheduler implements WithDaemonThread {
-    private final ScheduleTaskUtil dbScheduleThread;
+    /**
+     * 变更水位的回退量：ms，用于容忍节点间的时钟偏差以及变更从生成时间戳到提交的延迟
+     */
+    private static final long CHANGE_WATERMARK_LAG = 3000;
+    /**
+     * 最小预取窗口：ms
+     */
+    private static final long MIN_WINDOW = 2000;
+
+    private final List<ShardPoller> pollers = new ArrayList<>();
+    private final long minPollInterval;
+    private final long maxPollInterval;
+    private final long fullScanInterval;
+    private volatile boolean isStop = false;
 
     /**
      * 调度器的通用构造方法，框架自动注册调度器时会执行该构造方法
@@ -37,44 +59,205 @@ public class AutoJobDBTaskScheduler extends AbstractScheduler implements WithDae
      */
     public AutoJobDBTaskScheduler(AutoJobTaskExecutorPool executorPool, IAutoJobRegister register, AutoJobConfigHolder configHolder) {
         super(executorPool, register, configHolder);
-        this.dbScheduleThread = ScheduleTaskUtil.build(false, "dbScheduleThread");
+        AutoJobConfig config = configHolder.getAutoJobConfig();
+        this.minPollInterval = config.getDbTaskMinPollInterval();
+        this.maxPollInterval = config.getDbTaskMaxPollInterval();
+        this.fullScanInterval = config.getDbTaskFullScanInterval();
+        //每个分片一个轮询线程，各自维护水位与轮询周期，分片之间并行轮询互不影响
+        int shardCount = AutoJobShardRouter
+                .getInstance()
+                .getShardCount();
+        for (int i = 0; i < shardCount; i++) {
+            pollers.add(new ShardPoller(i, ScheduleTaskUtil.build(true, shardCount == 1 ? "DBTaskScheduler" : "DBTaskScheduler-shard" + i)));
+        }
     }
 
 
     @Override
     public void startWork() {
         //log.warn("DB调度器已启动");
-        ScheduleTaskUtil
-                .build(true, "DBTaskScheduler")
-                .EFixedRateTask(() -> {
+        pollers.forEach(poller -> poller.scheduleNextPoll(0));
+    }
+
+    private class ShardPoller {
+        private final int shard;
+        private final ScheduleTaskUtil dbScheduleThread;
+        private long pollInterval;
+        /**
+         * 触发时间水位，下次触发时间不晚于该值的任务已被扫描过
+         */
+        private long triggeringTimeWatermark;
+        /**
+         * 变更水位，触发器在该时间及之后发生变更的任务需要重新扫描
+         */
+        private long changeWatermark;
+        private long lastFullScanTime;
+
+        ShardPoller(int shard, ScheduleTaskUtil dbScheduleThread) {
+            this.shard = shard;
+            this.dbScheduleThread = dbScheduleThread;
+            this.pollInterval = maxPollInterval;
+        }
+
+        private void scheduleNextPoll(long delay) {
+            if (isStop) {
+                return;
+            }
+            dbScheduleThread.EOneTimeTask(() -> {
+                try {
+                    AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+                    //一次轮询中的认领、查询与暂停复用同一个连接
+                    router.doInShard(shard, () -> TransactionManager.doInUnitOfWork(router.getDataSourceHolder(shard), false, () -> {
+                        poll();
+                        return null;
+                    }));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    scheduleNextPoll(pollInterval);
+                }
+                return null;
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void poll() {
+            long now = System.currentTimeMillis();
+            int batchSize = configHolder
+                    .getAutoJobConfig()
+                    .getDbTaskClaimBatchSize();
+            boolean isFullScan = now - lastFullScanTime >= fullScanInterval;
+            long horizon = now + Math.max(pollInterval * 2, MIN_WINDOW);
+            long fromTime = isFullScan ? now - 1 : Math.max(triggeringTimeWatermark, now - 1);
+            long changedSince = isFullScan ? Long.MAX_VALUE : changeWatermark;
+            long nextChangeWatermark = now - CHANGE_WATERMARK_LAG;
+            int claimed = 0;
+            List<AutoJobTaskEntity> taskEntities;
+            //认领满一批说明可能还有剩余任务，继续认领直到不足一批
+            do {
+                long token = IdGenerator.getNextIdAsLong();
+                taskEntities = AutoJobMapperHolder.TASK_ENTITY_MAPPER.claimNearTask(fromTime, horizon, changedSince, batchSize, TaskRunningContext.getLockOwner(), token, TaskRunningContext.getLockLeaseTime());
+                if (taskEntities.size() == 0) {
+                    break;
+                }
+                claimed += taskEntities.size();
+                log.debug("认领到{}个DB任务", taskEntities.size());
+                List<AutoJobTaskEntity> unregistered = new ArrayList<>(taskEntities.size());
+                Map<Long, AutoJobTask> registeredTasks = new HashMap<>();
+                long claimExpire = System.currentTimeMillis() + TaskRunningContext.getLockLeaseTime();
+                for (AutoJobTaskEntity entity : taskEntities) {
+                    //先登记认领再登记令牌，续租线程不会把刚认领的任务当作已触发的任务
+                    TaskRunningContext
+                            .getClaimedTasks()
+                            .put(entity.getId(), claimExpire);
+                    TaskRunningContext
+                            .getOnLockMap()
+                            .put(entity.getId(), token);
+                    AutoJobTask registered = register.getTaskById(entity.getId());
+                    if (registered == null) {
+                        unregistered.add(entity);
+                    } else {
+                        registeredTasks.put(entity.getId(), registered);
+                    }
+                }
+                List<AutoJobTask> tasks = new ArrayList<>(EntityConvertor.taskEntities2Tasks(unregistered));
+                //已在调度队列中的任务只在触发器有新的变更时重新构建，用新实例替换队列中的旧实例
+                for (AutoJobTask task : rebuildChangedTasks(taskEntities, registeredTasks)) {
+                    if (register.removeTask(task.getId())) {
+                        tasks.add(task);
+                    }
+                    //旧实例已转入时间轮即将触发，保留旧实例
+                }
+                for (AutoJobTask task : tasks) {
+                    if (task.getTrigger() == null || task
+                            .getTrigger()
+                            .getIsPause()) {
+                        unlock(task.getId());
+                        continue;
+                    }
                     try {
-                        List<AutoJobTaskEntity> taskEntities = AutoJobMapperHolder.TASK_ENTITY_MAPPER.selectNearTask(5, TimeUnit.SECONDS);
-                        //log.warn("执行DB调度器");
-                        if (taskEntities == null || taskEntities.size() == 0) {
-                            return;
-                        }
-                        log.debug("查找到{}个DB任务", taskEntities.size());
-                        List<AutoJobTask> tasks = taskEntities
-                                .stream()
-                                .map(EntityConvertor::taskEntity2Task)
-                                .collect(Collectors.toList());
-                        for (AutoJobTask task : tasks) {
-                            if (task.getTrigger() != null && !task
-                                    .getTrigger()
-                                    .getIsPause()) {
-                                try {
-                                    //log.info("注册DB任务：{}", task.getId());
-                                    register.registerTask(task);
-                                } catch (AutoJobRegisterRefusedException e) {
-                                    //e.printStackTrace();
-                                    AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.pauseTaskById(task.getId());
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                        register.registerTask(task);
+                    } catch (AutoJobRegisterRefusedException e) {
+                        //e.printStackTrace();
+                        unlock(task.getId());
+                        AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.pauseTaskById(task.getId());
                     }
-                }, 0, 5, TimeUnit.SECONDS);
+                }
+            } while (taskEntities.size() >= batchSize);
+            //本次扫描完整结束后才推进水位，异常时下次轮询会重新扫描同一范围
+            triggeringTimeWatermark = horizon;
+            changeWatermark = nextChangeWatermark;
+            if (isFullScan) {
+                lastFullScanTime = now;
+            }
+            adjustPollInterval(claimed, horizon - fromTime, batchSize);
+        }
+
+        /**
+         * 找出触发器在队列中的实例构建之后又发生过变更的已注册任务，按数据库中的最新状态重新构建
+         *
+         * @param taskEntities    本批认领的任务
+         * @param registeredTasks 已在调度队列中的任务
+         * @return java.util.List<com.example.autojob.skeleton.framework.task.AutoJobTask> 重新构建的任务
+         * @author Huang Yongxiang
+         * @date 2023/1/29 16:40
+         */
+        private List<AutoJobTask> rebuildChangedTasks(List<AutoJobTaskEntity> taskEntities, Map<Long, AutoJobTask> registeredTasks) {
+            if (registeredTasks.size() == 0) {
+                return Collections.emptyList();
+            }
+            List<AutoJobTaskEntity> registeredEntities = taskEntities
+                    .stream()
+                    .filter(entity -> registeredTasks.containsKey(entity.getId()) && entity.getTriggerId() != null)
+                    .collect(Collectors.toList());
+            Map<Long, AutoJobTriggerEntity> triggerEntities = AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER
+                    .selectByIds(registeredEntities
+                            .stream()
+                            .map(AutoJobTaskEntity::getTriggerId)
+                            .collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(AutoJobTriggerEntity::getId, trigger -> trigger, (a, b) -> a));
+            List<AutoJobTask> rebuilt = new ArrayList<>();
+            for (AutoJobTaskEntity entity : registeredEntities) {
+                AutoJobTriggerEntity triggerEntity = triggerEntities.get(entity.getTriggerId());
+                AutoJobTrigger trigger = registeredTasks
+                        .get(entity.getId())
+                        .getTrigger();
+                if (triggerEntity == null || trigger == null || (trigger.getChangeTime() != null && trigger.getChangeTime() >= DefaultValueUtil.defaultValue(triggerEntity.getChangeTime(), 0L))) {
+                    continue;
+                }
+                AutoJobTask task = EntityConvertor.taskEntity2Task(entity, triggerEntity);
+                if (task != null) {
+                    log.debug("DB任务：{}的触发器已变更，重新构建", entity.getId());
+                    rebuilt.add(task);
+                }
+            }
+            return rebuilt;
+        }
+
+        /**
+         * 根据本次扫描观测到的触发密度调整轮询周期，使每次轮询认领的任务数维持在半批左右，
+         * 没有任务时周期逐步延长到最大值
+         *
+         * @param claimed   本次认领的任务数
+         * @param scanned   本次扫描的触发时间跨度：ms
+         * @param batchSize 每批认领的任务数
+         * @author Huang Yongxiang
+         * @date 2023/1/11 10:50
+         */
+        private void adjustPollInterval(int claimed, long scanned, int batchSize) {
+            long interval;
+            if (claimed == 0) {
+                interval = pollInterval * 2;
+            } else {
+                double density = (double) claimed / Math.max(scanned, 1);
+                interval = (long) (Math.max(batchSize / 2, 1) / density);
+            }
+            interval = Math.min(maxPollInterval, Math.max(minPollInterval, interval));
+            if (interval != pollInterval) {
+                log.debug("DB调度器轮询周期调整为{}ms", interval);
+                pollInterval = interval;
+            }
+        }
     }
 
     @Override
@@ -84,6 +267,7 @@ public class AutoJobDBTaskScheduler extends AbstractScheduler implements WithDae
 
     @Override
     public void destroy() {
-        dbScheduleThread.shutdownNow();
+        isStop = true;
+        pollers.forEach(poller -> poller.dbScheduleThread.shutdownNow());
     }
 }
@@ -1,7 +1,7 @@
 package com.example.autojob.skeleton.model.scheduler;
 
 import com.example.autojob.skeleton.cluster.model.AutoJobTaskTransferManager;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
@@ -39,13 +39,15 @@ public class AutoJobRunErrorScheduler extends AbstractScheduler implements ITask
     public void doHandle(TaskRunErrorEvent event) {
         AutoJobTask task = event.getTask();
         if (task.getType() == AutoJobTask.TaskType.DB_TASK) {
-            AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateStatus(task
-                    .getTrigger()
-                    .getFinishedTimes(), Long.MAX_VALUE, task
-                    .getTrigger()
-                    .getTriggeringTime(), task
-                    .getTrigger()
-                    .getLastRunTime(), false, task.getId());
+            AutoJobTriggerWriteBuffer
+                    .getInstance()
+                    .updateStatus(task
+                            .getTrigger()
+                            .getFinishedTimes(), Long.MAX_VALUE, task
+                            .getTrigger()
+                            .getTriggeringTime(), task
+                            .getTrigger()
+                            .getLastRunTime(), false, task.getId());
             unlock(task.getId());
         }
         if (AutoJobRetryHandler
@@ -1,5 +1,7 @@
 package com.example.autojob.skeleton.model.scheduler;
 
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
+import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
 import com.example.autojob.skeleton.db.entity.EntityConvertor;
 import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
@@ -56,11 +58,12 @@ public class AutoJobRunSuccessScheduler extends AbstractScheduler implements ITa
             if (task
                     .getTrigger()
                     .hasChildTask()) {
-                findChildTask(task).forEach(c -> {
+                //子任务的查找与加锁复用同一个连接
+                TransactionManager.doInUnitOfWork(false, () -> findChildTask(task).forEach(c -> {
                     if (c.getType() == AutoJobTask.TaskType.MEMORY_TASk || (c.getType() == AutoJobTask.TaskType.DB_TASK && lock(c.getId()))) {
                         submitTask(c);
                     }
-                });
+                }));
             }
             return null;
         }, 0, TimeUnit.MILLISECONDS);
@@ -77,17 +80,16 @@ public class AutoJobRunSuccessScheduler extends AbstractScheduler implements ITa
                     register.registerTask(task);
                 }
                 if (task.getType() == AutoJobTask.TaskType.DB_TASK) {
-                    //异步更新DB任务的状态
-                    childTaskScheduleThread.EOneTimeTask(() -> {
-                        AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateStatus(task
-                                .getTrigger()
-                                .getFinishedTimes(), event.getTriggeringTime(), task
-                                .getTrigger()
-                                .getTriggeringTime(), task
-                                .getTrigger()
-                                .getLastRunTime(), true, task.getId());
-                        return null;
-                    }, 0, TimeUnit.MILLISECONDS);
+                    //DB任务的状态由写缓冲合并后批量写入
+                    AutoJobTriggerWriteBuffer
+                            .getInstance()
+                            .updateStatus(task
+                                    .getTrigger()
+                                    .getFinishedTimes(), event.getTriggeringTime(), task
+                                    .getTrigger()
+                                    .getTriggeringTime(), task
+                                    .getTrigger()
+                                    .getLastRunTime(), true, task.getId());
                 }
             } else {
                 if (task
@@ -96,11 +98,13 @@ public class AutoJobRunSuccessScheduler extends AbstractScheduler implements ITa
                     return;
                 }
                 if (task.getType() == AutoJobTask.TaskType.DB_TASK) {
-                    childTaskScheduleThread.EOneTimeTask(() -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateStatus(task
-                            .getTrigger()
-                            .getFinishedTimes(), event.getTriggeringTime(), Long.MAX_VALUE, task
-                            .getTrigger()
-                            .getLastRunTime(), true, task.getId()), 0, TimeUnit.MILLISECONDS);
+                    AutoJobTriggerWriteBuffer
+                            .getInstance()
+                            .updateStatus(task
+                                    .getTrigger()
+                                    .getFinishedTimes(), event.getTriggeringTime(), Long.MAX_VALUE, task
+                                    .getTrigger()
+                                    .getLastRunTime(), true, task.getId());
                 }
                 task
                         .getRunResult()
@@ -112,15 +116,13 @@ public class AutoJobRunSuccessScheduler extends AbstractScheduler implements ITa
             }
         } else {
             if (task.getType() == AutoJobTask.TaskType.DB_TASK) {
-                //异步更新DB任务的状态
-                childTaskScheduleThread.EOneTimeTask(() -> {
-                    AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateStatus(task
-                            .getTrigger()
-                            .getFinishedTimes(), event.getTriggeringTime(), Long.MAX_VALUE, task
-                            .getTrigger()
-                            .getLastRunTime(), true, task.getId());
-                    return null;
-                }, 0, TimeUnit.MILLISECONDS);
+                AutoJobTriggerWriteBuffer
+                        .getInstance()
+                        .updateStatus(task
+                                .getTrigger()
+                                .getFinishedTimes(), event.getTriggeringTime(), Long.MAX_VALUE, task
+                                .getTrigger()
+                                .getLastRunTime(), true, task.getId());
             }
         }
     }
@@ -146,11 +148,7 @@ public class AutoJobRunSuccessScheduler extends AbstractScheduler implements ITa
                         .collect(Collectors.toList());
             } else {
                 List<AutoJobTaskEntity> entities = AutoJobMapperHolder.TASK_ENTITY_MAPPER.selectChildTasks(childTaskIds);
-                return entities
-                        .stream()
-                        .filter(Objects::nonNull)
-                        .map(EntityConvertor::taskEntity2Task)
-                        .collect(Collectors.toList());
+                return EntityConvertor.taskEntities2Tasks(entities);
             }
         }
         return Collections.emptyList();
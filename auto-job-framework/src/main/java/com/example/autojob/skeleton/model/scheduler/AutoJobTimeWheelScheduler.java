@@ -1,7 +1,9 @@
 package com.example.autojob.skeleton.model.scheduler;
 
+import com.example.autojob.skeleton.db.TransactionManager;
 import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
 import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.framework.task.TaskRunningContext;
 import com.example.autojob.skeleton.lang.WithDaemonThread;
 import com.example.autojob.skeleton.lifecycle.TaskEventFactory;
 import com.example.autojob.skeleton.lifecycle.event.imp.TaskMissFireEvent;
@@ -52,7 +54,8 @@ public class AutoJobTimeWheelScheduler extends AbstractScheduler implements With
                     tasks.addAll(timeWheel.getSecondTasks((int) (((System.currentTimeMillis() - 1000 * i) / 1000) % 60)));
                 }
                 if (tasks.size() > 0) {
-                    tasks.forEach(item -> {
+                    //同一秒触发的任务加锁时复用同一个连接，锁仍逐个提交
+                    TransactionManager.doInUnitOfWork(false, () -> tasks.forEach(item -> {
                         //log.warn("任务：{}时间轮触发成功，{}", item.getId(), DateUtils.formatDateTime(new Date(item
                         //        .getTrigger()
                         //        .getTriggeringTime())));
@@ -61,7 +64,7 @@ public class AutoJobTimeWheelScheduler extends AbstractScheduler implements With
                         } else if (item.getType() == AutoJobTask.TaskType.MEMORY_TASk) {
                             submitTask(item);
                         }
-                    });
+                    }));
                 }
                 //获取时间轮是否有残留任务
                 for (int i = 0; i <= second; i++) {
@@ -69,6 +72,7 @@ public class AutoJobTimeWheelScheduler extends AbstractScheduler implements With
                     if (leftTasks != null && leftTasks.size() > 0) {
                         leftTasks.forEach(task -> {
                             log.warn("任务{} miss fire", task.getId());
+                            TaskRunningContext.releaseClaim(task.getId());
                             //miss fire的事件处理采用异步处理，避免阻塞时间轮的调度
                             TaskEventManager
                                     .getInstance()
@@ -90,15 +94,15 @@ public class AutoJobTimeWheelScheduler extends AbstractScheduler implements With
                             .getTrigger()
                             .getIsPause()) {
                         register.takeTask();
+                        TaskRunningContext.releaseClaim(headTask.getId());
                         return;
                     }
                     if (headTask
                             .getTrigger()
                             .isNearTriggeringTime(ADVANCE_TIME)) {
-                        if (timeWheel.joinTask(headTask)) {
-                            //log.warn("任务：{}，启动时间：{}调度进时间轮成功", headTask.getId(), DateUtils.formatDate(new Date(headTask
-                            //        .getTrigger()
-                            //        .getTriggeringTime()), "yyyy-MM-dd HH:mm:ss,SSS"));
+                        if (!timeWheel.joinTask(headTask)) {
+                            //未进入时间轮的任务不会触发，释放其认领
+                            TaskRunningContext.releaseClaim(headTask.getId());
                         }
                         register.takeTask();
                     }
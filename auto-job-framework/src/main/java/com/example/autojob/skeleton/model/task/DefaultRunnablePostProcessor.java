@@ -1,9 +1,7 @@
 package com.example.autojob.skeleton.model.task;
 
-import com.example.autojob.logging.domain.AutoJobLog;
-import com.example.autojob.logging.model.AutoJobLogContainer;
 import com.example.autojob.logging.model.producer.AutoJobLogHelper;
-import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
 import com.example.autojob.skeleton.framework.pool.AutoJobPoolExecutor;
 import com.example.autojob.skeleton.framework.pool.Executable;
 import com.example.autojob.skeleton.framework.pool.RunnablePostProcessor;
@@ -17,10 +15,8 @@ import com.example.autojob.skeleton.lifecycle.event.imp.TaskBeforeRunEvent;
 import com.example.autojob.skeleton.lifecycle.event.imp.TaskRunErrorEvent;
 import com.example.autojob.skeleton.lifecycle.event.imp.TaskRunSuccessEvent;
 import com.example.autojob.skeleton.lifecycle.manager.TaskEventManager;
-import com.example.autojob.util.thread.ScheduleTaskUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.TimeUnit;
 
 /**
  * 任务执行后置处理器的默认实现，原则上无需自己实现，如果确实需要在任务开始、完成等完成一些操作，请优先使用任务事件处理器{@link ITaskEventHandler}
@@ -49,10 +45,9 @@ public class DefaultRunnablePostProcessor implements RunnablePostProcessor {
                 /*=======================Finished======================<*/
                 /*=================更新状态=================>*/
                 if (autoJobTask.getType() == AutoJobTask.TaskType.DB_TASK) {
-                    ScheduleTaskUtil.oneTimeTask(() -> {
-                        AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateOperatingStatus(true, autoJobTask.getId());
-                        return null;
-                    }, 0, TimeUnit.SECONDS);
+                    AutoJobTriggerWriteBuffer
+                            .getInstance()
+                            .updateOperatingStatus(true, autoJobTask.getId());
 
                 }
                 autoJobTask
@@ -78,10 +73,6 @@ public class DefaultRunnablePostProcessor implements RunnablePostProcessor {
                 autoJobTask.setIsStart(true);
                 autoJobTask.setIsWaiting(false);
                 autoJobTask.setIsFinished(false);
-                AutoJobLogContainer
-                        .getInstance()
-                        .getMessageQueueContext(AutoJobLog.class)
-                        .registerMessageQueue(autoJobTask.getId() + "");
                 TaskEventManager
                         .getInstance()
                         .publishTaskEventSync(TaskEventFactory.newBeforeRunEvent(autoJobTask), TaskBeforeRunEvent.class, true);
@@ -115,10 +106,9 @@ public class DefaultRunnablePostProcessor implements RunnablePostProcessor {
                 autoJobTask.setIsRetrying(false);
                 /*=================更新状态=================>*/
                 if (autoJobTask.getType() == AutoJobTask.TaskType.DB_TASK) {
-                    ScheduleTaskUtil.oneTimeTask(() -> {
-                        AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateOperatingStatus(false, autoJobTask.getId());
-                        return null;
-                    }, 0, TimeUnit.SECONDS);
+                    AutoJobTriggerWriteBuffer
+                            .getInstance()
+                            .updateOperatingStatus(false, autoJobTask.getId());
                 }
                 /*=======================Finished======================<*/
                 autoJobTask
@@ -158,10 +148,9 @@ public class DefaultRunnablePostProcessor implements RunnablePostProcessor {
                         .error(throwable, result);
                 /*=================更新状态=================>*/
                 if (autoJobTask.getType() == AutoJobTask.TaskType.DB_TASK) {
-                    ScheduleTaskUtil.oneTimeTask(() -> {
-                        AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.updateOperatingStatus(false, autoJobTask.getId());
-                        return null;
-                    }, 0, TimeUnit.SECONDS);
+                    AutoJobTriggerWriteBuffer
+                            .getInstance()
+                            .updateOperatingStatus(false, autoJobTask.getId());
                 }
                 /*=======================Finished======================<*/
                 autoJobTask
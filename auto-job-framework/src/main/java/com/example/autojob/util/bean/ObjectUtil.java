@@ -10,6 +10,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +20,10 @@ import java.util.stream.Collectors;
  */
 public class ObjectUtil {
     private static final Logger logger = LoggerFactory.getLogger(ObjectUtil.class);
+    /**
+     * 按名称查找的方法缓存
+     */
+    private static final Map<Class<?>, Map<String, Method>> METHOD_CACHE = new ConcurrentHashMap<>();
 
     /**
      * 将一个对象中的字段值拷贝到另外一个对象的同名字段中，字段如果类型相同会直接拷贝，否则会通过JSON进行序列化和反序列化
@@ -313,11 +318,17 @@ public class ObjectUtil {
      * @date 2022/7/1 14:00
      */
     public static Method findMethod(String methodName, Class<?> methodClass) {
+        Map<String, Method> classMethods = METHOD_CACHE.computeIfAbsent(methodClass, c -> new ConcurrentHashMap<>());
+        Method cached = classMethods.get(methodName);
+        if (cached != null) {
+            return cached;
+        }
         Method[] methods = methodClass.getMethods();
         for (Method method : methods) {
             if (method
                     .getName()
                     .equals(methodName)) {
+                classMethods.put(methodName, method);
                 return method;
             }
         }
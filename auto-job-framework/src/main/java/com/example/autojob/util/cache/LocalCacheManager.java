@@ -174,6 +174,10 @@ public class LocalCacheManager<K, V> {
         return localCache.size();
     }
 
+    public void clear() {
+        localCache.clear();
+    }
+
     public Set<Map.Entry<K, V>> entrySet() {
         return localCache.entrySet();
     }
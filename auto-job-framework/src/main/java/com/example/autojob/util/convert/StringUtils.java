@@ -66,6 +66,36 @@ public class StringUtils extends org.apache.commons.lang3.StringUtils {
         }
     }
 
+    /**
+     * 计算字符串按UTF-8编码后的字节数，不生成字节数组，结果与getBytes(UTF_8).length一致
+     *
+     * @param str 字符串
+     * @return 字节数，null返回0
+     */
+    public static int utf8Length(String str) {
+        if (str == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0, size = str.length(); i < size; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符编码为?
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     /**
      * 是否包含字符串
      *
@@ -28,8 +28,32 @@ public class IdGenerator {
         return instance().getAsString();
     }
 
+    /**
+     * 预留一段连续的ID
+     *
+     * @param count 预留的个数，最多4096
+     * @return long 第一个ID，之后的count - 1个连续值同样可用
+     * @author Huang Yongxiang
+     * @date 2023/1/27 20:15
+     */
+    public static long getNextIds(int count) {
+        return InstanceHolder.ID_WORKER.nextIds(count);
+    }
+
+    /**
+     * 获取ID生成时的时间戳
+     *
+     * @param id 由该生成器生成的ID
+     * @return long 毫秒时间戳
+     * @author Huang Yongxiang
+     * @date 2023/1/11 15:12
+     */
+    public static long getTimestamp(long id) {
+        return IdSnowFlakeWorker.getTimestamp(id);
+    }
+
     public static class InstanceHolder {
-        private static final IdWorker ID_WORKER = new IdSnowFlakeWorker();
+        private static final IdSnowFlakeWorker ID_WORKER = new IdSnowFlakeWorker();
     }
 
 }
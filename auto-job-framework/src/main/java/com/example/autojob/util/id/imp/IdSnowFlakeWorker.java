@@ -18,7 +18,7 @@ public class IdSnowFlakeWorker implements IdWorker {
     /**
      * 时间初值
      */
-    long twepoch = 1585644268888L;
+    private static final long TWEPOCH = 1585644268888L;
     /**
      * 机器ID
      */
@@ -31,27 +31,27 @@ public class IdSnowFlakeWorker implements IdWorker {
     /**
      * 机器ID所占位数
      */
-    private final long workerIdBits = 10L;
+    private static final long WORKER_ID_BITS = 10L;
     /**
      * 序列号所占位数
      */
-    private final long sequenceBits = 12L;
+    private static final long SEQUENCE_BITS = 12L;
     /**
-     * workerIdBits位的数最大值
+     * WORKER_ID_BITS位的数最大值
      */
-    private final long maxWorkerId = ~(-1L << workerIdBits);
+    private final long maxWorkerId = ~(-1L << WORKER_ID_BITS);
     /**
      * 序列号最大值
      */
-    private final long sequenceMask = ~(-1L << sequenceBits);
+    private final long sequenceMask = ~(-1L << SEQUENCE_BITS);
     /**
      * 机器ID移位数
      */
-    private final long workerIdShift = sequenceBits;
+    private final long workerIdShift = SEQUENCE_BITS;
     /**
      * 时间戳移位数
      */
-    private final long timestampLeftShift = sequenceBits + workerIdBits;
+    private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
 
     /**
      * 记录上次产生ID的时间戳
@@ -85,7 +85,53 @@ public class IdSnowFlakeWorker implements IdWorker {
         }
         // 这儿记录一下最近一次生成id的时间戳，单位是毫秒
         lastTimestamp = timestamp;
-        return ((timestamp - twepoch) << timestampLeftShift) | (workerId << workerIdShift) | sequence.get();
+        return ((timestamp - TWEPOCH) << TIMESTAMP_LEFT_SHIFT) | (workerId << workerIdShift) | sequence.get();
+    }
+
+    /**
+     * 一次预留一段连续的ID，返回第一个ID，first到first + count - 1均可使用。预留的ID位于同一毫秒内，
+     * 当前毫秒剩余的序列号不足时等待到下一毫秒，适合批量写入时避免逐条加锁生成
+     *
+     * @param count 预留的个数，最多为一毫秒内的序列号个数4096
+     * @return long 第一个ID
+     * @author Huang Yongxiang
+     * @date 2023/1/27 20:10
+     */
+    public synchronized long nextIds(int count) {
+        if (count < 1 || count > sequenceMask + 1) {
+            throw new IllegalArgumentException("预留ID个数需在1到" + (sequenceMask + 1) + "之间：" + count);
+        }
+        long timestamp = timeGen();
+        if (timestamp < lastTimestamp) {
+            log.error("时间被回调，小于上次生成时间戳：{}，将会出现冲突异常.", lastTimestamp);
+            throw new RuntimeException(String.format("Clock moved backwards. Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+        }
+        if (workerId == 0 || workerId > maxWorkerId) {
+            workerId = new Random().nextInt((int) maxWorkerId + 1);
+        }
+        long first = 0;
+        if (lastTimestamp == timestamp) {
+            first = sequence.get() + 1;
+            if (first + count - 1 > sequenceMask) {
+                timestamp = tilNextMillis(lastTimestamp);
+                first = 0;
+            }
+        }
+        sequence.set(first + count - 1);
+        lastTimestamp = timestamp;
+        return ((timestamp - TWEPOCH) << TIMESTAMP_LEFT_SHIFT) | (workerId << workerIdShift) | first;
+    }
+
+    /**
+     * 解析ID生成时的时间戳，时间戳以下的低位为机器ID和序列号
+     *
+     * @param id 雪花ID
+     * @return long 毫秒时间戳
+     * @author Huang Yongxiang
+     * @date 2023/1/11 15:10
+     */
+    public static long getTimestamp(long id) {
+        return (id >>> TIMESTAMP_LEFT_SHIFT) + TWEPOCH;
     }
 
     @Override
@@ -0,0 +1,129 @@
+package com.example.autojob.api.log;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.LogBlockCodec;
+import com.example.autojob.skeleton.db.entity.AutoJobLogEntity;
+import com.example.autojob.skeleton.db.entity.EntityConvertor;
+import com.example.autojob.skeleton.db.mapper.AutoJobLogEntityMapper;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.convert.DateUtils;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志块查询测试，压缩的日志块写入H2后按游标分页与按时间范围查询，块内的日志既不重复也不遗漏
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 10:00
+ */
+public class AutoJobLogDBAPIBlockTest {
+    private static final int LOG_COUNT = 150;
+    private static long taskId;
+    private static long schedulingId;
+    private static long base;
+    private static List<Long> expectedIds;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        AutoJobTestContext.initWithSchema(AutoJobTestContext.newH2("log_block_query"));
+        taskId = IdGenerator.getNextIdAsLong();
+        schedulingId = IdGenerator.getNextIdAsLong();
+        //每秒一条，按块跨度拆分为61、61、28条三个块
+        base = (System.currentTimeMillis() - 5 * 60 * 1000) / 1000 * 1000;
+        List<AutoJobLog> logs = new ArrayList<>(LOG_COUNT);
+        for (int i = 0; i < LOG_COUNT; i++) {
+            logs.add(new AutoJobLog()
+                    .setSchedulingId(schedulingId)
+                    .setTaskId(taskId)
+                    .setInputTime(DateUtils.formatDateTime(base + i * 1000L))
+                    .setLevel("INFO")
+                    .setMessage("任务执行中，当前处理到第" + i + "条数据"));
+        }
+        List<AutoJobLogEntity> entities = new ArrayList<>();
+        expectedIds = new ArrayList<>();
+        for (List<AutoJobLog> block : LogBlockCodec.split(logs, new AutoJobLogCodec(), AutoJobLogEntityMapper.BLOCK_SPAN, AutoJobLogEntityMapper.BLOCK_MAX_COUNT)) {
+            AutoJobLogEntity entity = EntityConvertor.logs2LogBlockEntity(block, true);
+            assertEquals(LogBlockCodec.FLAG_COMPRESSED, entity.getContent()[0]);
+            entities.add(entity);
+            EntityConvertor
+                    .logEntity2Logs(entity)
+                    .forEach(log -> expectedIds.add(log.getId()));
+        }
+        assertEquals(3, entities.size());
+        assertEquals(3, AutoJobMapperHolder.LOG_ENTITY_MAPPER.insertList(entities));
+    }
+
+    @Test
+    public void taskCursorPagesThroughBlocks() {
+        AutoJobLogDBAPI api = new AutoJobLogDBAPI();
+        List<Long> ids = new ArrayList<>();
+        Long lastId = null;
+        List<AutoJobLog> page;
+        //页大小与块大小互质，游标会多次落在块的中间
+        while (!(page = api.findLogsByTaskIdAfter(taskId, lastId, 7)).isEmpty()) {
+            assertTrue(page.size() <= 7);
+            page.forEach(log -> ids.add(log.getId()));
+            lastId = page
+                    .get(page.size() - 1)
+                    .getId();
+        }
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    public void schedulingCursorPagesThroughBlocks() {
+        AutoJobLogDBAPI api = new AutoJobLogDBAPI();
+        List<AutoJobLog> first = api.findLogsBySchedulingIdAfter(schedulingId, null, 100);
+        assertEquals(100, first.size());
+        List<AutoJobLog> second = api.findLogsBySchedulingIdAfter(schedulingId, first
+                .get(99)
+                .getId(), 100);
+        assertEquals(LOG_COUNT - 100, second.size());
+        List<Long> ids = new ArrayList<>();
+        first.forEach(log -> ids.add(log.getId()));
+        second.forEach(log -> ids.add(log.getId()));
+        assertEquals(expectedIds, ids);
+        assertTrue(api
+                .findLogsBySchedulingIdAfter(schedulingId, expectedIds.get(LOG_COUNT - 1), 100)
+                .isEmpty());
+    }
+
+    @Test
+    public void timeRangeReturnsOnlyLogsInsideRange() {
+        AutoJobLogDBAPI api = new AutoJobLogDBAPI();
+        //第二个块从第61秒开始，范围起点落在块中间
+        assertEquals(range(70, 80), messages(api.findLogsByTaskIdBetween(taskId, new Date(base + 70 * 1000), new Date(base + 80 * 1000))));
+        //跨越第二、三个块的边界
+        assertEquals(range(115, 130), messages(api.findLogsByTaskIdBetween(taskId, new Date(base + 115 * 1000), new Date(base + 130 * 1000))));
+        assertTrue(api
+                .findLogsByTaskIdBetween(taskId, new Date(base + LOG_COUNT * 1000), new Date(base + 200 * 1000))
+                .isEmpty());
+    }
+
+    private static List<String> messages(List<AutoJobLog> logs) {
+        return logs
+                .stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .map(AutoJobLog::getMessage)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> range(int from, int to) {
+        List<String> messages = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            messages.add("任务执行中，当前处理到第" + i + "条数据");
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.autojob.api.log;
+
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增量查询测试，等待时间限制在MAX_TAIL_TIMEOUT以内
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 11:30
+ */
+public class AutoJobLogDBAPITailTest {
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initWithSchema(AutoJobTestContext.newH2("log_tail"));
+    }
+
+    @Test
+    public void timeoutIsClamped() {
+        assertEquals(0, AutoJobLogDBAPI.clampTailTimeout(null));
+        assertEquals(0, AutoJobLogDBAPI.clampTailTimeout(-1L));
+        assertEquals(500, AutoJobLogDBAPI.clampTailTimeout(500L));
+        assertEquals(AutoJobLogDBAPI.MAX_TAIL_TIMEOUT, AutoJobLogDBAPI.clampTailTimeout(AutoJobLogDBAPI.MAX_TAIL_TIMEOUT + 1));
+        //过大的超时时间不会溢出为立即返回
+        assertEquals(AutoJobLogDBAPI.MAX_TAIL_TIMEOUT, AutoJobLogDBAPI.clampTailTimeout(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyTailWaitsForTimeout() {
+        long start = System.currentTimeMillis();
+        assertTrue(new AutoJobLogDBAPI()
+                .tailLogsBySchedulingId(IdGenerator.getNextIdAsLong(), null, 10, 300L)
+                .isEmpty());
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+}
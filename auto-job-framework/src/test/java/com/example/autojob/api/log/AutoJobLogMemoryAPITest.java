@@ -0,0 +1,129 @@
+package com.example.autojob.api.log;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.consumer.strategy.AutoJobLogMemoryStrategy;
+import com.example.autojob.logging.model.consumer.strategy.AutoJobRunLogMemoryStrategy;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.convert.DateUtils;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存日志API测试，任务日志与运行日志按调度ID和任务ID从内存缓存查询，增量查询在新日志写入时返回
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 18:40
+ */
+public class AutoJobLogMemoryAPITest {
+    private static final long TASK_ID = 1;
+
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initWithSchema("auto-job-log-memory-test.yml", AutoJobTestContext.newH2("log_memory_api"));
+        AutoJobTestContext.initLogContext();
+    }
+
+    @Test
+    public void logsAreFoundBySchedulingAndTask() {
+        long firstScheduling = IdGenerator.getNextIdAsLong();
+        long secondScheduling = IdGenerator.getNextIdAsLong();
+        List<AutoJobLog> first = logs(firstScheduling, 3);
+        List<AutoJobLog> second = logs(secondScheduling, 4);
+        AutoJobLogMemoryStrategy strategy = new AutoJobLogMemoryStrategy();
+        strategy.doHandle(TASK_ID + "", first);
+        strategy.doHandle(TASK_ID + "", second);
+        AutoJobLogMemoryAPI api = new AutoJobLogMemoryAPI();
+
+        assertEquals(ids(first), ids(api.findLogsBySchedulingId(firstScheduling)));
+        assertEquals(ids(second), ids(api.findLogsBySchedulingId(secondScheduling)));
+        assertEquals(ids(second.subList(2, 4)), ids(api.tailLogsBySchedulingId(secondScheduling, second
+                .get(1)
+                .getId(), 10, 0L)));
+        List<Long> all = new ArrayList<>(ids(first));
+        all.addAll(ids(second));
+        assertEquals(all.subList(0, 5), ids(api.findLogsByTaskIdAfter(TASK_ID, null, 5)));
+        assertEquals(all.subList(5, 7), ids(api.findLogsByTaskIdAfter(TASK_ID, all.get(4), 5)));
+        assertEquals(all, ids(api.findLogsByTaskIdBetween(TASK_ID, new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1)), null)));
+        assertTrue(api
+                .findLogsByTaskIdBetween(TASK_ID, new Date(0), new Date(1000))
+                .isEmpty());
+    }
+
+    @Test
+    public void runLogsAreFoundBySchedulingAndTask() {
+        long taskId = 2;
+        long schedulingId = IdGenerator.getNextIdAsLong();
+        AutoJobRunLog runLog = new AutoJobRunLog()
+                .setId(IdGenerator.getNextIdAsLong())
+                .setSchedulingId(schedulingId)
+                .setTaskId(taskId)
+                .setMessage("run")
+                .setWriteTime(DateUtils.getTime());
+        new AutoJobRunLogMemoryStrategy().doHandle(taskId + "", Collections.singletonList(runLog));
+        AutoJobLogMemoryAPI api = new AutoJobLogMemoryAPI();
+        assertEquals(Collections.singletonList(runLog.getId()), api
+                .findRunLogsBySchedulingId(schedulingId)
+                .stream()
+                .map(AutoJobRunLog::getId)
+                .collect(Collectors.toList()));
+        assertEquals(1, api
+                .findRunLogsByTaskIdAfter(taskId, null, 10)
+                .size());
+        assertTrue(api
+                .findRunLogsByTaskIdAfter(taskId, runLog.getId(), 10)
+                .isEmpty());
+    }
+
+    @Test
+    public void tailReturnsWhenLogsArrive() throws Exception {
+        long taskId = 3;
+        long schedulingId = IdGenerator.getNextIdAsLong();
+        List<AutoJobLog> logs = logs(schedulingId, 2);
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            new AutoJobLogMemoryStrategy().doHandle(taskId + "", logs);
+        });
+        writer.start();
+        long start = System.currentTimeMillis();
+        List<AutoJobLog> tail = new AutoJobLogMemoryAPI().tailLogsBySchedulingId(schedulingId, null, 10, 10000L);
+        writer.join();
+        assertEquals(ids(logs), ids(tail));
+        //由写入唤醒，无需等待到超时
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private static List<AutoJobLog> logs(long schedulingId, int count) {
+        List<AutoJobLog> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new AutoJobLog()
+                    .setId(IdGenerator.getNextIdAsLong())
+                    .setSchedulingId(schedulingId)
+                    .setTaskId(TASK_ID)
+                    .setInputTime(DateUtils.getTime())
+                    .setLevel("INFO")
+                    .setMessage("message" + i));
+        }
+        return logs;
+    }
+
+    private static List<Long> ids(List<AutoJobLog> logs) {
+        return logs
+                .stream()
+                .map(AutoJobLog::getId)
+                .collect(Collectors.toList());
+    }
+}
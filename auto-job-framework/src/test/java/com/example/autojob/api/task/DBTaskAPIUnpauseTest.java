@@ -0,0 +1,59 @@
+package com.example.autojob.api.task;
+
+import com.example.autojob.skeleton.db.AutoJobTriggerWriteBuffer;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * 恢复任务测试，恢复前需先写入触发器缓冲，以数据库中最新的触发时间判断是否需要刷新
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 14:10
+ */
+public class DBTaskAPIUnpauseTest {
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("task_unpause");
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Test
+    public void unpauseUsesBufferedTriggeringTime() throws SQLException {
+        long past = System.currentTimeMillis() - 60000;
+        long buffered = System.currentTimeMillis() + 90000;
+        execute("insert into aj_auto_job (id, type, method_class_name, method_name, trigger_id, is_latest, status, del_flag) values (1, 0, 'java.lang.Object', 'toString', 1001, 1, 1, 0)");
+        execute(String.format("insert into aj_trigger (id, task_id, cron_expression, repeat_times, finished_times, last_run_time, last_triggering_time, next_triggering_time, is_last_success, is_pause, del_flag) values (1001, 1, '0 0 0 * * ?', -1, 0, 0, 0, %d, 1, 1, 0)", past));
+        //数据库中的触发时间已过期，但缓冲中已有尚未写入的新触发时间
+        AutoJobTriggerWriteBuffer
+                .getInstance()
+                .updateTriggeringTime(1, buffered);
+
+        assertTrue(new DBTaskAPI().unpause(1L));
+        assertEquals(0, queryLong("select is_pause from aj_trigger where id = 1001"));
+        assertEquals(buffered, queryLong("select next_triggering_time from aj_trigger where id = 1001"));
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import com.example.autojob.util.convert.DateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 文件日志存储测试，覆盖段文件的块格式、块内的游标与时间范围查询、重新打开时的恢复与块头校验以及过期段的清理
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 21:00
+ */
+public class AutoJobLogFileStoreTest {
+    private static final String TIME = "2023-01-27 21:00:00";
+    private static final long BASE = 1674867600000L;
+    private AutoJobLogConfig config;
+    private File root;
+    private final List<AutoJobLogFileStore<AutoJobLog>> stores = new ArrayList<>();
+
+    @Before
+    public void init() throws IOException {
+        config = new AutoJobConfigHolder("auto-job-file-store-test.yml").getLogConfig();
+        root = new File(config.getFileStorePath());
+        deleteRecursively(root);
+    }
+
+    @After
+    public void close() throws IOException {
+        stores.forEach(AutoJobLogFileStore::close);
+        deleteRecursively(root);
+    }
+
+    @Test
+    public void blockLayoutMatchesSegmentFormat() throws IOException {
+        AutoJobLogFileStore<AutoJobLog> store = open("format");
+        assertEquals(3, store.append(Arrays.asList(log(1, 10, 100, "a"), log(2, 10, 100, "b"), log(3, 11, 100, "c"))));
+        File segmentFile = new File(new File(root, "format"), String.format("%020d%s", 0, LogSegment.SUFFIX));
+        assertTrue(segmentFile.exists());
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r")) {
+            //同一调度同一任务的日志写为一个块
+            int length = file.readInt();
+            file.readInt();
+            assertEquals(0, file.readByte());
+            assertTrue(file.readInt() > 0);
+            assertEquals(2, file.readInt());
+            assertEquals(10, file.readLong());
+            assertEquals(100, file.readLong());
+            long minTime = file.readLong();
+            assertEquals(minTime, file.readLong());
+            assertEquals(2, file.readLong());
+            //第二个块紧随第一个块的内容之后
+            file.seek(LogSegment.HEADER_SIZE + length);
+            assertTrue(file.readInt() > 0);
+            file.seek(LogSegment.HEADER_SIZE + length + 4 + 4 + 1 + 4);
+            assertEquals(1, file.readInt());
+            assertEquals(11, file.readLong());
+        }
+    }
+
+    @Test
+    public void reopenRecoversBlocksAndStopsAtTornBlock() throws IOException {
+        AutoJobLogFileStore<AutoJobLog> store = open("recover");
+        store.append(Arrays.asList(log(1, 20, 200, "first"), log(2, 20, 200, "second")));
+        store.append(Arrays.asList(log(3, 21, 200, "third")));
+        store.close();
+        stores.remove(store);
+        File segmentFile = new File(new File(root, "recover"), String.format("%020d%s", 0, LogSegment.SUFFIX));
+        int end;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            int first = file.readInt();
+            file.seek(LogSegment.HEADER_SIZE + first);
+            int second = file.readInt();
+            end = 2 * LogSegment.HEADER_SIZE + first + second;
+            //模拟写入中断：块长度已写入但内容未写完，校验和不匹配
+            file.seek(end);
+            file.writeInt(16);
+        }
+
+        store = open("recover");
+        assertEquals(2, store
+                .findBySchedulingId(20)
+                .size());
+        assertEquals("third", store
+                .findBySchedulingId(21)
+                .get(0)
+                .getMessage());
+        //损坏的块之后继续写入，覆盖损坏的部分
+        store.append(Arrays.asList(log(4, 22, 200, "fourth")));
+        store.close();
+        stores.remove(store);
+
+        store = open("recover");
+        assertEquals("fourth", store
+                .findBySchedulingId(22)
+                .get(0)
+                .getMessage());
+        assertEquals(4, store
+                .findByTaskIdAfter(200, null, 10)
+                .size());
+    }
+
+    @Test
+    public void corruptedHeaderFailsChecksum() throws IOException {
+        AutoJobLogFileStore<AutoJobLog> store = open("header");
+        store.append(Arrays.asList(log(1, 30, 300, "first")));
+        store.append(Arrays.asList(log(2, 31, 300, "second"), log(3, 31, 300, "third")));
+        store.close();
+        stores.remove(store);
+        File segmentFile = new File(new File(root, "header"), String.format("%020d%s", 0, LogSegment.SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            int first = file.readInt();
+            //第二个块的内容完好，块头中的条数与最早时间被改写
+            file.seek(LogSegment.HEADER_SIZE + first + 4 + 4 + 1 + 4);
+            file.writeInt(1);
+            file.seek(LogSegment.HEADER_SIZE + first + 4 + 4 + 1 + 4 + 4 + 8 + 8);
+            file.writeLong(0);
+        }
+
+        store = open("header");
+        assertEquals(1, store
+                .findBySchedulingId(30)
+                .size());
+        //块头损坏的块视为写入末尾，不会按错误的块头建立索引
+        assertTrue(store
+                .findBySchedulingId(31)
+                .isEmpty());
+        assertEquals(1, store
+                .findByTaskIdAfter(300, null, 10)
+                .size());
+    }
+
+    @Test
+    public void cleanKeepsNewestSegment() {
+        AutoJobLogFileStore<AutoJobLog> store = open("clean");
+        //每块压缩后仍超过半个段，段大小1MB，每次写入都会滚动出新段
+        String large = randomText(900 * 1024);
+        for (int i = 0; i < 3; i++) {
+            store.append(Arrays.asList(log(i + 1, 30 + i, 300, large)));
+        }
+        File directory = new File(root, "clean");
+        assertEquals(3, segmentCount(directory));
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+        }
+        //全部过期，只保留最新的段
+        assertEquals(2, store.cleanExpired());
+        assertEquals(1, segmentCount(directory));
+        assertEquals(0, store.cleanExpired());
+        //新段的ID继续递增，不会与已删除的段重名
+        store.append(Arrays.asList(log(10, 40, 300, large)));
+        assertEquals(2, segmentCount(directory));
+        assertTrue(new File(directory, String.format("%020d%s", 3, LogSegment.SUFFIX)).exists());
+        assertEquals(1, store
+                .findBySchedulingId(40)
+                .size());
+    }
+
+    @Test
+    public void cleanConcurrentWithRollNeverLosesLatestBlock() throws InterruptedException {
+        AutoJobLogFileStore<AutoJobLog> store = open("concurrent");
+        String large = randomText(900 * 1024);
+        Thread cleaner = new Thread(() -> {
+            while (!Thread
+                    .currentThread()
+                    .isInterrupted()) {
+                store.cleanExpired();
+            }
+        });
+        cleaner.start();
+        try {
+            for (int i = 0; i < 40; i++) {
+                store.append(Arrays.asList(log(i + 1, 50 + i, 500, large)));
+                //刚写入的块位于最新的段，不会被并发的清理删除
+                assertEquals(1, store
+                        .findBySchedulingId(50 + i)
+                        .size());
+            }
+        } finally {
+            cleaner.interrupt();
+            cleaner.join();
+        }
+    }
+
+    @Test
+    public void cursorAndTimeRangeReadInsideBlocks() {
+        AutoJobLogFileStore<AutoJobLog> store = open("query");
+        //两次写入形成两个块，每块10条，日志间隔1秒
+        for (int batch = 0; batch < 2; batch++) {
+            List<AutoJobLog> logs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                int index = batch * 10 + i;
+                logs.add(log(index + 1, 60 + batch, 600, "message-" + index).setInputTime(DateUtils.formatDateTime(BASE + index * 1000L)));
+            }
+            store.append(logs);
+        }
+        //游标位于块中间时从块内下一条继续，翻页既不重复也不遗漏
+        List<Long> ids = new ArrayList<>();
+        Long lastId = null;
+        List<AutoJobLog> page;
+        while (!(page = store.findByTaskIdAfter(600, lastId, 3)).isEmpty()) {
+            assertTrue(page.size() <= 3);
+            page.forEach(log -> ids.add(log.getId()));
+            lastId = page
+                    .get(page.size() - 1)
+                    .getId();
+        }
+        assertEquals(20, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ids
+                    .get(i)
+                    .longValue());
+        }
+        assertEquals(Arrays.asList(16L, 17L), store
+                .findBySchedulingIdAfter(61, 15L, 2)
+                .stream()
+                .map(AutoJobLog::getId)
+                .collect(Collectors.toList()));
+        //时间范围跨两个块的边界，只返回范围内的日志
+        List<AutoJobLog> between = store.findByTaskIdBetween(600, BASE + 7000, BASE + 12000);
+        assertEquals(Arrays.asList(8L, 9L, 10L, 11L, 12L, 13L), between
+                .stream()
+                .map(AutoJobLog::getId)
+                .sorted()
+                .collect(Collectors.toList()));
+        assertTrue(store
+                .findByTaskIdBetween(600, BASE + 30000, BASE + 40000)
+                .isEmpty());
+    }
+
+    private AutoJobLogFileStore<AutoJobLog> open(String name) {
+        AutoJobLogFileStore<AutoJobLog> store = new AutoJobLogFileStore<>(config, name, new AutoJobLogCodec());
+        stores.add(store);
+        return store;
+    }
+
+    private static AutoJobLog log(long id, long schedulingId, long taskId, String message) {
+        AutoJobLog log = new AutoJobLog();
+        log.setId(id);
+        log.setSchedulingId(schedulingId);
+        log.setTaskId(taskId);
+        log.setInputTime(TIME);
+        log.setLevel("INFO");
+        log.setMessage(message);
+        return log;
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(44);
+        char[] chars = new char[length];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('!' + random.nextInt(90));
+        }
+        return new String(chars);
+    }
+
+    private static int segmentCount(File directory) {
+        File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith(LogSegment.SUFFIX));
+        return files == null ? 0 : files.length;
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (Stream<java.nio.file.Path> paths = Files.walk(file.toPath())) {
+            paths
+                    .sorted(Comparator.reverseOrder())
+                    .map(java.nio.file.Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+}
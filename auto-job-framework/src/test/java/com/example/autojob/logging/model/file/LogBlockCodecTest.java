@@ -0,0 +1,144 @@
+package com.example.autojob.logging.model.file;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.util.convert.DateUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志块编解码测试，覆盖压缩与不压缩的往返、小块不压缩、损坏块的识别以及按跨度和条数拆分
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 09:30
+ */
+public class LogBlockCodecTest {
+    private static final long BASE = 1674867600000L;
+    private final AutoJobLogCodec codec = new AutoJobLogCodec();
+
+    @Test
+    public void roundTripUncompressed() throws IOException {
+        List<AutoJobLog> logs = logs(1, 100, 50, 1000);
+        byte[] block = LogBlockCodec.encode(logs, codec, false);
+        assertEquals(0, block[0]);
+        assertLogsEqual(logs, LogBlockCodec.decode(block, codec));
+    }
+
+    @Test
+    public void roundTripCompressed() throws IOException {
+        List<AutoJobLog> logs = logs(1, 100, 50, 1000);
+        byte[] plain = LogBlockCodec.encode(logs, codec, false);
+        byte[] block = LogBlockCodec.encode(logs, codec, true);
+        assertEquals(LogBlockCodec.FLAG_COMPRESSED, block[0]);
+        assertTrue(block.length < plain.length);
+        assertLogsEqual(logs, LogBlockCodec.decode(block, codec));
+    }
+
+    @Test
+    public void smallBlockIsNotCompressed() throws IOException {
+        List<AutoJobLog> logs = logs(1, 100, 1, 1000);
+        byte[] block = LogBlockCodec.encode(logs, codec, true);
+        assertTrue(block.length < LogBlockCodec.COMPRESS_THRESHOLD);
+        assertEquals(0, block[0]);
+        assertLogsEqual(logs, LogBlockCodec.decode(block, codec));
+    }
+
+    @Test
+    public void corruptBlockIsRejected() throws IOException {
+        byte[] block = LogBlockCodec.encode(logs(1, 100, 50, 1000), codec, true);
+        assertThrows(IOException.class, () -> LogBlockCodec.decode(new byte[]{LogBlockCodec.FLAG_COMPRESSED, 0, 0}, codec));
+        assertThrows(IOException.class, () -> LogBlockCodec.decode(Arrays.copyOf(block, block.length / 2), codec));
+        byte[] plain = LogBlockCodec.encode(logs(1, 100, 50, 1000), codec, false);
+        assertThrows(IOException.class, () -> LogBlockCodec.decode(Arrays.copyOf(plain, plain.length - 1), codec));
+    }
+
+    @Test
+    public void splitByCount() {
+        List<List<AutoJobLog>> blocks = LogBlockCodec.split(logs(1, 100, 25, 10), codec, 60000, 10);
+        assertEquals(Arrays.asList(10, 10, 5), blocks
+                .stream()
+                .map(List::size)
+                .collect(Collectors.toList()));
+        assertEquals(1, blocks
+                .get(0)
+                .get(0)
+                .getId());
+        assertEquals(25, blocks
+                .get(2)
+                .get(4)
+                .getId());
+    }
+
+    @Test
+    public void splitBySpan() {
+        //每秒一条，跨度10秒时每块最多11条
+        List<List<AutoJobLog>> blocks = LogBlockCodec.split(logs(1, 100, 30, 1000), codec, 10000, 1000);
+        assertEquals(Arrays.asList(11, 11, 8), blocks
+                .stream()
+                .map(List::size)
+                .collect(Collectors.toList()));
+        for (List<AutoJobLog> block : blocks) {
+            assertTrue(codec.getTime(block.get(block.size() - 1)) - codec.getTime(block.get(0)) <= 10000);
+        }
+    }
+
+    @Test
+    public void splitGroupsBySchedulingAndTaskKeepingOrder() {
+        List<AutoJobLog> logs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            logs.add(log(i + 1, 10 + i % 3, i % 2 == 0 ? 100 : 101, BASE + i * 1000L));
+        }
+        List<List<AutoJobLog>> blocks = LogBlockCodec.split(logs, codec, 60000, 1000);
+        //(10,100) (11,101) (12,100) (10,101) (11,100) (12,101)
+        assertEquals(6, blocks.size());
+        for (List<AutoJobLog> block : blocks) {
+            assertEquals(2, block.size());
+            assertEquals(block
+                    .get(0)
+                    .getSchedulingId(), block
+                    .get(1)
+                    .getSchedulingId());
+            assertEquals(block
+                    .get(0)
+                    .getTaskId(), block
+                    .get(1)
+                    .getTaskId());
+            assertTrue(block
+                    .get(0)
+                    .getId() < block
+                    .get(1)
+                    .getId());
+        }
+    }
+
+    private static List<AutoJobLog> logs(long firstId, long taskId, int count, long interval) {
+        List<AutoJobLog> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            logs.add(log(firstId + i, 10, taskId, BASE + i * interval));
+        }
+        return logs;
+    }
+
+    private static AutoJobLog log(long id, long schedulingId, long taskId, long time) {
+        return new AutoJobLog()
+                .setId(id)
+                .setSchedulingId(schedulingId)
+                .setTaskId(taskId)
+                .setInputTime(DateUtils.formatDateTime(time))
+                .setLevel("INFO")
+                .setMessage("任务执行中，当前处理到第" + id + "条数据");
+    }
+
+    private static void assertLogsEqual(List<AutoJobLog> expected, List<AutoJobLog> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+}
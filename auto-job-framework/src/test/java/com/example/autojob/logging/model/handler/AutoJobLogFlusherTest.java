@@ -0,0 +1,98 @@
+package com.example.autojob.logging.model.handler;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.consumer.IAutoJobLogSaveStrategy;
+import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * 任务日志统一写入测试，未指定保存策略的处理器共用默认委派者，不同任务的日志在一次写入中合并保存
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 14:00
+ */
+public class AutoJobLogFlusherTest {
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initConfig(AutoJobTestContext.TEST_CONFIG);
+    }
+
+    @Test
+    public void defaultHandlersShareOneDelegate() {
+        //与启动器一致，未配置保存策略时消费者以null委派者创建处理器
+        AutoJobLogHandler first = new AutoJobLogHandler(newTask(), null, null);
+        AutoJobLogHandler second = new AutoJobLogHandler(newTask(), null, null);
+        assertSame(first.getLogSaveStrategyDelegate(), second.getLogSaveStrategyDelegate());
+    }
+
+    @Test
+    public void logsOfTwoTasksAreFlushedInOneBatch() {
+        List<Map<String, List<AutoJobLog>>> batches = new CopyOnWriteArrayList<>();
+        IAutoJobLogSaveStrategy<AutoJobLog> strategy = new IAutoJobLogSaveStrategy<AutoJobLog>() {
+            @Override
+            public void doHandle(String taskPath, List<AutoJobLog> logList) {
+                batches.add(Collections.singletonMap(taskPath, logList));
+            }
+
+            @Override
+            public void doBatchHandle(Map<String, List<AutoJobLog>> logsByTask) {
+                batches.add(logsByTask);
+            }
+        };
+        ILogSaveStrategyDelegate<AutoJobLog> delegate = (configHolder, type) -> strategy;
+        ILogSaveStrategyDelegate<AutoJobRunLog> runLogDelegate = (configHolder, type) -> (taskPath, logList) -> {
+        };
+        MethodTask first = newTask();
+        MethodTask second = newTask();
+        AutoJobLogHandler firstHandler = new AutoJobLogHandler(first, delegate, runLogDelegate);
+        AutoJobLogHandler secondHandler = new AutoJobLogHandler(second, delegate, runLogDelegate);
+        for (int i = 0; i < 3; i++) {
+            firstHandler.addLog(log(first));
+            secondHandler.addLog(log(second));
+        }
+        assertEquals(6, AutoJobLogFlusher
+                .getInstance()
+                .flush(true));
+        assertEquals(1, batches.size());
+        assertEquals(new HashSet<>(Arrays.asList(first.getId() + "", second.getId() + "")), batches
+                .get(0)
+                .keySet());
+        assertEquals(3, batches
+                .get(0)
+                .get(first.getId() + "")
+                .size());
+    }
+
+    private static AutoJobLog log(AutoJobTask task) {
+        return new AutoJobLog()
+                .setId(IdGenerator.getNextIdAsLong())
+                .setTaskId(task.getId())
+                .setInputTime("2023-01-29 14:00:00")
+                .setLevel("INFO")
+                .setMessage("message");
+    }
+
+    private static MethodTask newTask() {
+        MethodTask task = new AutoJobMethodTaskBuilder(Object.class, "toString")
+                .setTaskId(IdGenerator.getNextIdAsLong())
+                .setTaskType(AutoJobTask.TaskType.MEMORY_TASk)
+                .addACronExpressionTrigger("0 0 0 1 1 ?", -1)
+                .build();
+        task
+                .getTrigger()
+                .setTriggeringTime(System.currentTimeMillis());
+        return task;
+    }
+}
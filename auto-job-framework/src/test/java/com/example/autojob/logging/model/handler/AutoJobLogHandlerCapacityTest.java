@@ -0,0 +1,102 @@
+package com.example.autojob.logging.model.handler;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志处理器缓冲上限测试，写入线程跟不上时由加入日志的线程同步保存，保存策略阻塞时加入日志的线程随之阻塞，缓冲不超过上限
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 17:40
+ */
+public class AutoJobLogHandlerCapacityTest {
+    private static final int CAPACITY = 50;
+
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initConfig("auto-job-log-capacity-test.yml");
+    }
+
+    @Test
+    public void blockedSaveBlocksProducerAndBoundsBuffer() throws Exception {
+        List<AutoJobLog> saved = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        //模拟BLOCK策略下数据库写缓冲已满
+        ILogSaveStrategyDelegate<AutoJobLog> delegate = (configHolder, type) -> (taskPath, logList) -> {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            saved.addAll(logList);
+        };
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, delegate, null);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                handler.addLog(log(task));
+            }
+        });
+        producer.start();
+        producer.join(500);
+        try {
+            assertTrue(producer.isAlive());
+            assertTrue(handler.getPendingLogCount() <= CAPACITY);
+        } finally {
+            release.countDown();
+        }
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        handler.saveLogs();
+        assertEquals(1000, saved.size());
+    }
+
+    @Test
+    public void runLogsAreSavedAtCapacity() {
+        List<AutoJobRunLog> saved = new CopyOnWriteArrayList<>();
+        ILogSaveStrategyDelegate<AutoJobRunLog> runLogDelegate = (configHolder, type) -> (taskPath, logList) -> saved.addAll(logList);
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, null, runLogDelegate);
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            handler.addRunLog(new AutoJobRunLog().setTaskId(task.getId()));
+        }
+        assertTrue(saved.isEmpty());
+        handler.addRunLog(new AutoJobRunLog().setTaskId(task.getId()));
+        assertEquals(CAPACITY, saved.size());
+    }
+
+    private static AutoJobLog log(AutoJobTask task) {
+        return new AutoJobLog()
+                .setId(IdGenerator.getNextIdAsLong())
+                .setTaskId(task.getId())
+                .setInputTime("2023-01-29 17:40:00")
+                .setLevel("INFO")
+                .setMessage("message");
+    }
+
+    private static MethodTask newTask() {
+        MethodTask task = new AutoJobMethodTaskBuilder(Object.class, "toString")
+                .setTaskId(IdGenerator.getNextIdAsLong())
+                .setTaskType(AutoJobTask.TaskType.MEMORY_TASk)
+                .addACronExpressionTrigger("0 0 0 1 1 ?", -1)
+                .build();
+        task
+                .getTrigger()
+                .setTriggeringTime(System.currentTimeMillis());
+        return task;
+    }
+}
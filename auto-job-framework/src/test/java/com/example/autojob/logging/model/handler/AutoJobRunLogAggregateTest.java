@@ -0,0 +1,262 @@
+package com.example.autojob.logging.model.handler;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.domain.AutoJobRunLog;
+import com.example.autojob.logging.model.consumer.AutoJobLogConsumer;
+import com.example.autojob.logging.model.consumer.ILogSaveStrategyDelegate;
+import com.example.autojob.logging.model.factory.AutoJobRunLogFactory;
+import com.example.autojob.skeleton.db.AutoJobSchedulingRecordBuffer;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.task.AutoJobRunResult;
+import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.lifecycle.TaskEventFactory;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 运行日志聚合测试，未收到执行结果事件的聚合在调度结束、处理器移除与应用关闭时同样生成汇总，
+ * 同一任务连续触发时每次调度的记录与汇总互不串用
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 15:40
+ */
+public class AutoJobRunLogAggregateTest {
+    private final List<AutoJobRunLog> saved = new CopyOnWriteArrayList<>();
+    private final ILogSaveStrategyDelegate<AutoJobRunLog> runLogDelegate = (configHolder, type) -> (taskPath, logList) -> saved.addAll(logList);
+    private final ILogSaveStrategyDelegate<AutoJobLog> logDelegate = (configHolder, type) -> (taskPath, logList) -> {
+    };
+
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("run_log_aggregate");
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Before
+    public void clear() {
+        saved.clear();
+    }
+
+    @Test
+    public void finishSchedulingSummarizesWithoutResultEvent() {
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, logDelegate, runLogDelegate);
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_START, runLog(task));
+        assertTrue(saved.isEmpty());
+        handler.finishScheduling(true, "ok", 10);
+        assertEquals(1, saved.size());
+        assertEquals(Integer.valueOf(1), saved
+                .get(0)
+                .getRunStatus());
+        assertTrue(saved
+                .get(0)
+                .getMessage()
+                .contains("执行成功"));
+        //汇总已按调度结果生成，迟到的成功事件不再单独写入
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_SUCCESS, runLog(task));
+        handler.saveRunLogs();
+        assertEquals(1, saved.size());
+    }
+
+    @Test
+    public void failedSchedulingKeepsDetailsAndLateError() {
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, logDelegate, runLogDelegate);
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_START, runLog(task));
+        handler.finishScheduling(false, null, 10);
+        //汇总与逐条的启动日志
+        assertEquals(2, saved.size());
+        assertEquals(Integer.valueOf(0), saved
+                .get(0)
+                .getRunStatus());
+        assertTrue(saved
+                .get(0)
+                .getMessage()
+                .contains("执行异常"));
+        //迟到的异常事件带有异常堆栈，单独写入
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_ERROR, runLog(task).setErrorStack("stack"));
+        handler.saveRunLogs();
+        assertEquals(3, saved.size());
+        assertEquals("stack", saved
+                .get(2)
+                .getErrorStack());
+    }
+
+    @Test
+    public void resultEventBeforeFinishIsNotSummarizedTwice() {
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, logDelegate, runLogDelegate);
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_START, runLog(task));
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_SUCCESS, runLog(task));
+        handler.finishScheduling(true, "ok", 10);
+        assertEquals(1, saved.size());
+        assertTrue(saved
+                .get(0)
+                .getMessage()
+                .contains("START@"));
+        assertTrue(saved
+                .get(0)
+                .getMessage()
+                .contains("SUCCESS@"));
+    }
+
+    @Test
+    public void closeSummarizesRunningScheduling() {
+        MethodTask task = newTask();
+        AutoJobLogHandler handler = new AutoJobLogHandler(task, logDelegate, runLogDelegate);
+        handler.addRunLog(AutoJobRunLogFactory.EVENT_START, runLog(task));
+        handler.close();
+        assertEquals(2, saved.size());
+        assertTrue(saved
+                .get(0)
+                .getMessage()
+                .contains("未收到执行结果"));
+        handler.close();
+        assertEquals(2, saved.size());
+    }
+
+    @Test
+    public void consumerClosesHandlersOnShutdownAndRemoval() throws InterruptedException {
+        AutoJobLogConsumer consumer = new AutoJobLogConsumer(logDelegate, runLogDelegate);
+        MethodTask running = newTask();
+        consumer.doHandle(TaskEventFactory.newBeforeRunEvent(running));
+        //下次触发在30分钟之后，调度结束后移除处理器
+        MethodTask removed = newTask();
+        consumer.doHandle(TaskEventFactory.newBeforeRunEvent(removed));
+        removed.setRunResult(new AutoJobRunResult());
+        removed
+                .getRunResult()
+                .success("ok");
+        consumer.doHandle(TaskEventFactory.newAfterRunEvent(removed));
+        assertTrue(awaitSummaries(removed.getId(), 1));
+        consumer.doHandle(TaskEventFactory.newFinishedEvent(removed));
+        Thread.sleep(200);
+        //处理器已移除，之后的事件不再写入
+        assertEquals(1, summaries(removed.getId()));
+        assertEquals(0, summaries(running.getId()));
+        consumer.close();
+        assertEquals(1, summaries(running.getId()));
+    }
+
+    @Test
+    public void sameTaskFiredBackToBackFinishesEachRun() throws Exception {
+        AutoJobLogConsumer consumer = new AutoJobLogConsumer(logDelegate, runLogDelegate);
+        MethodTask task = newTask();
+        consumer.doHandle(TaskEventFactory.newBeforeRunEvent(task));
+        task.setRunResult(new AutoJobRunResult());
+        task
+                .getRunResult()
+                .success("first");
+        consumer.doHandle(TaskEventFactory.newAfterRunEvent(task));
+        //第二次调度紧接着开始，第一次调度的结束仍在保存线程中排队
+        consumer.doHandle(TaskEventFactory.newBeforeRunEvent(task));
+        task.setRunResult(new AutoJobRunResult());
+        task
+                .getRunResult()
+                .error(new IllegalStateException("second"), "second");
+        consumer.doHandle(TaskEventFactory.newAfterRunEvent(task));
+        assertTrue(awaitSummaries(task.getId(), 2));
+        AutoJobSchedulingRecordBuffer buffer = AutoJobSchedulingRecordBuffer.getInstance();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (buffer.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        //两次调度都已结束，没有残留的运行中记录
+        assertEquals(0, buffer.getInFlightCount());
+        buffer.flush();
+        List<String> records = new ArrayList<>();
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select id, is_run, is_success, result from aj_scheduling_record where task_id = " + task.getId() + " order by id")) {
+            while (resultSet.next()) {
+                records.add(resultSet.getLong(1) + ":" + resultSet.getInt(2) + ":" + resultSet.getInt(3) + ":" + resultSet.getString(4));
+            }
+        }
+        assertEquals(2, records.size());
+        //每次调度的汇总与记录对应同一个调度ID和执行结果
+        List<AutoJobRunLog> summaries = saved
+                .stream()
+                .filter(runLog -> runLog.getMessage() != null && runLog
+                        .getMessage()
+                        .contains("时间线"))
+                .sorted(Comparator.comparing(AutoJobRunLog::getSchedulingId))
+                .collect(Collectors.toList());
+        assertEquals(2, summaries.size());
+        assertEquals(summaries
+                .get(0)
+                .getSchedulingId() + ":0:1:\"first\"", records.get(0));
+        assertTrue(summaries
+                .get(0)
+                .getMessage()
+                .contains("执行成功"));
+        assertEquals(summaries
+                .get(1)
+                .getSchedulingId() + ":0:0:\"second\"", records.get(1));
+        assertTrue(summaries
+                .get(1)
+                .getMessage()
+                .contains("执行异常"));
+    }
+
+    private boolean awaitSummaries(long taskId, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < deadline) {
+            if (summaries(taskId) >= count) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private int summaries(long taskId) {
+        return (int) saved
+                .stream()
+                .filter(runLog -> Long
+                        .valueOf(taskId)
+                        .equals(runLog.getTaskId()) && runLog.getMessage() != null && runLog
+                        .getMessage()
+                        .contains("时间线"))
+                .count();
+    }
+
+    private static MethodTask newTask() {
+        MethodTask task = new AutoJobMethodTaskBuilder(Object.class, "toString")
+                .setTaskId(IdGenerator.getNextIdAsLong())
+                .setTaskType(AutoJobTask.TaskType.MEMORY_TASk)
+                .addACronExpressionTrigger("0 0 0 1 1 ?", -1)
+                .build();
+        task
+                .getTrigger()
+                .setTriggeringTime(System.currentTimeMillis());
+        task
+                .getTrigger()
+                .setStartRunTime(System.currentTimeMillis());
+        return task;
+    }
+
+    private static AutoJobRunLog runLog(AutoJobTask task) {
+        return new AutoJobRunLog()
+                .setTaskId(task.getId())
+                .setTaskType("MEMORY_TASK")
+                .setWriteTime("2023-01-28 15:40:00")
+                .setMessage("event");
+    }
+}
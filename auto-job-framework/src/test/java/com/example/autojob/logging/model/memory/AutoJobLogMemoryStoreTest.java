@@ -0,0 +1,201 @@
+package com.example.autojob.logging.model.memory;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.LogBlockCodec;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存日志存储测试，覆盖单任务限额、总限额、任务数上限和过期的淘汰，淘汰后全局队列与调度索引不残留块，以及游标与按调度读取
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 14:00
+ */
+public class AutoJobLogMemoryStoreTest {
+    private static final String TIME = "2023-01-28 14:00:00";
+    private static final AutoJobLogCodec CODEC = new AutoJobLogCodec();
+    private long nextId = 1;
+
+    @Test
+    public void taskLimitEvictsOldestBlocksOfTask() throws IOException {
+        int blockSize = blockSize(batch(10));
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, blockSize * 100L, blockSize * 3L, 10, 0, false);
+        List<List<AutoJobLog>> batches = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batches.add(batch(10));
+            assertTrue(store.append("a", batches.get(i)));
+        }
+        assertEquals(batchIds(batches.subList(2, 5)), ids(store.get("a")));
+        assertEquals(blockSize * 3L, store.getUsedSize());
+    }
+
+    @Test
+    public void totalLimitEvictsInWriteOrder() throws IOException {
+        int blockSize = blockSize(batch(10));
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, blockSize * 3L, blockSize * 3L, 10, 0, false);
+        List<AutoJobLog> first = batch(10);
+        store.append("a", first);
+        store.append("b", batch(10));
+        store.append("a", batch(10));
+        store.append("c", batch(10));
+        //总限额只能容纳三块，最早写入的a的第一块被淘汰
+        assertEquals(3, store.getTaskCount());
+        assertEquals(10, store
+                .get("a")
+                .size());
+        assertFalse(ids(store.get("a")).contains(first
+                .get(0)
+                .getId()));
+        assertEquals(blockSize * 3L, store.getUsedSize());
+    }
+
+    @Test
+    public void taskCountLimitEvictsOldestTask() {
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, 1024 * 1024, 1024 * 1024, 2, 0, false);
+        store.append("a", batch(1));
+        store.append("b", batch(1));
+        store.append("c", batch(1));
+        assertEquals(2, store.getTaskCount());
+        assertFalse(store.exist("a"));
+        assertTrue(store.exist("b"));
+        assertTrue(store.exist("c"));
+    }
+
+    @Test
+    public void expiredBlocksAreEvicted() throws InterruptedException {
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, 1024 * 1024, 1024 * 1024, 10, 50, false);
+        store.append("a", batch(5));
+        assertTrue(store.exist("a"));
+        Thread.sleep(80);
+        assertFalse(store.exist("a"));
+        assertTrue(store
+                .get("a")
+                .isEmpty());
+        assertEquals(0, store.getUsedSize());
+        assertEquals(0, store.getQueuedBlockCount());
+    }
+
+    @Test
+    public void evictedBlocksDoNotAccumulateInQueue() throws IOException {
+        int blockSize = blockSize(batch(10));
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, blockSize * 100L, blockSize * 2L, 10, 0, false);
+        //a只写入一次，其块一直位于全局队列头部，b持续写入并在自己的环中淘汰
+        store.append("a", batch(10));
+        for (int i = 0; i < 1000; i++) {
+            store.append("b", batch(10));
+            assertTrue(store.getQueuedBlockCount() <= 2 * (1 + 2) + 1);
+        }
+        assertEquals(blockSize * 3L, store.getUsedSize());
+        assertEquals(10, store
+                .get("a")
+                .size());
+        assertEquals(20, store
+                .get("b")
+                .size());
+        assertTrue(store.remove("b"));
+        assertEquals(1, store.getQueuedBlockCount());
+    }
+
+    @Test
+    public void cursorReadsInsideBlocks() {
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, 1024 * 1024, 1024 * 1024, 10, 0, true);
+        List<List<AutoJobLog>> batches = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batches.add(batch(25));
+            store.append("a", batches.get(i));
+        }
+        List<Long> expected = batchIds(batches);
+        //页大小与块大小互质，游标会落在块的中间
+        List<Long> read = new ArrayList<>();
+        Long lastId = null;
+        List<AutoJobLog> page;
+        while (!(page = store.getAfter("a", lastId, 7)).isEmpty()) {
+            assertTrue(page.size() <= 7);
+            page.forEach(log -> read.add(log.getId()));
+            lastId = page
+                    .get(page.size() - 1)
+                    .getId();
+        }
+        assertEquals(expected, read);
+        assertTrue(store
+                .getAfter("a", expected.get(expected.size() - 1), 7)
+                .isEmpty());
+        assertTrue(store
+                .getAfter("missing", null, 7)
+                .isEmpty());
+    }
+
+    @Test
+    public void schedulingIndexFollowsEviction() throws IOException {
+        int blockSize = blockSize(batch(10));
+        AutoJobLogMemoryStore<AutoJobLog> store = new AutoJobLogMemoryStore<>(CODEC, blockSize * 100L, blockSize * 2L, 10, 0, false);
+        List<AutoJobLog> first = batch(10, 1L);
+        //一批日志跨两次调度
+        List<AutoJobLog> mixed = batch(5, 1L);
+        mixed.addAll(batch(5, 2L));
+        store.append("a", first);
+        store.append("a", mixed);
+        assertEquals(15, store
+                .getBySchedulingId(1L)
+                .size());
+        assertEquals(ids(mixed.subList(5, 10)), ids(store.getBySchedulingId(2L)));
+        assertEquals(ids(mixed.subList(0, 3)), ids(store.getBySchedulingIdAfter(1L, first
+                .get(9)
+                .getId(), 3)));
+        assertTrue(store
+                .getBySchedulingId(3L)
+                .isEmpty());
+        //单任务限额两块，第一块淘汰后调度1只剩混合块中的日志
+        store.append("a", batch(10, 3L));
+        assertEquals(ids(mixed.subList(0, 5)), ids(store.getBySchedulingId(1L)));
+        assertEquals(3, store.getIndexedSchedulingCount());
+        assertTrue(store.remove("a"));
+        assertEquals(0, store.getIndexedSchedulingCount());
+    }
+
+    private List<AutoJobLog> batch(int count) {
+        return batch(count, 1L);
+    }
+
+    private List<AutoJobLog> batch(int count, long schedulingId) {
+        List<AutoJobLog> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = nextId++;
+            logs.add(new AutoJobLog()
+                    .setId(id)
+                    .setSchedulingId(schedulingId)
+                    .setTaskId(1)
+                    .setInputTime(TIME)
+                    .setLevel("INFO")
+                    //固定长度的内容使每块大小一致
+                    .setMessage(String.format("第%08d条日志", id)));
+        }
+        return logs;
+    }
+
+    private static int blockSize(List<AutoJobLog> logs) throws IOException {
+        return LogBlockCodec.encode(logs, CODEC, false).length;
+    }
+
+    private static List<Long> ids(List<AutoJobLog> logs) {
+        return logs
+                .stream()
+                .map(AutoJobLog::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> batchIds(List<List<AutoJobLog>> batches) {
+        return batches
+                .stream()
+                .flatMap(List::stream)
+                .map(AutoJobLog::getId)
+                .collect(Collectors.toList());
+    }
+}
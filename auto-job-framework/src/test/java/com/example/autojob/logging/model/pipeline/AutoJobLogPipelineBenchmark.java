@@ -0,0 +1,59 @@
+package com.example.autojob.logging.model.pipeline;
+
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 日志管道发布基准，多个任务线程并发发布，对比各等待策略下发布的开销，接收者只计数，缓冲满时的发布计入丢弃
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 20:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AutoJobLogPipelineBenchmark {
+    @Param({"SLEEPING", "BLOCKING"})
+    private WaitStrategy waitStrategy;
+
+    private AutoJobLogPipeline pipeline;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Setup
+    public void setup() {
+        pipeline = new AutoJobLogPipeline(8192, waitStrategy, 1, 1);
+        pipeline.setSink(log -> received.increment());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.close();
+        System.out.printf("%n接收%d条，丢弃%d条%n", received.sum(), dropped.sum());
+    }
+
+    @Benchmark
+    public boolean publish() {
+        boolean isPublished = pipeline.publish(1, LogLevel.INFO, "2023-01-27 20:40:00", "任务执行中，当前处理到第100条数据");
+        if (!isPublished) {
+            dropped.increment();
+        }
+        return isPublished;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutoJobLogPipelineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
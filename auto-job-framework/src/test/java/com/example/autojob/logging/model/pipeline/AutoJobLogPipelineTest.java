@@ -0,0 +1,80 @@
+package com.example.autojob.logging.model.pipeline;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志管道测试，挂起等待的消费线程不会错过唤醒，批量预留的日志ID不重复
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 20:30
+ */
+public class AutoJobLogPipelineTest {
+    @Test
+    public void blockingConsumerReceivesEveryLog() throws InterruptedException {
+        AutoJobLogPipeline pipeline = new AutoJobLogPipeline(256, WaitStrategy.BLOCKING, 1, 1);
+        Queue<AutoJobLog> received = new ConcurrentLinkedQueue<>();
+        //缓冲写满时的发布失败会被补写为丢弃警告，只收集发布的日志
+        pipeline.setSink(log -> {
+            if (LogLevel.INFO
+                    .name()
+                    .equals(log.getLevel())) {
+                received.add(log);
+            }
+        });
+        int threads = 4;
+        int perThread = 500;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            long taskId = i;
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    while (!pipeline.publish(taskId, LogLevel.INFO, "2023-01-27 20:30:00", "line-" + j)) {
+                        Thread.yield();
+                    }
+                    //间歇发布，让消费线程反复挂起与被唤醒
+                    if (j % 50 == 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        //只轮询结果，不主动唤醒消费线程
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < threads * perThread && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(threads * perThread, received.size());
+        Set<Long> ids = new HashSet<>();
+        for (AutoJobLog log : received) {
+            assertTrue("日志ID重复：" + log.getId(), ids.add(log.getId()));
+        }
+        pipeline.close();
+    }
+
+    @Test
+    public void closeDrainsPublishedLogs() {
+        AutoJobLogPipeline pipeline = new AutoJobLogPipeline(64, WaitStrategy.SLEEPING, 1, 1);
+        Queue<AutoJobLog> received = new ConcurrentLinkedQueue<>();
+        pipeline.setSink(received::add);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pipeline.publish(1, LogLevel.WARN, "2023-01-27 20:30:00", "line-" + i));
+        }
+        pipeline.close();
+        assertEquals(10, received.size());
+        assertFalse(pipeline.publish(1, LogLevel.WARN, "2023-01-27 20:30:00", "after close"));
+    }
+}
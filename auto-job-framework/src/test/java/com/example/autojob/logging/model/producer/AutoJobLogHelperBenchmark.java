@@ -0,0 +1,93 @@
+package com.example.autojob.logging.model.producer;
+
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 任务日志输出基准，任务日志级别配置为INFO。INFO日志经过级别判断、限额、格式化后写入真实的日志管道，由管道的消费线程取出交给计数的接收者；
+ * 另对比开启输出位置时获取调用栈的开销，以及被过滤的DEBUG日志在级别判断后直接返回。结束时输出发布与消费的条数，
+ * 消费条数明显少于调用次数说明管道已写满丢弃，此时的结果不代表正常写入的开销
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 19:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoJobLogHelperBenchmark {
+    private final LongAdder invoked = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private AutoJobLogHelper helper;
+    private AutoJobLogHelper locationHelper;
+    private int count;
+
+    @Setup
+    public void setup() {
+        AutoJobTestContext.initConfig("auto-job-log-benchmark.yml");
+        MethodTask task = new MethodTask();
+        task.setId(1L);
+        helper = new AutoJobLogHelper(NOPLogger.NOP_LOGGER, task);
+        locationHelper = new AutoJobLogHelper(NOPLogger.NOP_LOGGER, task).setEnableLocation(true);
+        AutoJobLogPipeline
+                .getInstance()
+                .setSink(log -> consumed.increment());
+    }
+
+    @TearDown
+    public void report() {
+        AutoJobLogPipeline
+                .getInstance()
+                .awaitConsumed(5, TimeUnit.SECONDS);
+        System.out.printf("%n调用%d次，管道消费%d条%n", invoked.sum(), consumed.sum());
+    }
+
+    @Benchmark
+    public void enabledLevel() {
+        invoked.increment();
+        helper.info("第{}条数据处理完成，耗时{}ms", count++, 15);
+    }
+
+    @Benchmark
+    public void enabledLevelWithLocation() {
+        invoked.increment();
+        locationHelper.info("第{}条数据处理完成，耗时{}ms", count++, 15);
+    }
+
+    @Benchmark
+    public void disabledLevel() {
+        helper.debug("第{}条数据处理完成，耗时{}ms", count++, 15);
+    }
+
+    @Benchmark
+    public void guardedDisabledLevel() {
+        if (helper.isDebugEnabled()) {
+            helper.debug("第{}条数据处理完成，耗时{}ms", count++, 15);
+        }
+    }
+
+    long getInvokedCount() {
+        return invoked.sum();
+    }
+
+    long getConsumedCount() {
+        return consumed.sum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutoJobLogHelperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
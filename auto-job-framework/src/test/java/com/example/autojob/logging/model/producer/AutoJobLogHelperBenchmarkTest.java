@@ -0,0 +1,33 @@
+package com.example.autojob.logging.model.producer;
+
+import com.example.autojob.logging.model.pipeline.AutoJobLogPipeline;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志输出基准的冒烟测试，保证基准中开启级别的日志确实经过管道到达接收者，被过滤的日志不会进入管道
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 19:00
+ */
+public class AutoJobLogHelperBenchmarkTest {
+    @Test
+    public void enabledPathReachesPipelineSink() {
+        AutoJobLogHelperBenchmark benchmark = new AutoJobLogHelperBenchmark();
+        benchmark.setup();
+        for (int i = 0; i < 100; i++) {
+            benchmark.enabledLevel();
+            benchmark.enabledLevelWithLocation();
+            benchmark.disabledLevel();
+            benchmark.guardedDisabledLevel();
+        }
+        assertTrue(AutoJobLogPipeline
+                .getInstance()
+                .awaitConsumed(5, TimeUnit.SECONDS));
+        assertEquals(200, benchmark.getInvokedCount());
+        assertEquals(200, benchmark.getConsumedCount());
+    }
+}
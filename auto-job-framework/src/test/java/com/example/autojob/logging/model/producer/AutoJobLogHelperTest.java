@@ -0,0 +1,27 @@
+package com.example.autojob.logging.model.producer;
+
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志辅助类测试，任务日志写入日志管道，创建实例不依赖日志消息队列
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 16:30
+ */
+public class AutoJobLogHelperTest {
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initConfig(AutoJobTestContext.TEST_CONFIG);
+    }
+
+    @Test
+    public void createsWithoutMessageQueueContext() {
+        AutoJobLogHelper helper = new AutoJobLogHelper();
+        assertNotNull(AutoJobLogHelper.getInstance());
+        helper.info("日志辅助类不依赖消息队列");
+    }
+}
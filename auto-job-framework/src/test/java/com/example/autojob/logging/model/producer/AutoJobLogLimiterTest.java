@@ -0,0 +1,77 @@
+package com.example.autojob.logging.model.producer;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.skeleton.enumerate.LogLevel;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import com.example.autojob.util.convert.DateUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 任务日志限额测试，限额默认关闭，单次运行的大小限额按UTF-8字节数计算
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 11:00
+ */
+public class AutoJobLogLimiterTest {
+    private static final long SIZE_PER_RUN = (long) (0.0002 * 1024 * 1024);
+
+    @BeforeClass
+    public static void init() {
+        AutoJobTestContext.initConfig("auto-job-log-limit-test.yml");
+    }
+
+    @Test
+    public void limitIsDisabledByDefault() {
+        assertFalse(new AutoJobConfigHolder(AutoJobTestContext.TEST_CONFIG)
+                .getLogConfig()
+                .getEnableTaskLogLimit());
+    }
+
+    @Test
+    public void producedLogsAreCountedInUtf8Bytes() {
+        MethodTask task = task(2L);
+        AutoJobLogHelper helper = new AutoJobLogHelper(NOPLogger.NOP_LOGGER, task);
+        AutoJobLogLimiter limiter = AutoJobLogLimiter.getInstance();
+        //每条20个汉字，共60字节
+        for (int i = 0; i < 3; i++) {
+            helper.produce(null, null, new AutoJobLog()
+                    .setTaskId(task.getId())
+                    .setInputTime(DateUtils.getTime())
+                    .setLevel("INFO")
+                    .setMessage(repeat('任', 20)));
+        }
+        assertTrue(limiter.tryAcquireSize(task.getId(), LogLevel.INFO, (int) (SIZE_PER_RUN - 180)));
+        assertFalse(limiter.tryAcquireSize(task.getId(), LogLevel.INFO, 1));
+    }
+
+    @Test
+    public void formattedLogsAreCountedInUtf8Bytes() {
+        MethodTask task = task(3L);
+        AutoJobLogHelper helper = new AutoJobLogHelper(NOPLogger.NOP_LOGGER, task);
+        //格式化后约100个字符，但UTF-8编码后超过限额，被丢弃且不占用额度
+        helper.info(repeat('务', 60));
+        assertTrue(AutoJobLogLimiter
+                .getInstance()
+                .tryAcquireSize(task.getId(), LogLevel.INFO, (int) SIZE_PER_RUN));
+    }
+
+    private static MethodTask task(long id) {
+        MethodTask task = new MethodTask();
+        task.setId(id);
+        return task;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.api.task.DBTaskAPI;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实体缓存失效广播测试，任务API的写操作返回前同步广播失效，发送失败的失效保留给周期广播重试
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 17:20
+ */
+public class AutoJobEntityCacheBroadcastTest {
+    private static DataSourceHolder holder;
+    private final List<Long> broadcasted = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean reachable = new AtomicBoolean(true);
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("entity_cache_broadcast");
+        AutoJobTestContext.initWithSchema("auto-job-entity-cache-test.yml", holder);
+    }
+
+    @Before
+    public void setBroadcaster() {
+        AutoJobEntityCache
+                .getInstance()
+                .setBroadcaster((all, taskIds) -> {
+                    if (!reachable.get()) {
+                        return false;
+                    }
+                    broadcasted.addAll(taskIds);
+                    return true;
+                });
+    }
+
+    @Test
+    public void deleteBroadcastsBeforeReturning() throws SQLException {
+        insertTask(1);
+        assertTrue(new DBTaskAPI().delete(1L));
+        //不等待周期广播，返回时其他节点已收到失效
+        assertTrue(broadcasted.contains(1L));
+        assertEquals(0, AutoJobEntityCache
+                .getInstance()
+                .getPendingBroadcastCount());
+    }
+
+    @Test
+    public void unpauseBroadcastsBeforeReturning() throws SQLException {
+        insertTask(2);
+        assertTrue(new DBTaskAPI().unpause(2L));
+        assertTrue(broadcasted.contains(2L));
+    }
+
+    @Test
+    public void failedBroadcastIsRetried() throws SQLException {
+        insertTask(3);
+        reachable.set(false);
+        assertTrue(new DBTaskAPI().delete(3L));
+        assertFalse(broadcasted.contains(3L));
+        //发送失败的失效仍在队列中，由下次广播送达
+        assertTrue(AutoJobEntityCache
+                .getInstance()
+                .getPendingBroadcastCount() > 0);
+        reachable.set(true);
+        AutoJobEntityCache
+                .getInstance()
+                .broadcastNow();
+        assertTrue(broadcasted.contains(3L));
+        assertEquals(0, AutoJobEntityCache
+                .getInstance()
+                .getPendingBroadcastCount());
+    }
+
+    private static void insertTask(long id) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(String.format("insert into aj_auto_job (id, method_class_name, method_name, trigger_id, type, run_lock, is_latest, status, del_flag) values (%d, 'java.lang.Object', 'toString', %d, 0, 0, 1, 1, 0)", id, id + 1000));
+            statement.execute(String.format("insert into aj_trigger (id, task_id, cron_expression, next_triggering_time, last_triggering_time, last_run_time, repeat_times, finished_times, cycle, is_last_success, is_pause, is_run, change_time, del_flag) values (%d, %d, '0 0 0 1 1 ?', %d, 0, 0, -1, 0, 0, 1, 1, 0, 0, 0)", id + 1000, id, System.currentTimeMillis() + 3600000));
+        }
+    }
+}
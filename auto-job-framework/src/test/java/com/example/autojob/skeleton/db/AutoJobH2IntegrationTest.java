@@ -0,0 +1,109 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * H2嵌入式数据库集成测试，使用文件库模拟单节点部署：首次启动自动建表、条件更新认领任务以及limit/offset分页
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 19:10
+ */
+public class AutoJobH2IntegrationTest {
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static String url;
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        url = "jdbc:h2:file:" + new File(FOLDER.getRoot(), "auto_job_plus").getAbsolutePath();
+        holder = newHolder();
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Test
+    public void fileDatabaseIsInitializedOnFirstStartOnly() throws SQLException {
+        execute("insert into aj_auto_job (id, is_latest, status, del_flag) values (100, 1, 1, 0)");
+        //以新的数据源重新打开文件库，模拟应用重启
+        DataSourceHolder restarted = newHolder();
+        assertEquals(0, new AutoJobSchemaMigrator().migrate(restarted, DatabaseType.H2));
+        try (Connection connection = restarted.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from aj_auto_job where id = 100")) {
+            assertTrue(resultSet.next());
+            assertEquals(1, resultSet.getInt(1));
+        }
+        execute("delete from aj_auto_job where id = 100");
+    }
+
+    @Test
+    public void claimUsesConditionalUpdate() throws SQLException {
+        long next = System.currentTimeMillis() + 2000;
+        execute("insert into aj_auto_job (id, trigger_id, run_lock, is_latest, status, del_flag) values (200, 2001, 0, 1, 1, 0)");
+        execute(String.format("insert into aj_trigger (id, task_id, next_triggering_time, is_pause, change_time, del_flag) values (2001, 200, %d, 0, 0, 0)", next));
+        try {
+            assertFalse(AutoJobMapperHolder.TASK_ENTITY_MAPPER.isSupportSkipLocked());
+            List<AutoJobTaskEntity> claimed = AutoJobMapperHolder.TASK_ENTITY_MAPPER.claimNearTask(10, TimeUnit.SECONDS, 10, "node-a", 1, 60000);
+            assertEquals(1, claimed.size());
+            assertEquals("node-a", claimed
+                    .get(0)
+                    .getLockOwner());
+            //租约未过期，其他节点无法认领
+            assertTrue(AutoJobMapperHolder.TASK_ENTITY_MAPPER
+                    .claimNearTask(10, TimeUnit.SECONDS, 10, "node-b", 2, 60000)
+                    .isEmpty());
+        } finally {
+            execute("delete from aj_trigger where id = 2001");
+            execute("delete from aj_auto_job where id = 200");
+        }
+    }
+
+    @Test
+    public void pageUsesLimitOffset() throws SQLException {
+        for (int i = 1; i <= 5; i++) {
+            execute(String.format("insert into aj_auto_job (id, is_latest, status, del_flag) values (%d, 1, 1, 0)", 300 + i));
+        }
+        try {
+            List<AutoJobTaskEntity> page = AutoJobMapperHolder.TASK_ENTITY_MAPPER.page(2, 2);
+            assertEquals(2, page.size());
+            assertEquals(Long.valueOf(303), page
+                    .get(0)
+                    .getId());
+            assertEquals(Long.valueOf(304), page
+                    .get(1)
+                    .getId());
+        } finally {
+            execute("delete from aj_auto_job where id > 300 and id <= 305");
+        }
+    }
+
+    private static DataSourceHolder newHolder() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        return new DataSourceHolder(dataSource);
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.logging.model.file.AutoJobLogCodec;
+import com.example.autojob.logging.model.file.AutoJobLogSpillFile;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * SPILL策略下的日志写缓冲测试，溢出文件按批大小分段提交，无法写入的日志成为死信而不是反复溢出
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 21:50
+ */
+public class AutoJobLogWriteBufferSpillTest {
+    private static final File SPILL_DIRECTORY = new File("target/log-spill-test/spill/taskLog");
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        deleteRecursively(new File("target/log-spill-test"));
+        holder = AutoJobTestContext.newH2("log_write_buffer_spill");
+        AutoJobTestContext.initWithSchema("auto-job-log-spill-test.yml", holder);
+    }
+
+    @Test
+    public void spillFileIsReplayedInChunksAndPoisonIsDeadLettered() throws SQLException {
+        //写缓冲创建前已有上次运行留下的溢出文件
+        List<AutoJobLog> logs = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            logs.add(log(i == 60 ? "INFO-BUT-FAR-TOO-LONG" : "INFO", "line-" + i));
+        }
+        AutoJobLogSpillFile<AutoJobLog> spillFile = new AutoJobLogSpillFile<>(SPILL_DIRECTORY, new AutoJobLogCodec());
+        assertTrue(spillFile.append(logs));
+        spillFile.close();
+
+        AutoJobLogWriteBuffer buffer = AutoJobLogWriteBuffer.getInstance();
+        assertEquals(119, buffer.flush(false));
+        assertEquals(119, count());
+        //批大小为50，第一段和第三段各自整批提交，第二段因有问题的日志改为逐条写入
+        assertEquals(2, buffer.getCommitCount());
+        assertTrue(spillFile.isEmpty());
+
+        buffer.flush(true);
+        buffer.flush(true);
+        assertEquals(1, buffer.getDeadLetterCount());
+        assertEquals(0, buffer.getSpilledCount());
+        assertEquals(0, buffer.flush(true));
+        assertTrue(spillFile.isEmpty());
+        assertEquals(119, count());
+    }
+
+    private static AutoJobLog log(String level, String message) {
+        AutoJobLog log = new AutoJobLog();
+        log.setId(IdGenerator.getNextIdAsLong());
+        log.setTaskId(3);
+        log.setSchedulingId(30L);
+        log.setLevel(level);
+        log.setInputTime("2023-01-27 21:50:00");
+        log.setMessage(message);
+        return log;
+    }
+
+    private static int count() throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from aj_job_logs where task_id = 3")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            paths
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+}
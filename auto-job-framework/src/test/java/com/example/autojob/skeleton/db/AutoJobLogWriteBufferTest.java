@@ -0,0 +1,173 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志写缓冲测试，BLOCK策略下数据库不可用时暂停取出队列、阻塞提交方且不丢弃日志，无法写入的日志多次失败后作为死信丢弃
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 21:40
+ */
+public class AutoJobLogWriteBufferTest {
+    private static SwitchableDataSource dataSource;
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        dataSource = new SwitchableDataSource("log_write_buffer");
+        holder = new DataSourceHolder(dataSource);
+        AutoJobTestContext.initWithSchema("auto-job-log-buffer-test.yml", holder);
+    }
+
+    @Test
+    public void poisonLogIsDeadLettered() throws SQLException {
+        AutoJobLogWriteBuffer buffer = AutoJobLogWriteBuffer.getInstance();
+        long deadLetters = buffer.getDeadLetterCount();
+        List<AutoJobLog> logs = logs(1, 3);
+        //级别超过列长度，无论重试多少次都无法写入
+        logs.add(1, log(1, "INFO-BUT-FAR-TOO-LONG", "poison"));
+        buffer.offerLogs(logs);
+
+        assertEquals(3, buffer.flush(false));
+        assertEquals(3, count(1));
+        assertEquals(deadLetters, buffer.getDeadLetterCount());
+        buffer.flush(true);
+        buffer.flush(true);
+        assertEquals(deadLetters + 1, buffer.getDeadLetterCount());
+        //死信已移出重试队列，后续日志正常写入
+        buffer.offerLogs(logs(1, 2));
+        assertEquals(2, buffer.flush(true));
+        assertEquals(5, count(1));
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void outageBlocksProducersWithoutDropping() throws Exception {
+        AutoJobLogWriteBuffer buffer = AutoJobLogWriteBuffer.getInstance();
+        long deadLetters = buffer.getDeadLetterCount();
+        dataSource.isDown = true;
+        buffer.offerLogs(logs(2, 10));
+        assertEquals(0, buffer.flush(false));
+        //等待重试期间不再取出队列中的日志，队列写满
+        buffer.offerLogs(logs(2, 100));
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            assertEquals(0, buffer.flush(false));
+            assertEquals(100, buffer.getLogQueueDepth());
+        }
+        Thread producer = new Thread(() -> buffer.offerLogs(logs(2, 1)));
+        producer.start();
+        producer.join(300);
+        assertTrue("队列已满时提交方应阻塞", producer.isAlive());
+        assertEquals(0, buffer.getDroppedCount());
+
+        dataSource.isDown = false;
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((producer.isAlive() || buffer.getLogQueueDepth() > 0) && System.currentTimeMillis() < deadline) {
+            buffer.flush(false);
+            Thread.sleep(5);
+        }
+        buffer.flush(true);
+        assertFalse(producer.isAlive());
+        assertEquals(111, count(2));
+        assertEquals(0, buffer.getDroppedCount());
+        assertEquals(deadLetters, buffer.getDeadLetterCount());
+    }
+
+    private static List<AutoJobLog> logs(long taskId, int size) {
+        List<AutoJobLog> logs = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            logs.add(log(taskId, "INFO", "line-" + i));
+        }
+        return logs;
+    }
+
+    private static AutoJobLog log(long taskId, String level, String message) {
+        AutoJobLog log = new AutoJobLog();
+        log.setTaskId(taskId);
+        log.setSchedulingId(taskId * 10);
+        log.setLevel(level);
+        log.setInputTime("2023-01-27 21:40:00");
+        log.setMessage(message);
+        return log;
+    }
+
+    private static int count(long taskId) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from aj_job_logs where task_id = " + taskId)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * 可模拟数据库不可用的数据源
+     */
+    static class SwitchableDataSource implements DataSource {
+        private final JdbcDataSource delegate = new JdbcDataSource();
+        volatile boolean isDown;
+
+        SwitchableDataSource(String name) {
+            delegate.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (isDown) {
+                throw new SQLException("数据库不可用");
+            }
+            return delegate.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("不支持");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
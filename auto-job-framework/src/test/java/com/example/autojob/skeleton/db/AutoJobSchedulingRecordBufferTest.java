@@ -0,0 +1,124 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 调度记录缓冲测试，批量写入失败时逐条写入，无法写入的记录多次失败后作为死信丢弃；
+ * 找不到对应运行中调度的结束不会改写其他调度，提前写入由缓冲自己的写入线程执行
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 17:30
+ */
+public class AutoJobSchedulingRecordBufferTest {
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("scheduling_record_buffer");
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Test
+    public void poisonRecordIsDeadLetteredWithoutBlockingOthers() throws SQLException {
+        AutoJobSchedulingRecordBuffer buffer = AutoJobSchedulingRecordBuffer.getInstance();
+        finish(buffer, 1, "ok-1");
+        //别名超过列长度，无论重试多少次都无法写入
+        finish(buffer, 2, String.format("%300s", "poison"));
+        finish(buffer, 3, "ok-3");
+        //已提交但被报告为失败的记录，重写时主键冲突
+        execute("insert into aj_scheduling_record (id, task_id, is_run, del_flag) values (4, 1, 0, 0)");
+        finish(buffer, 4, "committed");
+
+        assertEquals(3, buffer.flush());
+        assertEquals(2, count("id in (1, 3)"));
+        assertEquals(0, buffer.getDeadLetterCount());
+        buffer.flush();
+        buffer.flush();
+        assertEquals(1, buffer.getDeadLetterCount());
+        //死信已移出缓冲，不再重试
+        assertEquals(0, buffer.flush());
+        assertEquals(0, count("id = 2"));
+        assertEquals(3, count("id in (1, 3, 4)"));
+    }
+
+    @Test
+    public void unmatchedFinishDoesNotTouchOtherRuns() throws SQLException {
+        AutoJobSchedulingRecordBuffer buffer = AutoJobSchedulingRecordBuffer.getInstance();
+        int inFlight = buffer.getInFlightCount();
+        //从未开始的调度结束时不回退为按ID更新
+        buffer.finish(record(5000, 1L, "never-begun"), true, "done", 10);
+        assertEquals(inFlight, buffer.getInFlightCount());
+        //调度ID对应的运行中调度属于其他任务时丢弃该调度，不按本次结果写入
+        AutoJobSchedulingRecord running = record(5001, 1L, "running");
+        assertTrue(buffer.begin(running));
+        assertEquals(inFlight + 1, buffer.getInFlightCount());
+        buffer.finish(record(5001, 2L, "other-task"), true, "done", 10);
+        assertEquals(inFlight, buffer.getInFlightCount());
+        buffer.flush();
+        assertEquals(0, count("id in (5000, 5001)"));
+    }
+
+    @Test
+    public void earlyFlushDoesNotWaitForSharedScheduler() throws Exception {
+        AutoJobSchedulingRecordBuffer buffer = AutoJobSchedulingRecordBuffer.getInstance();
+        CountDownLatch release = new CountDownLatch(1);
+        //占住共用的单例调度线程
+        ScheduleTaskUtil.oneTimeTask(() -> release.await(30, TimeUnit.SECONDS), 0, TimeUnit.MILLISECONDS);
+        try {
+            //达到批量阈值200条后由缓冲自己的写入线程提前写入
+            for (int i = 0; i < 200; i++) {
+                finish(buffer, 10000 + i, "early-" + i);
+            }
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (count("id between 10000 and 10199") < 200 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(200, count("id between 10000 and 10199"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void finish(AutoJobSchedulingRecordBuffer buffer, long schedulingId, String alias) {
+        AutoJobSchedulingRecord record = record(schedulingId, 1L, alias);
+        assertTrue(buffer.begin(record));
+        buffer.finish(record, true, "done", 10);
+    }
+
+    private static AutoJobSchedulingRecord record(long schedulingId, long taskId, String alias) {
+        AutoJobSchedulingRecord record = new AutoJobSchedulingRecord();
+        record.setSchedulingId(schedulingId);
+        record.setSchedulingTime(new Date());
+        record.setTaskAlias(alias);
+        record.setTaskId(taskId);
+        record.setRun(true);
+        return record;
+    }
+
+    private static int count(String condition) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from aj_scheduling_record where " + condition)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
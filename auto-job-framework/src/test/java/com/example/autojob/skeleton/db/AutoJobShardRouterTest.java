@@ -0,0 +1,139 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.api.task.AutoJobMethodTaskAttributes;
+import com.example.autojob.api.task.DBTaskAPI;
+import com.example.autojob.skeleton.db.entity.AutoJobTriggerEntity;
+import com.example.autojob.skeleton.db.mapper.AutoJobMapperHolder;
+import com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.task.method.MethodTask;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片路由测试，使用三个内存H2库作为分片，任务、触发器与日志只读写任务所在的分片
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 18:30
+ */
+public class AutoJobShardRouterTest {
+    private static DataSourceHolder[] shards;
+
+    @BeforeClass
+    public static void init() {
+        shards = new DataSourceHolder[]{AutoJobTestContext.newH2("shard_0"), AutoJobTestContext.newH2("shard_1"), AutoJobTestContext.newH2("shard_2")};
+        AutoJobTestContext.initWithSchema(shards[0], shards[1], shards[2]);
+    }
+
+    @Test
+    public void taskAndTriggerAreWrittenToTaskShard() throws SQLException {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        assertEquals(3, router.getShardCount());
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            MethodTask task = new AutoJobMethodTaskBuilder(Object.class, "toString")
+                    .setTaskId(IdGenerator.getNextIdAsLong())
+                    .setTaskType(AutoJobTask.TaskType.DB_TASK)
+                    .isSaveWhenDB(true)
+                    .addACronExpressionTrigger("0 0 0 * * ?", -1)
+                    .build();
+            int shard = router.shardOf(task.getId());
+            usedShards.add(shard);
+            assertTaskAndTriggerOnShard(task.getId(), shard);
+        }
+        assertEquals("30个任务应分布在所有分片上", 3, usedShards.size());
+    }
+
+    @Test
+    public void registeredTriggerFollowsTask() throws SQLException {
+        MethodTask task = new AutoJobMethodTaskBuilder(Object.class, "hashCode")
+                .setTaskId(IdGenerator.getNextIdAsLong())
+                .setTaskType(AutoJobTask.TaskType.DB_TASK)
+                .addACronExpressionTrigger("0 0 0 * * ?", -1)
+                .build();
+        //触发器上的任务ID与任务不一致时仍写入任务所在的分片
+        task
+                .getTrigger()
+                .setTaskId(null);
+        assertTrue(new DBTaskAPI().registerTask(new AutoJobMethodTaskAttributes(task)));
+        assertTaskAndTriggerOnShard(task.getId(), AutoJobShardRouter
+                .getInstance()
+                .shardOf(task.getId()));
+        assertNotNull(new DBTaskAPI().find(task.getId()));
+    }
+
+    @Test
+    public void insertWithoutShardKeyIsRejected() {
+        AutoJobTriggerEntity entity = new AutoJobTriggerEntity();
+        entity.setId(1L);
+        assertThrows(IllegalArgumentException.class, () -> AutoJobMapperHolder.TRIGGER_ENTITY_MAPPER.insertList(Collections.singletonList(entity)));
+    }
+
+    @Test
+    public void shardLayoutChangeIsRefused() {
+        AutoJobSchemaMigrator migrator = new AutoJobSchemaMigrator();
+        migrator.checkShardLayout(shards[1], 1, 3);
+        assertThrows(AutoJobSQLException.class, () -> migrator.checkShardLayout(shards[1], 1, 4));
+        assertThrows(AutoJobSQLException.class, () -> migrator.checkShardLayout(shards[1], 2, 3));
+    }
+
+    @Test
+    public void deleteLogsByTaskIdKeepsOtherTasks() throws SQLException {
+        AutoJobShardRouter router = AutoJobShardRouter.getInstance();
+        long deleted = IdGenerator.getNextIdAsLong();
+        long sameShard = deleted + 1;
+        while (router.shardOf(sameShard) != router.shardOf(deleted)) {
+            sameShard++;
+        }
+        long otherShard = sameShard + 1;
+        while (router.shardOf(otherShard) == router.shardOf(deleted)) {
+            otherShard++;
+        }
+        for (long taskId : new long[]{deleted, sameShard, otherShard}) {
+            DataSourceHolder holder = shards[router.shardOf(taskId)];
+            execute(holder, String.format("insert into aj_job_logs (id, task_id, del_flag) values (%d, %d, 0)", IdGenerator.getNextIdAsLong(), taskId));
+            execute(holder, String.format("insert into aj_run_logs (id, task_id, task_type, run_status, write_time, del_flag) values (%d, %d, 'DB_TASK', 1, current_timestamp, 0)", IdGenerator.getNextIdAsLong(), taskId));
+        }
+        assertEquals(1, AutoJobMapperHolder.LOG_ENTITY_MAPPER.deleteByTaskId(deleted));
+        assertEquals(1, AutoJobMapperHolder.RUN_LOG_ENTITY_MAPPER.deleteByTaskId(deleted));
+        for (String table : new String[]{"aj_job_logs", "aj_run_logs"}) {
+            assertEquals(0, count(shards[router.shardOf(deleted)], "select count(*) from " + table + " where del_flag = 0 and task_id = " + deleted));
+            assertEquals(1, count(shards[router.shardOf(sameShard)], "select count(*) from " + table + " where del_flag = 0 and task_id = " + sameShard));
+            assertEquals(1, count(shards[router.shardOf(otherShard)], "select count(*) from " + table + " where del_flag = 0 and task_id = " + otherShard));
+        }
+    }
+
+    private static void execute(DataSourceHolder holder, String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void assertTaskAndTriggerOnShard(long taskId, int shard) throws SQLException {
+        for (int i = 0; i < shards.length; i++) {
+            int expected = i == shard ? 1 : 0;
+            assertEquals(expected, count(shards[i], "select count(*) from aj_auto_job where id = " + taskId));
+            assertEquals(expected, count(shards[i], "select count(*) from aj_trigger where task_id = " + taskId));
+        }
+    }
+
+    private static int count(DataSourceHolder holder, String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
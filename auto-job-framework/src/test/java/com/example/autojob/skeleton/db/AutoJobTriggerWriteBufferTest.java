@@ -0,0 +1,65 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.util.thread.ScheduleTaskUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 触发器状态写缓冲测试，达到批量阈值后由缓冲自己的写入线程提前写入，不受共用调度线程上其他任务的影响
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 11:00
+ */
+public class AutoJobTriggerWriteBufferTest {
+    private static final int TRIGGER_COUNT = 200;
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() throws SQLException {
+        holder = AutoJobTestContext.newH2("trigger_write_buffer");
+        AutoJobTestContext.initWithSchema(holder);
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            for (int i = 1; i <= TRIGGER_COUNT; i++) {
+                statement.addBatch(String.format("insert into aj_trigger (id, task_id, is_run, del_flag) values (%d, %d, 0, 0)", i, i));
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @Test
+    public void earlyFlushDoesNotWaitForSharedScheduler() throws Exception {
+        AutoJobTriggerWriteBuffer buffer = AutoJobTriggerWriteBuffer.getInstance();
+        CountDownLatch release = new CountDownLatch(1);
+        //占住共用的单例调度线程
+        ScheduleTaskUtil.oneTimeTask(() -> release.await(30, TimeUnit.SECONDS), 0, TimeUnit.MILLISECONDS);
+        try {
+            for (int i = 1; i <= TRIGGER_COUNT; i++) {
+                buffer.updateOperatingStatus(true, i);
+            }
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (countRunning() < TRIGGER_COUNT && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(TRIGGER_COUNT, countRunning());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static int countRunning() throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from aj_trigger where is_run = 1")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
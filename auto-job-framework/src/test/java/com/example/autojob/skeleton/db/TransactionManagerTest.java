@@ -0,0 +1,100 @@
+package com.example.autojob.skeleton.db;
+
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * 工作单元测试，工作单元内复用同一个连接，事务型工作单元失败时整体回滚，单元内的事务只回滚到保存点
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 15:00
+ */
+public class TransactionManagerTest {
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() throws SQLException {
+        holder = AutoJobTestContext.newH2("transaction_manager");
+        AutoJobTestContext.init(holder);
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table demo (id bigint primary key)");
+        }
+    }
+
+    @After
+    public void clear() throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("delete from demo");
+        }
+    }
+
+    @Test
+    public void unitReusesOneConnection() {
+        Connection[] connections = new Connection[2];
+        TransactionManager.doInUnitOfWork(holder, false, () -> {
+            connections[0] = TransactionManager.getUnitConnection(holder);
+            connections[1] = TransactionManager.getUnitConnection(holder);
+            return null;
+        });
+        assertNotNull(connections[0]);
+        assertSame(connections[0], connections[1]);
+        //工作单元结束后解除绑定
+        assertNull(TransactionManager.getUnitConnection(holder));
+    }
+
+    @Test
+    public void failedTransactionalUnitRollsBackAllWrites() throws SQLException {
+        try {
+            TransactionManager.doInUnitOfWork(holder, true, () -> {
+                insert(TransactionManager.getUnitConnection(holder), 1);
+                insert(TransactionManager.getUnitConnection(holder), 2);
+                throw new IllegalStateException("fail");
+            });
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+        assertEquals(0, count());
+        assertFalse(TransactionManager.isInTransaction());
+        TransactionManager.doInUnitOfWork(holder, true, () -> insert(TransactionManager.getUnitConnection(holder), 3));
+        assertEquals(1, count());
+    }
+
+    @Test
+    public void transactionInsideUnitRollsBackToSavepoint() throws SQLException {
+        TransactionManager.doInUnitOfWork(holder, true, () -> {
+            insert(TransactionManager.getUnitConnection(holder), 1);
+            assertTrue(TransactionManager.openTransaction(holder));
+            //事务复用工作单元的连接
+            assertSame(TransactionManager.getUnitConnection(holder), TransactionManager.getCurrentConnection());
+            insert(TransactionManager.getCurrentConnection(), 2);
+            TransactionManager.rollbackTransaction();
+            return null;
+        });
+        assertEquals(1, count());
+    }
+
+    private static Object insert(Connection connection, long id) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into demo values (" + id + ")");
+        } catch (SQLException e) {
+            throw new AutoJobSQLException(e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private static int count() throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select count(*) from demo")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
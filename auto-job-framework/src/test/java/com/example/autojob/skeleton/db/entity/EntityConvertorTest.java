@@ -0,0 +1,63 @@
+package com.example.autojob.skeleton.db.entity;
+
+import com.example.autojob.logging.domain.AutoJobLog;
+import com.example.autojob.util.id.IdGenerator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志实体转换测试，日志管道预留的ID一直沿用到日志实体与日志块
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 16:20
+ */
+public class EntityConvertorTest {
+    private static final String TIME = "2023-01-29 16:20:00";
+
+    @Test
+    public void logEntityKeepsReservedId() {
+        AutoJobLog log = log(IdGenerator.getNextIds(1));
+        assertEquals(Long.valueOf(log.getId()), EntityConvertor
+                .log2LogEntity(log)
+                .getId());
+        //未分配ID的日志在转换时生成
+        assertTrue(EntityConvertor
+                .log2LogEntity(log(0))
+                .getId() > 0);
+    }
+
+    @Test
+    public void logBlockKeepsReservedIds() throws IOException {
+        int count = 20;
+        long first = IdGenerator.getNextIds(count);
+        List<AutoJobLog> logs = new ArrayList<>(count);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            logs.add(log(first + i));
+            ids.add(first + i);
+        }
+        AutoJobLogEntity entity = EntityConvertor.logs2LogBlockEntity(logs, true);
+        assertEquals(Long.valueOf(first + count - 1), entity.getId());
+        assertEquals(ids, EntityConvertor
+                .logEntity2Logs(entity)
+                .stream()
+                .map(AutoJobLog::getId)
+                .collect(Collectors.toList()));
+    }
+
+    private static AutoJobLog log(long id) {
+        return new AutoJobLog()
+                .setId(id)
+                .setSchedulingId(1L)
+                .setTaskId(1L)
+                .setInputTime(TIME)
+                .setLevel("INFO")
+                .setMessage("message");
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.autojob.skeleton.db.mapper;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.db.entity.AutoJobTaskEntity;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 任务租约锁测试
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 10:30
+ */
+public class AutoJobTaskLockTest {
+    private static DataSourceHolder holder;
+    private static AutoJobTaskEntityMapper mapper;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("task_lock");
+        AutoJobTestContext.initWithSchema(holder);
+        mapper = new AutoJobTaskEntityMapper();
+    }
+
+    @Before
+    public void clean() throws SQLException {
+        execute("delete from aj_auto_job");
+        execute("delete from aj_trigger");
+    }
+
+    @Test
+    public void legacyLockWithoutLeaseCanBeAcquired() throws SQLException {
+        insertTask(1, 1, "old-node", null);
+        assertFalse(mapper.isLock(1));
+        assertTrue(mapper.lock(1, "node-a", 100, 60000));
+        assertTrue(mapper.isLock(1));
+        //租约有效时其他节点无法加锁
+        assertFalse(mapper.lock(1, "node-b", 200, 60000));
+    }
+
+    @Test
+    public void legacyLockWithoutLeaseIsReclaimed() throws SQLException {
+        insertTask(2, 1, "old-node", null);
+        insertTask(3, 1, "node-a", System.currentTimeMillis() + 60000);
+        assertEquals(1, mapper.reclaimExpiredLease());
+        assertEquals(0, queryInt("select run_lock from aj_auto_job where id = 2"));
+        assertEquals(1, queryInt("select run_lock from aj_auto_job where id = 3"));
+    }
+
+    @Test
+    public void unlockRequiresMatchingToken() throws SQLException {
+        insertTask(4, 0, null, null);
+        assertTrue(mapper.lock(4, "node-a", 100, 60000));
+        assertFalse(mapper.unLock(4, "node-a", 101));
+        assertFalse(mapper.unLock(4, "node-b", 100));
+        assertTrue(mapper.unLock(4, "node-a", 100));
+        assertFalse(mapper.isLock(4));
+    }
+
+    @Test
+    public void unlockTouchesTrigger() throws SQLException {
+        insertTask(5, 0, null, null);
+        assertTrue(mapper.lock(5, "node-a", 100, 60000));
+        execute("update aj_trigger set change_time = 0 where task_id = 5");
+        //令牌不匹配时不修改触发器
+        assertFalse(mapper.unLock(5, "node-a", 101));
+        assertEquals(0, queryLong("select change_time from aj_trigger where task_id = 5"));
+        long before = System.currentTimeMillis();
+        assertTrue(mapper.unLock(5, "node-a", 100));
+        assertTrue(queryLong("select change_time from aj_trigger where task_id = 5") >= before);
+    }
+
+    @Test
+    public void claimReadsBackOnlyClaimedCandidates() throws SQLException {
+        //同一持有者以相同令牌持有的其他锁不属于本次认领
+        insertTask(10, 1, "node-a", System.currentTimeMillis() + 60000);
+        execute("update aj_auto_job set lock_version = 7 where id = 10");
+        insertTask(11, 0, null, null);
+        List<AutoJobTaskEntity> claimed = mapper.claimNearTask(10, TimeUnit.SECONDS, 10, "node-a", 7, 60000);
+        assertEquals(Collections.singletonList(11L), claimed
+                .stream()
+                .map(AutoJobTaskEntity::getId)
+                .collect(Collectors.toList()));
+        assertTrue(mapper.isLock(11));
+    }
+
+    private static void insertTask(long id, int runLock, String owner, Long expire) throws SQLException {
+        execute(String.format("insert into aj_auto_job (id, type, run_lock, lock_owner, lock_expire, is_latest, status, del_flag) values (%d, 0, %d, %s, %s, 1, 1, 0)", id, runLock, owner == null ? "null" : "'" + owner + "'", expire == null ? "null" : expire.toString()));
+        execute(String.format("insert into aj_trigger (id, task_id, next_triggering_time, is_pause, del_flag) values (%d, %d, %d, 0, 0)", id + 1000, id, System.currentTimeMillis() + 1000));
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static int queryInt(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
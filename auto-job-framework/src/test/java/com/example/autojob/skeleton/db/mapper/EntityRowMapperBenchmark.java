@@ -0,0 +1,103 @@
+package com.example.autojob.skeleton.db.mapper;
+
+import com.example.autojob.skeleton.db.entity.AutoJobLogEntity;
+import com.example.autojob.util.convert.StringUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大页日志查询的结果映射基准，对比按列下标的行映射器与逐字段按列名反射的旧实现，结果集可滚动，只测量映射本身
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 15:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRowMapperBenchmark {
+    @Param({"100", "2000"})
+    private int rows;
+
+    private Connection connection;
+    private ResultSet resultSet;
+    private final HumpBeanListResultHandler<AutoJobLogEntity> handler = new HumpBeanListResultHandler<>(AutoJobLogEntity.class);
+
+    @Setup
+    public void setup() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:row_mapper_benchmark_" + rows);
+        connection = dataSource.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table aj_job_logs (id bigint primary key, scheduling_id bigint, task_id bigint, write_timestamp bigint, write_time timestamp, log_level varchar(10), message varchar(1024), del_flag int, log_count int, content varbinary(1024))");
+        }
+        try (PreparedStatement statement = connection.prepareStatement("insert into aj_job_logs values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < rows; i++) {
+                statement.setLong(1, i);
+                statement.setLong(2, i / 10);
+                statement.setLong(3, 1);
+                statement.setLong(4, now + i);
+                statement.setTimestamp(5, new Timestamp(now + i));
+                statement.setString(6, "INFO");
+                statement.setString(7, "任务执行中，当前处理到第" + i + "条数据");
+                statement.setInt(8, 0);
+                statement.setInt(9, 1);
+                statement.setBytes(10, null);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        resultSet = connection
+                .createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)
+                .executeQuery("select " + AutoJobLogEntityMapper.ALL_COLUMNS + " from aj_job_logs order by id");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public List<AutoJobLogEntity> rowMapper() throws SQLException {
+        resultSet.beforeFirst();
+        return handler.handle(resultSet);
+    }
+
+    @Benchmark
+    public List<AutoJobLogEntity> fieldReflection() throws Exception {
+        resultSet.beforeFirst();
+        List<AutoJobLogEntity> result = new ArrayList<>();
+        Field[] fields = AutoJobLogEntity.class.getDeclaredFields();
+        while (resultSet.next()) {
+            AutoJobLogEntity instance = AutoJobLogEntity.class.newInstance();
+            for (Field field : fields) {
+                field.setAccessible(true);
+                Object value = resultSet.getObject(StringUtils.uncamelCase(field.getName()), field.getType());
+                if (value != null) {
+                    field.set(instance, value);
+                }
+            }
+            result.add(instance);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EntityRowMapperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.autojob.skeleton.db.mapper;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实体行映射测试，空结果、全空行、重复列与字段转换失败的处理与按字段反射映射时保持一致
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 15:20
+ */
+public class EntityRowMapperTest {
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() throws SQLException {
+        holder = AutoJobTestContext.newH2("row_mapper");
+        execute("create table demo (id bigint, task_name varchar(32), run_count varchar(32))");
+    }
+
+    @Test
+    public void emptyResultMapsToEmptyInstance() throws SQLException {
+        Demo demo = query("select id, task_name, run_count from demo where id = -1", new HumpBeanResultHandler<>(Demo.class));
+        assertNotNull(demo);
+        assertNull(demo.id);
+        assertNull(demo.taskName);
+    }
+
+    @Test
+    public void allNullRowIsDropped() throws SQLException {
+        execute("insert into demo values (null, null, null)");
+        try {
+            assertNull(query("select id, task_name, run_count from demo", new HumpBeanResultHandler<>(Demo.class)));
+            assertTrue(query("select id, task_name, run_count from demo", new HumpBeanListResultHandler<>(Demo.class)).isEmpty());
+            //只查询部分列时不能认定整行为空
+            assertNotNull(query("select id from demo", new HumpBeanResultHandler<>(Demo.class)));
+        } finally {
+            execute("delete from demo");
+        }
+    }
+
+    @Test
+    public void allNullRowOfEntityWithStaticFieldIsKept() throws SQLException {
+        execute("insert into demo values (null, null, null)");
+        try {
+            //静态字段不可能出现在结果集中，按字段反射映射时这类实体的行从不被认定为全空
+            assertNotNull(query("select id, task_name, run_count from demo", new HumpBeanResultHandler<>(StaticDemo.class)));
+            assertEquals(1, query("select id, task_name, run_count from demo", new HumpBeanListResultHandler<>(StaticDemo.class)).size());
+        } finally {
+            execute("delete from demo");
+        }
+    }
+
+    @Test
+    public void duplicateColumnMapsFirstOccurrence() throws SQLException {
+        execute("insert into demo values (1, 'demo', 2)");
+        try {
+            Demo demo = query("select id, task_name, null as id from demo", new HumpBeanResultHandler<>(Demo.class));
+            assertEquals(Long.valueOf(1), demo.id);
+            execute("update demo set id = null, run_count = null");
+            //重复的列不重复计数，task_name未查询，不能认定整行为空
+            assertEquals(1, query("select id, id, run_count from demo", new HumpBeanListResultHandler<>(Demo.class)).size());
+        } finally {
+            execute("delete from demo");
+        }
+    }
+
+    @Test
+    public void conversionErrorSkipsField() throws SQLException {
+        execute("insert into demo values (1, 'demo', 'not a number')");
+        try {
+            List<Demo> demos = query("select id, task_name, run_count from demo", new HumpBeanListResultHandler<>(Demo.class));
+            assertEquals(1, demos.size());
+            assertEquals(Long.valueOf(1), demos.get(0).id);
+            assertEquals("demo", demos.get(0).taskName);
+            assertNull(demos.get(0).runCount);
+        } finally {
+            execute("delete from demo");
+        }
+    }
+
+    private static <R> R query(String sql, ResultSetHandler<R> handler) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return handler.handle(resultSet);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public static class Demo {
+        private Long id;
+        private String taskName;
+        private Integer runCount;
+    }
+
+    public static class StaticDemo {
+        private static final String TABLE = "demo";
+        private Long id;
+        private String taskName;
+        private Integer runCount;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.enumerate.DatabaseType;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 数据库结构迁移测试，通过H2的执行计划确认热点查询走索引
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 09:30
+ */
+public class AutoJobSchemaMigratorTest {
+    /**
+     * 只有主键的旧版表结构
+     */
+    private static final String[] LEGACY_SCHEMA = {"create table aj_auto_job (id bigint not null primary key, annotation_id bigint, status int, del_flag int)", "create table aj_trigger (id bigint not null primary key, next_triggering_time bigint, is_pause int, task_id bigint, del_flag int)", "create table aj_job_logs (id bigint not null primary key, scheduling_id bigint, task_id bigint, write_timestamp bigint, del_flag int)", "create table aj_run_logs (id bigint not null primary key, scheduling_id bigint, task_id bigint, write_timestamp bigint, del_flag int)", "create table aj_scheduling_record (id bigint not null primary key, task_id bigint, write_timestamp bigint, del_flag int)"};
+
+    @Test
+    public void indexMigrationIsIdempotentAndUsedByHotQueries() throws SQLException {
+        DataSourceHolder holder = AutoJobTestContext.newH2("legacy_index");
+        try (Connection connection = holder.getConnection()) {
+            for (String sql : LEGACY_SCHEMA) {
+                execute(connection, sql);
+            }
+            assertTrue(plan(connection, "select id from aj_job_logs where scheduling_id = 1 and del_flag = 0").contains("tableScan"));
+            V1IndexMigration migration = new V1IndexMigration();
+            migration.migrate(connection, DatabaseType.H2);
+            //重复执行不报错也不重复建索引
+            migration.migrate(connection, DatabaseType.H2);
+            assertTrue(migration.hasIndex(connection, "aj_trigger", "idx_aj_trigger_next_time"));
+
+            assertPlanUses(connection, "select task_id from aj_trigger where next_triggering_time >= 1 and next_triggering_time <= 2 and del_flag = 0 and is_pause = 0", "IDX_AJ_TRIGGER_NEXT_TIME");
+            assertPlanUses(connection, "select max(id) from aj_auto_job where annotation_id = 1 and del_flag = 0 and status = 1", "IDX_AJ_AUTO_JOB_ANNOTATION");
+            assertPlanUses(connection, "select id from aj_job_logs where scheduling_id = 1 and del_flag = 0", "IDX_AJ_JOB_LOGS_SCHEDULING_ID");
+            assertPlanUses(connection, "select id from aj_job_logs where task_id = 1 and write_timestamp >= 1 and write_timestamp <= 2", "IDX_AJ_JOB_LOGS_TASK_TIME");
+            assertPlanUses(connection, "select id from aj_run_logs where scheduling_id = 1 and del_flag = 0", "IDX_AJ_RUN_LOGS_SCHEDULING_ID");
+            assertPlanUses(connection, "select id from aj_run_logs where task_id = 1 and write_timestamp >= 1 and write_timestamp <= 2", "IDX_AJ_RUN_LOGS_TASK_TIME");
+            assertPlanUses(connection, "select id from aj_scheduling_record where task_id = 1 and write_timestamp >= 1 and write_timestamp <= 2", "IDX_AJ_SCHEDULING_RECORD_TASK_TIME");
+        }
+    }
+
+    @Test
+    public void migratorInitializesEmbeddedSchemaWithAllVersions() throws SQLException {
+        DataSourceHolder holder = AutoJobTestContext.newH2("embedded_schema");
+        AutoJobTestContext.init(holder);
+        AutoJobSchemaMigrator migrator = new AutoJobSchemaMigrator();
+        migrator.migrate(holder, DatabaseType.H2);
+        //再次启动时没有需要应用的迁移
+        assertEquals(0, migrator.migrate(holder, DatabaseType.H2));
+        try (Connection connection = holder.getConnection()) {
+            Set<Integer> versions = new HashSet<>();
+            try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("select version from " + AutoJobSchemaMigrator.VERSION_TABLE)) {
+                while (resultSet.next()) {
+                    versions.add(resultSet.getInt(1));
+                }
+            }
+            for (int version = 1; version <= 5; version++) {
+                assertTrue("缺少迁移版本" + version, versions.contains(version));
+            }
+            assertPlanUses(connection, "select task_id from aj_trigger where next_triggering_time >= 1 and next_triggering_time <= 2 and del_flag = 0 and is_pause = 0", "IDX_AJ_TRIGGER_NEXT_TIME");
+            assertPlanUses(connection, "select id from aj_job_logs where scheduling_id = 1 and del_flag = 0", "IDX_AJ_JOB_LOGS_SCHEDULING_ID");
+            assertPlanUses(connection, "select id from aj_auto_job where is_latest = 1 and del_flag = 0 and id > 1 order by id limit 10", "IDX_AJ_AUTO_JOB_LATEST");
+        }
+    }
+
+    @Test
+    public void latestMarkerCoversEveryNonAnnotationTask() throws SQLException {
+        DataSourceHolder holder = AutoJobTestContext.newH2("legacy_latest");
+        try (Connection connection = holder.getConnection()) {
+            for (String sql : LEGACY_SCHEMA) {
+                execute(connection, sql);
+            }
+            execute(connection, "insert into aj_auto_job (id, annotation_id, status, del_flag) values (1, null, 1, 0), (2, null, 1, 0), (3, 100, 1, 0), (4, 100, 1, 0)");
+            new V3LatestVersionMigration().migrate(connection, DatabaseType.H2);
+            assertEquals(3, queryInt(connection, "select count(*) from aj_auto_job where is_latest = 1"));
+            assertEquals(0, queryInt(connection, "select is_latest from aj_auto_job where id = 3"));
+        }
+    }
+
+    private static int queryInt(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void assertPlanUses(Connection connection, String sql, String indexName) throws SQLException {
+        String plan = plan(connection, sql);
+        assertTrue(sql + " 未使用索引" + indexName + "：" + plan, plan
+                .toUpperCase()
+                .contains(indexName));
+    }
+
+    private static String plan(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("explain " + sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.autojob.skeleton.db.migration;
+
+import com.example.autojob.skeleton.db.AutoJobSQLException;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片布局测试，分片布局错误时在任何库上执行迁移之前拒绝启动
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 11:30
+ */
+public class AutoJobShardLayoutTest {
+    @Test
+    public void wrongLayoutIsRefusedBeforeMigration() throws SQLException {
+        DataSourceHolder first = AutoJobTestContext.newH2("layout_first");
+        DataSourceHolder second = AutoJobTestContext.newH2("layout_second");
+        //第二个库原本是两个分片中的0号分片，配置中的分片顺序被调换
+        execute(second, "create table " + AutoJobSchemaMigrator.SHARD_LAYOUT_TABLE + " (shard_index int not null, shard_count int not null, installed_time bigint, primary key (shard_index))");
+        execute(second, "insert into " + AutoJobSchemaMigrator.SHARD_LAYOUT_TABLE + " (shard_index, shard_count) values (0, 2)");
+        AutoJobTestContext.init(first, second);
+        assertThrows(AutoJobSQLException.class, () -> new AutoJobSchemaMigrator().load());
+        for (DataSourceHolder holder : new DataSourceHolder[]{first, second}) {
+            assertFalse(hasTable(holder, "AJ_AUTO_JOB"));
+            assertFalse(hasTable(holder, AutoJobSchemaMigrator.VERSION_TABLE.toUpperCase()));
+        }
+        //第一个库也没有记录布局，调整配置后仍可正常启动
+        assertFalse(hasTable(first, AutoJobSchemaMigrator.SHARD_LAYOUT_TABLE.toUpperCase()));
+    }
+
+    private static boolean hasTable(DataSourceHolder holder, String table) throws SQLException {
+        try (Connection connection = holder.getConnection(); ResultSet resultSet = connection
+                .getMetaData()
+                .getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return resultSet.next();
+        }
+    }
+
+    private static void execute(DataSourceHolder holder, String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.autojob.skeleton.framework.boot;
+
+import com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator;
+import com.example.autojob.skeleton.framework.processor.IAutoJobProcessor;
+import com.example.autojob.skeleton.lifecycle.TaskEventHandlerLoader;
+import com.example.autojob.skeleton.model.register.AutoJobRegisterLoader;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 加载器顺序测试，数据库结构迁移器先于其他加载器执行
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 16:00
+ */
+public class AutoJobLoaderOrderTest {
+    @Test
+    public void migratorLoadsBeforeRegisterLoader() {
+        List<IAutoJobProcessor> loaders = Arrays.asList(new TaskEventHandlerLoader(), new AutoJobRegisterLoader(), new AutoJobSchemaMigrator());
+        List<Class<?>> sorted = loaders
+                .stream()
+                .sorted(new AutoJobApplication.ProcessorComparator())
+                .map(Object::getClass)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(AutoJobSchemaMigrator.class, AutoJobRegisterLoader.class, TaskEventHandlerLoader.class), sorted);
+    }
+}
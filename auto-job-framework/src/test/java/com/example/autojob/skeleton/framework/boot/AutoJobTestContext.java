@@ -0,0 +1,121 @@
+package com.example.autojob.skeleton.framework.boot;
+
+import com.example.autojob.logging.model.AutoJobLogContext;
+import com.example.autojob.logging.model.memory.AutoJobLogCache;
+import com.example.autojob.logging.model.memory.AutoJobRunLogCache;
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.db.migration.AutoJobSchemaMigrator;
+import com.example.autojob.skeleton.framework.config.AutoJobConfigHolder;
+import com.example.autojob.skeleton.framework.config.AutoJobLogConfig;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 测试上下文，使用内存H2数据库初始化全局应用的配置与数据源，不启动调度器。
+ * 框架组件多为全局单例，每个测试类运行在独立的JVM中，同一测试类内应只初始化一次
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 09:10
+ */
+public final class AutoJobTestContext {
+    public static final String TEST_CONFIG = "auto-job-test.yml";
+
+    private AutoJobTestContext() {
+    }
+
+    /**
+     * 创建一个内存H2数据库，最后一个连接关闭后数据库仍保留
+     *
+     * @param name 数据库名
+     * @return com.example.autojob.skeleton.db.DataSourceHolder
+     */
+    public static DataSourceHolder newH2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return new DataSourceHolder(dataSource);
+    }
+
+    /**
+     * 只加载指定的配置文件，不初始化数据源
+     *
+     * @param configFile 类路径下的配置文件
+     */
+    public static void initConfig(String configFile) {
+        AutoJobApplication
+                .getInstance()
+                .setConfigHolder(new AutoJobConfigHolder(configFile));
+    }
+
+    /**
+     * 初始化应用配置与数据源，第一个数据源为主库即0号分片
+     *
+     * @param main   主库
+     * @param shards 分片库
+     */
+    public static void init(DataSourceHolder main, DataSourceHolder... shards) {
+        init(new AutoJobConfigHolder(TEST_CONFIG), main, shards);
+    }
+
+    /**
+     * 初始化应用配置与数据源，在测试配置之上加载指定的配置文件，同名配置以后者为准
+     *
+     * @param configFile 类路径下的配置文件
+     * @param main       主库
+     * @param shards     分片库
+     */
+    public static void init(String configFile, DataSourceHolder main, DataSourceHolder... shards) {
+        init(new AutoJobConfigHolder(TEST_CONFIG, configFile), main, shards);
+    }
+
+    private static void init(AutoJobConfigHolder configHolder, DataSourceHolder main, DataSourceHolder... shards) {
+        AutoJobApplication application = AutoJobApplication.getInstance();
+        application.setConfigHolder(configHolder);
+        application.setDataSourceHolder(main);
+        application.setShardDataSourceHolders(new ArrayList<>(Arrays.asList(shards)));
+    }
+
+    /**
+     * 初始化应用并在每个分片上建表
+     *
+     * @param main   主库
+     * @param shards 分片库
+     */
+    public static void initWithSchema(DataSourceHolder main, DataSourceHolder... shards) {
+        init(main, shards);
+        new AutoJobSchemaMigrator().load();
+    }
+
+    /**
+     * 在测试配置之上加载指定的配置文件，初始化应用并在每个分片上建表
+     *
+     * @param configFile 类路径下的配置文件
+     * @param main       主库
+     * @param shards     分片库
+     */
+    public static void initWithSchema(String configFile, DataSourceHolder main, DataSourceHolder... shards) {
+        init(configFile, main, shards);
+        new AutoJobSchemaMigrator().load();
+    }
+
+    /**
+     * 按已加载的配置创建日志内存缓存并设置全局日志上下文，需在初始化配置之后调用
+     *
+     * @return com.example.autojob.logging.model.AutoJobLogContext
+     */
+    public static AutoJobLogContext initLogContext() {
+        AutoJobLogConfig logConfig = AutoJobApplication
+                .getInstance()
+                .getConfigHolder()
+                .getLogConfig();
+        AutoJobLogContext logContext = AutoJobLogContext
+                .getInstance()
+                .setLogCache(new AutoJobLogCache(logConfig))
+                .setRunLogCache(new AutoJobRunLogCache(logConfig));
+        AutoJobApplication
+                .getInstance()
+                .setLogContext(logContext);
+        return logContext;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.autojob.skeleton.framework.task;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.register.AutoJobRegister;
+import com.example.autojob.skeleton.model.tq.AutoJobTaskQueue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * 任务锁续租测试，只续租已触发和仍在注册器中的认领，离开注册器后未触发的认领在租约到期后释放
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 15:30
+ */
+public class TaskLeaseRenewTest {
+    private static final long TOKEN = 100;
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("task_lease_renew");
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Test
+    public void renewsOnlyRegisteredOrFiredTasks() throws SQLException {
+        long now = System.currentTimeMillis();
+        long oldExpire = now + 1000;
+        AutoJobRegister register = new AutoJobRegister(new AutoJobTaskQueue(100, true));
+        TaskRunningContext context = new TaskRunningContext(null, register, AutoJobApplication
+                .getInstance()
+                .getConfigHolder());
+        //1：认领后仍在注册器中；2：认领后被移除且租约已到期；3：认领后转入时间轮；4：已触发
+        for (long id = 1; id <= 4; id++) {
+            insertLockedTask(id, oldExpire);
+            TaskRunningContext
+                    .getOnLockMap()
+                    .put(id, TOKEN);
+        }
+        TaskRunningContext
+                .getClaimedTasks()
+                .put(1L, oldExpire);
+        TaskRunningContext
+                .getClaimedTasks()
+                .put(2L, now - 1);
+        TaskRunningContext
+                .getClaimedTasks()
+                .put(3L, oldExpire);
+        register.registerTask(new AutoJobMethodTaskBuilder(Object.class, "toString")
+                .setTaskId(1L)
+                .setTaskType(AutoJobTask.TaskType.DB_TASK)
+                .addACronExpressionTrigger("0 0 0 1 1 ?", -1)
+                .build());
+
+        context.renewLease();
+
+        assertTrue(queryLong("select lock_expire from aj_auto_job where id = 1") > oldExpire);
+        assertTrue(TaskRunningContext
+                .getClaimedTasks()
+                .get(1L) > oldExpire);
+        assertEquals(0, queryLong("select run_lock from aj_auto_job where id = 2"));
+        assertFalse(TaskRunningContext
+                .getOnLockMap()
+                .containsKey(2L));
+        assertFalse(TaskRunningContext
+                .getClaimedTasks()
+                .containsKey(2L));
+        assertEquals(oldExpire, queryLong("select lock_expire from aj_auto_job where id = 3"));
+        assertTrue(TaskRunningContext
+                .getOnLockMap()
+                .containsKey(3L));
+        assertTrue(queryLong("select lock_expire from aj_auto_job where id = 4") > oldExpire);
+
+        //认领可以直接释放，已触发任务的锁保留到执行结束
+        assertTrue(TaskRunningContext.releaseClaim(3));
+        assertEquals(0, queryLong("select run_lock from aj_auto_job where id = 3"));
+        assertFalse(TaskRunningContext
+                .getOnLockMap()
+                .containsKey(3L));
+        assertFalse(TaskRunningContext.releaseClaim(4));
+        assertEquals(1, queryLong("select run_lock from aj_auto_job where id = 4"));
+    }
+
+    private static void insertLockedTask(long id, long expire) throws SQLException {
+        execute(String.format("insert into aj_auto_job (id, type, run_lock, lock_owner, lock_expire, lock_version, is_latest, status, del_flag) values (%d, 0, 1, '%s', %d, %d, 1, 1, 0)", id, TaskRunningContext.getLockOwner(), expire, TOKEN));
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.autojob.skeleton.model.scheduler;
+
+import com.example.autojob.skeleton.db.DataSourceHolder;
+import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
+import com.example.autojob.skeleton.framework.boot.AutoJobTestContext;
+import com.example.autojob.skeleton.framework.task.AutoJobTask;
+import com.example.autojob.skeleton.model.builder.AutoJobMethodTaskBuilder;
+import com.example.autojob.skeleton.model.register.AutoJobRegister;
+import com.example.autojob.skeleton.model.tq.AutoJobTaskQueue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * DB任务调度器测试，已在调度队列中的任务在触发器发生新的变更后按数据库重新构建，没有变更的保留原实例
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/29 16:50
+ */
+public class AutoJobDBTaskSchedulerTest {
+    private static final long CHANGE_TIME = 1000;
+    private static DataSourceHolder holder;
+
+    @BeforeClass
+    public static void init() {
+        holder = AutoJobTestContext.newH2("db_task_scheduler");
+        AutoJobTestContext.initWithSchema(holder);
+    }
+
+    @Test
+    public void registeredTaskIsRebuiltWhenTriggerChanged() throws Exception {
+        long triggeringTime = System.currentTimeMillis() + 3000;
+        insertTask(1, triggeringTime);
+        insertTask(2, triggeringTime);
+        AutoJobRegister register = new AutoJobRegister(new AutoJobTaskQueue(100, true));
+        //1号任务在队列中的实例构建于触发器变更之前，2号任务的实例已是最新
+        AutoJobTask stale = registeredTask(1, triggeringTime, CHANGE_TIME - 1);
+        AutoJobTask latest = registeredTask(2, triggeringTime, CHANGE_TIME);
+        register.registerTask(stale);
+        register.registerTask(latest);
+        AutoJobDBTaskScheduler scheduler = new AutoJobDBTaskScheduler(null, register, AutoJobApplication
+                .getInstance()
+                .getConfigHolder());
+        scheduler.startWork();
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (register.getTaskById(1) == stale && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            AutoJobTask rebuilt = register.getTaskById(1);
+            assertNotNull(rebuilt);
+            assertNotSame(stale, rebuilt);
+            assertEquals(Long.valueOf(CHANGE_TIME), rebuilt
+                    .getTrigger()
+                    .getChangeTime());
+            assertSame(latest, register.getTaskById(2));
+            assertEquals(1, queryInt("select run_lock from aj_auto_job where id = 1"));
+            assertEquals(1, queryInt("select run_lock from aj_auto_job where id = 2"));
+        } finally {
+            scheduler.destroy();
+        }
+    }
+
+    private static AutoJobTask registeredTask(long id, long triggeringTime, long changeTime) {
+        AutoJobTask task = new AutoJobMethodTaskBuilder(Object.class, "toString")
+                .setTaskId(id)
+                .setTaskType(AutoJobTask.TaskType.DB_TASK)
+                .addACronExpressionTrigger("0 0 0 1 1 ?", -1)
+                .build();
+        task
+                .getTrigger()
+                .setTriggeringTime(triggeringTime)
+                .setChangeTime(changeTime);
+        return task;
+    }
+
+    private static void insertTask(long id, long triggeringTime) throws SQLException {
+        execute(String.format("insert into aj_auto_job (id, method_class_name, method_name, trigger_id, type, run_lock, is_latest, status, del_flag) values (%d, 'java.lang.Object', 'toString', %d, 0, 0, 1, 1, 0)", id, id + 1000));
+        execute(String.format("insert into aj_trigger (id, task_id, cron_expression, next_triggering_time, last_triggering_time, last_run_time, repeat_times, finished_times, cycle, is_last_success, is_pause, is_run, change_time, del_flag) values (%d, %d, '0 0 0 1 1 ?', %d, 0, 0, -1, 0, 0, 1, 0, 0, %d, 0)", id + 1000, id, triggeringTime, CHANGE_TIME));
+    }
+
+    private static int queryInt(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = holder.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.autojob.util.convert;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 字符串工具测试，UTF-8字节数与实际编码结果一致
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/28 11:10
+ */
+public class StringUtilsTest {
+    @Test
+    public void utf8LengthMatchesEncoding() {
+        String[] samples = {"", "task-1 done", "é ß", "任务执行完成", "emoji 😀 end", "lone \uD800 surrogate", "tail \uDC00", "\uD83D"};
+        for (String sample : samples) {
+            assertEquals(sample, sample.getBytes(StandardCharsets.UTF_8).length, StringUtils.utf8Length(sample));
+        }
+        assertEquals(0, StringUtils.utf8Length(null));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.autojob.util.id.imp;
+
+import com.example.autojob.util.id.SystemClock;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 雪花ID测试
+ *
+ * @Author Huang Yongxiang
+ * @Date 2023/01/27 16:40
+ */
+public class IdSnowFlakeWorkerTest {
+    @Test
+    public void timestampRoundTrip() {
+        IdSnowFlakeWorker worker = new IdSnowFlakeWorker();
+        //ID使用缓存的系统时钟，可能落后System.currentTimeMillis()，上下界也取自同一时钟
+        long before = SystemClock.now();
+        long id = worker.nextId();
+        long after = SystemClock.now();
+        long timestamp = IdSnowFlakeWorker.getTimestamp(id);
+        assertTrue(timestamp >= before && timestamp <= after);
+        //后生成的ID解析出的时间不早于先生成的ID
+        assertTrue(IdSnowFlakeWorker.getTimestamp(worker.nextId()) >= timestamp);
+    }
+
+    @Test
+    public void reservedIdsDoNotOverlap() {
+        IdSnowFlakeWorker worker = new IdSnowFlakeWorker();
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            //预留的区间与单个生成的ID交替，跨越毫秒边界时也不能重复
+            long first = worker.nextIds(100);
+            for (int j = 0; j < 100; j++) {
+                assertTrue(ids.add(first + j));
+            }
+            assertTrue(ids.add(worker.nextId()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> worker.nextIds(4097));
+    }
+}
@@ -199,6 +199,37 @@ public class AutoJobController {
         return master.toString();
     }
 
+    @GetMapping(value = "/page_task_after", produces = "application/json;charset=UTF-8")
+    public String pageAfter(@RequestParam(value = "lastId", required = false) Long lastId, @RequestParam(value = "pageSize", required = false) Integer pageSize, @RequestParam(value = "type", required = false) Integer type) {
+        if (pageSize == null) {
+            return MessageMaster.DefaultMessage.EMPTY_PARAMS.toString();
+        }
+        AutoJobAPI api;
+        if (type == null || type == 1) {
+            api = AutoJobApplication
+                    .getInstance()
+                    .getMemoryTaskAPI();
+        } else if (type == 2) {
+            api = AutoJobApplication
+                    .getInstance()
+                    .getDbTaskAPI();
+        } else {
+            return MessageMaster.getMessage(MessageMaster.Code.BAD_REQUEST, "错误操作类型");
+        }
+        List<AutoJobTaskAttributes> taskAttributes = api.pageAfter(lastId, pageSize);
+        MessageMaster master = new MessageMaster();
+        master.setFormatData(true);
+        master.setCode(MessageMaster.Code.OK);
+        master.setMessage("查找成功");
+        master.setData(taskAttributes);
+        if (taskAttributes.size() > 0) {
+            master.insertNewMessage("lastId", taskAttributes
+                    .get(taskAttributes.size() - 1)
+                    .getId());
+        }
+        return master.toString();
+    }
+
     @PostMapping(value = "/edit_method_task", produces = "application/json;charset=UTF-8")
     public String editMethodTask(@RequestBody(required = false) MethodTaskEditParams params, @RequestParam(required = false, value = "TASK_ID") Long taskId) {
         if (params == null || ObjectUtil.isNull(params) || taskId == null) {
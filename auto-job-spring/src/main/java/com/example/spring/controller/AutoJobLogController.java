@@ -6,9 +6,18 @@ import com.example.autojob.logging.domain.AutoJobRunLog;
 import com.example.autojob.logging.domain.AutoJobSchedulingRecord;
 import com.example.autojob.skeleton.framework.boot.AutoJobApplication;
 import com.example.autojob.util.convert.MessageMaster;
+import com.example.autojob.util.json.JsonUtil;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PreDestroy;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 测试使用Rest接口查询日志
@@ -20,6 +29,29 @@ import java.util.List;
 @RestController
 @RequestMapping("/auto_job_log")
 public class AutoJobLogController {
+    /**
+     * 日志流单次连接的最长时间：ms，超时后客户端携带Last-Event-ID重连即可继续
+     */
+    private static final long STREAM_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * 日志流每次推送的最大条数
+     */
+    private static final int STREAM_BATCH_SIZE = 200;
+    /**
+     * 同时推送的日志流上限，超过后新的连接直接结束
+     */
+    static final int MAX_STREAMS = 32;
+    /**
+     * TIMEOUT和IDLE_TIMEOUT的上限：s
+     */
+    static final long MAX_TIMEOUT = TimeUnit.MILLISECONDS.toSeconds(AutoJobLogDBAPI.MAX_TAIL_TIMEOUT);
+    private static final AtomicInteger STREAM_THREAD_COUNT = new AtomicInteger();
+    final ThreadPoolExecutor streamExecutor = new ThreadPoolExecutor(0, MAX_STREAMS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "autoJobLogStream-" + STREAM_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @GetMapping(value = "/page_scheduling_record/{taskId}", produces = "application/json;charset=UTF-8")
     public String pageSchedulingRecords(@PathVariable("taskId") Long taskId, @RequestParam(value = "PAGE_COUNT", required = false) Integer pageCount, @RequestParam(value = "SIZE", required = false) Integer size) {
         if (taskId == null) {
@@ -42,6 +74,31 @@ public class AutoJobLogController {
         return master.toString();
     }
 
+    @GetMapping(value = "/page_scheduling_record_after/{taskId}", produces = "application/json;charset=UTF-8")
+    public String pageSchedulingRecordsAfter(@PathVariable("taskId") Long taskId, @RequestParam(value = "LAST_ID", required = false) Long lastId, @RequestParam(value = "SIZE", required = false) Integer size) {
+        if (taskId == null) {
+            return MessageMaster.DefaultMessage.EMPTY_PARAMS.toString();
+        }
+        if (size == null) {
+            return MessageMaster.getMessage(MessageMaster.Code.BAD_REQUEST, "请指定分页信息");
+        }
+        List<AutoJobSchedulingRecord> records = AutoJobApplication
+                .getInstance()
+                .getLogDbAPI()
+                .pageAfter(taskId, lastId, size);
+        MessageMaster master = new MessageMaster();
+        master.setFormatData(true);
+        master.setCode(MessageMaster.Code.OK);
+        master.setMessage("查找成功");
+        master.setData(records);
+        if (records.size() > 0) {
+            master.insertNewMessage("lastId", records
+                    .get(records.size() - 1)
+                    .getSchedulingId());
+        }
+        return master.toString();
+    }
+
     @GetMapping(value = "/find_log/{schedulingId}", produces = "application/json;charset=UTF-8")
     public String findLog(@PathVariable("schedulingId") Long schedulingId) {
         if (schedulingId == null) {
@@ -60,6 +117,73 @@ public class AutoJobLogController {
         return master.toString();
     }
 
+    /**
+     * 增量查询调度的任务日志，没有新日志时最多等待TIMEOUT秒（最长MAX_TIMEOUT秒），返回的lastId作为下次查询的游标
+     */
+    @GetMapping(value = "/tail_log/{schedulingId}", produces = "application/json;charset=UTF-8")
+    public String tailLog(@PathVariable("schedulingId") Long schedulingId, @RequestParam(value = "LAST_ID", required = false) Long lastId, @RequestParam(value = "SIZE", required = false, defaultValue = "500") Integer size, @RequestParam(value = "TIMEOUT", required = false, defaultValue = "0") Long timeout) {
+        if (schedulingId == null) {
+            return MessageMaster.DefaultMessage.EMPTY_PARAMS.toString();
+        }
+        List<AutoJobLog> logList = AutoJobApplication
+                .getInstance()
+                .getLogDbAPI()
+                .tailLogsBySchedulingId(schedulingId, lastId, size, TimeUnit.SECONDS.toMillis(clamp(timeout, 0, MAX_TIMEOUT)));
+        MessageMaster master = new MessageMaster();
+        master.setFormatData(true);
+        master.setCode(MessageMaster.Code.OK);
+        master.setMessage("查找成功");
+        master.setData(logList);
+        master.insertNewMessage("lastId", logList.isEmpty() ? lastId : logList
+                .get(logList.size() - 1)
+                .getId());
+        return master.toString();
+    }
+
+    /**
+     * 以SSE推送调度的任务日志，事件ID为日志ID，断线重连时浏览器携带的Last-Event-ID即为游标；
+     * 连续IDLE_TIMEOUT秒（最长MAX_TIMEOUT秒）没有新日志时结束推送，同时推送的流超过MAX_STREAMS时新的连接直接结束
+     */
+    @GetMapping(value = "/stream_log/{schedulingId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLog(@PathVariable("schedulingId") Long schedulingId, @RequestParam(value = "LAST_ID", required = false) Long lastId, @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId, @RequestParam(value = "IDLE_TIMEOUT", required = false, defaultValue = "30") Long idleTimeout) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT);
+        AutoJobLogDBAPI api = AutoJobApplication
+                .getInstance()
+                .getLogDbAPI();
+        long streamDeadline = System.currentTimeMillis() + STREAM_TIMEOUT;
+        long idleMillis = TimeUnit.SECONDS.toMillis(clamp(idleTimeout, 0, MAX_TIMEOUT));
+        try {
+            streamExecutor.execute(() -> {
+                Long cursor = lastEventId != null ? lastEventId : lastId;
+                try {
+                    while (System.currentTimeMillis() < streamDeadline) {
+                        List<AutoJobLog> logList = api.tailLogsBySchedulingId(schedulingId, cursor, STREAM_BATCH_SIZE, idleMillis);
+                        if (logList.isEmpty()) {
+                            break;
+                        }
+                        for (AutoJobLog log : logList) {
+                            emitter.send(SseEmitter
+                                    .event()
+                                    .id(String.valueOf(log.getId()))
+                                    .name("log")
+                                    .data(JsonUtil.pojoToJsonString(log)));
+                        }
+                        cursor = logList
+                                .get(logList.size() - 1)
+                                .getId();
+                    }
+                    emitter.complete();
+                } catch (Exception e) {
+                    //客户端断开
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
     @GetMapping(value = "/find_run_log/{schedulingId}", produces = "application/json;charset=UTF-8")
     public String findRunLog(@PathVariable("schedulingId") Long schedulingId) {
         if (schedulingId == null) {
@@ -78,4 +202,17 @@ public class AutoJobLogController {
         return master.toString();
     }
 
+    @PreDestroy
+    public void destroy() {
+        //中断等待中的增量查询，推送线程随之结束
+        streamExecutor.shutdownNow();
+    }
+
+    static long clamp(Long value, long min, long max) {
+        if (value == null) {
+            return min;
+        }
+        return Math.max(min, Math.min(value, max));
+    }
+
 }
@@ -0,0 +1,69 @@
+package com.example.spring.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutoJobLogControllerTest {
+    private final AutoJobLogController controller = new AutoJobLogController();
+
+    @AfterEach
+    void destroy() {
+        controller.destroy();
+    }
+
+    @Test
+    void timeoutsAreClamped() {
+        assertEquals(60, AutoJobLogController.MAX_TIMEOUT);
+        assertEquals(0, AutoJobLogController.clamp(null, 0, AutoJobLogController.MAX_TIMEOUT));
+        assertEquals(0, AutoJobLogController.clamp(-5L, 0, AutoJobLogController.MAX_TIMEOUT));
+        assertEquals(30, AutoJobLogController.clamp(30L, 0, AutoJobLogController.MAX_TIMEOUT));
+        assertEquals(AutoJobLogController.MAX_TIMEOUT, AutoJobLogController.clamp(Long.MAX_VALUE, 0, AutoJobLogController.MAX_TIMEOUT));
+    }
+
+    @Test
+    void streamExecutorIsBoundedAndDaemon() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(AutoJobLogController.MAX_STREAMS);
+        AtomicBoolean isDaemon = new AtomicBoolean(true);
+        for (int i = 0; i < AutoJobLogController.MAX_STREAMS; i++) {
+            controller.streamExecutor.execute(() -> {
+                isDaemon.compareAndSet(true, Thread
+                        .currentThread()
+                        .isDaemon());
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(isDaemon.get());
+        assertThrows(RejectedExecutionException.class, () -> controller.streamExecutor.execute(() -> {
+        }));
+        release.countDown();
+    }
+
+    @Test
+    void destroyInterruptsStreams() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        controller.streamExecutor.execute(() -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        controller.destroy();
+        assertTrue(controller.streamExecutor.isShutdown());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(controller.streamExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,155 @@
+-- ----------------------------
+-- H2嵌入式数据库建表脚本，用于单节点部署与集成测试
+-- 数据源示例：driverClassName=org.h2.Driver
+--            url=jdbc:h2:file:./data/auto_job_plus;AUTO_SERVER=FALSE;LOCK_TIMEOUT=10000
+-- 框架启动时若发现H2库中尚无任务表，会自动执行该脚本
+-- ----------------------------
+
+-- ----------------------------
+-- Table structure for aj_auto_job
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_auto_job (
+  id bigint NOT NULL,
+  alias varchar(255) DEFAULT NULL,
+  annotation_id bigint DEFAULT NULL,
+  method_class_name varchar(255) DEFAULT NULL,
+  method_name varchar(255) DEFAULT NULL,
+  params clob,
+  content clob,
+  method_object_factory varchar(255) DEFAULT NULL,
+  script_content clob,
+  script_path clob,
+  script_file_name varchar(255) DEFAULT NULL,
+  script_cmd varchar(255) DEFAULT NULL,
+  trigger_id bigint DEFAULT NULL,
+  type int NOT NULL DEFAULT 0,
+  is_child_task int DEFAULT NULL,
+  run_lock int NOT NULL DEFAULT 0,
+  lock_owner varchar(64) DEFAULT NULL,
+  lock_expire bigint DEFAULT NULL,
+  lock_version bigint DEFAULT NULL,
+  task_level int DEFAULT -1,
+  version bigint DEFAULT NULL,
+  is_latest int NOT NULL DEFAULT 0,
+  belong_to bigint DEFAULT NULL,
+  status int NOT NULL DEFAULT 1,
+  create_time timestamp DEFAULT NULL,
+  del_flag int DEFAULT 0,
+  PRIMARY KEY (id)
+);
+COMMENT ON TABLE aj_auto_job IS '任务表';
+
+-- ----------------------------
+-- Table structure for aj_job_logs
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_job_logs (
+  id bigint NOT NULL,
+  scheduling_id bigint DEFAULT NULL,
+  task_id bigint NOT NULL,
+  write_timestamp bigint DEFAULT NULL,
+  write_time timestamp DEFAULT NULL,
+  log_level varchar(10) DEFAULT NULL,
+  message clob,
+  del_flag int NOT NULL DEFAULT 0,
+  log_count int NOT NULL DEFAULT 1,
+  content blob DEFAULT NULL,
+  PRIMARY KEY (id)
+);
+COMMENT ON TABLE aj_job_logs IS '任务日志表';
+
+-- ----------------------------
+-- Table structure for aj_run_logs
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_run_logs (
+  id bigint NOT NULL,
+  scheduling_id bigint DEFAULT NULL,
+  task_id bigint NOT NULL,
+  task_type varchar(10) NOT NULL,
+  run_status int NOT NULL,
+  schedule_times int DEFAULT 1,
+  message clob,
+  result varchar(255) DEFAULT NULL,
+  error_stack clob,
+  write_timestamp bigint DEFAULT NULL,
+  write_time timestamp NOT NULL,
+  del_flag int NOT NULL DEFAULT 0,
+  PRIMARY KEY (id)
+);
+COMMENT ON TABLE aj_run_logs IS '任务调度日志表';
+
+-- ----------------------------
+-- Table structure for aj_scheduling_record
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_scheduling_record (
+  id bigint NOT NULL,
+  write_timestamp bigint DEFAULT NULL,
+  scheduling_time timestamp DEFAULT NULL,
+  task_alias varchar(255) DEFAULT NULL,
+  task_id bigint NOT NULL,
+  is_success int DEFAULT 1,
+  is_run int NOT NULL DEFAULT 0,
+  is_retry int DEFAULT NULL,
+  result clob,
+  execution_time bigint DEFAULT NULL,
+  del_flag int NOT NULL DEFAULT 0,
+  PRIMARY KEY (id)
+);
+COMMENT ON TABLE aj_scheduling_record IS '调度记录表';
+
+-- ----------------------------
+-- Table structure for aj_trigger
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_trigger (
+  id bigint NOT NULL,
+  cron_expression varchar(255) DEFAULT NULL,
+  last_run_time bigint DEFAULT NULL,
+  last_triggering_time bigint DEFAULT NULL,
+  next_triggering_time bigint DEFAULT NULL,
+  is_last_success int DEFAULT NULL,
+  repeat_times int DEFAULT 1,
+  finished_times int DEFAULT 0,
+  cycle bigint DEFAULT NULL,
+  task_id bigint DEFAULT NULL,
+  child_tasks_id varchar(255) DEFAULT NULL,
+  maximum_execution_time bigint DEFAULT NULL,
+  is_run int NOT NULL DEFAULT 0,
+  is_pause int NOT NULL DEFAULT 0,
+  create_time timestamp DEFAULT NULL,
+  change_time bigint NOT NULL DEFAULT 0,
+  del_flag int DEFAULT 0,
+  PRIMARY KEY (id)
+);
+COMMENT ON TABLE aj_trigger IS '触发器表';
+
+-- ----------------------------
+-- Indexes
+-- ----------------------------
+CREATE INDEX IF NOT EXISTS idx_aj_trigger_next_time ON aj_trigger (next_triggering_time, is_pause, del_flag, task_id);
+CREATE INDEX IF NOT EXISTS idx_aj_trigger_task_id ON aj_trigger (task_id, del_flag);
+CREATE INDEX IF NOT EXISTS idx_aj_auto_job_annotation ON aj_auto_job (annotation_id, del_flag, status, id);
+CREATE INDEX IF NOT EXISTS idx_aj_job_logs_scheduling_id ON aj_job_logs (scheduling_id, del_flag);
+CREATE INDEX IF NOT EXISTS idx_aj_job_logs_task_time ON aj_job_logs (task_id, write_timestamp);
+CREATE INDEX IF NOT EXISTS idx_aj_run_logs_scheduling_id ON aj_run_logs (scheduling_id, del_flag);
+CREATE INDEX IF NOT EXISTS idx_aj_run_logs_task_time ON aj_run_logs (task_id, write_timestamp);
+CREATE INDEX IF NOT EXISTS idx_aj_scheduling_record_task_time ON aj_scheduling_record (task_id, write_timestamp);
+CREATE INDEX IF NOT EXISTS idx_aj_auto_job_latest ON aj_auto_job (is_latest, del_flag, id);
+CREATE INDEX IF NOT EXISTS idx_aj_scheduling_record_task_id ON aj_scheduling_record (task_id, del_flag, id);
+CREATE INDEX IF NOT EXISTS idx_aj_job_logs_task_id ON aj_job_logs (task_id, del_flag, id);
+CREATE INDEX IF NOT EXISTS idx_aj_run_logs_task_id ON aj_run_logs (task_id, del_flag, id);
+CREATE INDEX IF NOT EXISTS idx_aj_trigger_change_time ON aj_trigger (change_time, next_triggering_time);
+
+-- ----------------------------
+-- Table structure for aj_schema_version
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS aj_schema_version (
+  version int NOT NULL,
+  description varchar(255) DEFAULT NULL,
+  installed_time bigint DEFAULT NULL,
+  PRIMARY KEY (version)
+);
+COMMENT ON TABLE aj_schema_version IS '数据库结构版本表';
+MERGE INTO aj_schema_version KEY (version) VALUES (1, 'add secondary indexes', 0);
+MERGE INTO aj_schema_version KEY (version) VALUES (2, 'add task lock lease columns', 0);
+MERGE INTO aj_schema_version KEY (version) VALUES (3, 'add latest version marker and keyset indexes', 0);
+MERGE INTO aj_schema_version KEY (version) VALUES (4, 'add trigger change marker', 0);
+MERGE INTO aj_schema_version KEY (version) VALUES (5, 'add compressed log block columns', 0);
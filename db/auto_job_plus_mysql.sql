@@ -22,8 +22,12 @@ CREATE TABLE `aj_auto_job`  (
   `type` int(0) NOT NULL DEFAULT 0 COMMENT '任务类型，目前已占用的类型有：0-方法型任务 1-脚本型任务',
   `is_child_task` int(0) NULL DEFAULT NULL COMMENT '是否是子任务',
   `run_lock` int(0) NOT NULL DEFAULT 0 COMMENT '启动锁 0-未上锁 1-已上锁',
+  `lock_owner` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '锁持有者',
+  `lock_expire` bigint(0) NULL DEFAULT NULL COMMENT '锁租约到期时间戳',
+  `lock_version` bigint(0) NULL DEFAULT NULL COMMENT '加锁令牌',
   `task_level` int(0) NULL DEFAULT -1 COMMENT '任务优先级',
   `version` bigint(0) NULL DEFAULT NULL COMMENT '版本号',
+  `is_latest` int(0) NOT NULL DEFAULT 0 COMMENT '是否是最新版本 0-否 1-是',
   `belong_to` bigint(0) NULL DEFAULT NULL COMMENT '预留字段，所属于',
   `status` int(0) NOT NULL DEFAULT 1 COMMENT '状态 0-已停用 1-已启用',
   `create_time` datetime(0) NULL DEFAULT NULL,
@@ -44,6 +48,8 @@ CREATE TABLE `aj_job_logs`  (
   `log_level` varchar(10) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '日志级别',
   `message` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '记录信息',
   `del_flag` int(0) NOT NULL DEFAULT 0,
+  `log_count` int(0) NOT NULL DEFAULT 1 COMMENT '日志条数，日志块为块内的条数',
+  `content` mediumblob NULL COMMENT '日志块内容',
   PRIMARY KEY (`id`) USING BTREE
 ) COMMENT '任务日志表';
 
@@ -106,8 +112,42 @@ CREATE TABLE `aj_trigger`  (
   `is_run` int(0) NOT NULL DEFAULT 0 COMMENT '是否正在运行 0-否 1-是',
   `is_pause` int(0) NOT NULL DEFAULT 0 COMMENT '是否暂停调度 0-否 1-是',
   `create_time` datetime(0) NULL DEFAULT NULL COMMENT '创建时间',
+  `change_time` bigint(0) NOT NULL DEFAULT 0 COMMENT '最近一次影响调度的变更时间戳',
   `del_flag` int(0) NULL DEFAULT 0,
   PRIMARY KEY (`id`) USING BTREE
 ) COMMENT '触发器表';
 
+-- ----------------------------
+-- Indexes
+-- ----------------------------
+CREATE INDEX `idx_aj_trigger_next_time` ON `aj_trigger` (`next_triggering_time`, `is_pause`, `del_flag`, `task_id`) USING BTREE;
+CREATE INDEX `idx_aj_trigger_task_id` ON `aj_trigger` (`task_id`, `del_flag`) USING BTREE;
+CREATE INDEX `idx_aj_auto_job_annotation` ON `aj_auto_job` (`annotation_id`, `del_flag`, `status`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_job_logs_scheduling_id` ON `aj_job_logs` (`scheduling_id`, `del_flag`) USING BTREE;
+CREATE INDEX `idx_aj_job_logs_task_time` ON `aj_job_logs` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_scheduling_id` ON `aj_run_logs` (`scheduling_id`, `del_flag`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_task_time` ON `aj_run_logs` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_scheduling_record_task_time` ON `aj_scheduling_record` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_auto_job_latest` ON `aj_auto_job` (`is_latest`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_scheduling_record_task_id` ON `aj_scheduling_record` (`task_id`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_job_logs_task_id` ON `aj_job_logs` (`task_id`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_task_id` ON `aj_run_logs` (`task_id`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_trigger_change_time` ON `aj_trigger` (`change_time`, `next_triggering_time`) USING BTREE;
+
+-- ----------------------------
+-- Table structure for aj_schema_version
+-- ----------------------------
+DROP TABLE IF EXISTS `aj_schema_version`;
+CREATE TABLE `aj_schema_version`  (
+  `version` int(0) NOT NULL COMMENT '迁移版本号',
+  `description` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '迁移描述',
+  `installed_time` bigint(0) NULL DEFAULT NULL COMMENT '应用时间戳',
+  PRIMARY KEY (`version`) USING BTREE
+) COMMENT '数据库结构版本表';
+INSERT INTO `aj_schema_version` VALUES (1, 'add secondary indexes', 0);
+INSERT INTO `aj_schema_version` VALUES (2, 'add task lock lease columns', 0);
+INSERT INTO `aj_schema_version` VALUES (3, 'add latest version marker and keyset indexes', 0);
+INSERT INTO `aj_schema_version` VALUES (4, 'add trigger change marker', 0);
+INSERT INTO `aj_schema_version` VALUES (5, 'add compressed log block columns', 0);
+
 SET FOREIGN_KEY_CHECKS = 1;
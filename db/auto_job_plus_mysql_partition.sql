@@ -0,0 +1,78 @@
+-- ----------------------------
+-- 日志与调度记录表的分区版本，可替代auto_job_plus_mysql.sql中的同名表
+-- 表按write_timestamp（毫秒时间戳）按天进行范围分区，初始只有一个兜底分区p_max，
+-- 开启autoJob.database.retention.enable后会自动从p_max中拆分出未来的日分区，并直接删除过期的日分区
+-- ----------------------------
+SET NAMES utf8mb4;
+SET FOREIGN_KEY_CHECKS = 0;
+
+-- ----------------------------
+-- Table structure for aj_job_logs
+-- ----------------------------
+DROP TABLE IF EXISTS `aj_job_logs`;
+CREATE TABLE `aj_job_logs`  (
+  `id` bigint(0) NOT NULL COMMENT '主键ID',
+  `scheduling_id` bigint(0) NULL DEFAULT NULL COMMENT '调度id',
+  `task_id` bigint(0) NOT NULL COMMENT '任务ID',
+  `write_timestamp` bigint(0) NOT NULL COMMENT '录入时间戳',
+  `write_time` datetime(0) NULL DEFAULT NULL COMMENT '写入时间',
+  `log_level` varchar(10) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '日志级别',
+  `message` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '记录信息',
+  `del_flag` int(0) NOT NULL DEFAULT 0,
+  `log_count` int(0) NOT NULL DEFAULT 1 COMMENT '日志条数，日志块为块内的条数',
+  `content` mediumblob NULL COMMENT '日志块内容',
+  PRIMARY KEY (`id`, `write_timestamp`) USING BTREE
+) COMMENT '任务日志表'
+PARTITION BY RANGE (`write_timestamp`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+
+-- ----------------------------
+-- Table structure for aj_run_logs
+-- ----------------------------
+DROP TABLE IF EXISTS `aj_run_logs`;
+CREATE TABLE `aj_run_logs`  (
+  `id` bigint(0) NOT NULL COMMENT '主键',
+  `scheduling_id` bigint(0) NULL DEFAULT NULL COMMENT '调度id',
+  `task_id` bigint(0) NOT NULL COMMENT '任务ID',
+  `task_type` varchar(10) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '任务类型：MEMORY_TASK：内存型任务 DB_TASK：数据库任务',
+  `run_status` int(0) NOT NULL COMMENT '1：运行成功 0：运行失败',
+  `schedule_times` int(0) NULL DEFAULT 1 COMMENT '调度次数',
+  `message` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '信息',
+  `result` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '任务结果',
+  `error_stack` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '错误堆栈',
+  `write_timestamp` bigint(0) NOT NULL COMMENT '录入时间戳',
+  `write_time` datetime(0) NOT NULL COMMENT '录入时间',
+  `del_flag` int(0) NOT NULL DEFAULT 0 COMMENT '删除标识',
+  PRIMARY KEY (`id`, `write_timestamp`) USING BTREE
+) COMMENT '任务调度日志表'
+PARTITION BY RANGE (`write_timestamp`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+
+-- ----------------------------
+-- Table structure for aj_scheduling_record
+-- ----------------------------
+DROP TABLE IF EXISTS `aj_scheduling_record`;
+CREATE TABLE `aj_scheduling_record`  (
+  `id` bigint NOT NULL COMMENT '主键',
+  `write_timestamp` bigint NOT NULL COMMENT '写入时间戳',
+  `scheduling_time` datetime(0) NULL DEFAULT NULL COMMENT '调度时间',
+  `task_alias` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '任务别名',
+  `task_id` bigint(0) NOT NULL COMMENT '任务Id',
+  `is_success` int(0) NULL DEFAULT 1 COMMENT '是否执行成功 0-否 1-是',
+  `is_run` int(0) NOT NULL DEFAULT 0 COMMENT '是否正在运行 1-是 0-否',
+  `is_retry` int DEFAULT NULL COMMENT '是否是重试调度 0-否 1-是',
+  `result` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL COMMENT '任务结果 JSON序列化',
+  `execution_time` bigint(0) NULL DEFAULT NULL COMMENT '执行时长:ms',
+  `del_flag` int(0) NOT NULL DEFAULT 0 COMMENT '删除标识',
+  PRIMARY KEY (`id`, `write_timestamp`) USING BTREE
+) COMMENT '调度记录表'
+PARTITION BY RANGE (`write_timestamp`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+
+CREATE INDEX `idx_aj_job_logs_scheduling_id` ON `aj_job_logs` (`scheduling_id`, `del_flag`) USING BTREE;
+CREATE INDEX `idx_aj_job_logs_task_time` ON `aj_job_logs` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_job_logs_task_id` ON `aj_job_logs` (`task_id`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_scheduling_id` ON `aj_run_logs` (`scheduling_id`, `del_flag`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_task_time` ON `aj_run_logs` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_run_logs_task_id` ON `aj_run_logs` (`task_id`, `del_flag`, `id`) USING BTREE;
+CREATE INDEX `idx_aj_scheduling_record_task_time` ON `aj_scheduling_record` (`task_id`, `write_timestamp`) USING BTREE;
+CREATE INDEX `idx_aj_scheduling_record_task_id` ON `aj_scheduling_record` (`task_id`, `del_flag`, `id`) USING BTREE;
+
+SET FOREIGN_KEY_CHECKS = 1;
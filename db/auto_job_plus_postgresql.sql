@@ -16,8 +16,12 @@ CREATE TABLE "aj_auto_job"
     "type"                  int4 NOT NULL DEFAULT 0,
     "is_child_task"         int4          DEFAULT NULL,
     "run_lock"              int4 NOT NULL DEFAULT 0,
+    "lock_owner"            varchar(64)   DEFAULT NULL,
+    "lock_expire"           int8          DEFAULT NULL,
+    "lock_version"          int8          DEFAULT NULL,
     "task_level"            int4          DEFAULT -1,
     "version"               int8          DEFAULT NULL,
+    "is_latest"             int4 NOT NULL DEFAULT 0,
     "belong_to"             int8          DEFAULT NULL,
     "status"                int4 NOT NULL DEFAULT 1,
     "create_time"           timestamp(0)  DEFAULT NULL,
@@ -42,8 +46,12 @@ COMMENT ON COLUMN "aj_auto_job"."trigger_id" IS '任务对应的触发器';
 COMMENT ON COLUMN "aj_auto_job"."type" IS '任务类型，目前已占用的类型有：0-方法型任务 1-脚本型任务';
 COMMENT ON COLUMN "aj_auto_job"."is_child_task" IS '是否是子任务';
 COMMENT ON COLUMN "aj_auto_job"."run_lock" IS '启动锁 0-未上锁 1-已上锁';
+COMMENT ON COLUMN "aj_auto_job"."lock_owner" IS '锁持有者';
+COMMENT ON COLUMN "aj_auto_job"."lock_expire" IS '锁租约到期时间戳';
+COMMENT ON COLUMN "aj_auto_job"."lock_version" IS '加锁令牌';
 COMMENT ON COLUMN "aj_auto_job"."task_level" IS '任务优先级';
 COMMENT ON COLUMN "aj_auto_job"."version" IS '版本号';
+COMMENT ON COLUMN "aj_auto_job"."is_latest" IS '是否是最新版本 0-否 1-是';
 COMMENT ON COLUMN "aj_auto_job"."belong_to" IS '预留字段，所属于';
 COMMENT ON COLUMN "aj_auto_job"."status" IS '状态 0-已停用 1-已启用';
 
@@ -57,6 +65,8 @@ CREATE TABLE "aj_job_logs"
     "log_level"       varchar(10)   DEFAULT NULL,
     "message"         text          DEFAULT NULL,
     "del_flag"        int4 NOT NULL DEFAULT 0,
+    "log_count"       int4 NOT NULL DEFAULT 1,
+    "content"         bytea         DEFAULT NULL,
     PRIMARY KEY ("id")
 )
     WITHOUT OIDS;
@@ -68,6 +78,8 @@ COMMENT ON COLUMN "aj_job_logs"."write_timestamp" IS '录入时间戳';
 COMMENT ON COLUMN "aj_job_logs"."write_time" IS '写入时间';
 COMMENT ON COLUMN "aj_job_logs"."log_level" IS '日志级别';
 COMMENT ON COLUMN "aj_job_logs"."message" IS '记录信息';
+COMMENT ON COLUMN "aj_job_logs"."log_count" IS '日志条数，日志块为块内的条数';
+COMMENT ON COLUMN "aj_job_logs"."content" IS '日志块内容';
 
 CREATE TABLE "aj_run_logs"
 (
@@ -146,6 +158,7 @@ CREATE TABLE "aj_trigger"
     "is_run"                 int4 NOT NULL DEFAULT 0,
     "is_pause"               int4 NOT NULL DEFAULT 0,
     "create_time"            timestamp(0)  DEFAULT NULL,
+    "change_time"            int8 NOT NULL DEFAULT 0,
     "del_flag"               int4          DEFAULT 0,
     PRIMARY KEY ("id")
 )
@@ -166,4 +179,34 @@ COMMENT ON COLUMN "aj_trigger"."maximum_execution_time" IS '最大运行时长';
 COMMENT ON COLUMN "aj_trigger"."is_run" IS '是否正在运行 0-否 1-是';
 COMMENT ON COLUMN "aj_trigger"."is_pause" IS '是否暂停调度 0-否 1-是';
 COMMENT ON COLUMN "aj_trigger"."create_time" IS '创建时间';
+COMMENT ON COLUMN "aj_trigger"."change_time" IS '最近一次影响调度的变更时间戳';
 
+
+CREATE INDEX "idx_aj_trigger_next_time" ON "aj_trigger" ("next_triggering_time", "is_pause", "del_flag", "task_id");
+CREATE INDEX "idx_aj_trigger_task_id" ON "aj_trigger" ("task_id", "del_flag");
+CREATE INDEX "idx_aj_auto_job_annotation" ON "aj_auto_job" ("annotation_id", "del_flag", "status", "id");
+CREATE INDEX "idx_aj_job_logs_scheduling_id" ON "aj_job_logs" ("scheduling_id", "del_flag");
+CREATE INDEX "idx_aj_job_logs_task_time" ON "aj_job_logs" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_run_logs_scheduling_id" ON "aj_run_logs" ("scheduling_id", "del_flag");
+CREATE INDEX "idx_aj_run_logs_task_time" ON "aj_run_logs" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_scheduling_record_task_time" ON "aj_scheduling_record" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_auto_job_latest" ON "aj_auto_job" ("is_latest", "del_flag", "id");
+CREATE INDEX "idx_aj_scheduling_record_task_id" ON "aj_scheduling_record" ("task_id", "del_flag", "id");
+CREATE INDEX "idx_aj_job_logs_task_id" ON "aj_job_logs" ("task_id", "del_flag", "id");
+CREATE INDEX "idx_aj_run_logs_task_id" ON "aj_run_logs" ("task_id", "del_flag", "id");
+CREATE INDEX "idx_aj_trigger_change_time" ON "aj_trigger" ("change_time", "next_triggering_time");
+
+CREATE TABLE "aj_schema_version"
+(
+    "version"        int4 NOT NULL,
+    "description"    varchar(255) DEFAULT NULL,
+    "installed_time" int8         DEFAULT NULL,
+    PRIMARY KEY ("version")
+)
+    WITHOUT OIDS;
+COMMENT ON TABLE "aj_schema_version" IS '数据库结构版本表';
+INSERT INTO "aj_schema_version" VALUES (1, 'add secondary indexes', 0);
+INSERT INTO "aj_schema_version" VALUES (2, 'add task lock lease columns', 0);
+INSERT INTO "aj_schema_version" VALUES (3, 'add latest version marker and keyset indexes', 0);
+INSERT INTO "aj_schema_version" VALUES (4, 'add trigger change marker', 0);
+INSERT INTO "aj_schema_version" VALUES (5, 'add compressed log block columns', 0);
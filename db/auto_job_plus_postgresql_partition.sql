@@ -0,0 +1,65 @@
+-- 日志与调度记录表的分区版本，可替代auto_job_plus_postgresql.sql中的同名表（需要PostgreSQL 11+）
+-- 表按write_timestamp（毫秒时间戳）按天进行范围分区，日分区命名为“表名_pyyyyMMdd”，
+-- 开启autoJob.database.retention.enable后会自动创建未来的日分区，并直接删除过期的日分区
+CREATE TABLE "aj_job_logs"
+(
+    "id"              int8 NOT NULL,
+    "scheduling_id"   int8          DEFAULT NULL,
+    "task_id"         int8 NOT NULL,
+    "write_timestamp" int8 NOT NULL,
+    "write_time"      timestamp(0)  DEFAULT NULL,
+    "log_level"       varchar(10)   DEFAULT NULL,
+    "message"         text          DEFAULT NULL,
+    "del_flag"        int4 NOT NULL DEFAULT 0,
+    "log_count"       int4 NOT NULL DEFAULT 1,
+    "content"         bytea         DEFAULT NULL,
+    PRIMARY KEY ("id", "write_timestamp")
+) PARTITION BY RANGE ("write_timestamp");
+CREATE TABLE "aj_job_logs_default" PARTITION OF "aj_job_logs" DEFAULT;
+COMMENT ON TABLE "aj_job_logs" IS '任务日志表';
+
+CREATE TABLE "aj_run_logs"
+(
+    "id"              int8         NOT NULL,
+    "scheduling_id"   int8                  DEFAULT NULL,
+    "task_id"         int8         NOT NULL,
+    "task_type"       varchar(10)  NOT NULL,
+    "run_status"      int4         NOT NULL,
+    "schedule_times"  int4                  DEFAULT 1,
+    "message"         text                  DEFAULT NULL,
+    "result"          varchar(255)          DEFAULT NULL,
+    "error_stack"     text                  DEFAULT NULL,
+    "write_timestamp" int8         NOT NULL,
+    "write_time"      timestamp(0) NOT NULL,
+    "del_flag"        int4         NOT NULL DEFAULT 0,
+    PRIMARY KEY ("id", "write_timestamp")
+) PARTITION BY RANGE ("write_timestamp");
+CREATE TABLE "aj_run_logs_default" PARTITION OF "aj_run_logs" DEFAULT;
+COMMENT ON TABLE "aj_run_logs" IS '任务调度日志表';
+
+CREATE TABLE "aj_scheduling_record"
+(
+    "id"              int8 NOT NULL,
+    "write_timestamp" int8 NOT NULL,
+    "scheduling_time" timestamp(0)  DEFAULT NULL,
+    "task_alias"      varchar(255)  DEFAULT NULL,
+    "task_id"         int8 NOT NULL,
+    "is_success"      int4          DEFAULT 1,
+    "is_run"          int4 NOT NULL DEFAULT 0,
+    "is_retry"        int4 NOT NULL DEFAULT 0,
+    "result"          text          DEFAULT NULL,
+    "execution_time"  int8          DEFAULT NULL,
+    "del_flag"        int4 NOT NULL DEFAULT 0,
+    PRIMARY KEY ("id", "write_timestamp")
+) PARTITION BY RANGE ("write_timestamp");
+CREATE TABLE "aj_scheduling_record_default" PARTITION OF "aj_scheduling_record" DEFAULT;
+COMMENT ON TABLE "aj_scheduling_record" IS '调度记录表';
+
+CREATE INDEX "idx_aj_job_logs_scheduling_id" ON "aj_job_logs" ("scheduling_id", "del_flag");
+CREATE INDEX "idx_aj_job_logs_task_time" ON "aj_job_logs" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_job_logs_task_id" ON "aj_job_logs" ("task_id", "del_flag", "id");
+CREATE INDEX "idx_aj_run_logs_scheduling_id" ON "aj_run_logs" ("scheduling_id", "del_flag");
+CREATE INDEX "idx_aj_run_logs_task_time" ON "aj_run_logs" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_run_logs_task_id" ON "aj_run_logs" ("task_id", "del_flag", "id");
+CREATE INDEX "idx_aj_scheduling_record_task_time" ON "aj_scheduling_record" ("task_id", "write_timestamp");
+CREATE INDEX "idx_aj_scheduling_record_task_id" ON "aj_scheduling_record" ("task_id", "del_flag", "id");